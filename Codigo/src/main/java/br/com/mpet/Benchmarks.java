@@ -0,0 +1,1321 @@
+package br.com.mpet;
+
+import br.com.mpet.dto.AnimalDto;
+import br.com.mpet.dto.SaidaJson;
+import br.com.mpet.model.*;
+import br.com.mpet.persistence.BaseDataFile;
+import br.com.mpet.persistence.CacheTinyLfu;
+import br.com.mpet.persistence.Histograma;
+import br.com.mpet.persistence.MetricasArquivo;
+import br.com.mpet.persistence.dao.AdocaoDataFileDao;
+import br.com.mpet.persistence.dao.AdotanteDataFileDao;
+import br.com.mpet.persistence.dao.AnimalDataFileDao;
+import br.com.mpet.persistence.dao.ChatMessageDataFileDao;
+import br.com.mpet.persistence.dao.ChatThreadDataFileDao;
+import br.com.mpet.persistence.dao.InteresseDataFileDao;
+import br.com.mpet.persistence.dao.OngDataFileDao;
+import br.com.mpet.persistence.dao.VoluntarioDataFileDao;
+import br.com.mpet.persistence.index.MapaIntLong;
+import br.com.mpet.persistence.index.MapaIntLongForaDoHeap;
+import br.com.mpet.persistence.index.MapaIntLongHeap;
+import br.com.mpet.persistence.io.Codec;
+import br.com.mpet.persistence.io.EsquemaRegistro;
+import br.com.mpet.persistence.io.FiltroRegistro;
+import br.com.mpet.persistence.io.LayoutRegistro;
+import br.com.mpet.persistence.io.RecordReader;
+import br.com.mpet.persistence.io.RecordWriter;
+
+import com.google.gson.Gson;
+import com.google.gson.stream.JsonWriter;
+
+import javax.crypto.Cipher;
+import java.io.BufferedWriter;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.lang.management.BufferPoolMXBean;
+import java.lang.management.ManagementFactory;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.KeyPair;
+import java.security.KeyPairGenerator;
+import java.time.LocalDate;
+import java.util.*;
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.IntSupplier;
+
+/**
+ * ⏱️ MICRO-BENCHMARKS - MPet Backend
+ *
+ * Harness simples (sem dependências externas): aquece cada operação, mede o tempo médio
+ * por operação e os bytes alocados por operação na thread atual
+ * (via com.sun.management.ThreadMXBean).
+ *
+ * Seções disponíveis:
+ * - codec: Codec (byte[] por campo + concat) vs RecordWriter/RecordReader (buffer reaproveitado)
+ * - esquema: encode/decode escritos à mão vs EsquemaRegistro compilado
+ * - formato: codificação fixa vs compacta do payload: tamanho, encode/decode e filtro
+ * - rsa: chave relida do PEM a cada chamada vs chaves em cache + Cipher por thread,
+ *        e o custo de RSA numa listagem de adotantes e num verifyPassword
+ * - envelope: listagem e leitura por id num .dat em claro vs cifrado (AES-GCM)
+ * - cache: read(id) com conjunto quente (90% dos acessos em 1% dos ids) sem cache vs com
+ *          cache W-TinyLFU, e a taxa de acerto (inclusive depois de uma varredura fria)
+ * - indice: bytes por entrada do índice id → offset com HashMap&lt;Integer, Long&gt; vs
+ *           MapaIntLong no heap e fora dele, e o custo de get
+ * - servidor: teste de carga do RestServer em cada ConfiguracaoServidor.ModoExecutor — listagens
+ *             lentas simultâneas e a latência de /api/health enquanto elas rodam
+ * - streaming: tempo até o primeiro byte e total de GET /api/animais com 1k a 300k animais
+ * - json: lista de 10k AnimalDto com Gson (String inteira e JsonWriter em streaming) vs SaidaJson,
+ *         com nomes ASCII e com acentos
+ * - compressao: nível do gzip numa listagem de 100k animais, GET /api/animais sem compressão vs
+ *               gzip/deflate, e arquivo estático pré-comprimido vs gzip por requisição
+ * - condicional: polling de /api/animais com 10k e 100k animais, sem validação vs If-None-Match (304)
+ * - chat: mil clientes acompanhando uma conversa, com polling de /messages vs long-poll ?since=
+ *         (threads do servidor ocupadas e tempo até todos receberem uma mensagem nova)
+ * - estaticos: arquivo de public/ lido do classpath a cada requisição vs mapa em memória, e
+ *              GET de um asset com e sem If-None-Match
+ * - rotas: despacho de /api/chats/:id/messages com split + matches vs a trie do Roteador
+ * - log: custo do log de acesso na thread da requisição, printf síncrono vs LogAcesso, com 1 e
+ *        8 threads registrando ao mesmo tempo
+ * - metricas: custo de medir (nanoTime, Histograma.registrar com 1 e 8 threads), de ler os
+ *             quantis de uma série e seeks/reads de uma leitura por id fora do cache
+ *
+ * Para executar:
+ *   mvn -f Codigo/pom.xml clean package
+ *   java -cp "Codigo/target/classes" br.com.mpet.Benchmarks            (todas as seções)
+ *   java -cp "Codigo/target/classes" br.com.mpet.Benchmarks codec      (apenas uma)
+ */
+public class Benchmarks {
+
+    private static final String ANSI_RESET = "\u001B[0m";
+    private static final String ANSI_GREEN = "\u001B[32m";
+    private static final String ANSI_YELLOW = "\u001B[33m";
+    private static final String ANSI_CYAN = "\u001B[36m";
+    private static final String ANSI_BOLD = "\u001B[1m";
+
+    /** Versão do esquema dos arquivos criados pelos benchmarks (a mesma da aplicação). */
+    private static final byte VERSAO = 2;
+
+    private static final int AQUECIMENTO = 200_000;
+    private static final int ITERACOES = 1_000_000;
+
+    /** Evita que o JIT elimine o resultado das operações medidas. */
+    private static long sumidouro;
+
+    @FunctionalInterface
+    interface Secao {
+        void run() throws Exception;
+    }
+
+    public static void main(String[] args) throws Exception {
+        Map<String, Secao> secoes = new LinkedHashMap<>();
+        secoes.put("codec", Benchmarks::benchCodec);
+        secoes.put("esquema", Benchmarks::benchEsquema);
+        secoes.put("formato", Benchmarks::benchFormato);
+        secoes.put("rsa", Benchmarks::benchRsa);
+        secoes.put("envelope", Benchmarks::benchEnvelope);
+        secoes.put("cache", Benchmarks::benchCache);
+        secoes.put("indice", Benchmarks::benchIndice);
+        secoes.put("servidor", Benchmarks::benchServidor);
+        secoes.put("streaming", Benchmarks::benchStreaming);
+        secoes.put("json", Benchmarks::benchJson);
+        secoes.put("compressao", Benchmarks::benchCompressao);
+        secoes.put("condicional", Benchmarks::benchCondicional);
+        secoes.put("chat", Benchmarks::benchChat);
+        secoes.put("estaticos", Benchmarks::benchEstaticos);
+        secoes.put("rotas", Benchmarks::benchRotas);
+        secoes.put("log", Benchmarks::benchLog);
+        secoes.put("metricas", Benchmarks::benchMetricas);
+
+        Set<String> escolhidas = args.length == 0 ? secoes.keySet() : new LinkedHashSet<>(Arrays.asList(args));
+        for (String nome : escolhidas) {
+            Secao s = secoes.get(nome);
+            if (s == null) {
+                System.out.println("Seção desconhecida: " + nome + " (disponíveis: " + secoes.keySet() + ")");
+                continue;
+            }
+            s.run();
+        }
+        System.out.println();
+    }
+
+    // ========================================================================
+    // CODEC
+    // ========================================================================
+
+    private static final Porte[] PORTES = Porte.values();
+    private static final NivelAdestramento[] NIVEIS = NivelAdestramento.values();
+
+    private static void benchCodec() {
+        secao("Codec vs RecordWriter/RecordReader (payload de Cachorro)");
+        Cachorro c = cachorroExemplo();
+
+        RecordWriter w = new RecordWriter(256);
+        RecordReader r = new RecordReader();
+        byte[] payload = encodeCodec(c);
+        if (!Arrays.equals(payload, encodeWriter(c, w).toByteArray())) {
+            throw new IllegalStateException("RecordWriter e Codec produziram bytes diferentes");
+        }
+        info("  payload: " + payload.length + " bytes (idêntico nos dois caminhos)");
+
+        Map<String, Runnable> ops = new LinkedHashMap<>();
+        ops.put("encode Codec", () -> sumidouro += encodeCodec(c).length);
+        ops.put("encode RecordWriter", () -> sumidouro += encodeWriter(c, w).position());
+        ops.put("decode Codec", () -> sumidouro += decodeCodec(payload).getIdOng());
+        ops.put("decode RecordReader", () -> sumidouro += decodeReader(r.wrap(payload, 0, payload.length)).getIdOng());
+        medir(ops);
+    }
+
+    // ========================================================================
+    // ESQUEMA
+    // ========================================================================
+
+    private static final EsquemaRegistro<Cachorro> ESQUEMA_CACHORRO = new EsquemaRegistro<>(Cachorro::new)
+            .inteiro("idOng", Animal::getIdOng, Animal::setIdOng)
+            .string("nome", Animal::getNome, Animal::setNome)
+            .data("dataNascimentoAprox", Animal::getDataNascimentoAprox, Animal::setDataNascimentoAprox)
+            .caractere("sexo", Animal::getSexo, Animal::setSexo)
+            .enumeracao("porte", PORTES, Animal::getPorte, Animal::setPorte)
+            .triBoolean("vacinado", Animal::isVacinado, Animal::setVacinado)
+            .string("descricao", Animal::getDescricao, Animal::setDescricao)
+            .string("imageUrl", Animal::getImageUrl, Animal::setImageUrl)
+            .string("raca", Cachorro::getRaca, Cachorro::setRaca)
+            .enumeracao("nivelAdestramento", NIVEIS, Cachorro::getNivelAdestramento, Cachorro::setNivelAdestramento)
+            .triBoolean("seDaBemComCachorros", Cachorro::isSeDaBemComCachorros, Cachorro::setSeDaBemComCachorros)
+            .triBoolean("seDaBemComGatos", Cachorro::isSeDaBemComGatos, Cachorro::setSeDaBemComGatos)
+            .triBoolean("seDaBemComCriancas", Cachorro::isSeDaBemComCriancas, Cachorro::setSeDaBemComCriancas);
+
+    private static void benchEsquema() {
+        secao("RecordWriter/RecordReader à mão vs EsquemaRegistro compilado (Cachorro)");
+        Cachorro c = cachorroExemplo();
+        LayoutRegistro layout = ESQUEMA_CACHORRO.layout();
+        EsquemaRegistro.Compilado<Cachorro> codec = ESQUEMA_CACHORRO.compilar(layout, 1, false);
+        RecordWriter w = new RecordWriter(256);
+        RecordReader r = new RecordReader();
+        byte[] payload = encodeWriter(c, w).toByteArray();
+        w.reset();
+        codec.escrever(c, w);
+        if (!Arrays.equals(payload, w.toByteArray())) {
+            throw new IllegalStateException("Esquema e encode manual produziram bytes diferentes");
+        }
+        info("  payload: " + payload.length + " bytes (idêntico nos dois caminhos)");
+
+        long soNome = layout.mascara(br.com.mpet.persistence.io.Projecao.de("nome"));
+        Map<String, Runnable> ops = new LinkedHashMap<>();
+        ops.put("encode manual", () -> sumidouro += encodeWriter(c, w).position());
+        ops.put("encode esquema", () -> { w.reset(); codec.escrever(c, w); sumidouro += w.position(); });
+        ops.put("decode manual", () -> sumidouro += decodeReader(r.wrap(payload, 0, payload.length)).getIdOng());
+        ops.put("decode esquema", () -> sumidouro += codec.ler(r.wrap(payload, 0, payload.length), -1L).getIdOng());
+        ops.put("decode esquema (só nome)", () -> sumidouro += codec.ler(r.wrap(payload, 0, payload.length), soNome).getIdOng());
+        medir(ops);
+    }
+
+    // ========================================================================
+    // FORMATO (codificação fixa vs compacta)
+    // ========================================================================
+
+    private static void benchFormato() {
+        secao("Codificação fixa vs compacta do payload (Cachorro)");
+        Cachorro c = cachorroExemplo();
+        LayoutRegistro layout = ESQUEMA_CACHORRO.layout();
+        EsquemaRegistro.Compilado<Cachorro> fixo = ESQUEMA_CACHORRO.compilar(layout, 1, false);
+        EsquemaRegistro.Compilado<Cachorro> compacto = ESQUEMA_CACHORRO.compilar(layout, 1, true);
+        RecordWriter w = new RecordWriter(256);
+        RecordReader r = new RecordReader();
+        w.reset();
+        fixo.escrever(c, w);
+        byte[] p1 = w.toByteArray();
+        w.reset();
+        compacto.escrever(c, w);
+        byte[] p2 = w.toByteArray();
+        Cachorro volta = compacto.ler(r.wrap(p2, 0, p2.length), -1L);
+        if (volta.getIdOng() != c.getIdOng() || !c.getNome().equals(volta.getNome())
+                || !c.getDataNascimentoAprox().equals(volta.getDataNascimentoAprox())
+                || volta.isSeDaBemComGatos() != c.isSeDaBemComGatos() || !c.getDescricao().equals(volta.getDescricao())) {
+            throw new IllegalStateException("Formato compacto não reproduziu o registro");
+        }
+        info(String.format("  payload fixo: %d bytes | compacto: %d bytes (%.0f%% menor)",
+                p1.length, p2.length, 100.0 * (p1.length - p2.length) / p1.length));
+
+        // Registro "pequeno": ids e strings curtas, onde os prefixos fixos pesam mais
+        Cachorro pequeno = new Cachorro();
+        pequeno.setIdOng(1);
+        pequeno.setNome("Rex");
+        pequeno.setSexo('M');
+        w.reset();
+        fixo.escrever(pequeno, w);
+        int pq1 = w.position();
+        w.reset();
+        compacto.escrever(pequeno, w);
+        info("  registro mínimo fixo: " + pq1 + " bytes | compacto: " + w.position() + " bytes");
+
+        LayoutRegistro layout2 = compacto.layout();
+        FiltroRegistro filtro1 = layout.intIgual("idOng", 3);
+        FiltroRegistro filtro2 = layout2.intIgual("idOng", 3);
+        Map<String, Runnable> ops = new LinkedHashMap<>();
+        ops.put("encode fixo", () -> { w.reset(); fixo.escrever(c, w); sumidouro += w.position(); });
+        ops.put("encode compacto", () -> { w.reset(); compacto.escrever(c, w); sumidouro += w.position(); });
+        ops.put("decode fixo", () -> sumidouro += fixo.ler(r.wrap(p1, 0, p1.length), -1L).getIdOng());
+        ops.put("decode compacto", () -> sumidouro += compacto.ler(r.wrap(p2, 0, p2.length), -1L).getIdOng());
+        ops.put("filtro idOng fixo", () -> sumidouro += filtro1.aceita(r.wrap(p1, 0, p1.length)) ? 1 : 0);
+        ops.put("filtro idOng compacto", () -> sumidouro += filtro2.aceita(r.wrap(p2, 0, p2.length)) ? 1 : 0);
+        medir(ops);
+    }
+
+    // ========================================================================
+    // RSA
+    // ========================================================================
+
+    private static void benchRsa() throws Exception {
+        secao("RSA: PEM relido a cada chamada vs chaves em cache + Cipher por thread");
+        Path dir = Files.createTempDirectory("mpet-bench-rsa");
+        try {
+            gerarChaves(dir);
+            RSACriptografia.recarregarChaves(dir);
+
+            String cifrado = RSACriptografia.criptografar("senha-de-teste");
+            Path pemPrivado = dir.resolve("private_key.pem");
+            Map<String, Runnable> ops = new LinkedHashMap<>();
+            ops.put("descriptografar (PEM + Cipher novo)", () -> {
+                try {
+                    Cipher c = Cipher.getInstance("RSA");
+                    c.init(Cipher.DECRYPT_MODE, RSACriptografia.lerChavePrivada(pemPrivado));
+                    sumidouro += c.doFinal(Base64.getDecoder().decode(cifrado)).length;
+                } catch (Exception e) {
+                    throw new IllegalStateException(e);
+                }
+            });
+            ops.put("descriptografar (cache)", () -> {
+                try {
+                    sumidouro += RSACriptografia.descriptografar(cifrado).length();
+                } catch (Exception e) {
+                    throw new IllegalStateException(e);
+                }
+            });
+            ops.put("criptografar (cache)", () -> {
+                try {
+                    sumidouro += RSACriptografia.criptografar("senha-de-teste").length();
+                } catch (Exception e) {
+                    throw new IllegalStateException(e);
+                }
+            });
+            medir(ops, 200, 1_000);
+
+            // Custo de RSA numa listagem (a senha só é descriptografada sob demanda) e num login
+            File arquivo = dir.resolve("adotantes.dat").toFile();
+            try (AdotanteDataFileDao dao = new AdotanteDataFileDao(arquivo, VERSAO)) {
+                for (int i = 0; i < 200; i++) {
+                    Adotante a = new Adotante();
+                    a.setCpf(String.format("%011d", i));
+                    a.setSenha("senha" + i);
+                    a.setNomeCompleto("Adotante " + i);
+                    dao.create(a);
+                }
+                RSACriptografia.zerarTempos();
+                long t0 = System.nanoTime();
+                int n = dao.listAllActive().size();
+                long dt = System.nanoTime() - t0;
+                info(String.format("  listAllActive(): %d adotantes em %.1f ms", n, dt / 1e6));
+                info("  RSA na listagem: " + RSACriptografia.resumoTempos());
+
+                RSACriptografia.zerarTempos();
+                boolean ok = dao.verifyPassword(String.format("%011d", 7), "senha7");
+                info("  verifyPassword(): " + ok + " | " + RSACriptografia.resumoTempos());
+            }
+        } finally {
+            apagarDiretorio(dir);
+            RSACriptografia.recarregarChaves();
+        }
+    }
+
+    // ========================================================================
+    // ENVELOPE (criptografia em repouso)
+    // ========================================================================
+
+    private static void benchEnvelope() throws Exception {
+        secao("Arquivo .dat em claro vs cifrado (AES-GCM, chave embrulhada com RSA)");
+        final int n = 5_000;
+        Path dir = Files.createTempDirectory("mpet-bench-envelope");
+        try {
+            KeyPair par = gerarChaves(dir);
+            File claro = dir.resolve("claro.dat").toFile();
+            File cifrado = dir.resolve("cifrado.dat").toFile();
+            try (AnimalDataFileDao daoClaro = criarAnimais(claro, n, par, false);
+                 AnimalDataFileDao daoCifrado = criarAnimais(cifrado, n, par, true)) {
+                if (!daoCifrado.isCifrado() || daoClaro.isCifrado()) throw new IllegalStateException("Modo de arquivo inesperado");
+                daoClaro.configurarCache(0); // mede o arquivo, não o cache (ver seção cache)
+                daoCifrado.configurarCache(0);
+                info(String.format("  %d animais: %d bytes em claro | %d bytes cifrado", n, claro.length(), cifrado.length()));
+
+                Random rnd = new Random(42);
+                Map<String, Runnable> ops = new LinkedHashMap<>();
+                ops.put("listAllActive (claro)", () -> sumidouro += listar(daoClaro));
+                ops.put("listAllActive (cifrado)", () -> sumidouro += listar(daoCifrado));
+                ops.put("read(id) (claro)", () -> sumidouro += ler(daoClaro, 1 + rnd.nextInt(n)));
+                ops.put("read(id) (cifrado)", () -> sumidouro += ler(daoCifrado, 1 + rnd.nextInt(n)));
+                medir(ops, 20, 50);
+            }
+        } finally {
+            BaseDataFile.configurarCriptografiaEmRepouso(null, null, false);
+            apagarDiretorio(dir);
+        }
+    }
+
+    // ========================================================================
+    // CACHE DE LEITURAS
+    // ========================================================================
+
+    private static void benchCache() throws Exception {
+        secao("read(id) com conjunto quente: sem cache vs cache W-TinyLFU");
+        final int n = 50_000;
+        final int quentes = n / 100;
+        Path dir = Files.createTempDirectory("mpet-bench-cache");
+        try {
+            KeyPair par = gerarChaves(dir);
+            try (AnimalDataFileDao semCache = criarAnimais(dir.resolve("sem.dat").toFile(), n, par, true);
+                 AnimalDataFileDao comCache = criarAnimais(dir.resolve("com.dat").toFile(), n, par, true)) {
+                semCache.configurarCache(0);
+                comCache.configurarCache(1024 * 1024);
+                Random rnd = new Random(7);
+                // 90% dos acessos nos 1% primeiros ids, 10% espalhados
+                IntSupplier id = () -> rnd.nextInt(10) < 9 ? 1 + rnd.nextInt(quentes) : 1 + rnd.nextInt(n);
+                Map<String, Runnable> ops = new LinkedHashMap<>();
+                ops.put("read(id) cifrado, sem cache", () -> sumidouro += ler(semCache, id.getAsInt()));
+                ops.put("read(id) cifrado, com cache", () -> sumidouro += ler(comCache, id.getAsInt()));
+                medir(ops, 50_000, 200_000);
+                info("  " + comCache.estatisticasCache());
+
+                // uma varredura fria de todos os ids não deve expulsar o conjunto quente
+                for (int i = 1; i <= n; i++) ler(comCache, i);
+                CacheTinyLfu.Estatisticas antes = comCache.estatisticasCache();
+                final int leituras = 100_000;
+                for (int i = 0; i < leituras; i++) ler(comCache, id.getAsInt());
+                long acertos = comCache.estatisticasCache().acertos() - antes.acertos();
+                info(String.format("  taxa de acerto logo após ler os %d ids uma vez: %.1f%%", n, 100.0 * acertos / leituras));
+            }
+        } finally {
+            BaseDataFile.configurarCriptografiaEmRepouso(null, null, false);
+            apagarDiretorio(dir);
+        }
+    }
+
+    // ========================================================================
+    // ÍNDICE id → offset EM MEMÓRIA
+    // ========================================================================
+
+    private static void benchIndice() {
+        secao("Índice id → offset: HashMap<Integer, Long> vs MapaIntLong (heap e fora do heap)");
+        final int n = 1_000_000;
+        // offsets realistas: acima do cache de Long.valueOf, ~100 bytes por registro
+        long antes = heapUsado();
+        Map<Integer, Long> boxed = new HashMap<>();
+        for (int i = 1; i <= n; i++) boxed.put(i, 128L + 100L * i);
+        long bytesBoxed = heapUsado() - antes;
+
+        antes = heapUsado();
+        MapaIntLong heap = new MapaIntLongHeap();
+        for (int i = 1; i <= n; i++) heap.put(i, 128L + 100L * i);
+        long bytesHeap = heapUsado() - antes;
+
+        antes = heapUsado();
+        long nativoAntes = memoriaDireta();
+        MapaIntLong foraDoHeap = new MapaIntLongForaDoHeap();
+        for (int i = 1; i <= n; i++) foraDoHeap.put(i, 128L + 100L * i);
+        long bytesForaHeap = heapUsado() - antes;
+        long bytesNativo = memoriaDireta() - nativoAntes;
+
+        info(String.format("  %d entradas:", n));
+        info(String.format("    HashMap<Integer, Long>  heap %6.1f B/entrada", (double) bytesBoxed / n));
+        info(String.format("    MapaIntLongHeap         heap %6.1f B/entrada", (double) bytesHeap / n));
+        info(String.format("    MapaIntLongForaDoHeap   heap %6.1f B/entrada | nativo %6.1f B/entrada",
+                (double) bytesForaHeap / n, (double) bytesNativo / n));
+
+        Random rnd = new Random(3);
+        Map<String, Runnable> ops = new LinkedHashMap<>();
+        ops.put("get HashMap<Integer, Long>", () -> {
+            Long off = boxed.get(1 + rnd.nextInt(n));
+            sumidouro += off == null ? 0 : off;
+        });
+        ops.put("get MapaIntLongHeap", () -> sumidouro += heap.get(1 + rnd.nextInt(n)));
+        ops.put("get MapaIntLongForaDoHeap", () -> sumidouro += foraDoHeap.get(1 + rnd.nextInt(n)));
+        medir(ops);
+        sumidouro += boxed.size() + heap.size() + foraDoHeap.size();
+    }
+
+    /** Heap ocupado depois de coletar o lixo (aproximado; repete o gc para estabilizar). */
+    private static long heapUsado() {
+        Runtime rt = Runtime.getRuntime();
+        for (int i = 0; i < 3; i++) System.gc();
+        return rt.totalMemory() - rt.freeMemory();
+    }
+
+    private static long memoriaDireta() {
+        for (BufferPoolMXBean b : ManagementFactory.getPlatformMXBeans(BufferPoolMXBean.class)) {
+            if ("direct".equals(b.getName())) return b.getMemoryUsed();
+        }
+        return 0;
+    }
+
+    // ========================================================================
+    // SERVIDOR (teste de carga)
+    // ========================================================================
+
+    private static void benchServidor() throws Exception {
+        final int animais = 20_000;
+        final int clientes = 40;
+        final long duracaoMs = 4_000;
+        secao("RestServer: " + clientes + " clientes listando /api/animais (" + animais + " animais) + /api/health a cada 20 ms");
+        try (BaseTemporaria base = new BaseTemporaria("mpet-bench-servidor")) {
+            base.adicionarAnimais(animais);
+
+            Map<String, ConfiguracaoServidor> cenarios = new LinkedHashMap<>();
+            for (ConfiguracaoServidor.ModoExecutor modo : ConfiguracaoServidor.ModoExecutor.values()) {
+                cenarios.put(modo.toString(), ConfiguracaoServidor.padrao().executor(modo));
+            }
+            cenarios.put("FIXO, fila 10", ConfiguracaoServidor.padrao().fila(10));
+            for (Map.Entry<String, ConfiguracaoServidor> c : cenarios.entrySet()) {
+                RestServer servidor = base.iniciarServidor(c.getValue());
+                try {
+                    ResultadoCarga r = carga(servidor.porta(), clientes, duracaoMs);
+                    resultadoCarga(c.getKey() + " [" + servidor.executor().descrever() + "]", r, duracaoMs);
+                } finally {
+                    servidor.stop();
+                }
+            }
+        }
+    }
+
+    /**
+     * GET /api/animais com tabelas de tamanhos diferentes: com a resposta em streaming o tempo até o
+     * primeiro byte fica constante (uma página do DAO) e só o tempo total cresce com a tabela.
+     */
+    private static void benchStreaming() throws Exception {
+        secao("GET /api/animais em streaming: tempo até o primeiro byte vs tamanho da tabela");
+        try (BaseTemporaria base = new BaseTemporaria("mpet-bench-streaming")) {
+            RestServer servidor = base.iniciarServidor(ConfiguracaoServidor.padrao());
+            try {
+                HttpClient http = HttpClient.newHttpClient();
+                HttpRequest listar = HttpRequest.newBuilder(URI.create("http://localhost:" + servidor.porta() + "/api/animais")).build();
+                int total = 0;
+                for (int alvo : new int[]{1_000, 10_000, 100_000, 300_000}) {
+                    base.adicionarAnimais(alvo - total);
+                    total = alvo;
+                    long[] t = get(http, listar, 5);
+                    System.out.printf("  %7d animais: primeiro byte %7.2f ms | resposta completa %8.1f ms | %6.1f MiB%n",
+                            total, t[0] / 1e6, t[1] / 1e6, t[2] / (1024.0 * 1024));
+                }
+            } finally {
+                servidor.stop();
+            }
+        }
+    }
+
+    /**
+     * Melhor de {@code repeticoes} GETs: {tempo até o primeiro byte (ns), tempo total (ns), bytes
+     * recebidos}. O HttpClient não descomprime, então com Accept-Encoding os bytes são os do fio.
+     */
+    private static long[] get(HttpClient http, HttpRequest req, int repeticoes) throws Exception {
+        long primeiro = Long.MAX_VALUE, completo = Long.MAX_VALUE, bytes = 0;
+        for (int rep = 0; rep < repeticoes; rep++) {
+            long t0 = System.nanoTime();
+            try (InputStream in = http.send(req, HttpResponse.BodyHandlers.ofInputStream()).body()) {
+                byte[] buf = new byte[64 * 1024];
+                int n = in.read(buf);
+                primeiro = Math.min(primeiro, System.nanoTime() - t0);
+                bytes = 0;
+                for (; n >= 0; n = in.read(buf)) bytes += n;
+            }
+            completo = Math.min(completo, System.nanoTime() - t0);
+        }
+        return new long[]{primeiro, completo, bytes};
+    }
+
+    // ========================================================================
+    // COMPRESSÃO
+    // ========================================================================
+
+    /**
+     * Custo e ganho da compressão das respostas: nível do Deflater numa listagem real, GET
+     * /api/animais com e sem Accept-Encoding, e arquivo estático pré-comprimido vs comprimido a
+     * cada requisição.
+     */
+    private static void benchCompressao() throws Exception {
+        final int animais = 100_000;
+        secao("Compressão HTTP: GET /api/animais (" + animais + " animais) e arquivos estáticos");
+        try (BaseTemporaria base = new BaseTemporaria("mpet-bench-compressao")) {
+            base.adicionarAnimais(animais);
+            RestServer servidor = base.iniciarServidor(ConfiguracaoServidor.padrao());
+            try {
+                HttpClient http = HttpClient.newHttpClient();
+                URI listar = URI.create("http://localhost:" + servidor.porta() + "/api/animais");
+                byte[] json = http.send(HttpRequest.newBuilder(listar).build(), HttpResponse.BodyHandlers.ofByteArray()).body();
+                for (int nivel : new int[]{1, 6, 9}) {
+                    for (int i = 0; i < 3; i++) CompressaoHttp.comprimir(json, 0, json.length, CompressaoHttp.Codificacao.GZIP, nivel);
+                    long t0 = System.nanoTime();
+                    byte[] z = CompressaoHttp.comprimir(json, 0, json.length, CompressaoHttp.Codificacao.GZIP, nivel);
+                    long dt = System.nanoTime() - t0;
+                    System.out.printf("  gzip nível %d: %6.1f MiB → %5.2f MiB (%4.1fx) em %6.1f ms%s%n", nivel,
+                            json.length / (1024.0 * 1024), z.length / (1024.0 * 1024), (double) json.length / z.length, dt / 1e6,
+                            nivel == CompressaoHttp.NIVEL_DINAMICO ? "  ← respostas dinâmicas" : "");
+                }
+                for (String ae : new String[]{null, "gzip", "deflate"}) {
+                    HttpRequest.Builder req = HttpRequest.newBuilder(listar);
+                    if (ae != null) req.header("Accept-Encoding", ae);
+                    get(http, req.build(), 2); // aquecimento
+                    long[] t = get(http, req.build(), 5);
+                    System.out.printf("  %-10s primeiro byte %6.2f ms | resposta completa %7.1f ms | %6.2f MiB no fio%n",
+                            ae == null ? "identity" : ae, t[0] / 1e6, t[1] / 1e6, t[2] / (1024.0 * 1024));
+                }
+            } finally {
+                servidor.stop();
+            }
+        }
+
+        RecursosEstaticos estaticos = RecursosEstaticos.carregar(Benchmarks.class.getClassLoader(), "public", true, 1024);
+        info(String.format("  estáticos pré-comprimidos: %d arquivos, %d → %d bytes",
+                estaticos.quantidadeComprimidos(), estaticos.bytesOriginais(), estaticos.bytesComprimidos()));
+        byte[] css;
+        try (InputStream in = Benchmarks.class.getClassLoader().getResourceAsStream("public/assets/css/style.css")) {
+            if (in == null) return;
+            css = in.readAllBytes();
+        }
+        Map<String, Runnable> ops = new LinkedHashMap<>();
+        ops.put("style.css: gzip por requisição", () -> sumidouro += CompressaoHttp.comprimir(css, 0, css.length,
+                CompressaoHttp.Codificacao.GZIP, CompressaoHttp.NIVEL_DINAMICO).length);
+        ops.put("style.css: pré-comprimido", () -> sumidouro += estaticos.recurso("/assets/css/style.css").gzip().length);
+        medir(ops, 2_000, 10_000);
+    }
+
+    // ========================================================================
+    // GET CONDICIONAL
+    // ========================================================================
+
+    /**
+     * Cliente que consulta /api/animais repetidamente: sem validação cada consulta varre e serializa
+     * a tabela; com o ETag da resposta anterior em If-None-Match o servidor compara só a versão do
+     * DAO e responde 304, em tempo que não depende do tamanho da tabela.
+     */
+    private static void benchCondicional() throws Exception {
+        secao("Polling de GET /api/animais: resposta completa vs If-None-Match (304)");
+        try (BaseTemporaria base = new BaseTemporaria("mpet-bench-condicional")) {
+            RestServer servidor = base.iniciarServidor(ConfiguracaoServidor.padrao());
+            try {
+                HttpClient http = HttpClient.newHttpClient();
+                URI listar = URI.create("http://localhost:" + servidor.porta() + "/api/animais");
+                int total = 0;
+                for (int alvo : new int[]{10_000, 100_000}) {
+                    base.adicionarAnimais(alvo - total);
+                    total = alvo;
+                    HttpRequest completo = HttpRequest.newBuilder(listar).build();
+                    String etag = http.send(completo, HttpResponse.BodyHandlers.discarding()).headers()
+                            .firstValue("ETag").orElseThrow();
+                    HttpRequest condicional = HttpRequest.newBuilder(listar).header("If-None-Match", etag).build();
+                    get(http, completo, 2); // aquecimento
+                    long[] t200 = get(http, completo, 5);
+                    get(http, condicional, 50);
+                    long[] t304 = get(http, condicional, 200);
+                    System.out.printf("  %7d animais: 200 em %7.2f ms (%6.1f MiB) | 304 em %5.3f ms (%d bytes)%n",
+                            total, t200[1] / 1e6, t200[2] / (1024.0 * 1024), t304[1] / 1e6, t304[2]);
+                }
+            } finally {
+                servidor.stop();
+            }
+        }
+    }
+
+    // ========================================================================
+    // CHAT
+    // ========================================================================
+
+    /**
+     * Mil clientes acompanhando a mesma conversa num arquivo com 50k mensagens: uma rodada de
+     * polling de /api/chats/1/messages (cada GET filtra o arquivo) contra mil long-polls parados
+     * em /messages?since=, que não ocupam thread do servidor e acordam juntos com um POST.
+     */
+    private static void benchChat() throws Exception {
+        final int clientes = 1_000;
+        secao("Chat: " + clientes + " clientes numa conversa, polling vs long-poll");
+        try (BaseTemporaria base = new BaseTemporaria("mpet-bench-chat")) {
+            ChatThread conversa = new ChatThread();
+            conversa.setIdAnimal(1);
+            conversa.setCpfAdotante("00000000000");
+            conversa.setAberto(true);
+            base.threads.create(conversa);
+            List<ChatMessage> mensagens = new ArrayList<>();
+            for (int i = 0; i < 50_000; i++) {
+                ChatMessage m = new ChatMessage();
+                m.setThreadId(i % 100 == 0 ? conversa.getId() : 1_000 + i % 100);
+                m.setConteudo("mensagem " + i);
+                mensagens.add(m);
+            }
+            base.mensagens.createAll(mensagens);
+            int ultima = mensagens.get(mensagens.size() - 1).getId();
+
+            // fila e backlog para a rajada de conexões do teste não virar 503
+            RestServer servidor = base.iniciarServidor(ConfiguracaoServidor.padrao().fila(2 * clientes).backlog(2 * clientes));
+            try {
+                HttpClient http = HttpClient.newHttpClient();
+                String raiz = "http://localhost:" + servidor.porta() + "/api/chats/" + conversa.getId() + "/messages";
+                HttpRequest listar = HttpRequest.newBuilder(URI.create(raiz)).build();
+                get(http, listar, 5); // aquecimento
+                long t0 = System.nanoTime();
+                List<CompletableFuture<HttpResponse<Void>>> rodada = new ArrayList<>();
+                for (int i = 0; i < clientes; i++) rodada.add(http.sendAsync(listar, HttpResponse.BodyHandlers.discarding()));
+                long ok = rodada.stream().filter(f -> f.join().statusCode() == 200).count();
+                System.out.printf("  polling: uma rodada de %d GETs (%d com 200) em %7.1f ms, repetida a cada intervalo%n",
+                        clientes, ok, (System.nanoTime() - t0) / 1e6);
+
+                HttpRequest esperar = HttpRequest.newBuilder(URI.create(raiz + "?since=" + ultima)).build();
+                List<CompletableFuture<HttpResponse<String>>> esperando = new ArrayList<>();
+                for (int i = 0; i < clientes; i++) esperando.add(http.sendAsync(esperar, HttpResponse.BodyHandlers.ofString()));
+                long limite = System.currentTimeMillis() + 10_000;
+                while (servidor.executor().emAndamento() > 0 || servidor.executor().atendidas() < clientes * 2L + 5) {
+                    if (System.currentTimeMillis() > limite) break;
+                    Thread.sleep(10);
+                }
+                long threadsServidor = Thread.getAllStackTraces().keySet().stream()
+                        .filter(t -> t.getName().startsWith("mpet-")).count();
+                System.out.printf("  long-poll: %d esperando, %d requisições em andamento no executor, %d threads mpet-* no processo%n",
+                        esperando.stream().filter(f -> !f.isDone()).count(), servidor.executor().emAndamento(), threadsServidor);
+                // outro cliente para o POST: o dos long-polls vai estar ocupado recebendo as respostas
+                HttpClient remetente = HttpClient.newHttpClient();
+                t0 = System.nanoTime();
+                HttpResponse<String> post = remetente.send(HttpRequest.newBuilder(URI.create("http://localhost:" + servidor.porta() + "/api/chat-messages"))
+                        .POST(HttpRequest.BodyPublishers.ofString("{\"threadId\":" + conversa.getId()
+                                + ",\"sender\":\"ADOTANTE\",\"conteudo\":\"oi\"}")).build(), HttpResponse.BodyHandlers.ofString());
+                long postMs = System.nanoTime() - t0;
+                int recebidas = 0;
+                for (var f : esperando) if (f.join().body().contains("\"conteudo\":\"oi\"")) recebidas++;
+                System.out.printf("  long-poll: POST %d em %5.2f ms; %d/%d clientes receberam a mensagem em %6.1f ms%n",
+                        post.statusCode(), postMs / 1e6, recebidas, clientes, (System.nanoTime() - t0) / 1e6);
+            } finally {
+                servidor.stop();
+            }
+        }
+    }
+
+    // ========================================================================
+    // ESTÁTICOS
+    // ========================================================================
+
+    /**
+     * O StaticFileHandler antigo abria o recurso no classpath e lia o arquivo inteiro a cada
+     * requisição; o mapa de RecursosEstaticos só faz um get. Pelo servidor, o mesmo asset com e sem
+     * o ETag da primeira resposta.
+     */
+    private static void benchEstaticos() throws Exception {
+        secao("Arquivos estáticos: classpath por requisição vs mapa em memória");
+        ClassLoader cl = Benchmarks.class.getClassLoader();
+        RecursosEstaticos estaticos = RecursosEstaticos.carregar(cl, "public", true, 1024);
+        if (estaticos.recurso("/pages/index.html") == null) return;
+        info(String.format("  %d arquivos (%d caminhos com os de hash), %.1f KiB em memória",
+                estaticos.arquivos(), estaticos.quantidade(), estaticos.bytesEmMemoria() / 1024.0));
+
+        Map<String, Runnable> ops = new LinkedHashMap<>();
+        ops.put("index.html: getResourceAsStream + readAllBytes", () -> {
+            try (InputStream in = cl.getResourceAsStream("public/pages/index.html")) {
+                sumidouro += in.readAllBytes().length;
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        });
+        ops.put("index.html: mapa em memória", () -> sumidouro += estaticos.recurso("/pages/index.html").bytes().length);
+        medir(ops, 20_000, 200_000);
+
+        try (BaseTemporaria base = new BaseTemporaria("mpet-bench-estaticos")) {
+            RestServer servidor = base.iniciarServidor(ConfiguracaoServidor.padrao());
+            try {
+                HttpClient http = HttpClient.newHttpClient();
+                HttpRequest completo = HttpRequest.newBuilder(
+                        URI.create("http://localhost:" + servidor.porta() + "/assets/css/style.css")).build();
+                String etag = http.send(completo, HttpResponse.BodyHandlers.discarding()).headers()
+                        .firstValue("ETag").orElseThrow();
+                HttpRequest condicional = HttpRequest.newBuilder(completo.uri()).header("If-None-Match", etag).build();
+                get(http, completo, 200); // aquecimento
+                long[] t200 = get(http, completo, 2_000);
+                get(http, condicional, 200);
+                long[] t304 = get(http, condicional, 2_000);
+                System.out.printf("  style.css: 200 em %5.3f ms (%d bytes) | 304 em %5.3f ms%n",
+                        t200[1] / 1e6, t200[2], t304[1] / 1e6);
+            } finally {
+                servidor.stop();
+            }
+        }
+    }
+
+    // ========================================================================
+    // ROTAS
+    // ========================================================================
+
+    /**
+     * O despacho antigo dos handlers (split do caminho, {@code matches("\\d+")}, que compila a
+     * regex a cada chamada, e parseInt) contra {@link Roteador#encontrar} com as rotas de chats.
+     */
+    private static void benchRotas() {
+        secao("Despacho de rotas: split + matches vs Roteador (trie)");
+        Roteador.Acao nada = (exchange, p) -> { };
+        Roteador rotas = new Roteador()
+                .rota("GET", "/api/chats", nada)
+                .rota("POST", "/api/chats", nada)
+                .rota("GET", "/api/chats/{threadId:int}", nada)
+                .rota("GET", "/api/chats/{threadId:int}/messages", nada)
+                .rota("GET", "/api/chats/{threadId:int}/stream", nada)
+                .rota("PUT", "/api/chats/{threadId:int}/close", nada);
+        String caminho = "/api/chats/12345/messages";
+
+        Map<String, Runnable> ops = new LinkedHashMap<>();
+        ops.put("split + matches + parseInt", () -> {
+            String[] parts = caminho.split("/");
+            if (parts.length > 3 && parts[3].matches("\\d+") && parts.length > 4 && parts[4].equals("messages")) {
+                sumidouro += Integer.parseInt(parts[3]);
+            }
+        });
+        ops.put("Roteador.encontrar + inteiro", () ->
+                sumidouro += rotas.encontrar("GET", caminho).parametros().inteiro("threadId"));
+        medir(ops, AQUECIMENTO, ITERACOES);
+    }
+
+    // ========================================================================
+    // LOG DE ACESSO
+    // ========================================================================
+
+    /**
+     * O que a thread da requisição paga pelo log: as três linhas de printf do LoggingHandler
+     * antigo (aqui num PrintStream descartando a saída, o que ainda poupa o custo do terminal)
+     * contra LogAcesso.registrar. Com várias threads, o printf disputa o lock do PrintStream.
+     */
+    private static void benchLog() throws Exception {
+        secao("Log de acesso: printf síncrono vs LogAcesso (buffer circular)");
+        java.io.PrintStream console = new java.io.PrintStream(OutputStream.nullOutputStream(), false, StandardCharsets.UTF_8);
+        URI uri = URI.create("/api/animais?limit=10");
+        Runnable printf = () -> {
+            console.printf("%s[HTTP %s] %s %s%s%s  %sua=%s%s  %sctx=%s%s%n", RestServer.ANSI_BLUE, "🐾", "GET",
+                    RestServer.ANSI_WHITE, uri.getPath() + "?" + uri.getQuery(), RestServer.ANSI_BLUE,
+                    RestServer.ANSI_DIM, "curl/8.5.0", RestServer.ANSI_BLUE, RestServer.ANSI_PURPLE, "/api/animais", RestServer.ANSI_RESET);
+            console.printf("[HTTP ✔] %s %s%s -> %d (%s) %s%n", "GET", uri.getPath(), "?" + uri.getQuery(), 200, "1349 bytes", "1ms");
+            console.printf("%s[HTTP ✅] %s %dms%s  %sctx=%s%s%n", RestServer.ANSI_GREEN, "200 (1349 bytes)", 1L,
+                    RestServer.ANSI_GREEN, RestServer.ANSI_PURPLE, "/api/animais", RestServer.ANSI_RESET);
+        };
+        com.sun.net.httpserver.Headers resposta = new com.sun.net.httpserver.Headers();
+        resposta.set("Content-Length", "1349");
+        try (LogAcesso log = new LogAcesso(OutputStream.nullOutputStream(), 1)) {
+            Runnable registrar = () -> log.registrar("GET", uri, 200, resposta, 1_234_567, "/api", null);
+            Map<String, Runnable> ops = new LinkedHashMap<>();
+            ops.put("printf (3 linhas)", printf);
+            ops.put("LogAcesso.registrar", registrar);
+            medir(ops, 100_000, 1_000_000);
+
+            int threads = 8, porThread = 500_000;
+            for (Map.Entry<String, Runnable> e : ops.entrySet()) {
+                long descartesAntes = log.descartadas();
+                long ns = emParalelo(threads, porThread, e.getValue());
+                System.out.printf("  %-32s %10.1f ns/req com %d threads%s%n", e.getKey(), (double) ns / ((long) threads * porThread), threads,
+                        e.getValue() == registrar ? " (" + (log.descartadas() - descartesAntes) + " descartadas com o buffer cheio)" : "");
+            }
+        }
+    }
+
+    // ========================================================================
+    // MÉTRICAS
+    // ========================================================================
+
+    /**
+     * O que cada requisição e cada operação de DAO pagam para alimentar /api/metrics: duas
+     * leituras de nanoTime e um Histograma.registrar (com 8 threads, disputando os mesmos
+     * contadores); o que o scrape paga por série (quantis); e o que uma leitura por id fora do
+     * cache faz no arquivo, pelos contadores de MetricasArquivo.
+     */
+    private static void benchMetricas() throws Exception {
+        secao("Métricas: custo de medir e de ler um histograma");
+        Histograma h = new Histograma();
+        long[] amostras = new long[4096];
+        Random rnd = new Random(42);
+        for (int i = 0; i < amostras.length; i++) amostras[i] = (long) Math.exp(8 + rnd.nextGaussian() * 2); // ~3 us, cauda longa
+        int[] k = {0};
+
+        Map<String, Runnable> ops = new LinkedHashMap<>();
+        ops.put("2x System.nanoTime", () -> {
+            long t0 = System.nanoTime();
+            sumidouro += System.nanoTime() - t0;
+        });
+        ops.put("Histograma.registrar", () -> h.registrar(amostras[k[0]++ & 4095]));
+        ops.put("Histograma.quantis (4)", () -> sumidouro += h.quantis(0.5, 0.9, 0.99, 0.999)[3]);
+        medir(ops, 20_000, 200_000);
+
+        int threads = 8, porThread = 500_000;
+        Histograma compartilhado = new Histograma();
+        long ns = emParalelo(threads, porThread, () ->
+                compartilhado.registrar(amostras[java.util.concurrent.ThreadLocalRandom.current().nextInt(4096)]));
+        System.out.printf("  %-32s %10.1f ns/op com %d threads%n", "Histograma.registrar", (double) ns / ((long) threads * porThread), threads);
+        long[] q = h.quantis(0.5, 0.99, 0.999);
+        info(String.format("  p50=%d ns p99=%d ns p999=%d ns de %d amostras (máx. %d ns)", q[0], q[1], q[2], h.contagem(), h.maximo()));
+
+        secao("Métricas: E/S de uma leitura por id fora do cache");
+        try (BaseTemporaria base = new BaseTemporaria("mpet-bench-metricas")) {
+            base.adicionarAnimais(10_000);
+            base.animais.configurarCache(0);
+            MetricasArquivo m = base.animais.metricas();
+            int n = 20_000;
+            for (int i = 0; i < n; i++) base.animais.read(1 + rnd.nextInt(10_000));
+            long seeks = m.seeks(), leituras = m.leituras(), bytes = m.bytesLidos();
+            long t0 = System.nanoTime();
+            for (int i = 0; i < n; i++) base.animais.read(1 + rnd.nextInt(10_000));
+            long total = System.nanoTime() - t0;
+            Histograma leitura = m.duracao(MetricasArquivo.Operacao.LEITURA);
+            long[] ql = leitura.quantis(0.5, 0.99, 0.999);
+            System.out.printf("  %-32s %10.1f ns/op%n", "AnimalDao.read (sem cache)", (double) total / n);
+            info(String.format("  por leitura: %.1f seeks, %.1f reads, %.0f bytes; registro: p50=%d ns p99=%d ns p999=%d ns",
+                    (double) (m.seeks() - seeks) / n, (double) (m.leituras() - leituras) / n, (double) (m.bytesLidos() - bytes) / n,
+                    ql[0], ql[1], ql[2]));
+        }
+    }
+
+    /** Tempo (ns) até {@code threads} threads executarem {@code op} {@code vezes} vezes cada, partindo juntas. */
+    private static long emParalelo(int threads, int vezes, Runnable op) throws Exception {
+        java.util.concurrent.CountDownLatch largada = new java.util.concurrent.CountDownLatch(1);
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        try {
+            List<java.util.concurrent.Future<?>> fs = new ArrayList<>();
+            for (int t = 0; t < threads; t++) {
+                fs.add(pool.submit(() -> {
+                    largada.await();
+                    for (int i = 0; i < vezes; i++) op.run();
+                    return null;
+                }));
+            }
+            long t0 = System.nanoTime();
+            largada.countDown();
+            for (java.util.concurrent.Future<?> f : fs) f.get();
+            return System.nanoTime() - t0;
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    // ========================================================================
+    // JSON
+    // ========================================================================
+
+    /**
+     * Serialização da listagem de /api/animais: os dois caminhos de Gson que o RestServer já usou
+     * (toJson da lista inteira + getBytes; JsonWriter sobre OutputStreamWriter em streaming) contra
+     * os escritores de {@link br.com.mpet.dto.SaidaJson}. O destino é um OutputStream nulo, então
+     * só a serialização e a codificação UTF-8 entram na conta.
+     */
+    private static void benchJson() throws IOException {
+        final int n = 10_000;
+        for (boolean acentos : new boolean[]{false, true}) {
+            secao("JSON de " + n + " AnimalDto: Gson vs SaidaJson (" + (acentos ? "textos com acentos" : "textos ASCII") + ")");
+            List<AnimalDto> dtos = new ArrayList<>(n);
+            for (int i = 0; i < n; i++) {
+                Animal a = i % 3 == 0 ? new Gato() : new Cachorro();
+                a.setId(i + 1);
+                a.setIdOng(i % 50);
+                a.setNome((acentos ? "Pérola " : "Rex ") + i);
+                a.setSexo(i % 2 == 0 ? 'M' : 'F');
+                a.setPorte(PORTES[i % PORTES.length]);
+                a.setVacinado(i % 4 != 0);
+                a.setDescricao(acentos ? "Dócil, castrado e ótimo com crianças; adora passear" : "Docil, castrado e otimo com criancas; adora passear");
+                a.setImageUrl("/uploads/animais/" + i + ".jpg");
+                dtos.add(AnimalDto.fromEntity(a));
+            }
+            Gson gson = new Gson();
+            OutputStream nulo = OutputStream.nullOutputStream();
+            SaidaJson saida = new SaidaJson(16 * 1024 + 1024);
+            ByteArrayOutputStream esperado = new ByteArrayOutputStream();
+            escreverSaidaJson(dtos, saida, esperado);
+            if (!Arrays.equals(gson.toJson(dtos).getBytes(StandardCharsets.UTF_8), esperado.toByteArray())) {
+                throw new IllegalStateException("SaidaJson e Gson produziram bytes diferentes");
+            }
+            info(String.format("  resposta: %.1f KiB (idêntica nos três caminhos)", esperado.size() / 1024.0));
+
+            Map<String, Runnable> ops = new LinkedHashMap<>();
+            ops.put("Gson toJson(lista) + getBytes", () -> sumidouro += gson.toJson(dtos).getBytes(StandardCharsets.UTF_8).length);
+            ops.put("Gson JsonWriter (streaming)", () -> {
+                try {
+                    JsonWriter out = new JsonWriter(new BufferedWriter(new OutputStreamWriter(nulo, StandardCharsets.UTF_8), 16 * 1024));
+                    out.beginArray();
+                    for (AnimalDto d : dtos) gson.toJson(d, AnimalDto.class, out);
+                    out.endArray();
+                    out.flush();
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+            ops.put("SaidaJson (streaming)", () -> {
+                try {
+                    escreverSaidaJson(dtos, saida, nulo);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+            medir(ops, 50, 200);
+            info("  (tempos por lista de " + n + "; divida por " + n + " para o custo por animal)");
+        }
+    }
+
+    /** Mesmo laço de RestServer.sendJsonStream. */
+    private static void escreverSaidaJson(List<AnimalDto> dtos, SaidaJson saida, OutputStream out) throws IOException {
+        saida.limpar().abrirArray();
+        for (AnimalDto d : dtos) {
+            d.escreverJson(saida);
+            if (saida.tamanho() >= 16 * 1024) saida.descarregar(out);
+        }
+        saida.fecharArray().descarregar(out);
+        sumidouro += saida.tamanho();
+    }
+
+    /** Os oito DAOs num diretório temporário, apagado no close. */
+    private static final class BaseTemporaria implements Closeable {
+        private final Path dir;
+        private final List<Closeable> daos = new ArrayList<>();
+        final AnimalDataFileDao animais;
+        final OngDataFileDao ongs;
+        final AdotanteDataFileDao adotantes;
+        final VoluntarioDataFileDao voluntarios;
+        final AdocaoDataFileDao adocoes;
+        final InteresseDataFileDao interesses;
+        final ChatThreadDataFileDao threads;
+        final ChatMessageDataFileDao mensagens;
+
+        BaseTemporaria(String prefixo) throws IOException {
+            dir = Files.createTempDirectory(prefixo);
+            byte v = VERSAO;
+            animais = abrir(new AnimalDataFileDao(arquivo("animais.dat"), v));
+            ongs = abrir(new OngDataFileDao(arquivo("ongs.dat"), v));
+            adotantes = abrir(new AdotanteDataFileDao(arquivo("adotantes.dat"), v));
+            voluntarios = abrir(new VoluntarioDataFileDao(arquivo("voluntarios.dat"), v));
+            adocoes = abrir(new AdocaoDataFileDao(arquivo("adocoes.dat"), v));
+            interesses = abrir(new InteresseDataFileDao(arquivo("interesses.dat"), v));
+            threads = abrir(new ChatThreadDataFileDao(arquivo("chat_threads.dat"), v));
+            mensagens = abrir(new ChatMessageDataFileDao(arquivo("chat_msgs.dat"), v));
+        }
+
+        void adicionarAnimais(int n) throws IOException {
+            List<Animal> lista = new ArrayList<>(n);
+            for (int i = 0; i < n; i++) {
+                Cachorro c = cachorroExemplo();
+                c.setNome("Cachorro " + i);
+                lista.add(c);
+            }
+            animais.createAll(lista);
+        }
+
+        /** Servidor numa porta livre, sem log por requisição. */
+        RestServer iniciarServidor(ConfiguracaoServidor config) throws IOException {
+            RestServer servidor = new RestServer(config.porta(0).debug(false), animais, ongs, adotantes,
+                    voluntarios, adocoes, interesses, threads, mensagens);
+            servidor.start();
+            return servidor;
+        }
+
+        private <D extends Closeable> D abrir(D dao) {
+            daos.add(dao);
+            return dao;
+        }
+
+        private File arquivo(String nome) {
+            return dir.resolve(nome).toFile();
+        }
+
+        @Override
+        public void close() throws IOException {
+            for (Closeable dao : daos) dao.close();
+            apagarDiretorio(dir);
+        }
+    }
+
+    private static final class ResultadoCarga {
+        final AtomicLong ok = new AtomicLong();
+        final AtomicLong recusadas = new AtomicLong();
+        final AtomicLong erros = new AtomicLong();
+        final List<Long> saudeMicros = Collections.synchronizedList(new ArrayList<>());
+    }
+
+    /** {@code clientes} threads listando sem pausa e uma sondando /api/health, por {@code duracaoMs}. */
+    private static ResultadoCarga carga(int porta, int clientes, long duracaoMs) throws Exception {
+        HttpClient http = HttpClient.newBuilder().connectTimeout(Duration.ofSeconds(5)).build();
+        HttpRequest listar = HttpRequest.newBuilder(URI.create("http://localhost:" + porta + "/api/animais"))
+                .timeout(Duration.ofSeconds(60)).build();
+        HttpRequest saude = HttpRequest.newBuilder(URI.create("http://localhost:" + porta + "/api/health"))
+                .timeout(Duration.ofSeconds(60)).build();
+        ResultadoCarga r = new ResultadoCarga();
+        AtomicBoolean parar = new AtomicBoolean();
+        ExecutorService threads = Executors.newFixedThreadPool(clientes + 1);
+        for (int i = 0; i < clientes; i++) {
+            threads.execute(() -> {
+                while (!parar.get()) {
+                    try {
+                        int status = http.send(listar, HttpResponse.BodyHandlers.discarding()).statusCode();
+                        (status == 200 ? r.ok : status == 503 ? r.recusadas : r.erros).incrementAndGet();
+                    } catch (Exception e) {
+                        r.erros.incrementAndGet();
+                    }
+                }
+            });
+        }
+        threads.execute(() -> {
+            while (!parar.get()) {
+                long t0 = System.nanoTime();
+                try {
+                    http.send(saude, HttpResponse.BodyHandlers.discarding());
+                    r.saudeMicros.add((System.nanoTime() - t0) / 1_000);
+                    Thread.sleep(20);
+                } catch (InterruptedException e) {
+                    return;
+                } catch (Exception e) {
+                    r.erros.incrementAndGet();
+                }
+            }
+        });
+        Thread.sleep(duracaoMs);
+        parar.set(true);
+        threads.shutdown();
+        if (!threads.awaitTermination(90, TimeUnit.SECONDS)) threads.shutdownNow();
+        return r;
+    }
+
+    private static void resultadoCarga(String nome, ResultadoCarga r, long duracaoMs) {
+        List<Long> lat = new ArrayList<>(r.saudeMicros);
+        Collections.sort(lat);
+        System.out.printf("  %-58s%n", nome);
+        System.out.printf("    listagens %6.1f req/s  503=%-5d erros=%-3d | health n=%-4d p50 %7.1f ms  p99 %7.1f ms  max %7.1f ms%n",
+                r.ok.get() * 1000.0 / duracaoMs, r.recusadas.get(), r.erros.get(), lat.size(),
+                percentil(lat, 0.50) / 1000.0, percentil(lat, 0.99) / 1000.0,
+                (lat.isEmpty() ? 0 : lat.get(lat.size() - 1)) / 1000.0);
+    }
+
+    private static long percentil(List<Long> ordenados, double p) {
+        if (ordenados.isEmpty()) return 0;
+        return ordenados.get(Math.min(ordenados.size() - 1, (int) Math.ceil(p * ordenados.size()) - 1));
+    }
+
+    private static AnimalDataFileDao criarAnimais(File arquivo, int n, KeyPair par, boolean cifrar) throws IOException {
+        BaseDataFile.configurarCriptografiaEmRepouso(par.getPublic(), par.getPrivate(), cifrar);
+        AnimalDataFileDao dao = new AnimalDataFileDao(arquivo, VERSAO);
+        List<Animal> animais = new ArrayList<>(n);
+        for (int i = 0; i < n; i++) {
+            Cachorro c = cachorroExemplo();
+            c.setNome("Cachorro " + i);
+            animais.add(c);
+        }
+        dao.createAll(animais);
+        return dao;
+    }
+
+    private static long listar(AnimalDataFileDao dao) {
+        try {
+            return dao.listAllActive().size();
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static long ler(AnimalDataFileDao dao, int id) {
+        try {
+            return dao.read(id).map(Animal::getIdOng).orElse(0);
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /** Gera um par RSA-2048 e grava os PEMs em {@code dir} (mesmo formato do RSAKeyGen). */
+    private static KeyPair gerarChaves(Path dir) throws Exception {
+        KeyPairGenerator gen = KeyPairGenerator.getInstance("RSA");
+        gen.initialize(2048);
+        KeyPair par = gen.generateKeyPair();
+        escreverPem(dir.resolve("public_key.pem"), "PUBLIC KEY", par.getPublic().getEncoded());
+        escreverPem(dir.resolve("private_key.pem"), "PRIVATE KEY", par.getPrivate().getEncoded());
+        return par;
+    }
+
+    private static void apagarDiretorio(Path dir) throws IOException {
+        try (var arquivos = Files.list(dir)) {
+            for (Path f : (Iterable<Path>) arquivos::iterator) Files.deleteIfExists(f);
+        }
+        Files.deleteIfExists(dir);
+    }
+
+    private static void escreverPem(Path arquivo, String tipo, byte[] der) throws IOException {
+        String pem = "-----BEGIN " + tipo + "-----\n"
+                + Base64.getEncoder().encodeToString(der)
+                + "\n-----END " + tipo + "-----";
+        Files.write(arquivo, pem.getBytes());
+    }
+
+    private static Cachorro cachorroExemplo() {
+        Cachorro c = new Cachorro();
+        c.setIdOng(3);
+        c.setNome("Thor");
+        c.setDataNascimentoAprox(LocalDate.of(2020, 5, 10));
+        c.setSexo('M');
+        c.setPorte(Porte.MEDIO);
+        c.setVacinado(true);
+        c.setDescricao("Cão brincalhão, adora passear e se dá bem com crianças.");
+        c.setImageUrl("/images/thor.jpg");
+        c.setRaca("SRD");
+        c.setNivelAdestramento(NIVEIS[0]);
+        c.setSeDaBemComCachorros(true);
+        c.setSeDaBemComGatos(false);
+        c.setSeDaBemComCriancas(true);
+        return c;
+    }
+
+    private static byte[] encodeCodec(Cachorro c) {
+        return Codec.concat(
+                Codec.encodeInt(c.getIdOng()),
+                Codec.encodeStringU16(c.getNome()),
+                Codec.encodeLocalDate(c.getDataNascimentoAprox()),
+                Codec.encodeChar(c.getSexo()),
+                Codec.encodeEnum(c.getPorte()),
+                Codec.encodeTriBoolean(c.isVacinado()),
+                Codec.encodeStringU16(c.getDescricao()),
+                Codec.encodeStringU16(c.getImageUrl()),
+                Codec.encodeStringU16(c.getRaca()),
+                Codec.encodeEnum(c.getNivelAdestramento()),
+                Codec.encodeTriBoolean(c.isSeDaBemComCachorros()),
+                Codec.encodeTriBoolean(c.isSeDaBemComGatos()),
+                Codec.encodeTriBoolean(c.isSeDaBemComCriancas()));
+    }
+
+    private static RecordWriter encodeWriter(Cachorro c, RecordWriter w) {
+        return w.reset()
+                .writeInt(c.getIdOng())
+                .writeStringU16(c.getNome())
+                .writeLocalDate(c.getDataNascimentoAprox())
+                .writeChar(c.getSexo())
+                .writeEnum(c.getPorte())
+                .writeTriBoolean(c.isVacinado())
+                .writeStringU16(c.getDescricao())
+                .writeStringU16(c.getImageUrl())
+                .writeStringU16(c.getRaca())
+                .writeEnum(c.getNivelAdestramento())
+                .writeTriBoolean(c.isSeDaBemComCachorros())
+                .writeTriBoolean(c.isSeDaBemComGatos())
+                .writeTriBoolean(c.isSeDaBemComCriancas());
+    }
+
+    private static Cachorro decodeCodec(byte[] buf) {
+        Cachorro c = new Cachorro();
+        int off = 0;
+        Codec.Decoded<Integer> dOng = Codec.decodeInt(buf, off); off = dOng.nextOffset;
+        Codec.Decoded<String> dNome = Codec.decodeStringU16(buf, off); off = dNome.nextOffset;
+        Codec.Decoded<LocalDate> dNasc = Codec.decodeLocalDate(buf, off); off = dNasc.nextOffset;
+        Codec.Decoded<Character> dSexo = Codec.decodeChar(buf, off); off = dSexo.nextOffset;
+        Codec.Decoded<Porte> dPorte = Codec.decodeEnum(buf, off, Porte.class); off = dPorte.nextOffset;
+        Codec.Decoded<Boolean> dVac = Codec.decodeTriBoolean(buf, off); off = dVac.nextOffset;
+        Codec.Decoded<String> dDesc = Codec.decodeStringU16(buf, off); off = dDesc.nextOffset;
+        Codec.Decoded<String> dImg = Codec.decodeStringU16(buf, off); off = dImg.nextOffset;
+        Codec.Decoded<String> dRaca = Codec.decodeStringU16(buf, off); off = dRaca.nextOffset;
+        Codec.Decoded<NivelAdestramento> dNivel = Codec.decodeEnum(buf, off, NivelAdestramento.class); off = dNivel.nextOffset;
+        Codec.Decoded<Boolean> b1 = Codec.decodeTriBoolean(buf, off); off = b1.nextOffset;
+        Codec.Decoded<Boolean> b2 = Codec.decodeTriBoolean(buf, off); off = b2.nextOffset;
+        Codec.Decoded<Boolean> b3 = Codec.decodeTriBoolean(buf, off);
+        c.setIdOng(dOng.value);
+        c.setNome(dNome.value);
+        c.setDataNascimentoAprox(dNasc.value);
+        c.setSexo(dSexo.value);
+        c.setPorte(dPorte.value);
+        c.setVacinado(Boolean.TRUE.equals(dVac.value));
+        c.setDescricao(dDesc.value);
+        c.setImageUrl(dImg.value);
+        c.setRaca(dRaca.value);
+        c.setNivelAdestramento(dNivel.value);
+        c.setSeDaBemComCachorros(Boolean.TRUE.equals(b1.value));
+        c.setSeDaBemComGatos(Boolean.TRUE.equals(b2.value));
+        c.setSeDaBemComCriancas(Boolean.TRUE.equals(b3.value));
+        return c;
+    }
+
+    private static Cachorro decodeReader(RecordReader r) {
+        Cachorro c = new Cachorro();
+        c.setIdOng(r.readInt());
+        c.setNome(r.readStringU16());
+        c.setDataNascimentoAprox(r.readLocalDate());
+        c.setSexo(r.readChar());
+        c.setPorte(r.readEnum(PORTES));
+        c.setVacinado(r.readTriBoolean());
+        c.setDescricao(r.readStringU16());
+        c.setImageUrl(r.readStringU16());
+        c.setRaca(r.readStringU16());
+        c.setNivelAdestramento(r.readEnum(NIVEIS));
+        c.setSeDaBemComCachorros(r.readTriBoolean());
+        c.setSeDaBemComGatos(r.readTriBoolean());
+        c.setSeDaBemComCriancas(r.readTriBoolean());
+        return c;
+    }
+
+    // ========================================================================
+    // MEDIÇÃO
+    // ========================================================================
+
+    /**
+     * Aquece todas as operações antes de medir qualquer uma: assim nenhuma se beneficia
+     * de o JIT ter visto só ela no laço (inlining monomórfico), e a comparação é justa.
+     */
+    static void medir(Map<String, Runnable> ops) {
+        medir(ops, AQUECIMENTO, ITERACOES);
+    }
+
+    static void medir(Map<String, Runnable> ops, int aquecimento, int iteracoes) {
+        for (Runnable op : ops.values()) {
+            for (int i = 0; i < aquecimento; i++) op.run();
+        }
+        for (Map.Entry<String, Runnable> e : ops.entrySet()) {
+            medir(e.getKey(), iteracoes, e.getValue());
+        }
+    }
+
+    /** Mede {@code op} (já aquecida) e imprime ns/op e bytes alocados/op. */
+    static void medir(String nome, int iteracoes, Runnable op) {
+        long bytesAntes = bytesAlocados();
+        long t0 = System.nanoTime();
+        for (int i = 0; i < iteracoes; i++) op.run();
+        long dt = System.nanoTime() - t0;
+        long bytes = bytesAlocados() - bytesAntes;
+        String aloc = bytes < 0 ? "n/d" : String.format("%.1f B/op", (double) bytes / iteracoes);
+        System.out.println(String.format("  %-32s %10.1f ns/op   %14s", nome, (double) dt / iteracoes, aloc));
+    }
+
+    /** Bytes alocados pela thread atual; -1 se a JVM não expuser a métrica. */
+    static long bytesAlocados() {
+        java.lang.management.ThreadMXBean mx = ManagementFactory.getThreadMXBean();
+        if (mx instanceof com.sun.management.ThreadMXBean sun && sun.isThreadAllocatedMemorySupported()) {
+            return sun.getThreadAllocatedBytes(Thread.currentThread().getId());
+        }
+        return -1;
+    }
+
+    // ========================================================================
+    // UI HELPERS
+    // ========================================================================
+
+    static void secao(String titulo) {
+        System.out.println("\n" + ANSI_BOLD + ANSI_YELLOW + "▶ " + titulo + ANSI_RESET);
+        System.out.println(ANSI_YELLOW + "─────────────────────────────────────────────────────────────" + ANSI_RESET);
+    }
+
+    static void info(String msg) {
+        System.out.println(ANSI_CYAN + msg + ANSI_RESET);
+    }
+
+    static void sucesso(String msg) {
+        System.out.println(ANSI_GREEN + "  ✓ " + msg + ANSI_RESET);
+    }
+}
@@ -0,0 +1,143 @@
+package br.com.mpet;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Locale;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Negociação de {@code Accept-Encoding} e compressão gzip/deflate das respostas do {@link RestServer}.
+ *
+ * "deflate" é o do HTTP: fluxo zlib (RFC 1950), que é o que {@link DeflaterOutputStream} produz com
+ * o {@link Deflater} padrão.
+ */
+final class CompressaoHttp {
+
+    /** Codificação escolhida para uma resposta; {@link #IDENTIDADE} = sem compressão. */
+    enum Codificacao {
+        IDENTIDADE(null), GZIP("gzip"), DEFLATE("deflate");
+
+        /** Valor do cabeçalho Content-Encoding (null em IDENTIDADE). */
+        final String cabecalho;
+
+        Codificacao(String cabecalho) {
+            this.cabecalho = cabecalho;
+        }
+    }
+
+    /**
+     * Nível usado nas respostas geradas a cada requisição. JSON repetitivo já encolhe bem no nível
+     * 1, e os níveis altos custam bem mais CPU para poucos pontos percentuais a menos.
+     */
+    static final int NIVEL_DINAMICO = Deflater.BEST_SPEED;
+
+    /** Nível dos arquivos estáticos, comprimidos uma vez só na inicialização. */
+    static final int NIVEL_ESTATICO = Deflater.BEST_COMPRESSION;
+
+    private static final int BUFFER = 16 * 1024;
+
+    private CompressaoHttp() {
+    }
+
+    /**
+     * Melhor codificação aceita pelo cliente segundo {@code Accept-Encoding} (com pesos q).
+     * Em empate prefere gzip; "*" vale para as que não foram citadas; q=0 recusa.
+     */
+    static Codificacao negociar(String acceptEncoding) {
+        double[] q = pesos(acceptEncoding);
+        if (q[0] <= 0 && q[1] <= 0) return Codificacao.IDENTIDADE;
+        return q[0] >= q[1] ? Codificacao.GZIP : Codificacao.DEFLATE;
+    }
+
+    /** true se o cliente aceita gzip com qualquer peso (para arquivos que só existem em gzip). */
+    static boolean aceitaGzip(String acceptEncoding) {
+        return pesos(acceptEncoding)[0] > 0;
+    }
+
+    /** {peso de gzip, peso de deflate}; -1 ou 0 = não aceita. */
+    private static double[] pesos(String acceptEncoding) {
+        double gzip = -1, deflate = -1, qualquer = -1;
+        if (acceptEncoding == null || acceptEncoding.isEmpty()) return new double[]{gzip, deflate};
+        for (String parte : acceptEncoding.split(",")) {
+            String[] campos = parte.split(";");
+            String nome = campos[0].trim().toLowerCase(Locale.ROOT);
+            double q = 1.0;
+            for (int i = 1; i < campos.length; i++) {
+                String p = campos[i].trim();
+                if (p.startsWith("q=") || p.startsWith("Q=")) {
+                    try {
+                        q = Double.parseDouble(p.substring(2).trim());
+                    } catch (NumberFormatException e) {
+                        q = 0; // peso inválido: trata como recusa
+                    }
+                }
+            }
+            switch (nome) {
+                case "gzip", "x-gzip" -> gzip = Math.max(gzip, q);
+                case "deflate" -> deflate = Math.max(deflate, q);
+                case "*" -> qualquer = q;
+                default -> { }
+            }
+        }
+        if (gzip < 0) gzip = qualquer;
+        if (deflate < 0) deflate = qualquer;
+        return new double[]{gzip, deflate};
+    }
+
+    /** Tipos que valem a pena comprimir (texto); imagens PNG/JPEG/GIF já são comprimidas. */
+    static boolean compressivel(String contentType) {
+        if (contentType == null) return false;
+        return contentType.startsWith("text/") || contentType.startsWith("application/json")
+                || contentType.startsWith("application/javascript") || contentType.startsWith("image/svg+xml")
+                || contentType.startsWith("image/x-icon");
+    }
+
+    /**
+     * Fluxo que comprime para {@code destino}. {@code flush()} faz SYNC_FLUSH: o que já foi escrito
+     * chega ao cliente sem esperar o buffer do Deflater encher. {@code close()} termina o fluxo,
+     * fecha o destino e libera a memória nativa do Deflater.
+     */
+    static OutputStream comprimir(OutputStream destino, Codificacao codificacao, int nivel) throws IOException {
+        return switch (codificacao) {
+            case GZIP -> new SaidaGzip(destino, nivel);
+            case DEFLATE -> new SaidaDeflate(destino, nivel);
+            case IDENTIDADE -> destino;
+        };
+    }
+
+    /** {@code dados[off, off+len)} comprimidos de uma vez. */
+    static byte[] comprimir(byte[] dados, int off, int len, Codificacao codificacao, int nivel) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(Math.max(64, len / 4));
+        try (OutputStream z = comprimir(out, codificacao, nivel)) {
+            z.write(dados, off, len);
+        } catch (IOException e) {
+            throw new IllegalStateException("Falha ao comprimir em memória", e); // não acontece com ByteArrayOutputStream
+        }
+        return out.toByteArray();
+    }
+
+    private static final class SaidaGzip extends GZIPOutputStream {
+        SaidaGzip(OutputStream destino, int nivel) throws IOException {
+            super(destino, BUFFER, true);
+            def.setLevel(nivel);
+        }
+    }
+
+    private static final class SaidaDeflate extends DeflaterOutputStream {
+        SaidaDeflate(OutputStream destino, int nivel) {
+            super(destino, new Deflater(nivel), BUFFER, true);
+        }
+
+        @Override
+        public void close() throws IOException {
+            try {
+                super.close();
+            } finally {
+                def.end(); // Deflater próprio: DeflaterOutputStream não o encerra
+            }
+        }
+    }
+}
@@ -0,0 +1,191 @@
+package br.com.mpet;
+
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Configuração do {@link RestServer}: endereço, backlog do socket e como as requisições são
+ * executadas.
+ * <pre>
+ *   new RestServer(ConfiguracaoServidor.doAmbiente().porta(9090), animalDao, ...);
+ * </pre>
+ *
+ * A concorrência é limitada em dois níveis: {@code threads} requisições executando (no modo
+ * {@link ModoExecutor#VIRTUAL}, sem limite de threads) e até {@code fila} esperando. Acima disso a
+ * requisição é recusada na hora com 503 (ver {@link ExecutorServidor}), em vez de acumular numa
+ * fila sem fim atrás de listagens lentas.
+ */
+public final class ConfiguracaoServidor {
+
+    /** Como as requisições aceitas ganham uma thread. */
+    public enum ModoExecutor {
+        /** Pool fixo de {@code threads} threads (comportamento original, com 10). */
+        FIXO,
+        /** ForkJoinPool com {@code threads} de paralelismo ({@code Executors.newWorkStealingPool}). */
+        ROUBO_DE_TAREFAS,
+        /**
+         * Uma thread virtual por requisição (JDK 21+). Em JDKs sem threads virtuais cai para uma
+         * thread de plataforma por requisição, ainda limitada por {@code threads + fila}.
+         */
+        VIRTUAL
+    }
+
+    private String host = "localhost";
+    private int porta = 8080;
+    private int backlog = 128;
+    private ModoExecutor executor = ModoExecutor.FIXO;
+    private int threads = 10;
+    private int fila = 200;
+    private boolean debug = true;
+    private int amostragemLog = 1;
+    private boolean compressao = true;
+    private int compressaoMinima = 1024;
+
+    /**
+     * Padrões: localhost:8080, backlog 128, pool fixo de 10 threads, fila de 200, log de requisições
+     * ligado (todas), gzip/deflate a partir de 1 KiB.
+     */
+    public static ConfiguracaoServidor padrao() {
+        return new ConfiguracaoServidor();
+    }
+
+    /**
+     * Padrões sobrescritos pelas variáveis MPET_HOST, MPET_PORT, MPET_BACKLOG,
+     * MPET_EXECUTOR (fixo | roubo | virtual), MPET_THREADS, MPET_FILA, MPET_DEBUG,
+     * MPET_LOG_AMOSTRAGEM, MPET_COMPRESSAO (true | false) e MPET_COMPRESSAO_MIN.
+     *
+     * @throws IllegalArgumentException se alguma variável tiver valor inválido
+     */
+    public static ConfiguracaoServidor doAmbiente() {
+        return doAmbiente(System.getenv());
+    }
+
+    static ConfiguracaoServidor doAmbiente(Map<String, String> env) {
+        ConfiguracaoServidor c = new ConfiguracaoServidor();
+        String v;
+        if ((v = env.get("MPET_HOST")) != null) c.host(v.trim());
+        if ((v = env.get("MPET_PORT")) != null) c.porta(inteiro("MPET_PORT", v));
+        if ((v = env.get("MPET_BACKLOG")) != null) c.backlog(inteiro("MPET_BACKLOG", v));
+        if ((v = env.get("MPET_EXECUTOR")) != null) c.executor(modo(v));
+        if ((v = env.get("MPET_THREADS")) != null) c.threads(inteiro("MPET_THREADS", v));
+        if ((v = env.get("MPET_FILA")) != null) c.fila(inteiro("MPET_FILA", v));
+        if ((v = env.get("MPET_DEBUG")) != null) c.debug(Boolean.parseBoolean(v.trim()));
+        if ((v = env.get("MPET_LOG_AMOSTRAGEM")) != null) c.amostragemLog(inteiro("MPET_LOG_AMOSTRAGEM", v));
+        if ((v = env.get("MPET_COMPRESSAO")) != null) c.compressao(Boolean.parseBoolean(v.trim()));
+        if ((v = env.get("MPET_COMPRESSAO_MIN")) != null) c.compressaoMinima(inteiro("MPET_COMPRESSAO_MIN", v));
+        return c;
+    }
+
+    /** Endereço de escuta: "localhost" só aceita conexões locais; "0.0.0.0" aceita de qualquer interface. */
+    public ConfiguracaoServidor host(String host) {
+        if (host == null || host.isBlank()) throw new IllegalArgumentException("host vazio");
+        this.host = host;
+        return this;
+    }
+
+    /** Porta TCP; 0 escolhe uma porta livre (ver {@link RestServer#porta()}). */
+    public ConfiguracaoServidor porta(int porta) {
+        if (porta < 0 || porta > 65535) throw new IllegalArgumentException("porta inválida: " + porta);
+        this.porta = porta;
+        return this;
+    }
+
+    /** Conexões aguardando accept no socket; 0 usa o padrão do sistema. */
+    public ConfiguracaoServidor backlog(int backlog) {
+        if (backlog < 0) throw new IllegalArgumentException("backlog negativo: " + backlog);
+        this.backlog = backlog;
+        return this;
+    }
+
+    public ConfiguracaoServidor executor(ModoExecutor executor) {
+        if (executor == null) throw new IllegalArgumentException("executor == null");
+        this.executor = executor;
+        return this;
+    }
+
+    /** Threads do pool (FIXO) ou paralelismo (ROUBO_DE_TAREFAS); no modo VIRTUAL, requisições simultâneas. */
+    public ConfiguracaoServidor threads(int threads) {
+        if (threads < 1) throw new IllegalArgumentException("threads deve ser >= 1: " + threads);
+        this.threads = threads;
+        return this;
+    }
+
+    /** Requisições aceitas esperando thread além das {@code threads} em execução. */
+    public ConfiguracaoServidor fila(int fila) {
+        if (fila < 0) throw new IllegalArgumentException("fila negativa: " + fila);
+        this.fila = fila;
+        return this;
+    }
+
+    /** Log de acesso no console, uma linha logfmt por requisição (escrito fora da thread da requisição). */
+    public ConfiguracaoServidor debug(boolean debug) {
+        this.debug = debug;
+        return this;
+    }
+
+    /** Registra 1 de cada {@code n} requisições no log de acesso (erros 5xx sempre); 1 = todas. */
+    public ConfiguracaoServidor amostragemLog(int n) {
+        if (n < 1) throw new IllegalArgumentException("amostragemLog deve ser >= 1: " + n);
+        this.amostragemLog = n;
+        return this;
+    }
+
+    /** Comprime as respostas (gzip ou deflate, conforme o Accept-Encoding do cliente). */
+    public ConfiguracaoServidor compressao(boolean compressao) {
+        this.compressao = compressao;
+        return this;
+    }
+
+    /**
+     * Tamanho a partir do qual uma resposta é comprimida. Abaixo disso o ganho em bytes não paga o
+     * cabeçalho gzip nem a CPU (uma resposta pequena já cabe em um pacote TCP).
+     */
+    public ConfiguracaoServidor compressaoMinima(int bytes) {
+        if (bytes < 0) throw new IllegalArgumentException("compressaoMinima negativa: " + bytes);
+        this.compressaoMinima = bytes;
+        return this;
+    }
+
+    public String getHost() { return host; }
+
+    public int getPorta() { return porta; }
+
+    public int getBacklog() { return backlog; }
+
+    public ModoExecutor getExecutor() { return executor; }
+
+    public int getThreads() { return threads; }
+
+    public int getFila() { return fila; }
+
+    public boolean isDebug() { return debug; }
+
+    public int getAmostragemLog() { return amostragemLog; }
+
+    public boolean isCompressao() { return compressao; }
+
+    public int getCompressaoMinima() { return compressaoMinima; }
+
+    @Override
+    public String toString() {
+        return String.format("%s:%d backlog=%d executor=%s threads=%d fila=%d compressao=%s",
+                host, porta, backlog, executor, threads, fila, compressao ? ">=" + compressaoMinima + "B" : "não");
+    }
+
+    private static int inteiro(String nome, String valor) {
+        try {
+            return Integer.parseInt(valor.trim());
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException(nome + " inválido: " + valor);
+        }
+    }
+
+    private static ModoExecutor modo(String valor) {
+        return switch (valor.trim().toLowerCase(Locale.ROOT)) {
+            case "fixo" -> ModoExecutor.FIXO;
+            case "roubo", "roubo_de_tarefas", "work-stealing" -> ModoExecutor.ROUBO_DE_TAREFAS;
+            case "virtual" -> ModoExecutor.VIRTUAL;
+            default -> throw new IllegalArgumentException("MPET_EXECUTOR inválido: " + valor + " (fixo, roubo ou virtual)");
+        };
+    }
+}
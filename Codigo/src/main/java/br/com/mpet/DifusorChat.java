@@ -0,0 +1,435 @@
+package br.com.mpet;
+
+import br.com.mpet.dto.ChatMessageDto;
+import br.com.mpet.dto.SaidaJson;
+import br.com.mpet.model.ChatMessage;
+import com.sun.net.httpserver.HttpExchange;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Entrega as mensagens novas de cada thread de chat a quem está esperando por elas: conexões SSE
+ * de {@code GET /api/chats/:id/stream} e long-polls de {@code GET /api/chats/:id/messages?since=}.
+ *
+ * Um assinante parado não ocupa thread: o handler registra o {@link HttpExchange} aqui e retorna
+ * (o HttpServer só encerra a troca quando ela é fechada), então cada conversa aberta custa um
+ * objeto e um socket, e não conta no limite do {@link ExecutorServidor}. A escrita para cada
+ * assinante é uma tarefa no executor de entrega (threads virtuais quando o JDK tiver, senão um
+ * pool fixo pequeno), nunca na thread do POST, e segue a ordem de publicação; um assinante lento
+ * que acumula {@link #MAX_PENDENTES} eventos é desconectado e retoma pelo {@code Last-Event-ID}.
+ *
+ * Nenhuma escrita na troca (histórico, entrega, fechamento) passa de {@link #PRAZO_ESCRITA_MS}:
+ * o relógio interrompe a thread que estiver presa num cliente que parou de ler, e a interrupção
+ * fecha o canal do socket (SocketChannel é interrompível). Os fechamentos por fila cheia vão para
+ * threads próprias, para não ocupar o pool de entrega nem a thread de quem publica.
+ */
+final class DifusorChat {
+
+    /** Intervalo dos comentários ": ping" no SSE: mantém proxies abertos e revela clientes que sumiram. */
+    static final long PULSO_MS = 15_000;
+    /** Quanto um long-poll espera por mensagem nova antes de responder {@code []}. */
+    static final long ESPERA_MS = 25_000;
+    /** Eventos na fila de um assinante antes de ele ser desconectado. */
+    static final int MAX_PENDENTES = 256;
+    /** Tempo máximo de uma escrita para um assinante antes de a conexão ser derrubada. */
+    static final long PRAZO_ESCRITA_MS = 5_000;
+
+    /** Mensagens de uma thread com id maior que {@code desde}, em ordem de id (lidas do DAO). */
+    @FunctionalInterface
+    interface Historico {
+        List<ChatMessage> depois(int threadId, int desde) throws IOException;
+    }
+
+    /** Mensagem publicada, com o JSON do {@link ChatMessageDto} serializado uma vez para todos; json null = pulso. */
+    private record Evento(int id, byte[] json) {
+    }
+
+    private static final Evento PULSO = new Evento(0, null);
+    private static final byte[] PING = ascii(": ping\n\n");
+
+    private final Historico historico;
+    private final Map<Integer, Set<Assinante>> porThread = new ConcurrentHashMap<>();
+    /** threadId → maior id publicado desde o início: poupa a leitura do arquivo quando o cliente já está em dia. */
+    private final Map<Integer, Integer> ultimaPorThread = new ConcurrentHashMap<>();
+    private final ExecutorService entrega;
+    /**
+     * Fecha os assinantes desconectados por fila cheia. Fechar termina o corpo chunked e pode
+     * esperar pelo cliente lento (até o prazo de escrita), então cada fechamento tem sua thread:
+     * um não espera pelo outro, e as threads ociosas morrem sozinhas.
+     */
+    private final ExecutorService fechamento;
+    private final ScheduledThreadPoolExecutor relogio;
+    /** Assinantes com uma escrita em andamento, vigiados pelo relógio. */
+    private final Set<Assinante> emEscrita = ConcurrentHashMap.newKeySet();
+
+    DifusorChat(Historico historico) {
+        this.historico = historico;
+        ExecutorService virtuais = ExecutorServidor.threadsVirtuais();
+        // Sem threads virtuais, um pool fixo: escrever um evento pequeno no buffer do socket não
+        // bloqueia, e criar uma thread por assinante a cada mensagem custaria mais que a entrega.
+        int threads = Math.max(4, 2 * Runtime.getRuntime().availableProcessors());
+        this.entrega = virtuais != null ? virtuais : Executors.newFixedThreadPool(threads, ExecutorServidor.fabrica("mpet-chat-"));
+        this.fechamento = Executors.newCachedThreadPool(ExecutorServidor.fabrica("mpet-chat-fechamento-"));
+        this.relogio = new ScheduledThreadPoolExecutor(1, ExecutorServidor.fabrica("mpet-chat-relogio-"));
+        relogio.setRemoveOnCancelPolicy(true);
+        relogio.scheduleAtFixedRate(this::pulsar, PULSO_MS, PULSO_MS, TimeUnit.MILLISECONDS);
+        relogio.scheduleAtFixedRate(this::vigiar, 1, 1, TimeUnit.SECONDS);
+    }
+
+    /**
+     * Entrega {@code m}, já gravada, a quem acompanha a thread dela. Só enfileira: não bloqueia
+     * em cliente lento. Quem publica deve fazê-lo na ordem dos ids (ver ChatMessagesHandler).
+     */
+    void publicar(ChatMessage m) {
+        ultimaPorThread.merge(m.getThreadId(), m.getId(), Math::max);
+        Set<Assinante> assinantes = porThread.get(m.getThreadId());
+        if (assinantes == null) return;
+        Evento e = new Evento(m.getId(), json(m));
+        for (Assinante a : assinantes) a.enfileirar(e);
+    }
+
+    /**
+     * Responde à requisição com um stream SSE ({@code text/event-stream}): primeiro as mensagens
+     * com id maior que {@code desde}, depois cada mensagem nova, com {@code id:} = id da mensagem.
+     * Retorna logo; a troca fica aberta até o cliente sair ou o servidor parar.
+     */
+    void abrirStream(HttpExchange exchange, int threadId, int desde) throws IOException {
+        exchange.getResponseHeaders().set("Content-Type", "text/event-stream; charset=UTF-8");
+        exchange.getResponseHeaders().set("Cache-Control", "no-cache");
+        exchange.getResponseHeaders().set("X-Accel-Buffering", "no");
+        exchange.sendResponseHeaders(200, 0);
+        iniciar(new ConexaoSse(exchange, threadId, desde), threadId, desde);
+    }
+
+    /**
+     * Long-poll: responde já com as mensagens de id maior que {@code desde}, se houver; senão
+     * espera a próxima por até {@link #ESPERA_MS} e responde com ela (ou {@code []}).
+     */
+    void esperar(HttpExchange exchange, int threadId, int desde) throws IOException {
+        exchange.getResponseHeaders().set("Cache-Control", "no-cache");
+        iniciar(new Espera(exchange, threadId, desde), threadId, desde);
+    }
+
+    /** Conexões SSE e long-polls esperando agora. */
+    int assinantes() {
+        int n = 0;
+        for (Set<Assinante> s : porThread.values()) n += s.size();
+        return n;
+    }
+
+    /** Fecha todos os assinantes e para os executores. */
+    void encerrar() {
+        relogio.shutdownNow();
+        for (Set<Assinante> s : porThread.values()) {
+            for (Assinante a : s) a.encerrar();
+        }
+        entrega.shutdown();
+        fechamento.shutdown();
+        try {
+            if (!entrega.awaitTermination(1, TimeUnit.SECONDS)) entrega.shutdownNow();
+            if (!fechamento.awaitTermination(1, TimeUnit.SECONDS)) fechamento.shutdownNow();
+        } catch (InterruptedException e) {
+            entrega.shutdownNow();
+            fechamento.shutdownNow();
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /* ============================================================= */
+
+    /**
+     * Registra antes de ler o histórico, para não perder uma mensagem publicada no meio; as que
+     * chegarem nos dois caminhos são descartadas pelo id.
+     */
+    private void iniciar(Assinante a, int threadId, int desde) throws IOException {
+        porThread.compute(threadId, (k, s) -> {
+            if (s == null) s = ConcurrentHashMap.newKeySet();
+            s.add(a);
+            return s;
+        });
+        boolean continua = false;
+        try {
+            Integer ultima = ultimaPorThread.get(threadId);
+            List<ChatMessage> antigas = ultima != null && ultima <= desde ? List.of() : historico.depois(threadId, desde);
+            List<Evento> eventos = new ArrayList<>(antigas.size());
+            for (ChatMessage m : antigas) eventos.add(new Evento(m.getId(), json(m)));
+            continua = a.abrir(eventos);
+            a.liberar(eventos.isEmpty() ? desde : eventos.get(eventos.size() - 1).id());
+        } finally {
+            if (!continua) a.encerrar();
+        }
+    }
+
+    private void pulsar() {
+        for (Set<Assinante> s : porThread.values()) {
+            for (Assinante a : s) {
+                if (a instanceof ConexaoSse) a.enfileirar(PULSO);
+            }
+        }
+    }
+
+    /** Interrompe as escritas que passaram do prazo. */
+    private void vigiar() {
+        long agora = System.nanoTime();
+        for (Assinante a : emEscrita) a.vigiar(agora);
+    }
+
+    private void remover(Assinante a) {
+        porThread.computeIfPresent(a.threadId, (k, s) -> {
+            s.remove(a);
+            return s.isEmpty() ? null : s;
+        });
+    }
+
+    private static byte[] json(ChatMessage m) {
+        SaidaJson saida = new SaidaJson(256);
+        ChatMessageDto.fromEntity(m).escreverJson(saida);
+        return saida.toByteArray();
+    }
+
+    private static byte[] ascii(String s) {
+        return s.getBytes(StandardCharsets.US_ASCII);
+    }
+
+    /**
+     * Uma troca HTTP esperando mensagens de uma thread. Só uma thread escreve nela de cada vez:
+     * a da requisição em {@link #comecar} e depois uma tarefa de entrega por vez ({@code ocupado});
+     * o fechamento pode vir de outra thread, e interrompe a escrita em andamento.
+     */
+    private abstract class Assinante {
+        final int threadId;
+        final HttpExchange exchange;
+        private final ArrayDeque<Evento> pendentes = new ArrayDeque<>();
+        private int ultimoId;          // maior id já escrito (ou o "desde" do cliente)
+        private boolean ocupado = true; // até liberar(), quem escreve é a thread da requisição
+        private boolean encerrado;
+        private boolean fechado;
+        private Thread escritor;        // thread escrevendo na troca agora, se houver
+        private long prazo;             // System.nanoTime() até quando ela pode escrever
+
+        Assinante(HttpExchange exchange, int threadId, int desde) {
+            this.exchange = exchange;
+            this.threadId = threadId;
+            this.ultimoId = desde;
+        }
+
+        /** Escreve o histórico; false = a troca terminou. */
+        abstract boolean comecar(List<Evento> antigas) throws IOException;
+
+        /** Escreve eventos novos (ou pulsos); false = a troca terminou. */
+        abstract boolean escrever(List<Evento> eventos) throws IOException;
+
+        synchronized void enfileirar(Evento e) {
+            if (encerrado || (e.json() != null && e.id() <= ultimoId)) return;
+            if (pendentes.size() >= MAX_PENDENTES) {
+                encerrado = true;
+                pendentes.clear();
+                if (escritor != null) escritor.interrupt(); // presa no socket: a interrupção fecha o canal
+                remover(this);
+                try {
+                    fechamento.execute(this::fechar);
+                } catch (RejectedExecutionException ex) {
+                    // servidor parando: encerrar() já fecha as trocas
+                }
+                return;
+            }
+            pendentes.add(e);
+            if (!ocupado) {
+                ocupado = true;
+                executar(this::drenar);
+            }
+        }
+
+        /** Fim do histórico: a partir daqui os eventos enfileirados vão pelo executor de entrega. */
+        synchronized void liberar(int ultimoEscrito) {
+            ultimoId = Math.max(ultimoId, ultimoEscrito);
+            ocupado = false;
+            if (!encerrado && !pendentes.isEmpty()) {
+                ocupado = true;
+                executar(this::drenar);
+            }
+        }
+
+        void encerrar() {
+            synchronized (this) {
+                encerrado = true;
+                pendentes.clear();
+            }
+            fechar();
+        }
+
+        /** {@link #comecar} sob o prazo de escrita. */
+        final boolean abrir(List<Evento> antigas) throws IOException {
+            comecarEscrita();
+            try {
+                return comecar(antigas);
+            } finally {
+                terminarEscrita();
+            }
+        }
+
+        private synchronized void comecarEscrita() {
+            escritor = Thread.currentThread();
+            prazo = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(PRAZO_ESCRITA_MS);
+            emEscrita.add(this);
+        }
+
+        private void terminarEscrita() {
+            synchronized (this) {
+                escritor = null;
+                emEscrita.remove(this);
+            }
+            Thread.interrupted(); // interrupção que chegou depois de a escrita terminar: não vale para a próxima tarefa
+        }
+
+        synchronized void vigiar(long agora) {
+            if (escritor == null || agora - prazo < 0) return;
+            encerrado = true;
+            pendentes.clear();
+            escritor.interrupt(); // a escrita falha, e quem escrevia fecha a troca
+        }
+
+        private void drenar() {
+            while (true) {
+                List<Evento> lote = new ArrayList<>();
+                synchronized (this) {
+                    for (Evento e; (e = pendentes.poll()) != null; ) {
+                        if (e.json() == null) {
+                            lote.add(e);
+                        } else if (e.id() > ultimoId) {
+                            lote.add(e);
+                            ultimoId = e.id();
+                        }
+                    }
+                    if (lote.isEmpty() || encerrado) {
+                        ocupado = false;
+                        return;
+                    }
+                }
+                boolean continua;
+                comecarEscrita();
+                try {
+                    continua = escrever(lote);
+                } catch (IOException | RuntimeException e) {
+                    continua = false; // cliente desconectou ou passou do prazo
+                } finally {
+                    terminarEscrita();
+                }
+                if (!continua) {
+                    encerrar();
+                    return;
+                }
+            }
+        }
+
+        /** Fecha a troca uma vez só, sob o prazo de escrita (fechar termina o corpo chunked). */
+        void fechar() {
+            synchronized (this) {
+                if (fechado) return;
+                fechado = true;
+            }
+            remover(this);
+            comecarEscrita();
+            try {
+                exchange.close();
+            } finally {
+                terminarEscrita();
+            }
+        }
+
+        private void executar(Runnable tarefa) {
+            try {
+                entrega.execute(tarefa);
+            } catch (RejectedExecutionException e) {
+                // servidor parando: encerrar() já fecha as trocas
+            }
+        }
+    }
+
+    /** Conexão SSE: cada mensagem vira um evento {@code id:}/{@code data:}, e o pulso, um comentário. */
+    private final class ConexaoSse extends Assinante {
+        private final OutputStream corpo;
+
+        ConexaoSse(HttpExchange exchange, int threadId, int desde) {
+            super(exchange, threadId, desde);
+            this.corpo = exchange.getResponseBody();
+        }
+
+        @Override
+        boolean comecar(List<Evento> antigas) throws IOException {
+            corpo.write(ascii("retry: 3000\n\n"));
+            return escrever(antigas);
+        }
+
+        @Override
+        boolean escrever(List<Evento> eventos) throws IOException {
+            for (Evento e : eventos) {
+                if (e.json() == null) {
+                    corpo.write(PING);
+                    continue;
+                }
+                corpo.write(ascii("id: " + e.id() + "\ndata: "));
+                corpo.write(e.json()); // SaidaJson escapa quebras de linha: o JSON cabe numa linha data:
+                corpo.write('\n');
+                corpo.write('\n');
+            }
+            corpo.flush();
+            return true;
+        }
+    }
+
+    /** Long-poll: uma única resposta JSON, com o histórico, a primeira mensagem nova ou [] no tempo limite. */
+    private final class Espera extends Assinante {
+        private ScheduledFuture<?> limite;
+
+        Espera(HttpExchange exchange, int threadId, int desde) {
+            super(exchange, threadId, desde);
+        }
+
+        @Override
+        boolean comecar(List<Evento> antigas) throws IOException {
+            if (!antigas.isEmpty()) return escrever(antigas);
+            limite = relogio.schedule(() -> enfileirar(PULSO), ESPERA_MS, TimeUnit.MILLISECONDS);
+            return true;
+        }
+
+        @Override
+        boolean escrever(List<Evento> eventos) throws IOException {
+            int n = 0;
+            for (Evento e : eventos) if (e.json() != null) n += e.json().length + 1;
+            byte[] corpo = new byte[n + 2];
+            int p = 0;
+            corpo[p++] = '[';
+            for (Evento e : eventos) {
+                if (e.json() == null) continue;
+                if (p > 1) corpo[p++] = ',';
+                System.arraycopy(e.json(), 0, corpo, p, e.json().length);
+                p += e.json().length;
+            }
+            corpo[p++] = ']';
+            exchange.sendResponseHeaders(200, p);
+            exchange.getResponseBody().write(corpo, 0, p);
+            return false;
+        }
+
+        @Override
+        void fechar() {
+            if (limite != null) limite.cancel(false);
+            super.fechar();
+        }
+    }
+}
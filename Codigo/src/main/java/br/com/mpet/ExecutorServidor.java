@@ -0,0 +1,147 @@
+package br.com.mpet;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Executor do {@code HttpServer} com controle de admissão.
+ *
+ * Conta as requisições em andamento (executando ou esperando thread). Até
+ * {@code threads + fila} elas vão para o executor do modo configurado; acima disso vão para uma
+ * thread própria de recusa, onde {@link #sobrecarregado()} é true e o {@link RestServer} responde
+ * 503 sem tocar nos DAOs. Recusar é barato, então a fila real nunca passa do limite. A recusa
+ * também tem fila limitada ({@link #FILA_RECUSA}): um cliente lento pode segurar a thread de
+ * recusa, e acima disso {@link #execute} lança {@link RejectedExecutionException}, com o que o
+ * {@code HttpServer} fecha a conexão sem resposta.
+ */
+public final class ExecutorServidor implements Executor {
+
+    /** Requisições esperando a thread de recusa; além delas a conexão é fechada sem 503. */
+    static final int FILA_RECUSA = 256;
+
+    private static final ThreadLocal<Boolean> RECUSANDO = ThreadLocal.withInitial(() -> Boolean.FALSE);
+
+    private final ConfiguracaoServidor.ModoExecutor modo;
+    private final ExecutorService executor;
+    private final ExecutorService recusa;
+    private final int limite;
+    private final boolean virtual;
+    private final AtomicInteger emAndamento = new AtomicInteger();
+    private final AtomicLong atendidas = new AtomicLong();
+    private final AtomicLong recusadas = new AtomicLong();
+    private final AtomicLong descartadas = new AtomicLong();
+
+    public ExecutorServidor(ConfiguracaoServidor config) {
+        this.modo = config.getExecutor();
+        this.limite = config.getThreads() + config.getFila();
+        ExecutorService virtuais = modo == ConfiguracaoServidor.ModoExecutor.VIRTUAL ? threadsVirtuais() : null;
+        this.virtual = virtuais != null;
+        this.executor = switch (modo) {
+            case FIXO -> new ThreadPoolExecutor(config.getThreads(), config.getThreads(), 0L, TimeUnit.MILLISECONDS,
+                    new LinkedBlockingQueue<>(), fabrica("mpet-http-"));
+            case ROUBO_DE_TAREFAS -> Executors.newWorkStealingPool(config.getThreads());
+            case VIRTUAL -> virtuais != null ? virtuais : Executors.newCachedThreadPool(fabrica("mpet-http-"));
+        };
+        this.recusa = new ThreadPoolExecutor(1, 1, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(FILA_RECUSA), fabrica("mpet-http-recusa-"));
+    }
+
+    @Override
+    public void execute(Runnable requisicao) {
+        if (emAndamento.incrementAndGet() > limite) {
+            try {
+                recusa.execute(() -> executar(requisicao, true));
+                recusadas.incrementAndGet();
+            } catch (RejectedExecutionException e) {
+                emAndamento.decrementAndGet();
+                descartadas.incrementAndGet();
+                throw e; // o HttpServer fecha a conexão
+            }
+        } else {
+            atendidas.incrementAndGet();
+            executor.execute(() -> executar(requisicao, false));
+        }
+    }
+
+    /** true na thread que está tratando uma requisição acima do limite: responda 503 e saia. */
+    public static boolean sobrecarregado() {
+        return RECUSANDO.get();
+    }
+
+    /** Requisições executando ou esperando thread agora. */
+    public int emAndamento() {
+        return emAndamento.get();
+    }
+
+    /** Requisições entregues ao executor desde o início. */
+    public long atendidas() {
+        return atendidas.get();
+    }
+
+    /** Requisições recusadas por excesso desde o início. */
+    public long recusadas() {
+        return recusadas.get();
+    }
+
+    /** Conexões fechadas sem resposta porque a fila de recusa também estava cheia. */
+    public long descartadas() {
+        return descartadas.get();
+    }
+
+    /** Ex.: "VIRTUAL (threads virtuais)" ou "VIRTUAL (sem threads virtuais neste JDK: uma thread por requisição)". */
+    public String descrever() {
+        if (modo != ConfiguracaoServidor.ModoExecutor.VIRTUAL) return modo + " (limite " + limite + ")";
+        return modo + (virtual ? " (threads virtuais" : " (sem threads virtuais neste JDK: uma thread por requisição")
+                + ", limite " + limite + ")";
+    }
+
+    /** Para de aceitar tarefas e espera as em andamento por até {@code segundos}. */
+    public void encerrar(int segundos) {
+        executor.shutdown();
+        recusa.shutdown();
+        try {
+            if (!executor.awaitTermination(segundos, TimeUnit.SECONDS)) executor.shutdownNow();
+            recusa.awaitTermination(1, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            executor.shutdownNow();
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void executar(Runnable requisicao, boolean recusar) {
+        if (recusar) RECUSANDO.set(Boolean.TRUE);
+        try {
+            requisicao.run();
+        } finally {
+            if (recusar) RECUSANDO.set(Boolean.FALSE);
+            emAndamento.decrementAndGet();
+        }
+    }
+
+    /** {@code Executors.newVirtualThreadPerTaskExecutor()} por reflexão (o projeto compila para Java 17); null se indisponível. */
+    static ExecutorService threadsVirtuais() {
+        try {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (ReflectiveOperationException e) {
+            return null;
+        }
+    }
+
+    static ThreadFactory fabrica(String prefixo) {
+        AtomicInteger n = new AtomicInteger();
+        return r -> {
+            Thread t = new Thread(r, prefixo + n.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        };
+    }
+}
@@ -2,6 +2,8 @@ package br.com.mpet;
 
 import br.com.mpet.PatternSearcher;
 import br.com.mpet.model.*;
+import br.com.mpet.persistence.BaseDataFile;
+import br.com.mpet.persistence.CrudDao;
 import br.com.mpet.persistence.dao.AnimalDataFileDao;
 import br.com.mpet.persistence.dao.AdotanteDataFileDao;
 import br.com.mpet.persistence.dao.OngDataFileDao;
@@ -26,6 +28,7 @@ import java.time.ZoneOffset;
 import java.time.format.DateTimeFormatter;
 import java.time.format.DateTimeParseException;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 import java.util.Objects;
 import java.util.Scanner;
@@ -84,7 +87,7 @@ public class Interface {
     private static final File CHAT_THREADS_IDX_FILE = new File(DATA_DIR, CHAT_THREADS_IDX_FILENAME);
     private static final File CHAT_MSGS_DATA_FILE = new File(DATA_DIR, CHAT_MSGS_DATA_FILENAME);
     private static final File CHAT_MSGS_IDX_FILE = new File(DATA_DIR, CHAT_MSGS_IDX_FILENAME);
-    private static final byte VERSAO = 1;
+    private static final byte VERSAO = 2;
 
     private static File resolveDataDir() {
         File wd = new File(System.getProperty("user.dir"));
@@ -237,6 +240,21 @@ public class Interface {
         }
     }
 
+    /**
+     * Entrega as chaves RSA aos DAOs para abrir arquivos .dat cifrados. Com MPET_CRIPTOGRAFIA=true,
+     * arquivos novos (e os regravados pelo vacuum) também nascem cifrados.
+     */
+    private static void configurarCriptografiaEmRepouso() {
+        boolean cifrarNovos = Boolean.parseBoolean(System.getenv().getOrDefault("MPET_CRIPTOGRAFIA", "false"));
+        try {
+            BaseDataFile.configurarCriptografiaEmRepouso(
+                    RSACriptografia.carregarChavePublica(), RSACriptografia.carregarChavePrivada(), cifrarNovos);
+            if (cifrarNovos) showInfo("Criptografia em repouso ativada para novos arquivos .dat");
+        } catch (Exception e) {
+            if (cifrarNovos) showWarning("Criptografia em repouso indisponível: " + e.getMessage());
+        }
+    }
+
     // ================================
     // VERIFICAÇÃO INICIAL DE DADOS
     // ================================
@@ -403,6 +421,7 @@ public class Interface {
             showWarning("Falha ao inicializar chaves RSA: " + e.getMessage());
             showWarning("A aplicação continuará em modo compatível (senhas em texto plano).");
         }
+        configurarCriptografiaEmRepouso();
         
         // Verificar se existem dados, se não, oferecer opções
         Scanner scInicial = new Scanner(System.in);
@@ -438,7 +457,7 @@ public class Interface {
                 switch (login.tipo) {
                     case ADMIN -> menuAdmin(sc, animalDao, ongDao, adotanteDao, voluntarioDao, adocaoDao, interesseDao, chatThreadDao, chatMsgDao);
                     case ADOTANTE -> menuAdotanteLogado(sc, adotanteDao, animalDao, adocaoDao, interesseDao, chatThreadDao, chatMsgDao, (Adotante) login.usuario);
-                    case VOLUNTARIO -> menuVoluntarioLogado(sc, voluntarioDao, animalDao, adocaoDao, interesseDao, chatThreadDao, chatMsgDao, (Voluntario) login.usuario);
+                    case VOLUNTARIO -> menuVoluntarioLogado(sc, voluntarioDao, adotanteDao, animalDao, adocaoDao, interesseDao, chatThreadDao, chatMsgDao, (Voluntario) login.usuario);
                 }
             }
         } catch (Exception e) {
@@ -599,7 +618,8 @@ public class Interface {
         List<br.com.mpet.model.Adocao> list = adocaoDao.listAllActive();
         List<Integer> ids = list.stream().filter(a -> cpf.equals(a.getCpfAdotante())).map(br.com.mpet.model.Adocao::getIdAnimal).toList();
         if (ids.isEmpty()) { System.out.println(ANSI_YELLOW + "Sem adoções para este CPF." + ANSI_RESET); return; }
-        for (Integer id : ids) animalDao.read(id).ifPresent(Interface::imprimirAnimal);
+        Map<Integer, Animal> animais = animalDao.readAll(ids);
+        for (Integer id : ids) { Animal a = animais.get(id); if (a != null) imprimirAnimal(a); }
     }
 
     // =================================================================================
@@ -901,7 +921,7 @@ public class Interface {
         }
     }
 
-    private static void menuVoluntarioLogado(Scanner sc, VoluntarioDataFileDao voluntarioDao, AnimalDataFileDao animalDao, AdocaoDataFileDao adocaoDao, InteresseDataFileDao interesseDao, ChatThreadDataFileDao chatThreadDao, ChatMessageDataFileDao chatMsgDao, Voluntario v) throws IOException {
+    private static void menuVoluntarioLogado(Scanner sc, VoluntarioDataFileDao voluntarioDao, AdotanteDataFileDao adotanteDao, AnimalDataFileDao animalDao, AdocaoDataFileDao adocaoDao, InteresseDataFileDao interesseDao, ChatThreadDataFileDao chatThreadDao, ChatMessageDataFileDao chatMsgDao, Voluntario v) throws IOException {
         while (true) {
             System.out.println(ANSI_CYAN + "\n--- Painel do Voluntário ---" + ANSI_RESET);
             System.out.println("1) Ver meus dados");
@@ -929,7 +949,7 @@ public class Interface {
                 case "4" -> criarAnimalVoluntario(sc, animalDao, v.getIdOng());
                 case "5" -> editarAnimalVoluntario(sc, animalDao, v.getIdOng());
                 case "6" -> removerAnimalVoluntario(sc, animalDao, v.getIdOng());
-                case "7" -> listarInteressadosPorAnimal(sc, v.getIdOng(), animalDao, interesseDao);
+                case "7" -> listarInteressadosPorAnimal(sc, v.getIdOng(), animalDao, adotanteDao, interesseDao);
                 case "8" -> aprovarMatchAbrirChat(sc, v.getIdOng(), animalDao, interesseDao, chatThreadDao);
                 case "9" -> chatsListarEEnviar(sc, v, animalDao, chatThreadDao, chatMsgDao);
                 case "10" -> confirmarAdocao(sc, v.getIdOng(), animalDao, interesseDao, adocaoDao, chatThreadDao, chatMsgDao);
@@ -2448,14 +2468,22 @@ public class Interface {
         ) {
             System.out.println("\n" + ANSI_BOLD + ANSI_CYAN + "📊 Estatísticas da Base de Dados" + ANSI_RESET);
             System.out.println(ANSI_CYAN + "═══════════════════════════════════════" + ANSI_RESET);
-            System.out.println("🐾 Animais ativos: " + ANSI_WHITE + animalDao.listAllActive().size() + ANSI_RESET);
-            System.out.println("🏢 ONGs ativas: " + ANSI_WHITE + ongDao.listAllActive().size() + ANSI_RESET);
-            System.out.println("👥 Adotantes ativos: " + ANSI_WHITE + adotanteDao.listAllActive().size() + ANSI_RESET);
-            System.out.println("🤝 Voluntários ativos: " + ANSI_WHITE + voluntarioDao.listAllActive().size() + ANSI_RESET);
-            System.out.println("💖 Adoções realizadas: " + ANSI_WHITE + adocaoDao.listAllActive().size() + ANSI_RESET);
-            System.out.println("❤️ Interesses registrados: " + ANSI_WHITE + interesseDao.listAllActive().size() + ANSI_RESET);
-            System.out.println("💬 Conversas ativas: " + ANSI_WHITE + chatThreadDao.listAllActive().size() + ANSI_RESET);
-            System.out.println("📨 Mensagens trocadas: " + ANSI_WHITE + chatMsgDao.listAllActive().size() + ANSI_RESET);
+            // Contadores do cabeçalho: nada é decodificado (nem senhas decifradas)
+            System.out.println("🐾 Animais ativos: " + ANSI_WHITE + animalDao.count() + ANSI_RESET);
+            System.out.println("🏢 ONGs ativas: " + ANSI_WHITE + ongDao.count() + ANSI_RESET);
+            System.out.println("👥 Adotantes ativos: " + ANSI_WHITE + adotanteDao.count() + ANSI_RESET);
+            System.out.println("🤝 Voluntários ativos: " + ANSI_WHITE + voluntarioDao.count() + ANSI_RESET);
+            System.out.println("💖 Adoções realizadas: " + ANSI_WHITE + adocaoDao.count() + ANSI_RESET);
+            System.out.println("❤️ Interesses registrados: " + ANSI_WHITE + interesseDao.count() + ANSI_RESET);
+            System.out.println("💬 Conversas ativas: " + ANSI_WHITE + chatThreadDao.count() + ANSI_RESET);
+            System.out.println("📨 Mensagens trocadas: " + ANSI_WHITE + chatMsgDao.count() + ANSI_RESET);
+            System.out.println(ANSI_CYAN + "═══════════════════════════════════════" + ANSI_RESET);
+            System.out.println(ANSI_BOLD + "Arquivos:" + ANSI_RESET);
+            for (CrudDao<?, ?> dao : List.<CrudDao<?, ?>>of(animalDao, ongDao, adotanteDao, voluntarioDao,
+                    adocaoDao, interesseDao, chatThreadDao, chatMsgDao)) {
+                System.out.println(ANSI_DIM + "  " + dao.estatisticas() + ANSI_RESET);
+                if (dao.estatisticasCache() != null) System.out.println(ANSI_DIM + "    cache: " + dao.estatisticasCache() + ANSI_RESET);
+            }
             System.out.println(ANSI_CYAN + "═══════════════════════════════════════" + ANSI_RESET);
         }
     }
@@ -2639,6 +2667,7 @@ public class Interface {
             System.out.println("  • Tamanho senha original: " + senhaDescriptografada.length() + " caracteres");
             System.out.println("  • Tamanho senha criptografada: " + senhaCriptografada.length() + " caracteres");
             System.out.println("  • Algoritmo: RSA (criptografia assimétrica)");
+            System.out.println("  • Custo por operação: " + RSACriptografia.resumoTempos());
             System.out.println("  • Status: " + (sucesso ? ANSI_GREEN + "✓ SEGURO" + ANSI_RESET : ANSI_RED + "✗ ERRO" + ANSI_RESET));
             System.out.println(ANSI_CYAN + "═══════════════════════════════════════════════════════════════" + ANSI_RESET);
             System.out.println();
@@ -2655,14 +2684,12 @@ public class Interface {
     }
     
     private static boolean isAdotado(AdocaoDataFileDao adocaoDao, int idAnimal) throws IOException {
-        return adocaoDao.listAllActive().stream().anyMatch(a -> a.getIdAnimal() == idAnimal);
+        return adocaoDao.isAdotado(idAnimal);
     }
 
     private static void listarAnimaisDisponiveis(AnimalDataFileDao animalDao, AdocaoDataFileDao adocaoDao) throws IOException {
         List<Animal> todos = animalDao.listAllActive();
-        List<Animal> disp = todos.stream().filter(a -> {
-            try { return !isAdotado(adocaoDao, a.getId()); } catch (IOException e) { return false; }
-        }).toList();
+        List<Animal> disp = adocaoDao.filtrarDisponiveis(todos);
         System.out.println(ANSI_CYAN + "\n--- Animais Disponíveis ---" + ANSI_RESET);
         if (disp.isEmpty()) { System.out.println(ANSI_YELLOW + "Nenhum disponível." + ANSI_RESET); return; }
         disp.forEach(Interface::imprimirAnimal);
@@ -2675,8 +2702,10 @@ public class Interface {
         if (opt.isEmpty()) { System.out.println(ANSI_RED + "Animal inválido." + ANSI_RESET); return; }
         if (isAdotado(adocaoDao, id)) { System.out.println(ANSI_YELLOW + "Este animal já foi adotado." + ANSI_RESET); return; }
         // evitar duplicar interesse
-        boolean existe = interesseDao.listAllActive().stream()
-                .anyMatch(i -> i.getIdAnimal() == id && adotante.getCpf().equals(i.getCpfAdotante()));
+        boolean existe = interesseDao.consulta()
+                .onde("idAnimal", id)
+                .onde("cpfAdotante", adotante.getCpf())
+                .existe();
         if (existe) { System.out.println(ANSI_YELLOW + "Você já demonstrou interesse por este animal." + ANSI_RESET); return; }
         Interesse it = new Interesse();
         it.setCpfAdotante(adotante.getCpf());
@@ -2689,8 +2718,8 @@ public class Interface {
     }
 
     private static void listarAnimaisDaMinhaOng(AnimalDataFileDao animalDao, int idOng, AdocaoDataFileDao adocaoDao) throws IOException {
-        List<Animal> todos = animalDao.listAllActive();
-        todos.stream().filter(a -> a.getIdOng() == idOng).forEach(a -> {
+        List<Animal> daOng = animalDao.consulta().onde("idOng", idOng).listar();
+        daOng.forEach(a -> {
             boolean adotado;
             try { adotado = isAdotado(adocaoDao, a.getId()); } catch (IOException e) { adotado = false; }
             imprimirAnimal(a);
@@ -2747,21 +2776,26 @@ public class Interface {
         System.out.println(ok ? ANSI_GREEN + "Removido." + ANSI_RESET : ANSI_YELLOW + "Não encontrado." + ANSI_RESET);
     }
 
-    private static void listarInteressadosPorAnimal(Scanner sc, int idOng, AnimalDataFileDao animalDao, InteresseDataFileDao interesseDao) throws IOException {
+    private static void listarInteressadosPorAnimal(Scanner sc, int idOng, AnimalDataFileDao animalDao, AdotanteDataFileDao adotanteDao, InteresseDataFileDao interesseDao) throws IOException {
         int idAnimal = perguntarInt(sc, "ID do animal");
         Optional<Animal> opt = animalDao.read(idAnimal);
         if (opt.isEmpty() || opt.get().getIdOng() != idOng) { System.out.println(ANSI_RED + "Animal não pertence à sua ONG." + ANSI_RESET); return; }
-        List<Interesse> ints = interesseDao.listAllActive().stream().filter(i -> i.getIdAnimal() == idAnimal).toList();
+        List<Interesse> ints = interesseDao.consulta().onde("idAnimal", idAnimal).listar();
         if (ints.isEmpty()) { System.out.println(ANSI_YELLOW + "Sem interessados." + ANSI_RESET); return; }
+        Map<String, Adotante> adotantes = adotanteDao.readAll(ints.stream().map(Interesse::getCpfAdotante).toList());
         System.out.println(ANSI_CYAN + "Interessados (status):" + ANSI_RESET);
-        ints.forEach(i -> System.out.printf(" - id=%d | CPF=%s | %s | %s\n", i.getId(), i.getCpfAdotante(), i.getData(), i.getStatus()));
+        ints.forEach(i -> {
+            Adotante a = adotantes.get(i.getCpfAdotante());
+            System.out.printf(" - id=%d | CPF=%s | %s | %s | %s\n", i.getId(), i.getCpfAdotante(),
+                    a != null ? a.getNomeCompleto() : "(adotante não encontrado)", i.getData(), i.getStatus());
+        });
     }
 
     private static void aprovarMatchAbrirChat(Scanner sc, int idOng, AnimalDataFileDao animalDao, InteresseDataFileDao interesseDao, ChatThreadDataFileDao chatThreadDao) throws IOException {
         int idAnimal = perguntarInt(sc, "ID do animal");
         Optional<Animal> opt = animalDao.read(idAnimal);
         if (opt.isEmpty() || opt.get().getIdOng() != idOng) { System.out.println(ANSI_RED + "Animal não pertence à sua ONG." + ANSI_RESET); return; }
-        List<Interesse> pend = interesseDao.listAllActive().stream().filter(i -> i.getIdAnimal() == idAnimal && i.getStatus() == InteresseStatus.PENDENTE).toList();
+        List<Interesse> pend = interesseDao.consulta().onde("idAnimal", idAnimal).onde("status", InteresseStatus.PENDENTE).listar();
         if (pend.isEmpty()) { System.out.println(ANSI_YELLOW + "Nenhum interesse pendente." + ANSI_RESET); return; }
         pend.forEach(i -> System.out.printf(" - id=%d | CPF=%s\n", i.getId(), i.getCpfAdotante()));
         int idInteresse = perguntarInt(sc, "ID do interesse a aprovar");
@@ -2771,7 +2805,8 @@ public class Interface {
         i.setStatus(InteresseStatus.APROVADO);
         interesseDao.update(i);
         // abrir chat se não existir
-        boolean exists = chatThreadDao.listAllActive().stream().anyMatch(t -> t.getIdAnimal() == idAnimal && i.getCpfAdotante().equals(t.getCpfAdotante()) && t.isAberto());
+        boolean exists = chatThreadDao.consulta().onde("idAnimal", idAnimal).onde("cpfAdotante", i.getCpfAdotante())
+                .listar().stream().anyMatch(ChatThread::isAberto);
         if (!exists) {
             ChatThread t = new ChatThread();
             t.setIdAnimal(idAnimal); t.setCpfAdotante(i.getCpfAdotante()); t.setAberto(true); t.setCriadoEm(java.time.LocalDateTime.now());
@@ -2782,12 +2817,10 @@ public class Interface {
 
     private static void chatsListarEEnviar(Scanner sc, Voluntario voluntario, AnimalDataFileDao animalDao, ChatThreadDataFileDao threadDao, ChatMessageDataFileDao msgDao) throws IOException {
         // Filtra threads somente da mesma ONG do voluntário (via idOng do animal)
-        List<ChatThread> threads = threadDao.listAllActive().stream()
-                .filter(t -> {
-                    try {
-                        return animalDao.read(t.getIdAnimal()).map(an -> an.getIdOng() == voluntario.getIdOng()).orElse(false);
-                    } catch (IOException e) { return false; }
-                })
+        List<ChatThread> todas = threadDao.listAllActive();
+        Map<Integer, Animal> animais = animalDao.readAll(todas.stream().map(ChatThread::getIdAnimal).distinct().toList());
+        List<ChatThread> threads = todas.stream()
+                .filter(t -> { Animal an = animais.get(t.getIdAnimal()); return an != null && an.getIdOng() == voluntario.getIdOng(); })
                 .toList();
         if (threads.isEmpty()) { System.out.println(ANSI_YELLOW + "Sem chats da sua ONG." + ANSI_RESET); return; }
         threads.forEach(t -> System.out.printf(" - Thread %d | Animal=%d | CPF=%s | Aberto=%s\n", t.getId(), t.getIdAnimal(), t.getCpfAdotante(), t.isAberto()));
@@ -2796,7 +2829,7 @@ public class Interface {
         if (ot.isEmpty()) { System.out.println(ANSI_RED + "Thread inválida." + ANSI_RESET); return; }
         ChatThread t = ot.get();
         // Listar mensagens
-        List<ChatMessage> msgs = msgDao.listAllActive().stream().filter(m -> m.getThreadId() == t.getId()).toList();
+        List<ChatMessage> msgs = msgDao.consulta().onde("threadId", t.getId()).listar();
         if (msgs.isEmpty()) System.out.println("(sem mensagens)");
         else msgs.forEach(m -> {
             String senderLabel = m.getSender() == ChatSender.VOLUNTARIO ? "VOLUNTARIO" + extrairCpfVoluntarioSufixo(m) : m.getSender().name();
@@ -2825,7 +2858,7 @@ public class Interface {
         Optional<Animal> opt = animalDao.read(idAnimal);
         if (opt.isEmpty() || opt.get().getIdOng() != idOng) { System.out.println(ANSI_RED + "Animal não pertence à sua ONG." + ANSI_RESET); return; }
         if (isAdotado(adocaoDao, idAnimal)) { System.out.println(ANSI_YELLOW + "Já adotado." + ANSI_RESET); return; }
-        List<Interesse> aprov = interesseDao.listAllActive().stream().filter(i -> i.getIdAnimal() == idAnimal && i.getStatus() == InteresseStatus.APROVADO).toList();
+        List<Interesse> aprov = interesseDao.consulta().onde("idAnimal", idAnimal).onde("status", InteresseStatus.APROVADO).listar();
         if (aprov.isEmpty()) { System.out.println(ANSI_YELLOW + "Não há matches aprovados." + ANSI_RESET); return; }
         aprov.forEach(i -> System.out.printf(" - CPF=%s\n", i.getCpfAdotante()));
         String cpf = perguntarString(sc, "CPF do adotante para confirmar", null);
@@ -2835,7 +2868,7 @@ public class Interface {
         ad.setCpfAdotante(cpf); ad.setIdAnimal(idAnimal); ad.setDataAdocao(java.time.LocalDate.now()); ad.setAtivo(true);
         adocaoDao.create(ad);
         // Fechar todos os chats do animal e notificar demais pretendentes (opcional)
-        List<ChatThread> threads = threadDao.listAllActive().stream().filter(t -> t.getIdAnimal() == idAnimal && t.isAberto()).toList();
+        List<ChatThread> threads = threadDao.consulta().onde("idAnimal", idAnimal).listar().stream().filter(ChatThread::isAberto).toList();
         for (ChatThread t : threads) {
             if (!t.getCpfAdotante().equals(cpf)) {
                 ChatMessage aviso = new ChatMessage();
@@ -2884,9 +2917,7 @@ public class Interface {
     // ADOTANTE: VER MENSAGENS/CHATS
     // ================================
     private static void verMinhasConversas(Scanner sc, Adotante a, ChatThreadDataFileDao threadDao, ChatMessageDataFileDao msgDao) throws IOException {
-        List<ChatThread> minhas = threadDao.listAllActive().stream()
-                .filter(t -> a.getCpf().equals(t.getCpfAdotante()))
-                .toList();
+        List<ChatThread> minhas = threadDao.consulta().onde("cpfAdotante", a.getCpf()).listar();
         if (minhas.isEmpty()) {
             System.out.println(ANSI_YELLOW + "Você não possui conversas." + ANSI_RESET);
             return;
@@ -2903,8 +2934,7 @@ public class Interface {
         if (ot.isEmpty()) { System.out.println(ANSI_RED + "Thread inválida." + ANSI_RESET); return; }
         ChatThread t = ot.get();
 
-        List<ChatMessage> msgs = msgDao.listAllActive().stream()
-                .filter(m -> m.getThreadId() == t.getId())
+        List<ChatMessage> msgs = msgDao.consulta().onde("threadId", t.getId()).listar().stream()
                 .sorted((m1, m2) -> {
                     var d1 = m1.getEnviadoEm(); var d2 = m2.getEnviadoEm();
                     if (d1 == null && d2 == null) return Integer.compare(m1.getId(), m2.getId());
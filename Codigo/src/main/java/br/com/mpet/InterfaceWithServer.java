@@ -3,6 +3,7 @@ package br.com.mpet;
 import java.io.File;
 import java.io.IOException;
 
+import br.com.mpet.persistence.BaseDataFile;
 import br.com.mpet.persistence.dao.AdocaoDataFileDao;
 import br.com.mpet.persistence.dao.AdotanteDataFileDao;
 import br.com.mpet.persistence.dao.AnimalDataFileDao;
@@ -18,7 +19,8 @@ import br.com.mpet.persistence.dao.VoluntarioDataFileDao;
  * Uso:
  *   java -cp "target/classes" br.com.mpet.InterfaceWithServer
  * 
- * O servidor REST ficará disponível em http://localhost:8080
+ * O servidor REST ficará disponível em http://localhost:8080 (endereço, porta, backlog e
+ * executor configuráveis pelas variáveis MPET_* de {@link ConfiguracaoServidor#doAmbiente()})
  * O frontend poderá ser servido através de um servidor HTTP separado
  */
 public class InterfaceWithServer {
@@ -68,7 +70,51 @@ public class InterfaceWithServer {
     }
     
     private static RestServer restServer;
+
+    /**
+     * Entrega as chaves RSA aos DAOs para abrir arquivos .dat cifrados. Com MPET_CRIPTOGRAFIA=true,
+     * arquivos novos (e os regravados pelo vacuum) também nascem cifrados.
+     */
+    private static void configurarCriptografiaEmRepouso() {
+        boolean cifrarNovos = Boolean.parseBoolean(System.getenv().getOrDefault("MPET_CRIPTOGRAFIA", "false"));
+        try {
+            BaseDataFile.configurarCriptografiaEmRepouso(
+                    RSACriptografia.carregarChavePublica(), RSACriptografia.carregarChavePrivada(), cifrarNovos);
+            if (cifrarNovos) showInfo("Criptografia em repouso ativada para novos arquivos .dat");
+        } catch (Exception e) {
+            if (cifrarNovos) showWarning("Criptografia em repouso indisponível: " + e.getMessage());
+        }
+    }
     
+    /** MPET_CACHE_KB: cache de leituras de cada DAO em KiB (0 desliga; padrão 2048). */
+    private static void configurarCacheLeituras() {
+        String kb = System.getenv("MPET_CACHE_KB");
+        if (kb == null) return;
+        try {
+            BaseDataFile.configurarCachePadrao(Long.parseLong(kb.trim()) * 1024);
+        } catch (IllegalArgumentException e) {
+            showWarning("MPET_CACHE_KB inválido, usando o padrão: " + kb);
+        }
+    }
+
+    /** MPET_INDICES_FORA_DO_HEAP=true guarda os índices id → offset em memória nativa. */
+    private static void configurarIndicesEmMemoria() {
+        if (Boolean.parseBoolean(System.getenv("MPET_INDICES_FORA_DO_HEAP"))) {
+            BaseDataFile.configurarIndicesForaDoHeap(true);
+            showDebug("Índices id → offset fora do heap");
+        }
+    }
+
+    /** Configuração do servidor pelas variáveis MPET_*; valores inválidos caem nos padrões. */
+    private static ConfiguracaoServidor configuracaoServidor() {
+        try {
+            return ConfiguracaoServidor.doAmbiente();
+        } catch (IllegalArgumentException e) {
+            showWarning(e.getMessage() + " — usando a configuração padrão do servidor");
+            return ConfiguracaoServidor.padrao();
+        }
+    }
+
     public static void main(String[] args) {
         showSplashServer();
         showInfo("Iniciando sistema MPet com servidor REST...");
@@ -85,7 +131,7 @@ public class InterfaceWithServer {
         showSuccess("Diretório de dados configurado: " + dataDir.getAbsolutePath());
         
         // Define arquivos de dados
-        final byte VERSAO = 1;
+        final byte VERSAO = 2;
         showDebug("Configurando arquivos de dados (.dat e .idx)...");
         final File ANIMAIS_DATA_FILE = new File(dataDir, "animais.dat");
         final File ANIMAIS_IDX_FILE = new File(dataDir, "animais.dat.idx");
@@ -104,6 +150,9 @@ public class InterfaceWithServer {
         final File CHAT_MSGS_DATA_FILE = new File(dataDir, "chat_msgs.dat");
         final File CHAT_MSGS_IDX_FILE = new File(dataDir, "chat_msgs.dat.idx");
         
+        configurarCriptografiaEmRepouso();
+        configurarCacheLeituras();
+        configurarIndicesEmMemoria();
         showDebug("Inicializando DAOs (Data Access Objects)...");
         try (
             AnimalDataFileDao animalDao = new AnimalDataFileDao(ANIMAIS_DATA_FILE, VERSAO);
@@ -118,19 +167,21 @@ public class InterfaceWithServer {
             showSuccess("Todos os DAOs inicializados com sucesso!");
             
             // Inicia REST Server em thread separada
-            showInfo("Configurando servidor REST na porta 8080...");
+            ConfiguracaoServidor config = configuracaoServidor();
+            showInfo("Configurando servidor REST: " + config);
             try {
-                restServer = new RestServer(8080, animalDao, ongDao, adotanteDao, voluntarioDao, adocaoDao, interesseDao, chatThreadDao, chatMsgDao);
+                restServer = new RestServer(config, animalDao, ongDao, adotanteDao, voluntarioDao, adocaoDao, interesseDao, chatThreadDao, chatMsgDao);
                 showDebug("Servidor REST configurado, iniciando...");
                 restServer.start();
                 
                 System.out.println("\n" + ANSI_BOLD + ANSI_GREEN + "=".repeat(70) + ANSI_RESET);
                 System.out.println(ANSI_BOLD + ANSI_GREEN + "🎉 MPet REST Server está ONLINE! 🎉" + ANSI_RESET);
                 System.out.println(ANSI_BOLD + ANSI_GREEN + "=".repeat(70) + ANSI_RESET);
-                System.out.println(ANSI_BOLD + ANSI_CYAN + "🌐 Frontend Web:  " + ANSI_WHITE + "http://localhost:8080/pages/index.html" + ANSI_RESET);
-                System.out.println(ANSI_BOLD + ANSI_BLUE + "🔌 API REST:      " + ANSI_WHITE + "http://localhost:8080/api" + ANSI_RESET);
-                System.out.println(ANSI_BOLD + ANSI_PURPLE + "🐶 Endpoint Pets: " + ANSI_WHITE + "http://localhost:8080/api/animais" + ANSI_RESET);
-                System.out.println(ANSI_BOLD + ANSI_PURPLE + "🐱 Chat System:   " + ANSI_WHITE + "http://localhost:8080/api/chat" + ANSI_RESET);
+                String base = "http://" + config.getHost() + ":" + restServer.porta();
+                System.out.println(ANSI_BOLD + ANSI_CYAN + "🌐 Frontend Web:  " + ANSI_WHITE + base + "/pages/index.html" + ANSI_RESET);
+                System.out.println(ANSI_BOLD + ANSI_BLUE + "🔌 API REST:      " + ANSI_WHITE + base + "/api" + ANSI_RESET);
+                System.out.println(ANSI_BOLD + ANSI_PURPLE + "🐶 Endpoint Pets: " + ANSI_WHITE + base + "/api/animais" + ANSI_RESET);
+                System.out.println(ANSI_BOLD + ANSI_PURPLE + "🐱 Chat System:   " + ANSI_WHITE + base + "/api/chat" + ANSI_RESET);
                 System.out.println(ANSI_BOLD + ANSI_GREEN + "=".repeat(70) + ANSI_RESET + "\n");
                 
                 // Para manter o servidor rodando enquanto o CLI também funciona
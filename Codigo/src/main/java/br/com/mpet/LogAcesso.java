@@ -0,0 +1,212 @@
+package br.com.mpet;
+
+import com.sun.net.httpserver.Headers;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Log de acesso do {@link RestServer} fora da thread da requisição.
+ *
+ * A requisição só reserva uma posição num buffer circular pré-alocado (um CAS), copia os campos
+ * (referências e números, sem formatar nada) e publica a posição; uma thread própria lê as
+ * posições em ordem, formata as linhas e escreve cada lote com um único write. Com o buffer
+ * cheio (saída mais lenta que as requisições), a entrada é descartada e contada, em vez de
+ * bloquear a requisição; o total de descartes sai no próprio log.
+ *
+ * Cada linha é logfmt (chave=valor, valor entre aspas se tiver espaço, aspas ou "="):
+ * <pre>
+ * ts=2026-10-19T05:05:51.123Z metodo=GET caminho=/api/animais query="limit=10" status=200 bytes=1349 ms=1.234 ctx=/api
+ * </pre>
+ * Com amostragem N, só 1 de cada N requisições (em média) é registrada; respostas 5xx sempre são.
+ */
+final class LogAcesso implements AutoCloseable {
+
+    /** Posições do buffer (potência de 2). */
+    static final int CAPACIDADE = 8192;
+    /** Linhas por write, no máximo. */
+    private static final int LOTE = 512;
+    /** Espera da thread de escrita quando o buffer está vazio. */
+    private static final long OCIOSO_NS = TimeUnit.MILLISECONDS.toNanos(2);
+
+    /** Uma posição do buffer; {@code sequencia} é publicada por último e lida primeiro. */
+    private static final class Entrada {
+        volatile long sequencia;
+        long instante;
+        String metodo;
+        URI uri;
+        int status;
+        Headers resposta;
+        long nanos;
+        String contexto;
+        String nota;
+    }
+
+    private final Entrada[] buffer = new Entrada[CAPACIDADE];
+    private final int mascara = CAPACIDADE - 1;
+    private final AtomicLong proximo = new AtomicLong();
+    /** Próxima sequência que a thread de escrita vai ler; só ela escreve. */
+    private volatile long lido;
+    private final AtomicLong descartadas = new AtomicLong();
+    private long descartadasInformadas;
+
+    private final OutputStream saida;
+    private final int amostragem;
+    private final Thread escritor;
+    private volatile boolean encerrado;
+
+    /**
+     * @param saida      destino das linhas (System.out no servidor)
+     * @param amostragem registra 1 de cada {@code amostragem} requisições; 1 = todas
+     */
+    LogAcesso(OutputStream saida, int amostragem) {
+        if (amostragem < 1) throw new IllegalArgumentException("amostragem deve ser >= 1: " + amostragem);
+        this.saida = saida;
+        this.amostragem = amostragem;
+        for (int i = 0; i < CAPACIDADE; i++) {
+            buffer[i] = new Entrada();
+            buffer[i].sequencia = i - CAPACIDADE; // "ainda não publicada" para a volta 0
+        }
+        this.escritor = new Thread(this::escrever, "mpet-log");
+        escritor.setDaemon(true);
+        escritor.start();
+    }
+
+    /**
+     * Registra uma requisição concluída. Não formata nem bloqueia: a URI só é decodificada e o
+     * Content-Length só é procurado nos cabeçalhos da resposta (já enviados, não mudam mais) na
+     * thread de escrita. Devolve false se a requisição ficou de fora da amostra ou foi descartada
+     * com o buffer cheio.
+     */
+    boolean registrar(String metodo, URI uri, int status, Headers resposta, long nanos, String contexto, String nota) {
+        if (amostragem > 1 && status < 500 && ThreadLocalRandom.current().nextInt(amostragem) != 0) return false;
+        long seq;
+        do {
+            seq = proximo.get();
+            if (seq - lido >= CAPACIDADE || encerrado) {
+                descartadas.incrementAndGet();
+                return false;
+            }
+        } while (!proximo.compareAndSet(seq, seq + 1));
+
+        Entrada e = buffer[(int) seq & mascara];
+        e.instante = System.currentTimeMillis();
+        e.metodo = metodo;
+        e.uri = uri;
+        e.status = status;
+        e.resposta = resposta;
+        e.nanos = nanos;
+        e.contexto = contexto;
+        e.nota = nota;
+        e.sequencia = seq;
+        return true;
+    }
+
+    /** Entradas perdidas com o buffer cheio desde o início. */
+    long descartadas() {
+        return descartadas.get();
+    }
+
+    /** Escreve o que já foi publicado e para a thread de escrita. */
+    @Override
+    public void close() {
+        encerrado = true;
+        LockSupport.unpark(escritor);
+        try {
+            escritor.join(TimeUnit.SECONDS.toMillis(5));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /* ============================================================= */
+
+    private void escrever() {
+        StringBuilder linhas = new StringBuilder(LOTE * 128);
+        while (true) {
+            boolean fim = encerrado;
+            int n = 0;
+            long seq = lido;
+            // posições reservadas mas ainda não publicadas param o lote: a ordem é a das reservas
+            while (n < LOTE && buffer[(int) seq & mascara].sequencia == seq) {
+                Entrada e = buffer[(int) seq & mascara];
+                formatar(e, linhas);
+                e.metodo = e.contexto = e.nota = null;
+                e.uri = null;
+                e.resposta = null;
+                seq++;
+                n++;
+                lido = seq;
+            }
+            long perdidas = descartadas.get();
+            if (perdidas != descartadasInformadas) {
+                linhas.append("ts=").append(Instant.now()).append(" aviso=log_cheio descartadas=")
+                        .append(perdidas - descartadasInformadas).append('\n');
+                descartadasInformadas = perdidas;
+            }
+            if (linhas.length() > 0) {
+                try {
+                    saida.write(linhas.toString().getBytes(StandardCharsets.UTF_8));
+                    saida.flush();
+                } catch (IOException ignore) {
+                    // sem onde registrar: o log de acesso não derruba o servidor
+                }
+                linhas.setLength(0);
+            }
+            if (n == LOTE) continue;
+            if (fim && lido == proximo.get()) return;
+            if (n == 0) LockSupport.parkNanos(this, OCIOSO_NS);
+        }
+    }
+
+    private static void formatar(Entrada e, StringBuilder sb) {
+        sb.append("ts=").append(Instant.ofEpochMilli(e.instante));
+        sb.append(" metodo=").append(e.metodo);
+        String caminho = e.uri.getPath();
+        valor(sb.append(" caminho="), caminho != null ? caminho : e.uri.toString());
+        if (e.uri.getQuery() != null) valor(sb.append(" query="), e.uri.getQuery());
+        // -1: a resposta segue depois do handler (SSE, long-poll)
+        if (e.status < 0) sb.append(" status=pendente");
+        else sb.append(" status=").append(e.status);
+        String bytes = e.resposta != null ? e.resposta.getFirst("Content-Length") : null;
+        if (bytes != null) sb.append(" bytes=").append(bytes);
+        long micros = e.nanos / 1000;
+        sb.append(" ms=").append(micros / 1000).append('.');
+        long fracao = micros % 1000;
+        if (fracao < 100) sb.append('0');
+        if (fracao < 10) sb.append('0');
+        sb.append(fracao);
+        if (e.contexto != null) valor(sb.append(" ctx="), e.contexto);
+        if (e.nota != null) valor(sb.append(" nota="), e.nota);
+        sb.append('\n');
+    }
+
+    /** Valor logfmt: entre aspas (com \ e " escapados) se tiver espaço, aspas, "=" ou for vazio. */
+    private static void valor(StringBuilder sb, String v) {
+        boolean aspas = v.isEmpty();
+        for (int i = 0; i < v.length() && !aspas; i++) {
+            char c = v.charAt(i);
+            aspas = c <= ' ' || c == '"' || c == '=' || c == '\\';
+        }
+        if (!aspas) {
+            sb.append(v);
+            return;
+        }
+        sb.append('"');
+        for (int i = 0; i < v.length(); i++) {
+            char c = v.charAt(i);
+            if (c == '"' || c == '\\') sb.append('\\').append(c);
+            else if (c == '\n') sb.append("\\n");
+            else if (c < ' ') sb.append(' ');
+            else sb.append(c);
+        }
+        sb.append('"');
+    }
+}
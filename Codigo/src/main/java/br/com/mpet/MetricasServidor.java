@@ -0,0 +1,302 @@
+package br.com.mpet;
+
+import br.com.mpet.persistence.Histograma;
+import com.sun.net.httpserver.HttpExchange;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Métricas das requisições do {@link RestServer}, por método e rota: duração (num
+ * {@link Histograma}, para p50/p99/p999), requisições em andamento, respostas por status e bytes
+ * do corpo recebidos e enviados. Expostas em /api/metrics no formato texto do Prometheus, junto
+ * com as do executor e dos DAOs.
+ *
+ * A rota é o modelo da tabela ({@code /api/animais/{id:int}}), não o caminho, então o número de
+ * séries é limitado; requisições fora do roteador ficam com o nome do contexto ("static",
+ * "/api/health") e as sem rota com {@value #SEM_ROTA}. Métodos fora do HTTP comum contam como
+ * {@value #OUTRO_METODO}.
+ *
+ * Respostas adiadas (SSE, long-poll: o handler devolve sem ter respondido) contam no status
+ * "adiada" e ficam fora da duração, que mede até o handler devolver; os bytes que elas enviarem
+ * depois continuam contando.
+ */
+final class MetricasServidor {
+
+    /** Quantis publicados de cada histograma. */
+    static final double[] QUANTIS = {0.5, 0.9, 0.99, 0.999};
+    static final String SEM_ROTA = "nenhuma";
+    static final String OUTRO_METODO = "OUTRO";
+    private static final Set<String> METODOS = Set.of("GET", "HEAD", "POST", "PUT", "PATCH", "DELETE", "OPTIONS");
+
+    /** Requisições de um método numa rota. */
+    static final class Serie {
+        final String metodo;
+        final String rota;
+        final Histograma duracao = new Histograma();
+        final AtomicInteger emAndamento = new AtomicInteger();
+        final LongAdder bytesRecebidos = new LongAdder();
+        final LongAdder bytesEnviados = new LongAdder();
+        /** [0]: adiadas; [s - 99]: status s (100..599). */
+        final AtomicLongArray respostas = new AtomicLongArray(502);
+
+        Serie(String metodo, String rota) {
+            this.metodo = metodo;
+            this.rota = rota;
+        }
+    }
+
+    /**
+     * Uma requisição em andamento. Os contadores de corpo a guardam (e não a série) porque o
+     * {@link RestServer} só sabe a rota depois de passar pelo roteador ({@link #rotear}).
+     */
+    static final class Medicao {
+        private final long inicio = System.nanoTime();
+        private Serie serie;
+
+        private Medicao(Serie serie) {
+            this.serie = serie;
+        }
+    }
+
+    /** rota → método → série; lidos sem alocar, criados na primeira requisição. */
+    private final Map<String, Map<String, Serie>> series = new ConcurrentHashMap<>();
+    /** Medição da requisição que esta thread está atendendo (atributos da troca são do contexto). */
+    private final ThreadLocal<Medicao> atual = new ThreadLocal<>();
+
+    /**
+     * Começa a medir uma requisição de {@code contexto}: conta em andamento e troca os streams da
+     * troca por versões que contam bytes. Chame {@link #concluir} quando o handler devolver.
+     */
+    Medicao iniciar(HttpExchange exchange, String contexto) {
+        Serie s = serie(exchange.getRequestMethod(), contexto);
+        s.emAndamento.incrementAndGet();
+        Medicao m = new Medicao(s);
+        exchange.setStreams(new Entrada(exchange.getRequestBody(), m), new Saida(exchange.getResponseBody(), m));
+        atual.set(m);
+        return m;
+    }
+
+    /** A requisição desta thread caiu na rota {@code modelo} (null = nenhuma). */
+    void rotear(String metodo, String modelo) {
+        Medicao m = atual.get();
+        if (m == null) return;
+        Serie s = serie(metodo, modelo != null ? modelo : SEM_ROTA);
+        if (s == m.serie) return;
+        s.emAndamento.incrementAndGet();
+        m.serie.emAndamento.decrementAndGet();
+        m.serie = s;
+    }
+
+    /** O handler devolveu; {@code status} é -1 se a resposta ainda não foi enviada. */
+    void concluir(Medicao m, int status) {
+        long nanos = System.nanoTime() - m.inicio;
+        atual.set(null);
+        Serie s = m.serie;
+        s.emAndamento.decrementAndGet();
+        if (status >= 100 && status <= 599) {
+            s.duracao.registrar(nanos);
+            s.respostas.incrementAndGet(status - 99);
+        } else {
+            s.respostas.incrementAndGet(0);
+        }
+    }
+
+    Serie serie(String metodo, String rota) {
+        if (!METODOS.contains(metodo)) metodo = OUTRO_METODO;
+        Map<String, Serie> porMetodo = series.get(rota);
+        if (porMetodo == null) porMetodo = series.computeIfAbsent(rota, r -> new ConcurrentHashMap<>());
+        Serie s = porMetodo.get(metodo);
+        if (s == null) {
+            String m = metodo;
+            s = porMetodo.computeIfAbsent(m, k -> new Serie(m, rota));
+        }
+        return s;
+    }
+
+    /* =============================================================
+     * FORMATO TEXTO DO PROMETHEUS
+     * ============================================================= */
+
+    /** Escreve as métricas HTTP em {@code sb}. */
+    void escrever(StringBuilder sb) {
+        List<Serie> todas = series.values().stream().flatMap(m -> m.values().stream())
+                .filter(MetricasServidor::usada)
+                .sorted((a, b) -> a.rota.equals(b.rota) ? a.metodo.compareTo(b.metodo) : a.rota.compareTo(b.rota))
+                .toList();
+
+        familia(sb, "mpet_http_requisicao_segundos", "summary",
+                "Duração das requisições respondidas pelo handler, por método e rota.");
+        for (Serie s : todas) {
+            resumo(sb, "mpet_http_requisicao_segundos", s.duracao, "metodo", s.metodo, "rota", s.rota);
+        }
+        familia(sb, "mpet_http_em_andamento", "gauge", "Requisições sendo atendidas agora.");
+        for (Serie s : todas) {
+            amostra(sb, "mpet_http_em_andamento", s.emAndamento.get(), "metodo", s.metodo, "rota", s.rota);
+        }
+        familia(sb, "mpet_http_respostas_total", "counter",
+                "Respostas por status; \"adiada\" = SSE/long-poll, respondida depois do handler.");
+        for (Serie s : todas) {
+            for (int i = 0; i < s.respostas.length(); i++) {
+                long n = s.respostas.get(i);
+                if (n == 0) continue;
+                amostra(sb, "mpet_http_respostas_total", n, "metodo", s.metodo, "rota", s.rota,
+                        "status", i == 0 ? "adiada" : Integer.toString(i + 99));
+            }
+        }
+        familia(sb, "mpet_http_recebidos_bytes_total", "counter", "Bytes lidos dos corpos das requisições.");
+        for (Serie s : todas) {
+            amostra(sb, "mpet_http_recebidos_bytes_total", s.bytesRecebidos.sum(), "metodo", s.metodo, "rota", s.rota);
+        }
+        familia(sb, "mpet_http_enviados_bytes_total", "counter", "Bytes escritos nos corpos das respostas (já comprimidos).");
+        for (Serie s : todas) {
+            amostra(sb, "mpet_http_enviados_bytes_total", s.bytesEnviados.sum(), "metodo", s.metodo, "rota", s.rota);
+        }
+    }
+
+    /**
+     * false para as séries de contexto que só passaram requisições adiante para uma rota (as de
+     * "/api" sempre, já que toda requisição dela é roteada): não mostram nada.
+     */
+    private static boolean usada(Serie s) {
+        if (s.emAndamento.get() != 0) return true;
+        for (int i = 0; i < s.respostas.length(); i++) {
+            if (s.respostas.get(i) != 0) return true;
+        }
+        return false;
+    }
+
+    static void familia(StringBuilder sb, String nome, String tipo, String ajuda) {
+        sb.append("# HELP ").append(nome).append(' ').append(ajuda.replace("\\", "\\\\")).append('\n');
+        sb.append("# TYPE ").append(nome).append(' ').append(tipo).append('\n');
+    }
+
+    /** Uma linha {@code nome{r1="v1",...} valor}; {@code rotulos} alterna nome e valor. */
+    static void amostra(StringBuilder sb, String nome, double valor, String... rotulos) {
+        sb.append(nome);
+        rotulos(sb, rotulos, null);
+        sb.append(' ');
+        if (valor == Math.rint(valor) && Math.abs(valor) < 1e15) sb.append((long) valor);
+        else sb.append(valor);
+        sb.append('\n');
+    }
+
+    /** Os quantis (em segundos), _sum e _count de um histograma em ns. */
+    static void resumo(StringBuilder sb, String nome, Histograma h, String... rotulos) {
+        long[] q = h.quantis(QUANTIS);
+        for (int i = 0; i < QUANTIS.length; i++) {
+            sb.append(nome);
+            rotulos(sb, rotulos, Double.toString(QUANTIS[i]));
+            sb.append(' ').append(q[i] / 1e9).append('\n');
+        }
+        sb.append(nome).append("_sum");
+        rotulos(sb, rotulos, null);
+        sb.append(' ').append(h.soma() / 1e9).append('\n');
+        sb.append(nome).append("_count");
+        rotulos(sb, rotulos, null);
+        sb.append(' ').append(h.contagem()).append('\n');
+    }
+
+    private static void rotulos(StringBuilder sb, String[] rotulos, String quantil) {
+        if (rotulos.length == 0 && quantil == null) return;
+        sb.append('{');
+        for (int i = 0; i < rotulos.length; i += 2) {
+            if (i > 0) sb.append(',');
+            sb.append(rotulos[i]).append("=\"");
+            String v = rotulos[i + 1];
+            for (int c = 0; c < v.length(); c++) {
+                char ch = v.charAt(c);
+                if (ch == '\\' || ch == '"') sb.append('\\').append(ch);
+                else if (ch == '\n') sb.append("\\n");
+                else sb.append(ch);
+            }
+            sb.append('"');
+        }
+        if (quantil != null) {
+            if (rotulos.length > 0) sb.append(',');
+            sb.append("quantile=\"").append(quantil).append('"');
+        }
+        sb.append('}');
+    }
+
+    /* ============================================================= */
+
+    /** Corpo da requisição, contando os bytes lidos. */
+    private static final class Entrada extends InputStream {
+        private final InputStream in;
+        private final Medicao medicao;
+
+        Entrada(InputStream in, Medicao medicao) {
+            this.in = in;
+            this.medicao = medicao;
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = in.read();
+            if (b >= 0) medicao.serie.bytesRecebidos.increment();
+            return b;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            int n = in.read(b, off, len);
+            if (n > 0) medicao.serie.bytesRecebidos.add(n);
+            return n;
+        }
+
+        @Override
+        public int available() throws IOException {
+            return in.available();
+        }
+
+        @Override
+        public void close() throws IOException {
+            in.close();
+        }
+    }
+
+    /**
+     * Corpo da resposta, contando os bytes escritos. Pode ser escrito depois do handler, por outra
+     * thread (SSE, long-poll): a série já está definida desde o roteamento.
+     */
+    private static final class Saida extends OutputStream {
+        private final OutputStream out;
+        private final Medicao medicao;
+
+        Saida(OutputStream out, Medicao medicao) {
+            this.out = out;
+            this.medicao = medicao;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            out.write(b);
+            medicao.serie.bytesEnviados.increment();
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            out.write(b, off, len);
+            medicao.serie.bytesEnviados.add(len);
+        }
+
+        @Override
+        public void flush() throws IOException {
+            out.flush();
+        }
+
+        @Override
+        public void close() throws IOException {
+            out.close();
+        }
+    }
+}
@@ -0,0 +1,252 @@
+package br.com.mpet;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileSystem;
+import java.nio.file.FileSystemAlreadyExistsException;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Os arquivos de {@code resources/public}, lidos uma vez na inicialização do {@link RestServer} e
+ * mantidos num mapa imutável: cada requisição só procura o caminho e copia bytes prontos, sem
+ * classloader, disco ou compressão.
+ *
+ * Cada arquivo guarda o Content-Type, um ETag do conteúdo e, para os de texto, a versão gzip
+ * (a {@code arquivo.ext.gz} que o build tiver deixado ao lado, ou comprimida aqui no nível
+ * máximo; só se encolher e o original tiver pelo menos o mínimo de compressão).
+ *
+ * Os arquivos de {@code /assets} também ficam disponíveis num caminho com o hash do conteúdo
+ * ({@code /assets/css/style.3fa9c01b2e.css}), servido como imutável; as páginas HTML são
+ * reescritas para apontar para esses caminhos, então o navegador guarda CSS, JS e imagens sem
+ * revalidar e uma versão nova chega pelo HTML, que é sempre revalidado (pelo ETag, com 304).
+ */
+final class RecursosEstaticos {
+
+    /** Cache-Control dos caminhos com hash: o conteúdo de uma URL dessas nunca muda. */
+    static final String CACHE_IMUTAVEL = "public, max-age=31536000, immutable";
+    /** Cache-Control dos demais: pode guardar, mas revalida (ETag) antes de usar. */
+    static final String CACHE_REVALIDAR = "no-cache";
+
+    /**
+     * Um arquivo pronto para servir. {@code gzip} é null quando não compensa comprimir; os ETags
+     * (já com aspas) diferem entre as duas codificações porque os bytes diferem.
+     */
+    record Recurso(byte[] bytes, byte[] gzip, String tipo, String etag, String etagGzip, String cacheControl) {
+    }
+
+    /** src="..." e href="..." das páginas, para trocar pelos caminhos com hash. */
+    private static final Pattern REFERENCIA = Pattern.compile("(src|href)=\"([^\"#?]+)\"");
+
+    private final Map<String, Recurso> recursos;
+
+    private RecursosEstaticos(Map<String, Recurso> recursos) {
+        this.recursos = recursos;
+    }
+
+    /**
+     * Lê todos os arquivos de {@code raiz} no classpath (diretório ou dentro do jar). Com
+     * {@code comprimir}, prepara o gzip dos arquivos de texto com pelo menos {@code tamanhoMinimo}
+     * bytes. Se não der para listar os recursos, devolve um conjunto vazio e o {@link RestServer}
+     * volta a ler do classpath a cada requisição.
+     */
+    static RecursosEstaticos carregar(ClassLoader cl, String raiz, boolean comprimir, int tamanhoMinimo) {
+        Map<String, Recurso> mapa = new HashMap<>();
+        try {
+            URL url = cl.getResource(raiz);
+            if (url != null) {
+                URI uri = url.toURI();
+                Path dir = "jar".equals(uri.getScheme()) ? sistemaDoJar(uri).getPath("/" + raiz) : Path.of(uri);
+                montar(lerArvore(dir), mapa, comprimir, tamanhoMinimo);
+            }
+        } catch (IOException | URISyntaxException | RuntimeException e) {
+            System.err.println("⚠️ Arquivos estáticos não carregados em memória: " + e.getMessage());
+            mapa.clear();
+        }
+        return new RecursosEstaticos(Map.copyOf(mapa));
+    }
+
+    /** Arquivo de {@code caminho} (ex.: "/assets/js/index.js" ou o caminho com hash), ou null. */
+    Recurso recurso(String caminho) {
+        return recursos.get(caminho);
+    }
+
+    /** Caminhos servidos, incluindo os com hash. */
+    int quantidade() {
+        return recursos.size();
+    }
+
+    /** Arquivos distintos (sem contar os caminhos com hash, que repetem os bytes de outro). */
+    int arquivos() {
+        return (int) arquivosDistintos().count();
+    }
+
+    /** Bytes em memória, originais e gzip. */
+    long bytesEmMemoria() {
+        return arquivosDistintos().mapToLong(r -> r.bytes().length + (r.gzip() != null ? r.gzip().length : 0)).sum();
+    }
+
+    int quantidadeComprimidos() {
+        return (int) arquivosDistintos().filter(r -> r.gzip() != null).count();
+    }
+
+    long bytesOriginais() {
+        return arquivosDistintos().filter(r -> r.gzip() != null).mapToLong(r -> r.bytes().length).sum();
+    }
+
+    long bytesComprimidos() {
+        return arquivosDistintos().filter(r -> r.gzip() != null).mapToLong(r -> r.gzip().length).sum();
+    }
+
+    /** Content-Type pela extensão do caminho. */
+    static String tipoDeConteudo(String path) {
+        if (path.endsWith(".html")) return "text/html; charset=UTF-8";
+        if (path.endsWith(".css")) return "text/css; charset=UTF-8";
+        if (path.endsWith(".js")) return "application/javascript; charset=UTF-8";
+        if (path.endsWith(".json")) return "application/json; charset=UTF-8";
+        if (path.endsWith(".png")) return "image/png";
+        if (path.endsWith(".jpg") || path.endsWith(".jpeg")) return "image/jpeg";
+        if (path.endsWith(".gif")) return "image/gif";
+        if (path.endsWith(".svg")) return "image/svg+xml";
+        if (path.endsWith(".ico")) return "image/x-icon";
+        return "application/octet-stream";
+    }
+
+    /* ============================================================= */
+
+    private Stream<Recurso> arquivosDistintos() {
+        return recursos.values().stream().filter(r -> r.cacheControl() != CACHE_IMUTAVEL);
+    }
+
+    /** Caminho ("/pages/index.html") → bytes de cada arquivo da árvore. */
+    private static Map<String, byte[]> lerArvore(Path raiz) throws IOException {
+        List<Path> arquivos;
+        try (Stream<Path> s = Files.walk(raiz)) {
+            arquivos = s.filter(Files::isRegularFile).collect(Collectors.toList());
+        }
+        Map<String, byte[]> lidos = new LinkedHashMap<>();
+        for (Path arquivo : arquivos) {
+            lidos.put("/" + raiz.relativize(arquivo).toString().replace('\\', '/'), Files.readAllBytes(arquivo));
+        }
+        return lidos;
+    }
+
+    /**
+     * Primeiro os assets (e seus caminhos com hash), depois as páginas, reescritas com os caminhos
+     * dos assets já conhecidos. Os {@code .gz} prontos não viram recursos próprios.
+     */
+    private static void montar(Map<String, byte[]> lidos, Map<String, Recurso> mapa, boolean comprimir, int tamanhoMinimo) {
+        Map<String, String> comHash = new HashMap<>();
+        for (Map.Entry<String, byte[]> e : lidos.entrySet()) {
+            String caminho = e.getKey();
+            if (caminho.endsWith(".gz") || caminho.endsWith(".html")) continue;
+            Recurso r = preparar(caminho, e.getValue(), lidos, comprimir, tamanhoMinimo, CACHE_REVALIDAR);
+            mapa.put(caminho, r);
+            if (caminho.startsWith("/assets/")) {
+                String versionado = caminhoComHash(caminho, r.etag().substring(1, r.etag().length() - 1));
+                comHash.put(caminho, versionado);
+                mapa.put(versionado, new Recurso(r.bytes(), r.gzip(), r.tipo(), r.etag(), r.etagGzip(), CACHE_IMUTAVEL));
+            }
+        }
+        for (Map.Entry<String, byte[]> e : lidos.entrySet()) {
+            String caminho = e.getKey();
+            if (!caminho.endsWith(".html")) continue;
+            byte[] pagina = reescrever(caminho, e.getValue(), comHash);
+            // a .gz ao lado da página foi feita do HTML original: só serve se nada foi reescrito
+            Map<String, byte[]> prontos = pagina == e.getValue() ? lidos : Map.of();
+            mapa.put(caminho, preparar(caminho, pagina, prontos, comprimir, tamanhoMinimo, CACHE_REVALIDAR));
+        }
+    }
+
+    private static Recurso preparar(String caminho, byte[] bytes, Map<String, byte[]> lidos,
+                                    boolean comprimir, int tamanhoMinimo, String cacheControl) {
+        String tipo = tipoDeConteudo(caminho);
+        byte[] gzip = null;
+        if (comprimir && bytes.length >= tamanhoMinimo && CompressaoHttp.compressivel(tipo)) {
+            byte[] pronto = lidos.get(caminho + ".gz");
+            gzip = pronto != null ? pronto : CompressaoHttp.comprimir(bytes, 0, bytes.length,
+                    CompressaoHttp.Codificacao.GZIP, CompressaoHttp.NIVEL_ESTATICO);
+            if (gzip.length >= bytes.length) gzip = null;
+        }
+        String hash = hash(bytes);
+        return new Recurso(bytes, gzip, tipo, "\"" + hash + "\"", "\"" + hash + "-gz\"", cacheControl);
+    }
+
+    /**
+     * Troca, nos src/href da página, cada referência a um asset conhecido (relativa à página ou
+     * absoluta) pelo caminho com hash, mantendo a forma original. Devolve o próprio array se nada mudou.
+     */
+    private static byte[] reescrever(String pagina, byte[] html, Map<String, String> comHash) {
+        String texto = new String(html, StandardCharsets.UTF_8);
+        String dir = pagina.substring(0, pagina.lastIndexOf('/') + 1);
+        Matcher m = REFERENCIA.matcher(texto);
+        StringBuilder sb = new StringBuilder(texto.length() + 256);
+        boolean mudou = false;
+        while (m.find()) {
+            String ref = m.group(2);
+            String alvo = ref.contains("://") || ref.contains("${") ? null : resolver(dir, ref);
+            String versionado = alvo != null ? comHash.get(alvo) : null;
+            if (versionado == null) {
+                m.appendReplacement(sb, Matcher.quoteReplacement(m.group()));
+                continue;
+            }
+            String novaRef = ref.substring(0, ref.lastIndexOf('/') + 1) + versionado.substring(versionado.lastIndexOf('/') + 1);
+            m.appendReplacement(sb, Matcher.quoteReplacement(m.group(1) + "=\"" + novaRef + "\""));
+            mudou = true;
+        }
+        if (!mudou) return html;
+        m.appendTail(sb);
+        return sb.toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    /** "../assets/x.js" visto de "/pages/" → "/assets/x.js"; null se não for um caminho válido. */
+    private static String resolver(String dir, String ref) {
+        try {
+            return URI.create(ref.startsWith("/") ? ref : dir + ref).normalize().getPath();
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    /** "/assets/css/style.css" + "3fa9c01b2e" → "/assets/css/style.3fa9c01b2e.css". */
+    private static String caminhoComHash(String caminho, String hash) {
+        int barra = caminho.lastIndexOf('/');
+        int ponto = caminho.lastIndexOf('.');
+        if (ponto <= barra) return caminho + "." + hash;
+        return caminho.substring(0, ponto) + "." + hash + caminho.substring(ponto);
+    }
+
+    /** 10 primeiros dígitos hexadecimais do SHA-256 do conteúdo. */
+    private static String hash(byte[] bytes) {
+        try {
+            byte[] d = MessageDigest.getInstance("SHA-256").digest(bytes);
+            StringBuilder sb = new StringBuilder(10);
+            for (int i = 0; i < 5; i++) sb.append(String.format("%02x", d[i] & 0xFF));
+            return sb.toString();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 indisponível", e);
+        }
+    }
+
+    private static FileSystem sistemaDoJar(URI uri) throws IOException {
+        try {
+            return FileSystems.newFileSystem(uri, Map.of());
+        } catch (FileSystemAlreadyExistsException e) {
+            return FileSystems.getFileSystem(uri);
+        }
+    }
+}
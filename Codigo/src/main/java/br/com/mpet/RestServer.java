@@ -4,17 +4,29 @@ import java.io.BufferedReader;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
+import java.io.OutputStream;
 import java.net.InetSocketAddress;
 import java.nio.charset.StandardCharsets;
+import java.time.Instant;
 import java.time.LocalDate;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
 import java.util.Date;
 import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Locale;
 import java.util.Map;
 import java.util.Optional;
+import java.util.function.Function;
+import java.util.function.ToLongFunction;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
-import com.google.gson.Gson;
 import com.google.gson.JsonObject;
 import com.google.gson.JsonParser;
 import br.com.mpet.dto.*;
@@ -34,6 +46,14 @@ import br.com.mpet.model.InteresseStatus;
 import br.com.mpet.model.Ong;
 import br.com.mpet.model.Role;
 import br.com.mpet.model.Voluntario;
+import br.com.mpet.persistence.Consulta;
+import br.com.mpet.persistence.CacheTinyLfu;
+import br.com.mpet.persistence.CrudDao;
+import br.com.mpet.persistence.EstatisticasArquivo;
+import br.com.mpet.persistence.MetricasArquivo;
+import br.com.mpet.persistence.Page;
+import br.com.mpet.persistence.ResultadoConsulta;
+import br.com.mpet.persistence.VersaoDados;
 import br.com.mpet.persistence.dao.AdocaoDataFileDao;
 import br.com.mpet.persistence.dao.AdotanteDataFileDao;
 import br.com.mpet.persistence.dao.AnimalDataFileDao;
@@ -42,18 +62,25 @@ import br.com.mpet.persistence.dao.ChatThreadDataFileDao;
 import br.com.mpet.persistence.dao.InteresseDataFileDao;
 import br.com.mpet.persistence.dao.OngDataFileDao;
 import br.com.mpet.persistence.dao.VoluntarioDataFileDao;
+import br.com.mpet.persistence.io.Projecao;
 
 /**
  * RestServer - Servidor HTTP REST para a API PetMatch
  * 
  * Endpoints disponíveis:
  * - GET /api/ongs - Lista todas as ONGs
- * - GET /api/animais - Lista todos os animais
+ * - GET /api/stats - Contadores por arquivo (ativos, tombstones, bytes, fragmentação, altura do índice) e do executor
+ * - GET /api/metrics - Métricas no formato do Prometheus: p50/p99/p999 por rota, status, bytes, E/S por arquivo
+ * - GET /api/animais - Lista todos os animais (?fields=nome,porte decodifica só esses campos)
+ * - GET /api/animais?limit=50&cursor=C - Página de animais (próximo cursor no header X-Next-Cursor, -1 = fim)
  * - GET /api/animais/:id - Obtém animal por ID
  * - POST /api/auth/login - Login do usuário
  * - POST /api/adotantes - Criar adotante
  * - GET /api/adotantes/:cpf - Obter adotante por CPF
  * - E muito mais...
+ *
+ * Endereço, backlog e modelo de threads vêm de {@link ConfiguracaoServidor}. Requisições acima do
+ * limite do {@link ExecutorServidor} recebem 503 na hora, exceto /api/health.
  */
 public class RestServer {
     
@@ -69,7 +96,8 @@ public class RestServer {
     public static final String ANSI_DIM = "\u001B[2m";
     public static final String ANSI_BOLD = "\u001B[1m";
     private HttpServer server;
-    private int port;
+    private final ConfiguracaoServidor config;
+    private ExecutorServidor executor;
     private AnimalDataFileDao animalDao;
     private OngDataFileDao ongDao;
     private AdotanteDataFileDao adotanteDao;
@@ -78,10 +106,54 @@ public class RestServer {
     private InteresseDataFileDao interesseDao;
     private ChatThreadDataFileDao chatThreadDao;
     private ChatMessageDataFileDao chatMsgDao;
-    private Gson gson;
     private boolean debugEnabled;
+    private final RecursosEstaticos estaticos;
+    private final DifusorChat difusor;
+    private final Roteador rotas = criarRotas();
+    /** Log de acesso (null com debug desligado). */
+    private final LogAcesso logAcesso;
+    /** Durações, status e bytes por rota, publicados em /api/metrics. */
+    private final MetricasServidor metricas = new MetricasServidor();
+    /**
+     * Detalhe da resposta da requisição em andamento nesta thread, para o log de acesso (ver
+     * {@link #anotarLog}). Não é atributo da troca: no HttpServer do JDK os atributos são do
+     * contexto, compartilhados por todas as requisições dele.
+     */
+    private static final ThreadLocal<String[]> NOTA_LOG = ThreadLocal.withInitial(() -> new String[1]);
+
+    /** Campos de Animal usados pelo AnimalDto: a listagem não decodifica data de nascimento nem os de Cachorro/Gato. */
+    private static final Projecao PROJECAO_ANIMAL_DTO =
+            Projecao.de("idOng", "nome", "sexo", "porte", "vacinado", "descricao", "imageUrl");
+
+    /** Máximo de ids aceitos em GET /api/animais?ids=... */
+    private static final int MAX_IDS_LOTE = 500;
+
+    /** Bytes acumulados antes de cada escrita no corpo de uma resposta em streaming. */
+    private static final int BUFFER_STREAM = 16 * 1024;
+
+    /**
+     * Buffer de serialização de cada thread do servidor, reaproveitado entre requisições (em
+     * streaming ele não passa de BUFFER_STREAM mais um item).
+     */
+    private static final ThreadLocal<SaidaJson> SAIDA = ThreadLocal.withInitial(() -> new SaidaJson(BUFFER_STREAM + 1024));
+
+    /** Formato de data do HTTP (IMF-fixdate), para Last-Modified. */
+    private static final DateTimeFormatter DATA_HTTP =
+            DateTimeFormatter.ofPattern("EEE, dd MMM yyyy HH:mm:ss 'GMT'", Locale.US).withZone(ZoneOffset.UTC);
 
-    public RestServer(int port, 
+    /*
+     * Sem TCP_NODELAY, o fim de uma resposta que não cabe num segmento (um CSS de 20 KiB) espera o
+     * ACK atrasado do cliente: ~40 ms por arquivo. O HttpServer lê a propriedade ao ser carregado,
+     * então ela precisa estar definida antes do primeiro HttpServer.create.
+     */
+    static {
+        if (System.getProperty("sun.net.httpserver.nodelay") == null) {
+            System.setProperty("sun.net.httpserver.nodelay", "true");
+        }
+    }
+
+    /** Configuração do ambiente (ver {@link ConfiguracaoServidor#doAmbiente()}) com esta porta. */
+    public RestServer(int port,
                       AnimalDataFileDao animalDao,
                       OngDataFileDao ongDao,
                       AdotanteDataFileDao adotanteDao,
@@ -90,7 +162,20 @@ public class RestServer {
                       InteresseDataFileDao interesseDao,
                       ChatThreadDataFileDao chatThreadDao,
                       ChatMessageDataFileDao chatMsgDao) throws IOException {
-        this.port = port;
+        this(ConfiguracaoServidor.doAmbiente().porta(port), animalDao, ongDao, adotanteDao, voluntarioDao,
+                adocaoDao, interesseDao, chatThreadDao, chatMsgDao);
+    }
+
+    public RestServer(ConfiguracaoServidor config,
+                      AnimalDataFileDao animalDao,
+                      OngDataFileDao ongDao,
+                      AdotanteDataFileDao adotanteDao,
+                      VoluntarioDataFileDao voluntarioDao,
+                      AdocaoDataFileDao adocaoDao,
+                      InteresseDataFileDao interesseDao,
+                      ChatThreadDataFileDao chatThreadDao,
+                      ChatMessageDataFileDao chatMsgDao) throws IOException {
+        this.config = config;
         this.animalDao = animalDao;
         this.ongDao = ongDao;
         this.adotanteDao = adotanteDao;
@@ -99,54 +184,102 @@ public class RestServer {
         this.interesseDao = interesseDao;
         this.chatThreadDao = chatThreadDao;
         this.chatMsgDao = chatMsgDao;
-        this.gson = new Gson();
-        this.debugEnabled = Boolean.parseBoolean(System.getenv().getOrDefault("MPET_DEBUG", "true"));
-        
-        this.server = HttpServer.create(new InetSocketAddress("localhost", port), 0);
+        this.debugEnabled = config.isDebug();
+        this.logAcesso = debugEnabled ? new LogAcesso(System.out, config.getAmostragemLog()) : null;
+        this.estaticos = RecursosEstaticos.carregar(RestServer.class.getClassLoader(), "public",
+                config.isCompressao(), config.getCompressaoMinima());
+        this.difusor = new DifusorChat(this::mensagensDepois);
+
+        this.server = HttpServer.create(new InetSocketAddress(config.getHost(), config.getPorta()), config.getBacklog());
         setupRoutes();
     }
 
+    /** Tabela de rotas da API (ver {@link Roteador}), montada uma vez na criação do servidor. */
+    private Roteador criarRotas() {
+        AnimaisRotas animais = new AnimaisRotas();
+        OngsRotas ongs = new OngsRotas();
+        AdotantesRotas adotantes = new AdotantesRotas();
+        VoluntariosRotas voluntarios = new VoluntariosRotas();
+        InteressesRotas interesses = new InteressesRotas();
+        ChatsRotas chats = new ChatsRotas();
+        ChatMessagesRotas mensagens = new ChatMessagesRotas();
+        return new Roteador()
+                // Estatísticas dos arquivos (contadores dos DAOs, sem varrer registros)
+                .rota("GET", "/api/stats", this::estatisticas)
+                // Métricas no formato texto do Prometheus (latência por rota, E/S por arquivo)
+                .rota("GET", "/api/metrics", this::exporMetricas)
+                // Autenticação
+                .rota("POST", "/api/auth/login", this::login)
+                // Animais
+                .rota("GET", "/api/animais", animais::listar)
+                .rota("POST", "/api/animais", animais::criar)
+                .rota("GET", "/api/animais/{id:int}", animais::buscar)
+                .rota("PUT", "/api/animais/{id:int}", animais::atualizar)
+                .rota("DELETE", "/api/animais/{id:int}", animais::remover)
+                // ONGs
+                .rota("GET", "/api/ongs", ongs::listar)
+                .rota("POST", "/api/ongs", ongs::criar)
+                .rota("PUT", "/api/ongs/{id:int}", ongs::atualizar)
+                .rota("DELETE", "/api/ongs/{id:int}", ongs::remover)
+                // Adotantes
+                .rota("POST", "/api/adotantes", adotantes::criar)
+                .rota("GET", "/api/adotantes/{cpf}", adotantes::buscar)
+                .rota("PUT", "/api/adotantes/{cpf}", adotantes::atualizar)
+                .rota("DELETE", "/api/adotantes/{cpf}", adotantes::remover)
+                .rota("GET", "/api/adotantes/{cpf}/interesses", adotantes::interesses)
+                .rota("GET", "/api/adotantes/{cpf}/adocoes", adotantes::adocoes)
+                // Voluntários
+                .rota("POST", "/api/voluntarios", voluntarios::criar)
+                .rota("GET", "/api/voluntarios/{cpf}", voluntarios::buscar)
+                .rota("PUT", "/api/voluntarios/{cpf}", voluntarios::atualizar)
+                .rota("DELETE", "/api/voluntarios/{cpf}", voluntarios::remover)
+                // Interesses
+                .rota("GET", "/api/interesses", interesses::listar)
+                .rota("POST", "/api/interesses", interesses::criar)
+                .rota("PUT", "/api/interesses/{id:int}", interesses::atualizar)
+                .rota("DELETE", "/api/interesses/{id:int}", interesses::remover)
+                // Chats
+                .rota("GET", "/api/chats", chats::listar)
+                .rota("POST", "/api/chats", chats::criar)
+                .rota("GET", "/api/chats/{threadId:int}", chats::buscar)
+                .rota("GET", "/api/chats/{threadId:int}/messages", chats::mensagens)
+                .rota("GET", "/api/chats/{threadId:int}/stream", chats::stream)
+                .rota("PUT", "/api/chats/{threadId:int}/close", chats::fechar)
+                // Mensagens de Chat
+                .rota("GET", "/api/chat-messages", mensagens::listar)
+                .rota("POST", "/api/chat-messages", mensagens::criar);
+    }
+
     private void setupRoutes() {
         // Serve arquivos estáticos (HTML, CSS, JS) do classpath
         server.createContext("/", wrap(new StaticFileHandler(), "static"));
 
-        // Rota de health check
+        // Rota de health check (fora do roteador: responde mesmo com o servidor saturado)
         server.createContext("/api/health", wrap(new HealthHandler(), "/api/health"));
 
-        // Autenticação
-        server.createContext("/api/auth/login", wrap(new LoginHandler(), "/api/auth/login"));
-
-        // Animais
-        server.createContext("/api/animais", wrap(new AnimaisHandler(), "/api/animais"));
+        // Demais rotas da API, numa tabela só (ver ApiHandler)
+        server.createContext("/api", wrap(new ApiHandler(), "/api"));
 
-        // ONGs
-        server.createContext("/api/ongs", wrap(new OngsHandler(), "/api/ongs"));
-
-        // Adotantes
-        server.createContext("/api/adotantes", wrap(new AdotantesHandler(), "/api/adotantes"));
-
-        // Voluntários
-        server.createContext("/api/voluntarios", wrap(new VoluntariosHandler(), "/api/voluntarios"));
-
-        // Interesses
-        server.createContext("/api/interesses", wrap(new InteressesHandler(), "/api/interesses"));
-
-        // Chats
-        server.createContext("/api/chats", wrap(new ChatsHandler(), "/api/chats"));
-
-        // Mensagens de Chat
-        server.createContext("/api/chat-messages", wrap(new ChatMessagesHandler(), "/api/chat-messages"));
-
-        server.setExecutor(java.util.concurrent.Executors.newFixedThreadPool(10));
+        executor = new ExecutorServidor(config);
+        server.setExecutor(executor);
     }
 
     public void start() {
         try {
-            System.out.println("\n🔧 Iniciando HttpServer na porta " + port + "...");
+            System.out.println("\n🔧 Iniciando HttpServer em " + config.getHost() + ":" + porta() + "...");
             server.start();
-            System.out.println("✅ HttpServer iniciado com sucesso!");
-            System.out.println("✅ Servidor REST iniciado em http://localhost:" + port);
-            System.out.println("   Frontend em: http://localhost:" + port + "/pages/index.html");
+            System.out.println("✅ HttpServer iniciado com sucesso! executor=" + executor.descrever()
+                    + " backlog=" + config.getBacklog());
+            if (estaticos.quantidade() > 0) {
+                System.out.printf("✅ %d arquivos estáticos em memória (%d bytes)%n",
+                        estaticos.arquivos(), estaticos.bytesEmMemoria());
+            }
+            if (estaticos.quantidadeComprimidos() > 0) {
+                System.out.printf("✅ %d arquivos estáticos pré-comprimidos (gzip): %d → %d bytes%n",
+                        estaticos.quantidadeComprimidos(), estaticos.bytesOriginais(), estaticos.bytesComprimidos());
+            }
+            System.out.println("✅ Servidor REST iniciado em http://" + config.getHost() + ":" + porta());
+            System.out.println("   Frontend em: http://" + config.getHost() + ":" + porta() + "/pages/index.html");
         } catch (Exception e) {
             System.err.println("❌ Erro ao iniciar HttpServer: " + e.getMessage());
             e.printStackTrace();
@@ -155,16 +288,75 @@ public class RestServer {
     }
 
     public void stop() {
+        difusor.encerrar();
         server.stop(0);
+        executor.encerrar(5);
+        if (logAcesso != null) logAcesso.close();
         System.out.println("❌ Servidor REST parado");
     }
 
+    /** Porta em que o servidor escuta (a escolhida pelo sistema se configurada como 0). */
+    public int porta() {
+        return server.getAddress().getPort();
+    }
+
+    public ExecutorServidor executor() {
+        return executor;
+    }
+
     // ============ HANDLERS ============
     private HttpHandler wrap(HttpHandler handler, String name) {
-        if (!debugEnabled) return handler;
-        return new LoggingHandler(name, handler);
+        // health continua respondendo mesmo com o servidor saturado
+        HttpHandler h = name.equals("/api/health") ? handler : new AdmissaoHandler(handler);
+        if (debugEnabled) h = new LoggingHandler(name, h);
+        return new MetricasHandler(name, h);
+    }
+
+    /** Mede cada requisição em {@link MetricasServidor}, inclusive as recusadas com 503. */
+    private class MetricasHandler implements HttpHandler {
+        private final String name;
+        private final HttpHandler delegate;
+
+        MetricasHandler(String name, HttpHandler delegate) {
+            this.name = name;
+            this.delegate = delegate;
+        }
+
+        @Override
+        public void handle(HttpExchange exchange) throws IOException {
+            MetricasServidor.Medicao medicao = metricas.iniciar(exchange, name);
+            try {
+                delegate.handle(exchange);
+            } finally {
+                metricas.concluir(medicao, exchange.getResponseCode());
+            }
+        }
     }
 
+    /** Responde 503 às requisições que o {@link ExecutorServidor} marcou como acima do limite. */
+    private class AdmissaoHandler implements HttpHandler {
+        private final HttpHandler delegate;
+
+        AdmissaoHandler(HttpHandler delegate) {
+            this.delegate = delegate;
+        }
+
+        @Override
+        public void handle(HttpExchange exchange) throws IOException {
+            if (!ExecutorServidor.sobrecarregado()) {
+                delegate.handle(exchange);
+                return;
+            }
+            setCorsHeaders(exchange);
+            exchange.getResponseHeaders().set("Retry-After", "1");
+            sendJsonResponse(exchange, "{\"error\":\"Servidor sobrecarregado, tente novamente\"}", 503);
+        }
+    }
+
+    /**
+     * Registra cada requisição no {@link LogAcesso} ao terminar: só copia referências e números
+     * para o buffer dele, sem formatar nem escrever na thread da requisição.
+     */
     private class LoggingHandler implements HttpHandler {
         private final String name;
         private final HttpHandler delegate;
@@ -176,85 +368,49 @@ public class RestServer {
 
         @Override
         public void handle(HttpExchange exchange) throws IOException {
+            String[] nota = NOTA_LOG.get();
+            nota[0] = null;
             long start = System.nanoTime();
-            exchange.setAttribute("startNanos", start);
-            if (debugEnabled) {
-                String method = exchange.getRequestMethod();
-                String path = exchange.getRequestURI().getPath();
-                String query = exchange.getRequestURI().getQuery();
-                String ua = exchange.getRequestHeaders().getFirst("User-Agent");
-                
-                // Log colorido da requisição
-                String icon = getRequestIcon(path, method);
-                String color = getRequestColor(path, method);
-                String pathDisplay = path + (query != null ? ("?" + query) : "");
-                String uaShort = ua != null ? (ua.length() > 40 ? ua.substring(0, 37) + "..." : ua) : "-";
-                
-                System.out.printf("%s[HTTP %s] %s %s%s%s  %sua=%s%s  %sctx=%s%s%n",
-                        color, icon, method, ANSI_WHITE, pathDisplay, color,
-                        ANSI_DIM, uaShort, color,
-                        getContextColor(name), name, ANSI_RESET);
-            }
             try {
                 delegate.handle(exchange);
             } finally {
-                if (debugEnabled) {
-                    long end = System.nanoTime();
-                    long ms = (end - start) / 1_000_000L;
-                    String responseInfo = getResponseInfo(exchange);
-                    String color = ms > 1000 ? ANSI_RED : ms > 500 ? ANSI_YELLOW : ANSI_GREEN;
-                    System.out.printf("%s[HTTP ✅] %s %dms%s  %sctx=%s%s%n", 
-                            color, responseInfo, ms, color,
-                            getContextColor(name), name, ANSI_RESET);
-                }
+                logAcesso.registrar(exchange.getRequestMethod(), exchange.getRequestURI(), exchange.getResponseCode(),
+                        exchange.getResponseHeaders(), System.nanoTime() - start, name, nota[0]);
+                nota[0] = null;
             }
         }
-        
-        private String getRequestIcon(String path, String method) {
-            if (path.startsWith("/api/")) {
-                if (path.contains("animais")) return "🐾";
-                if (path.contains("chat")) return "💬";
-                if (path.contains("auth")) return "🔐";
-                if (path.contains("adotante")) return "👤";
-                if (path.contains("voluntario")) return "🤝";
-                if (path.contains("ong")) return "🏢";
-                if (path.contains("interesse")) return "❤️";
-                return "📡";
+    }
+
+    /**
+     * Despacha /api/* pela tabela de rotas: 404 se nenhum modelo casa com o caminho, 405 (com
+     * Allow) se casa mas não com esse método, e OPTIONS (preflight de CORS) respondido aqui.
+     */
+    private class ApiHandler implements HttpHandler {
+        @Override
+        public void handle(HttpExchange exchange) throws IOException {
+            setCorsHeaders(exchange);
+            String method = exchange.getRequestMethod();
+            Roteador.Encontrado rota = rotas.encontrar(method, exchange.getRequestURI().getPath());
+            metricas.rotear(method, rota != null ? rota.modelo() : null);
+            if (rota == null) {
+                sendJsonResponse(exchange, "{\"error\":\"Rota não encontrada\"}", 404);
+                return;
+            }
+            if (method.equals("OPTIONS")) {
+                exchange.getResponseHeaders().set("Allow", rota.permitidos() + ", OPTIONS");
+                exchange.sendResponseHeaders(200, -1);
+                return;
+            }
+            if (rota.acao() == null) {
+                exchange.getResponseHeaders().set("Allow", rota.permitidos() + ", OPTIONS");
+                sendJsonResponse(exchange, "{\"error\":\"Method not allowed\"}", 405);
+                return;
             }
-            if (path.endsWith(".html")) return "📄";
-            if (path.endsWith(".css")) return "🎨";
-            if (path.endsWith(".js")) return "⚙️";
-            if (path.contains("img/") || path.endsWith(".png") || path.endsWith(".jpg")) return "🖼️";
-            return "📊";
-        }
-        
-        private String getRequestColor(String path, String method) {
-            if (path.startsWith("/api/")) return ANSI_BLUE;
-            if (path.endsWith(".html")) return ANSI_CYAN;
-            if (path.endsWith(".css")) return ANSI_PURPLE;
-            if (path.endsWith(".js")) return ANSI_YELLOW;
-            return ANSI_WHITE;
-        }
-        
-        private String getContextColor(String context) {
-            if (context.equals("static")) return ANSI_GREEN;
-            if (context.startsWith("/api/")) return ANSI_PURPLE;
-            return ANSI_CYAN;
-        }
-        
-        private String getResponseInfo(HttpExchange exchange) {
             try {
-                int responseCode = exchange.getResponseCode();
-                long responseLength = exchange.getResponseHeaders().getFirst("Content-Length") != null 
-                    ? Long.parseLong(exchange.getResponseHeaders().getFirst("Content-Length")) : 0;
-                
-                if (responseLength > 0) {
-                    return String.format("%d (%d bytes)", responseCode, responseLength);
-                } else {
-                    return String.valueOf(responseCode);
-                }
+                rota.acao().executar(exchange, rota.parametros());
             } catch (Exception e) {
-                return "?";
+                e.printStackTrace();
+                sendJsonResponse(exchange, "{\"error\":\"" + e.getMessage() + "\"}", 500);
             }
         }
     }
@@ -273,806 +429,841 @@ public class RestServer {
         }
     }
 
-    private class LoginHandler implements HttpHandler {
-        @Override
-        public void handle(HttpExchange exchange) throws IOException {
-            setCorsHeaders(exchange);
-            if (exchange.getRequestMethod().equals("OPTIONS")) {
-                exchange.sendResponseHeaders(200, -1);
+    /** GET /api/stats */
+    private void estatisticas(HttpExchange exchange, Roteador.Parametros p) throws IOException {
+        StringBuilder sb = new StringBuilder("{");
+        sb.append("\"animais\":").append(statsToJson(animalDao.estatisticas(), animalDao.estatisticasCache())).append(',');
+        sb.append("\"ongs\":").append(statsToJson(ongDao.estatisticas(), ongDao.estatisticasCache())).append(',');
+        sb.append("\"adotantes\":").append(statsToJson(adotanteDao.estatisticas(), adotanteDao.estatisticasCache())).append(',');
+        sb.append("\"voluntarios\":").append(statsToJson(voluntarioDao.estatisticas(), voluntarioDao.estatisticasCache())).append(',');
+        sb.append("\"adocoes\":").append(statsToJson(adocaoDao.estatisticas(), adocaoDao.estatisticasCache())).append(',');
+        sb.append("\"interesses\":").append(statsToJson(interesseDao.estatisticas(), interesseDao.estatisticasCache())).append(',');
+        sb.append("\"chats\":").append(statsToJson(chatThreadDao.estatisticas(), chatThreadDao.estatisticasCache())).append(',');
+        sb.append("\"mensagens\":").append(statsToJson(chatMsgDao.estatisticas(), chatMsgDao.estatisticasCache())).append(',');
+        sb.append("\"servidor\":{\"executor\":\"").append(config.getExecutor())
+          .append("\",\"emAndamento\":").append(executor.emAndamento())
+          .append(",\"atendidas\":").append(executor.atendidas())
+          .append(",\"recusadas\":").append(executor.recusadas())
+          .append(",\"descartadas\":").append(executor.descartadas())
+          .append(",\"assinantesChat\":").append(difusor.assinantes())
+          .append(",\"logDescartadas\":").append(logAcesso != null ? logAcesso.descartadas() : 0).append('}');
+        sb.append('}');
+        sendJsonResponse(exchange, sb.toString(), 200);
+    }
+
+    /**
+     * GET /api/metrics: formato texto do Prometheus. Por rota e método, os quantis de duração,
+     * em andamento, status e bytes ({@link MetricasServidor}); o executor; e, por arquivo .dat,
+     * os tempos de leitura/varredura/escrita, seeks, reads, bytes, cache e altura do índice.
+     */
+    private void exporMetricas(HttpExchange exchange, Roteador.Parametros p) throws IOException {
+        StringBuilder sb = new StringBuilder(64 * 1024);
+        metricas.escrever(sb);
+
+        MetricasServidor.familia(sb, "mpet_executor_em_andamento", "gauge", "Requisições executando ou esperando thread.");
+        MetricasServidor.amostra(sb, "mpet_executor_em_andamento", executor.emAndamento());
+        MetricasServidor.familia(sb, "mpet_executor_atendidas_total", "counter", "Requisições entregues ao executor.");
+        MetricasServidor.amostra(sb, "mpet_executor_atendidas_total", executor.atendidas());
+        MetricasServidor.familia(sb, "mpet_executor_recusadas_total", "counter", "Requisições recusadas com 503 por excesso.");
+        MetricasServidor.amostra(sb, "mpet_executor_recusadas_total", executor.recusadas());
+        MetricasServidor.familia(sb, "mpet_executor_descartadas_total", "counter", "Conexões fechadas sem resposta com a fila de recusa cheia.");
+        MetricasServidor.amostra(sb, "mpet_executor_descartadas_total", executor.descartadas());
+        MetricasServidor.familia(sb, "mpet_chat_assinantes", "gauge", "Conexões SSE e long-polls esperando.");
+        MetricasServidor.amostra(sb, "mpet_chat_assinantes", difusor.assinantes());
+        MetricasServidor.familia(sb, "mpet_log_descartadas_total", "counter", "Linhas do log de acesso perdidas com o buffer cheio.");
+        MetricasServidor.amostra(sb, "mpet_log_descartadas_total", logAcesso != null ? logAcesso.descartadas() : 0);
+
+        escreverMetricasArquivos(sb, List.of(animalDao, ongDao, adotanteDao, voluntarioDao, adocaoDao,
+                interesseDao, chatThreadDao, chatMsgDao));
+
+        exchange.getResponseHeaders().set("Content-Type", "text/plain; version=0.0.4; charset=utf-8");
+        byte[] corpo = sb.toString().getBytes(StandardCharsets.UTF_8);
+        enviar(exchange, 200, corpo, corpo.length);
+    }
+
+    /** Métricas por arquivo .dat, agrupadas por nome como o formato pede. */
+    private static void escreverMetricasArquivos(StringBuilder sb, List<CrudDao<?, ?>> daos) throws IOException {
+        List<MetricasArquivo> metricasDaos = new ArrayList<>();
+        List<EstatisticasArquivo> estatisticasDaos = new ArrayList<>();
+        List<CacheTinyLfu.Estatisticas> caches = new ArrayList<>();
+        for (CrudDao<?, ?> dao : daos) {
+            metricasDaos.add(dao.metricas());
+            estatisticasDaos.add(dao.estatisticas());
+            caches.add(dao.estatisticasCache());
+        }
+
+        String nome = "mpet_dao_operacao_segundos";
+        MetricasServidor.familia(sb, nome, "summary", "Duração das operações no arquivo de dados (leitura fora do cache, varredura, leitura em lote, escrita).");
+        for (MetricasArquivo m : metricasDaos) {
+            for (MetricasArquivo.Operacao op : MetricasArquivo.Operacao.values()) {
+                MetricasServidor.resumo(sb, nome, m.duracao(op), "arquivo", m.arquivo(), "operacao", op.nome);
+            }
+        }
+        porArquivo(sb, metricasDaos, "mpet_dao_seeks_total", "counter", "Reposicionamentos (seek) no arquivo.", MetricasArquivo::seeks);
+        porArquivo(sb, metricasDaos, "mpet_dao_leituras_total", "counter", "Chamadas de read no arquivo.", MetricasArquivo::leituras);
+        porArquivo(sb, metricasDaos, "mpet_dao_lidos_bytes_total", "counter", "Bytes lidos do arquivo.", MetricasArquivo::bytesLidos);
+        porArquivo(sb, metricasDaos, "mpet_dao_escritas_total", "counter", "Chamadas de write no arquivo.", MetricasArquivo::escritas);
+        porArquivo(sb, metricasDaos, "mpet_dao_escritos_bytes_total", "counter", "Bytes escritos no arquivo.", MetricasArquivo::bytesEscritos);
+
+        MetricasServidor.familia(sb, "mpet_dao_registros_ativos", "gauge", "Registros ativos no arquivo.");
+        for (EstatisticasArquivo e : estatisticasDaos) {
+            MetricasServidor.amostra(sb, "mpet_dao_registros_ativos", e.ativos(), "arquivo", e.arquivo());
+        }
+        MetricasServidor.familia(sb, "mpet_dao_indice_altura", "gauge", "Níveis do índice B+ em disco.");
+        for (EstatisticasArquivo e : estatisticasDaos) {
+            if (e.alturaIndice() >= 0) MetricasServidor.amostra(sb, "mpet_dao_indice_altura", e.alturaIndice(), "arquivo", e.arquivo());
+        }
+        MetricasServidor.familia(sb, "mpet_dao_cache_acertos_total", "counter", "Leituras pontuais servidas pelo cache de registros.");
+        for (int i = 0; i < caches.size(); i++) {
+            if (caches.get(i) != null) MetricasServidor.amostra(sb, "mpet_dao_cache_acertos_total", caches.get(i).acertos(), "arquivo", estatisticasDaos.get(i).arquivo());
+        }
+        MetricasServidor.familia(sb, "mpet_dao_cache_falhas_total", "counter", "Leituras pontuais que foram ao arquivo.");
+        for (int i = 0; i < caches.size(); i++) {
+            if (caches.get(i) != null) MetricasServidor.amostra(sb, "mpet_dao_cache_falhas_total", caches.get(i).falhas(), "arquivo", estatisticasDaos.get(i).arquivo());
+        }
+        MetricasServidor.familia(sb, "mpet_dao_cache_bytes", "gauge", "Bytes de registros no cache.");
+        for (int i = 0; i < caches.size(); i++) {
+            if (caches.get(i) != null) MetricasServidor.amostra(sb, "mpet_dao_cache_bytes", caches.get(i).peso(), "arquivo", estatisticasDaos.get(i).arquivo());
+        }
+    }
+
+    private static void porArquivo(StringBuilder sb, List<MetricasArquivo> metricasDaos, String nome, String tipo,
+                                   String ajuda, ToLongFunction<MetricasArquivo> valor) {
+        MetricasServidor.familia(sb, nome, tipo, ajuda);
+        for (MetricasArquivo m : metricasDaos) {
+            MetricasServidor.amostra(sb, nome, valor.applyAsLong(m), "arquivo", m.arquivo());
+        }
+    }
+
+    /** POST /api/auth/login */
+    private void login(HttpExchange exchange, Roteador.Parametros p) throws IOException {
+        String body = readRequestBody(exchange);
+        Map<String, String> params = parseJson(body);
+        String cpf = params.get("cpf");
+        String senha = params.get("senha");
+
+        if (cpf == null || senha == null) {
+            sendJsonResponse(exchange, "{\"error\":\"CPF e senha são obrigatórios\"}", 400);
+            return;
+        }
+
+        // Tenta login como admin
+        if ("admin".equals(cpf) && "admin".equals(senha)) {
+            SaidaJson saida = inicioLogin("admin")
+                    .campo("cpf", "admin")
+                    .campo("nome", "Administrador")
+                    .campo("role", "ADMIN")
+                    .campo("email", "admin@mpet.com");
+            sendJsonResponse(exchange, saida.fecharObjeto().fecharObjeto(), 200);
+            return;
+        }
+
+        // Tenta login como adotante
+        // verifyPassword descriptografa só a senha deste CPF
+        if (adotanteDao.verifyPassword(cpf, senha)) {
+            Optional<Adotante> adotanteOpt = adotanteDao.read(cpf);
+            if (adotanteOpt.isPresent()) {
+                Adotante a = adotanteOpt.get();
+                SaidaJson saida = inicioLogin(cpf)
+                        .campo("cpf", String.valueOf(a.getCpf()))
+                        .campo("nome", a.getNomeCompleto() != null ? a.getNomeCompleto() : "Usuário")
+                        .campo("role", "ADOTANTE")
+                        .campo("telefone", a.getTelefone() != null ? a.getTelefone() : "");
+                sendJsonResponse(exchange, saida.fecharObjeto().fecharObjeto(), 200);
                 return;
             }
+        }
 
-            if (!exchange.getRequestMethod().equals("POST")) {
-                sendJsonResponse(exchange, "{\"error\":\"Method not allowed\"}", 405);
+        // Tenta login como voluntário
+        // verifyPassword descriptografa só a senha deste CPF
+        if (voluntarioDao.verifyPassword(cpf, senha)) {
+            Optional<Voluntario> voluntarioOpt = voluntarioDao.read(cpf);
+            if (voluntarioOpt.isPresent()) {
+                Voluntario v = voluntarioOpt.get();
+                SaidaJson saida = inicioLogin(cpf)
+                        .campo("cpf", String.valueOf(v.getCpf()))
+                        .campo("nome", v.getNome() != null ? v.getNome() : "Voluntário")
+                        .campo("role", "VOLUNTARIO")
+                        .campo("idOng", v.getIdOng())
+                        .campo("cargo", v.getCargo() != null ? v.getCargo().name() : "ATENDIMENTO")
+                        .campo("telefone", v.getTelefone() != null ? v.getTelefone() : "");
+                sendJsonResponse(exchange, saida.fecharObjeto().fecharObjeto(), 200);
                 return;
             }
+        }
 
-            try {
-                String body = readRequestBody(exchange);
-                Map<String, String> params = parseJson(body);
-                String cpf = params.get("cpf");
-                String senha = params.get("senha");
+        sendJsonResponse(exchange, "{\"error\":\"CPF ou senha incorretos\"}", 401);
+    }
 
-                if (cpf == null || senha == null) {
-                    sendJsonResponse(exchange, "{\"error\":\"CPF e senha são obrigatórios\"}", 400);
-                    return;
-                }
+    /**
+     * {"success":true,"token":...,"user":{ — o chamador completa os campos do usuário e fecha os
+     * dois objetos. Os valores são escapados (o nome pode ter aspas ou acentos).
+     */
+    private static SaidaJson inicioLogin(String cpf) {
+        return SAIDA.get().limpar()
+                .abrirObjeto()
+                .campo("success", true)
+                .campo("token", "mock_token_" + cpf)
+                .chave("user").abrirObjeto();
+    }
 
-                // Tenta login como admin
-                if ("admin".equals(cpf) && "admin".equals(senha)) {
-                    String response = "{" +
-                        "\"success\":true," +
-                        "\"token\":\"mock_token_admin\"," +
-                        "\"user\":{" +
-                        "\"cpf\":\"admin\"," +
-                        "\"nome\":\"Administrador\"," +
-                        "\"role\":\"ADMIN\"," +
-                        "\"email\":\"admin@mpet.com\"" +
-                        "}" +
-                        "}";
-                    sendJsonResponse(exchange, response, 200);
-                    return;
-                }
+    /** Rotas de /api/animais. */
+    private class AnimaisRotas {
 
-                // Tenta login como adotante
-                Optional<Adotante> adotanteOpt = adotanteDao.read(cpf);
-                if (adotanteOpt.isPresent()) {
-                    Adotante a = adotanteOpt.get();
-                    if (a.getSenha().equals(senha)) {
-                        String response = "{" +
-                            "\"success\":true," +
-                            "\"token\":\"mock_token_" + cpf + "\"," +
-                            "\"user\":{" +
-                            "\"cpf\":\"" + a.getCpf() + "\"," +
-                            "\"nome\":\"" + (a.getNomeCompleto() != null ? a.getNomeCompleto() : "Usuário") + "\"," +
-                            "\"role\":\"ADOTANTE\"," +
-                            "\"telefone\":\"" + (a.getTelefone() != null ? a.getTelefone() : "") + "\"" +
-                            "}" +
-                            "}";
-                        sendJsonResponse(exchange, response, 200);
-                        return;
-                    }
+        /** GET /api/animais[?fields=...|?ids=...|?limit=N&cursor=C] */
+        void listar(HttpExchange exchange, Roteador.Parametros p) throws IOException {
+            if (naoModificado(exchange, animalDao.versao())) return;
+            // Lista todos os animais, decodificando só os campos pedidos
+            String query = exchange.getRequestURI().getQuery();
+            String fields = query != null ? extractQueryParam(query, "fields") : null;
+            String limit = query != null ? extractQueryParam(query, "limit") : null;
+            String ids = query != null ? extractQueryParam(query, "ids") : null;
+            Projecao projecao = fields != null ? Projecao.parse(fields) : PROJECAO_ANIMAL_DTO;
+            Stream<Animal> animais;
+            try {
+                if (ids != null) {
+                    // Leitura em lote: ?ids=1,2,3 (na ordem pedida; inexistentes são omitidos)
+                    List<Integer> lista = parseIds(ids);
+                    Map<Integer, Animal> porId = animalDao.readAll(lista);
+                    animais = new LinkedHashSet<>(lista).stream().map(porId::get).filter(a -> a != null);
+                } else if (limit != null) {
+                    // Paginação por cursor: ?limit=N[&cursor=C], próximo cursor no header; o DAO
+                    // recusa (400) cursores que não sejam o início de um registro
+                    String cursor = extractQueryParam(query, "cursor");
+                    Page<Animal> pagina = animalDao.list(
+                            cursor != null ? Long.parseLong(cursor) : Page.INICIO, Integer.parseInt(limit), null, projecao);
+                    exchange.getResponseHeaders().set("X-Next-Cursor", String.valueOf(pagina.nextCursor()));
+                    animais = pagina.items().stream();
+                } else {
+                    // varredura paginada do arquivo: memória constante, qualquer tamanho de tabela
+                    animais = animalDao.streamActive(null, projecao);
                 }
+            } catch (IllegalArgumentException e) {
+                sendJsonResponse(exchange, "{\"error\":\"" + e.getMessage() + "\"}", 400);
+                return;
+            }
+            sendJsonStream(exchange, animais, AnimalDto::fromEntity);
+        }
 
-                // Tenta login como voluntário
-                Optional<Voluntario> voluntarioOpt = voluntarioDao.read(cpf);
-                if (voluntarioOpt.isPresent()) {
-                    Voluntario v = voluntarioOpt.get();
-                    if (v.getSenha().equals(senha)) {
-                        String response = "{" +
-                            "\"success\":true," +
-                            "\"token\":\"mock_token_" + cpf + "\"," +
-                            "\"user\":{" +
-                            "\"cpf\":\"" + v.getCpf() + "\"," +
-                            "\"nome\":\"" + (v.getNome() != null ? v.getNome() : "Voluntário") + "\"," +
-                            "\"role\":\"VOLUNTARIO\"," +
-                            "\"idOng\":" + v.getIdOng() + "," +
-                            "\"cargo\":\"" + (v.getCargo() != null ? v.getCargo().name() : "ATENDIMENTO") + "\"," +
-                            "\"telefone\":\"" + (v.getTelefone() != null ? v.getTelefone() : "") + "\"" +
-                            "}" +
-                            "}";
-                        sendJsonResponse(exchange, response, 200);
-                        return;
-                    }
-                }
+        /** GET /api/animais/:id */
+        void buscar(HttpExchange exchange, Roteador.Parametros p) throws IOException {
+            if (naoModificado(exchange, animalDao.versao())) return;
+            Optional<Animal> animalOpt = animalDao.read(p.inteiro("id"));
+            if (animalOpt.isPresent()) {
+                sendJsonResponse(exchange, AnimalDto.fromEntity(animalOpt.get()), 200);
+            } else {
+                sendJsonResponse(exchange, "{\"error\":\"Animal não encontrado\"}", 404);
+            }
+        }
 
-                sendJsonResponse(exchange, "{\"error\":\"CPF ou senha incorretos\"}", 401);
+        /** PUT /api/animais/:id */
+        void atualizar(HttpExchange exchange, Roteador.Parametros p) throws IOException {
+            int id = p.inteiro("id");
+            String body = readRequestBody(exchange);
+            JsonObject json = JsonParser.parseString(body).getAsJsonObject();
 
-            } catch (Exception e) {
-                sendJsonResponse(exchange, "{\"error\":\"" + e.getMessage() + "\"}", 500);
+            Optional<Animal> animalOpt = animalDao.read(id);
+            if (animalOpt.isEmpty()) {
+                sendJsonResponse(exchange, "{\"error\":\"Animal não encontrado\"}", 404);
+                return;
             }
+
+            Animal animal = animalOpt.get();
+            if (json.has("nome")) animal.setNome(json.get("nome").getAsString());
+            if (json.has("descricao")) animal.setDescricao(json.get("descricao").getAsString());
+            if (json.has("imageUrl")) animal.setImageUrl(json.get("imageUrl").getAsString());
+            if (json.has("idOng")) animal.setIdOng(json.get("idOng").getAsInt());
+
+            animalDao.update(animal);
+            String response = "{\"success\":true,\"message\":\"Animal atualizado com sucesso\",\"id\":" + id + "}";
+            sendJsonResponse(exchange, response, 200);
         }
-    }
 
-    private class AnimaisHandler implements HttpHandler {
-        @Override
-        public void handle(HttpExchange exchange) throws IOException {
-            setCorsHeaders(exchange);
-            if (exchange.getRequestMethod().equals("OPTIONS")) {
-                exchange.sendResponseHeaders(200, -1);
+        /** DELETE /api/animais/:id */
+        void remover(HttpExchange exchange, Roteador.Parametros p) throws IOException {
+            boolean deleted = animalDao.delete(p.inteiro("id"));
+            if (deleted) {
+                String response = "{\"success\":true,\"message\":\"Animal removido com sucesso\"}";
+                sendJsonResponse(exchange, response, 200);
+            } else {
+                sendJsonResponse(exchange, "{\"error\":\"Animal não encontrado\"}", 404);
+            }
+        }
+
+        /** POST /api/animais - Criar novo animal (CACHORRO/GATO) */
+        void criar(HttpExchange exchange, Roteador.Parametros p) throws IOException {
+            String body = readRequestBody(exchange);
+            JsonObject json = JsonParser.parseString(body).getAsJsonObject();
+
+            if (!json.has("tipo") || !json.has("idOng") || !json.has("nome") || !json.has("porte")) {
+                sendJsonResponse(exchange, "{\"error\":\"Campos obrigatórios: tipo, idOng, nome, porte\"}", 400);
                 return;
             }
 
-            String path = exchange.getRequestURI().getPath();
-            String method = exchange.getRequestMethod();
+            String tipo = json.get("tipo").getAsString();
+            int idOng = json.get("idOng").getAsInt();
+            String nome = json.get("nome").getAsString();
+            String porteStr = json.get("porte").getAsString();
 
-            try {
-                if (method.equals("GET")) {
-                    if (path.equals("/api/animais")) {
-                        // Lista todos os animais
-                        List<Animal> animais = animalDao.listAllActive();
-                        String json = animalsToJson(animais);
-                        sendJsonResponse(exchange, json, 200);
-                    } else {
-                        // GET /api/animais/:id
-                        String[] parts = path.split("/");
-                        if (parts.length > 3) {
-                            int id = Integer.parseInt(parts[3]);
-                            Optional<Animal> animalOpt = animalDao.read(id);
-                            if (animalOpt.isPresent()) {
-                                String json = animalToJson(animalOpt.get());
-                                sendJsonResponse(exchange, json, 200);
-                            } else {
-                                sendJsonResponse(exchange, "{\"error\":\"Animal não encontrado\"}", 404);
-                            }
-                        }
-                    }
-                } else if (method.equals("PUT")) {
-                    // PUT /api/animais/:id
-                    String[] parts = path.split("/");
-                    if (parts.length > 3) {
-                        int id = Integer.parseInt(parts[3]);
-                        String body = readRequestBody(exchange);
-                        JsonObject json = JsonParser.parseString(body).getAsJsonObject();
-                        
-                        Optional<Animal> animalOpt = animalDao.read(id);
-                        if (animalOpt.isEmpty()) {
-                            sendJsonResponse(exchange, "{\"error\":\"Animal não encontrado\"}", 404);
-                            return;
-                        }
-                        
-                        Animal animal = animalOpt.get();
-                        if (json.has("nome")) animal.setNome(json.get("nome").getAsString());
-                        if (json.has("descricao")) animal.setDescricao(json.get("descricao").getAsString());
-                        if (json.has("imageUrl")) animal.setImageUrl(json.get("imageUrl").getAsString());
-                        if (json.has("idOng")) animal.setIdOng(json.get("idOng").getAsInt());
-                        
-                        animalDao.update(animal);
-                        String response = "{\"success\":true,\"message\":\"Animal atualizado com sucesso\",\"id\":" + id + "}";
-                        sendJsonResponse(exchange, response, 200);
-                    }
-                } else if (method.equals("DELETE")) {
-                    // DELETE /api/animais/:id
-                    String[] parts = path.split("/");
-                    if (parts.length > 3) {
-                        int id = Integer.parseInt(parts[3]);
-                        boolean deleted = animalDao.delete(id);
-                        if (deleted) {
-                            String response = "{\"success\":true,\"message\":\"Animal removido com sucesso\"}";
-                            sendJsonResponse(exchange, response, 200);
-                        } else {
-                            sendJsonResponse(exchange, "{\"error\":\"Animal não encontrado\"}", 404);
-                        }
-                    }
-                } else if (method.equals("POST")) {
-                    // POST /api/animais - Criar novo animal (CACHORRO/GATO)
-                    String body = readRequestBody(exchange);
-                    JsonObject json = JsonParser.parseString(body).getAsJsonObject();
-
-                    if (!json.has("tipo") || !json.has("idOng") || !json.has("nome") || !json.has("porte")) {
-                        sendJsonResponse(exchange, "{\"error\":\"Campos obrigatórios: tipo, idOng, nome, porte\"}", 400);
-                        return;
-                    }
-
-                    String tipo = json.get("tipo").getAsString();
-                    int idOng = json.get("idOng").getAsInt();
-                    String nome = json.get("nome").getAsString();
-                    String porteStr = json.get("porte").getAsString();
-
-                    Animal novo;
-                    if ("CACHORRO".equalsIgnoreCase(tipo)) {
-                        Cachorro c = new Cachorro();
-                        if (json.has("raca")) c.setRaca(json.get("raca").getAsString()); else c.setRaca("SRD");
-                        if (json.has("nivelAdestramento")) {
-                            try {
-                                c.setNivelAdestramento(br.com.mpet.model.NivelAdestramento.valueOf(json.get("nivelAdestramento").getAsString()));
-                            } catch (Exception ignore) { c.setNivelAdestramento(br.com.mpet.model.NivelAdestramento.NENHUM); }
-                        } else {
-                            c.setNivelAdestramento(br.com.mpet.model.NivelAdestramento.NENHUM);
-                        }
-                        if (json.has("seDaBemComCachorros")) c.setSeDaBemComCachorros(json.get("seDaBemComCachorros").getAsBoolean());
-                        if (json.has("seDaBemComGatos")) c.setSeDaBemComGatos(json.get("seDaBemComGatos").getAsBoolean());
-                        if (json.has("seDaBemComCriancas")) c.setSeDaBemComCriancas(json.get("seDaBemComCriancas").getAsBoolean());
-                        novo = c;
-                    } else if ("GATO".equalsIgnoreCase(tipo)) {
-                        Gato g = new Gato();
-                        if (json.has("raca")) g.setRaca(json.get("raca").getAsString()); else g.setRaca("SRD");
-                        if (json.has("seDaBemComCachorros")) g.setSeDaBemComCachorros(json.get("seDaBemComCachorros").getAsBoolean());
-                        if (json.has("seDaBemComGatos")) g.setSeDaBemComGatos(json.get("seDaBemComGatos").getAsBoolean());
-                        if (json.has("seDaBemComCriancas")) g.setSeDaBemComCriancas(json.get("seDaBemComCriancas").getAsBoolean());
-                        if (json.has("acessoExterior")) g.setAcessoExterior(json.get("acessoExterior").getAsBoolean());
-                        if (json.has("possuiTelamento")) g.setPossuiTelamento(json.get("possuiTelamento").getAsBoolean());
-                        novo = g;
-                    } else {
-                        sendJsonResponse(exchange, "{\"error\":\"Tipo inválido. Use CACHORRO ou GATO\"}", 400);
-                        return;
-                    }
-
-                    // Campos comuns
-                    novo.setIdOng(idOng);
-                    novo.setNome(nome);
+            Animal novo;
+            if ("CACHORRO".equalsIgnoreCase(tipo)) {
+                Cachorro c = new Cachorro();
+                if (json.has("raca")) c.setRaca(json.get("raca").getAsString()); else c.setRaca("SRD");
+                if (json.has("nivelAdestramento")) {
                     try {
-                        novo.setPorte(br.com.mpet.model.Porte.valueOf(porteStr));
-                    } catch (Exception e) {
-                        sendJsonResponse(exchange, "{\"error\":\"Porte inválido. Use PEQUENO, MEDIO, GRANDE\"}", 400);
-                        return;
-                    }
-                    if (json.has("sexo")) {
-                        String s = json.get("sexo").getAsString();
-                        novo.setSexo(s != null && !s.isEmpty() ? s.charAt(0) : 'U');
-                    } else {
-                        novo.setSexo('U');
-                    }
-                    if (json.has("vacinado")) novo.setVacinado(json.get("vacinado").getAsBoolean()); else novo.setVacinado(false);
-                    if (json.has("descricao")) novo.setDescricao(json.get("descricao").getAsString());
-                    if (json.has("imageUrl")) novo.setImageUrl(json.get("imageUrl").getAsString());
-                    if (json.has("dataNascimentoAprox")) {
-                        try {
-                            novo.setDataNascimentoAprox(java.time.LocalDate.parse(json.get("dataNascimentoAprox").getAsString()));
-                        } catch (Exception ignore) { /* ignora formato inválido */ }
-                    }
-                    novo.setAtivo(true);
-
-                    // Persiste
-                    Animal criado = animalDao.create(novo);
-                    String response = animalToJson(criado);
-                    sendJsonResponse(exchange, response, 201);
+                        c.setNivelAdestramento(br.com.mpet.model.NivelAdestramento.valueOf(json.get("nivelAdestramento").getAsString()));
+                    } catch (Exception ignore) { c.setNivelAdestramento(br.com.mpet.model.NivelAdestramento.NENHUM); }
+                } else {
+                    c.setNivelAdestramento(br.com.mpet.model.NivelAdestramento.NENHUM);
                 }
+                if (json.has("seDaBemComCachorros")) c.setSeDaBemComCachorros(json.get("seDaBemComCachorros").getAsBoolean());
+                if (json.has("seDaBemComGatos")) c.setSeDaBemComGatos(json.get("seDaBemComGatos").getAsBoolean());
+                if (json.has("seDaBemComCriancas")) c.setSeDaBemComCriancas(json.get("seDaBemComCriancas").getAsBoolean());
+                novo = c;
+            } else if ("GATO".equalsIgnoreCase(tipo)) {
+                Gato g = new Gato();
+                if (json.has("raca")) g.setRaca(json.get("raca").getAsString()); else g.setRaca("SRD");
+                if (json.has("seDaBemComCachorros")) g.setSeDaBemComCachorros(json.get("seDaBemComCachorros").getAsBoolean());
+                if (json.has("seDaBemComGatos")) g.setSeDaBemComGatos(json.get("seDaBemComGatos").getAsBoolean());
+                if (json.has("seDaBemComCriancas")) g.setSeDaBemComCriancas(json.get("seDaBemComCriancas").getAsBoolean());
+                if (json.has("acessoExterior")) g.setAcessoExterior(json.get("acessoExterior").getAsBoolean());
+                if (json.has("possuiTelamento")) g.setPossuiTelamento(json.get("possuiTelamento").getAsBoolean());
+                novo = g;
+            } else {
+                sendJsonResponse(exchange, "{\"error\":\"Tipo inválido. Use CACHORRO ou GATO\"}", 400);
+                return;
+            }
+
+            // Campos comuns
+            novo.setIdOng(idOng);
+            novo.setNome(nome);
+            try {
+                novo.setPorte(br.com.mpet.model.Porte.valueOf(porteStr));
             } catch (Exception e) {
-                sendJsonResponse(exchange, "{\"error\":\"" + e.getMessage() + "\"}", 500);
+                sendJsonResponse(exchange, "{\"error\":\"Porte inválido. Use PEQUENO, MEDIO, GRANDE\"}", 400);
+                return;
             }
+            if (json.has("sexo")) {
+                String s = json.get("sexo").getAsString();
+                novo.setSexo(s != null && !s.isEmpty() ? s.charAt(0) : 'U');
+            } else {
+                novo.setSexo('U');
+            }
+            if (json.has("vacinado")) novo.setVacinado(json.get("vacinado").getAsBoolean()); else novo.setVacinado(false);
+            if (json.has("descricao")) novo.setDescricao(json.get("descricao").getAsString());
+            if (json.has("imageUrl")) novo.setImageUrl(json.get("imageUrl").getAsString());
+            if (json.has("dataNascimentoAprox")) {
+                try {
+                    novo.setDataNascimentoAprox(java.time.LocalDate.parse(json.get("dataNascimentoAprox").getAsString()));
+                } catch (Exception ignore) { /* ignora formato inválido */ }
+            }
+            novo.setAtivo(true);
+
+            // Persiste
+            Animal criado = animalDao.create(novo);
+            sendJsonResponse(exchange, AnimalDto.fromEntity(criado), 201);
         }
     }
 
-    private class OngsHandler implements HttpHandler {
-        @Override
-        public void handle(HttpExchange exchange) throws IOException {
-            setCorsHeaders(exchange);
-            if (exchange.getRequestMethod().equals("OPTIONS")) {
-                exchange.sendResponseHeaders(200, -1);
+    /** Rotas de /api/ongs. */
+    private class OngsRotas {
+
+        /** GET /api/ongs */
+        void listar(HttpExchange exchange, Roteador.Parametros p) throws IOException {
+            if (naoModificado(exchange, ongDao.versao())) return;
+            sendJsonStream(exchange, ongDao.streamActive(), OngDto::fromEntity);
+        }
+
+        /** POST /api/ongs - Criar nova ONG */
+        void criar(HttpExchange exchange, Roteador.Parametros p) throws IOException {
+            String body = readRequestBody(exchange);
+            JsonObject json = JsonParser.parseString(body).getAsJsonObject();
+
+            String nome = json.get("nome").getAsString();
+            String cnpj = json.get("cnpj").getAsString();
+            String endereco = json.get("endereco").getAsString();
+            String telefone = json.get("telefone").getAsString();
+
+            Ong ong = new Ong();
+            ong.setNome(nome);
+            ong.setCnpj(cnpj);
+            ong.setEndereco(endereco);
+            ong.setTelefone(telefone);
+            ong.setAtivo(true);
+
+            ongDao.create(ong);
+            String response = "{\"success\":true,\"message\":\"ONG criada com sucesso\",\"nome\":\"" + nome + "\"}";
+            sendJsonResponse(exchange, response, 201);
+        }
+
+        /** PUT /api/ongs/:id */
+        void atualizar(HttpExchange exchange, Roteador.Parametros p) throws IOException {
+            int id = p.inteiro("id");
+            String body = readRequestBody(exchange);
+            JsonObject json = JsonParser.parseString(body).getAsJsonObject();
+
+            Optional<Ong> ongOpt = ongDao.read(id);
+            if (ongOpt.isEmpty()) {
+                sendJsonResponse(exchange, "{\"error\":\"ONG não encontrada\"}", 404);
                 return;
             }
 
-            try {
-                if (exchange.getRequestMethod().equals("GET")) {
-                    List<Ong> ongs = ongDao.listAllActive();
-                    String json = ongsToJson(ongs);
-                    sendJsonResponse(exchange, json, 200);
-                } else if (exchange.getRequestMethod().equals("POST")) {
-                    // Criar nova ONG
-                    String body = readRequestBody(exchange);
-                    JsonObject json = JsonParser.parseString(body).getAsJsonObject();
-                    
-                    String nome = json.get("nome").getAsString();
-                    String cnpj = json.get("cnpj").getAsString();
-                    String endereco = json.get("endereco").getAsString();
-                    String telefone = json.get("telefone").getAsString();
-                    
-                    Ong ong = new Ong();
-                    ong.setNome(nome);
-                    ong.setCnpj(cnpj);
-                    ong.setEndereco(endereco);
-                    ong.setTelefone(telefone);
-                    ong.setAtivo(true);
-                    
-                    ongDao.create(ong);
-                    String response = "{\"success\":true,\"message\":\"ONG criada com sucesso\",\"nome\":\"" + nome + "\"}";
-                    sendJsonResponse(exchange, response, 201);
-                } else if (exchange.getRequestMethod().equals("PUT")) {
-                    // PUT /api/ongs/:id
-                    String path = exchange.getRequestURI().getPath();
-                    String[] parts = path.split("/");
-                    if (parts.length > 3) {
-                        int id = Integer.parseInt(parts[3]);
-                        String body = readRequestBody(exchange);
-                        JsonObject json = JsonParser.parseString(body).getAsJsonObject();
-                        
-                        Optional<Ong> ongOpt = ongDao.read(id);
-                        if (ongOpt.isEmpty()) {
-                            sendJsonResponse(exchange, "{\"error\":\"ONG não encontrada\"}", 404);
-                            return;
-                        }
-                        
-                        Ong ong = ongOpt.get();
-                        if (json.has("nome")) ong.setNome(json.get("nome").getAsString());
-                        if (json.has("cnpj")) ong.setCnpj(json.get("cnpj").getAsString());
-                        if (json.has("endereco")) ong.setEndereco(json.get("endereco").getAsString());
-                        if (json.has("telefone")) ong.setTelefone(json.get("telefone").getAsString());
-                        
-                        ongDao.update(ong);
-                        String response = "{\"success\":true,\"message\":\"ONG atualizada com sucesso\"}";
-                        sendJsonResponse(exchange, response, 200);
-                    }
-                } else if (exchange.getRequestMethod().equals("DELETE")) {
-                    // DELETE /api/ongs/:id
-                    String path = exchange.getRequestURI().getPath();
-                    String[] parts = path.split("/");
-                    if (parts.length > 3) {
-                        int id = Integer.parseInt(parts[3]);
-                        boolean deleted = ongDao.delete(id);
-                        if (deleted) {
-                            String response = "{\"success\":true,\"message\":\"ONG removida com sucesso\"}";
-                            sendJsonResponse(exchange, response, 200);
-                        } else {
-                            sendJsonResponse(exchange, "{\"error\":\"ONG não encontrada\"}", 404);
-                        }
-                    }
-                }
-            } catch (Exception e) {
-                e.printStackTrace();
-                sendJsonResponse(exchange, "{\"error\":\"" + e.getMessage() + "\"}" , 500);
+            Ong ong = ongOpt.get();
+            if (json.has("nome")) ong.setNome(json.get("nome").getAsString());
+            if (json.has("cnpj")) ong.setCnpj(json.get("cnpj").getAsString());
+            if (json.has("endereco")) ong.setEndereco(json.get("endereco").getAsString());
+            if (json.has("telefone")) ong.setTelefone(json.get("telefone").getAsString());
+
+            ongDao.update(ong);
+            String response = "{\"success\":true,\"message\":\"ONG atualizada com sucesso\"}";
+            sendJsonResponse(exchange, response, 200);
+        }
+
+        /** DELETE /api/ongs/:id */
+        void remover(HttpExchange exchange, Roteador.Parametros p) throws IOException {
+            boolean deleted = ongDao.delete(p.inteiro("id"));
+            if (deleted) {
+                String response = "{\"success\":true,\"message\":\"ONG removida com sucesso\"}";
+                sendJsonResponse(exchange, response, 200);
+            } else {
+                sendJsonResponse(exchange, "{\"error\":\"ONG não encontrada\"}", 404);
             }
         }
     }
 
-    private class AdotantesHandler implements HttpHandler {
-        @Override
-        public void handle(HttpExchange exchange) throws IOException {
-            setCorsHeaders(exchange);
-            if (exchange.getRequestMethod().equals("OPTIONS")) {
-                exchange.sendResponseHeaders(200, -1);
+    /** Rotas de /api/adotantes. */
+    private class AdotantesRotas {
+
+        /** GET /api/adotantes/:cpf */
+        void buscar(HttpExchange exchange, Roteador.Parametros p) throws IOException {
+            Optional<Adotante> adotanteOpt = adotanteDao.read(p.texto("cpf"));
+            if (adotanteOpt.isPresent()) {
+                sendJsonResponse(exchange, AdotanteDto.fromEntity(adotanteOpt.get()), 200);
+            } else {
+                sendJsonResponse(exchange, "{\"error\":\"Adotante não encontrado\"}", 404);
+            }
+        }
+
+        /** GET /api/adotantes/:cpf/interesses */
+        void interesses(HttpExchange exchange, Roteador.Parametros p) throws IOException {
+            sendJsonStream(exchange, interesseDao.streamActive(
+                    interesseDao.layout().stringIgual("cpfAdotante", p.texto("cpf")), Projecao.TODOS),
+                    InteresseDto::fromEntity);
+        }
+
+        /** GET /api/adotantes/:cpf/adocoes */
+        void adocoes(HttpExchange exchange, Roteador.Parametros p) throws IOException {
+            sendJsonStream(exchange, adocaoDao.streamActive(
+                    adocaoDao.layout().stringIgual("cpfAdotante", p.texto("cpf")), Projecao.TODOS),
+                    AdocaoDto::fromEntity);
+        }
+
+        /** POST /api/adotantes - Criar novo adotante */
+        void criar(HttpExchange exchange, Roteador.Parametros p) throws IOException {
+            String body = readRequestBody(exchange);
+            JsonObject json = JsonParser.parseString(body).getAsJsonObject();
+
+            String cpf = json.get("cpf").getAsString();
+            String senha = json.get("senha").getAsString();
+            String nomeCompleto = json.get("nomeCompleto").getAsString();
+
+            Adotante adotante = new Adotante();
+            adotante.setCpf(cpf);
+            adotante.setSenha(senha);
+            adotante.setNomeCompleto(nomeCompleto);
+
+            if (json.has("telefone")) adotante.setTelefone(json.get("telefone").getAsString());
+            if (json.has("dataNascimento")) {
+                adotante.setDataNascimento(LocalDate.parse(json.get("dataNascimento").getAsString()));
+            }
+
+            adotanteDao.create(adotante);
+            String response = "{\"success\":true,\"message\":\"Adotante criado com sucesso\",\"cpf\":\"" + cpf + "\"}";
+            sendJsonResponse(exchange, response, 201);
+        }
+
+        /** PUT /api/adotantes/:cpf */
+        void atualizar(HttpExchange exchange, Roteador.Parametros p) throws IOException {
+            String body = readRequestBody(exchange);
+            JsonObject json = JsonParser.parseString(body).getAsJsonObject();
+
+            Optional<Adotante> adotanteOpt = adotanteDao.read(p.texto("cpf"));
+            if (adotanteOpt.isEmpty()) {
+                sendJsonResponse(exchange, "{\"error\":\"Adotante não encontrado\"}", 404);
                 return;
             }
 
-            String path = exchange.getRequestURI().getPath();
-            String method = exchange.getRequestMethod();
+            Adotante adotante = adotanteOpt.get();
+            if (json.has("nomeCompleto")) adotante.setNomeCompleto(json.get("nomeCompleto").getAsString());
+            if (json.has("telefone")) adotante.setTelefone(json.get("telefone").getAsString());
+            if (json.has("senha")) adotante.setSenha(json.get("senha").getAsString());
 
-            try {
-                if (method.equals("GET")) {
-                    String[] parts = path.split("/");
-                    if (parts.length > 3) {
-                        String cpf = parts[3];
-                        
-                        // GET /api/adotantes/:cpf/interesses
-                        if (parts.length > 4 && parts[4].equals("interesses")) {
-                            List<Interesse> allInteresses = interesseDao.listAllActive();
-                            List<Interesse> userInteresses = allInteresses.stream()
-                                .filter(i -> i.getCpfAdotante().equals(cpf))
-                                .toList();
-                            String json = interessesToJson(userInteresses);
-                            sendJsonResponse(exchange, json, 200);
-                            return;
-                        }
-                        
-                        // GET /api/adotantes/:cpf/adocoes
-                        if (parts.length > 4 && parts[4].equals("adocoes")) {
-                            List<br.com.mpet.model.Adocao> allAdocoes = adocaoDao.listAllActive();
-                            List<br.com.mpet.model.Adocao> userAdocoes = allAdocoes.stream()
-                                .filter(a -> a.getCpfAdotante().equals(cpf))
-                                .toList();
-                            String json = adocoesToJson(userAdocoes);
-                            sendJsonResponse(exchange, json, 200);
-                            return;
-                        }
-                        
-                        // GET /api/adotantes/:cpf
-                        Optional<Adotante> adotanteOpt = adotanteDao.read(cpf);
-                        if (adotanteOpt.isPresent()) {
-                            String json = adotanteToJson(adotanteOpt.get());
-                            sendJsonResponse(exchange, json, 200);
-                        } else {
-                            sendJsonResponse(exchange, "{\"error\":\"Adotante não encontrado\"}", 404);
-                        }
-                    }
-                } else if (method.equals("POST")) {
-                    // Criar novo adotante
-                    String body = readRequestBody(exchange);
-                    JsonObject json = JsonParser.parseString(body).getAsJsonObject();
-                    
-                    String cpf = json.get("cpf").getAsString();
-                    String senha = json.get("senha").getAsString();
-                    String nomeCompleto = json.get("nomeCompleto").getAsString();
-                    
-                    Adotante adotante = new Adotante();
-                    adotante.setCpf(cpf);
-                    adotante.setSenha(senha);
-                    adotante.setNomeCompleto(nomeCompleto);
-                    
-                    if (json.has("telefone")) adotante.setTelefone(json.get("telefone").getAsString());
-                    if (json.has("dataNascimento")) {
-                        adotante.setDataNascimento(LocalDate.parse(json.get("dataNascimento").getAsString()));
-                    }
-                    
-                    adotanteDao.create(adotante);
-                    String response = "{\"success\":true,\"message\":\"Adotante criado com sucesso\",\"cpf\":\"" + cpf + "\"}";
-                    sendJsonResponse(exchange, response, 201);
-                } else if (method.equals("PUT")) {
-                    // PUT /api/adotantes/:cpf
-                    String[] parts = path.split("/");
-                    if (parts.length > 3) {
-                        String cpf = parts[3];
-                        String body = readRequestBody(exchange);
-                        JsonObject json = JsonParser.parseString(body).getAsJsonObject();
-                        
-                        Optional<Adotante> adotanteOpt = adotanteDao.read(cpf);
-                        if (adotanteOpt.isEmpty()) {
-                            sendJsonResponse(exchange, "{\"error\":\"Adotante não encontrado\"}", 404);
-                            return;
-                        }
-                        
-                        Adotante adotante = adotanteOpt.get();
-                        if (json.has("nomeCompleto")) adotante.setNomeCompleto(json.get("nomeCompleto").getAsString());
-                        if (json.has("telefone")) adotante.setTelefone(json.get("telefone").getAsString());
-                        if (json.has("senha")) adotante.setSenha(json.get("senha").getAsString());
-                        
-                        adotanteDao.update(adotante);
-                        String response = "{\"success\":true,\"message\":\"Adotante atualizado com sucesso\"}";
-                        sendJsonResponse(exchange, response, 200);
-                    }
-                } else if (method.equals("DELETE")) {
-                    // DELETE /api/adotantes/:cpf
-                    String[] parts = path.split("/");
-                    if (parts.length > 3) {
-                        String cpf = parts[3];
-                        boolean deleted = adotanteDao.delete(cpf);
-                        if (deleted) {
-                            String response = "{\"success\":true,\"message\":\"Adotante removido com sucesso\"}";
-                            sendJsonResponse(exchange, response, 200);
-                        } else {
-                            sendJsonResponse(exchange, "{\"error\":\"Adotante não encontrado\"}", 404);
-                        }
-                    }
-                }
-            } catch (Exception e) {
-                e.printStackTrace();
-                sendJsonResponse(exchange, "{\"error\":\"" + e.getMessage() + "\"}" , 500);
+            adotanteDao.update(adotante);
+            String response = "{\"success\":true,\"message\":\"Adotante atualizado com sucesso\"}";
+            sendJsonResponse(exchange, response, 200);
+        }
+
+        /** DELETE /api/adotantes/:cpf */
+        void remover(HttpExchange exchange, Roteador.Parametros p) throws IOException {
+            boolean deleted = adotanteDao.delete(p.texto("cpf"));
+            if (deleted) {
+                String response = "{\"success\":true,\"message\":\"Adotante removido com sucesso\"}";
+                sendJsonResponse(exchange, response, 200);
+            } else {
+                sendJsonResponse(exchange, "{\"error\":\"Adotante não encontrado\"}", 404);
             }
         }
     }
 
-    private class VoluntariosHandler implements HttpHandler {
-        @Override
-        public void handle(HttpExchange exchange) throws IOException {
-            setCorsHeaders(exchange);
-            if (exchange.getRequestMethod().equals("OPTIONS")) {
-                exchange.sendResponseHeaders(200, -1);
+    /** Rotas de /api/voluntarios. */
+    private class VoluntariosRotas {
+
+        /** GET /api/voluntarios/:cpf */
+        void buscar(HttpExchange exchange, Roteador.Parametros p) throws IOException {
+            Optional<Voluntario> voluntarioOpt = voluntarioDao.read(p.texto("cpf"));
+            if (voluntarioOpt.isPresent()) {
+                sendJsonResponse(exchange, VoluntarioDto.fromEntity(voluntarioOpt.get()), 200);
+            } else {
+                sendJsonResponse(exchange, "{\"error\":\"Voluntário não encontrado\"}", 404);
+            }
+        }
+
+        /** POST /api/voluntarios - Criar novo voluntário */
+        void criar(HttpExchange exchange, Roteador.Parametros p) throws IOException {
+            String body = readRequestBody(exchange);
+            JsonObject json = JsonParser.parseString(body).getAsJsonObject();
+
+            String cpf = json.get("cpf").getAsString();
+            String senha = json.get("senha").getAsString();
+            String nome = json.get("nome").getAsString();
+            int idOng = json.get("idOng").getAsInt();
+
+            Voluntario voluntario = new Voluntario();
+            voluntario.setCpf(cpf);
+            voluntario.setSenha(senha);
+            voluntario.setNome(nome);
+            voluntario.setIdOng(idOng);
+
+            if (json.has("telefone")) voluntario.setTelefone(json.get("telefone").getAsString());
+            if (json.has("endereco")) voluntario.setEndereco(json.get("endereco").getAsString());
+            if (json.has("cargo")) {
+                voluntario.setCargo(Role.valueOf(json.get("cargo").getAsString()));
+            }
+
+            voluntarioDao.create(voluntario);
+            String response = "{\"success\":true,\"message\":\"Voluntário criado com sucesso\",\"cpf\":\"" + cpf + "\"}";
+            sendJsonResponse(exchange, response, 201);
+        }
+
+        /** PUT /api/voluntarios/:cpf */
+        void atualizar(HttpExchange exchange, Roteador.Parametros p) throws IOException {
+            String body = readRequestBody(exchange);
+            JsonObject json = JsonParser.parseString(body).getAsJsonObject();
+
+            Optional<Voluntario> voluntarioOpt = voluntarioDao.read(p.texto("cpf"));
+            if (voluntarioOpt.isEmpty()) {
+                sendJsonResponse(exchange, "{\"error\":\"Voluntário não encontrado\"}", 404);
                 return;
             }
 
-            String path = exchange.getRequestURI().getPath();
-            String method = exchange.getRequestMethod();
+            Voluntario voluntario = voluntarioOpt.get();
+            if (json.has("nome")) voluntario.setNome(json.get("nome").getAsString());
+            if (json.has("telefone")) voluntario.setTelefone(json.get("telefone").getAsString());
+            if (json.has("senha")) voluntario.setSenha(json.get("senha").getAsString());
+            if (json.has("endereco")) voluntario.setEndereco(json.get("endereco").getAsString());
 
-            try {
-                if (method.equals("GET")) {
-                    String[] parts = path.split("/");
-                    if (parts.length > 3) {
-                        String cpf = parts[3];
-                        Optional<Voluntario> voluntarioOpt = voluntarioDao.read(cpf);
-                        if (voluntarioOpt.isPresent()) {
-                            String json = voluntarioToJson(voluntarioOpt.get());
-                            sendJsonResponse(exchange, json, 200);
-                        } else {
-                            sendJsonResponse(exchange, "{\"error\":\"Voluntário não encontrado\"}", 404);
-                        }
-                    }
-                } else if (method.equals("POST")) {
-                    // Criar novo voluntário
-                    String body = readRequestBody(exchange);
-                    JsonObject json = JsonParser.parseString(body).getAsJsonObject();
-                    
-                    String cpf = json.get("cpf").getAsString();
-                    String senha = json.get("senha").getAsString();
-                    String nome = json.get("nome").getAsString();
-                    int idOng = json.get("idOng").getAsInt();
-                    
-                    Voluntario voluntario = new Voluntario();
-                    voluntario.setCpf(cpf);
-                    voluntario.setSenha(senha);
-                    voluntario.setNome(nome);
-                    voluntario.setIdOng(idOng);
-                    
-                    if (json.has("telefone")) voluntario.setTelefone(json.get("telefone").getAsString());
-                    if (json.has("endereco")) voluntario.setEndereco(json.get("endereco").getAsString());
-                    if (json.has("cargo")) {
-                        voluntario.setCargo(Role.valueOf(json.get("cargo").getAsString()));
-                    }
-                    
-                    voluntarioDao.create(voluntario);
-                    String response = "{\"success\":true,\"message\":\"Voluntário criado com sucesso\",\"cpf\":\"" + cpf + "\"}";
-                    sendJsonResponse(exchange, response, 201);
-                } else if (method.equals("PUT")) {
-                    // PUT /api/voluntarios/:cpf
-                    String[] parts = path.split("/");
-                    if (parts.length > 3) {
-                        String cpf = parts[3];
-                        String body = readRequestBody(exchange);
-                        JsonObject json = JsonParser.parseString(body).getAsJsonObject();
-                        
-                        Optional<Voluntario> voluntarioOpt = voluntarioDao.read(cpf);
-                        if (voluntarioOpt.isEmpty()) {
-                            sendJsonResponse(exchange, "{\"error\":\"Voluntário não encontrado\"}", 404);
-                            return;
-                        }
-                        
-                        Voluntario voluntario = voluntarioOpt.get();
-                        if (json.has("nome")) voluntario.setNome(json.get("nome").getAsString());
-                        if (json.has("telefone")) voluntario.setTelefone(json.get("telefone").getAsString());
-                        if (json.has("senha")) voluntario.setSenha(json.get("senha").getAsString());
-                        if (json.has("endereco")) voluntario.setEndereco(json.get("endereco").getAsString());
-                        
-                        voluntarioDao.update(voluntario);
-                        String response = "{\"success\":true,\"message\":\"Voluntário atualizado com sucesso\"}";
-                        sendJsonResponse(exchange, response, 200);
-                    }
-                } else if (method.equals("DELETE")) {
-                    // DELETE /api/voluntarios/:cpf
-                    String[] parts = path.split("/");
-                    if (parts.length > 3) {
-                        String cpf = parts[3];
-                        boolean deleted = voluntarioDao.delete(cpf);
-                        if (deleted) {
-                            String response = "{\"success\":true,\"message\":\"Voluntário removido com sucesso\"}";
-                            sendJsonResponse(exchange, response, 200);
-                        } else {
-                            sendJsonResponse(exchange, "{\"error\":\"Voluntário não encontrado\"}", 404);
-                        }
-                    }
-                }
-            } catch (Exception e) {
-                e.printStackTrace();
-                sendJsonResponse(exchange, "{\"error\":\"" + e.getMessage() + "\"}" , 500);
+            voluntarioDao.update(voluntario);
+            String response = "{\"success\":true,\"message\":\"Voluntário atualizado com sucesso\"}";
+            sendJsonResponse(exchange, response, 200);
+        }
+
+        /** DELETE /api/voluntarios/:cpf */
+        void remover(HttpExchange exchange, Roteador.Parametros p) throws IOException {
+            boolean deleted = voluntarioDao.delete(p.texto("cpf"));
+            if (deleted) {
+                String response = "{\"success\":true,\"message\":\"Voluntário removido com sucesso\"}";
+                sendJsonResponse(exchange, response, 200);
+            } else {
+                sendJsonResponse(exchange, "{\"error\":\"Voluntário não encontrado\"}", 404);
             }
         }
     }
 
-    private class InteressesHandler implements HttpHandler {
-        @Override
-        public void handle(HttpExchange exchange) throws IOException {
-            setCorsHeaders(exchange);
-            if (exchange.getRequestMethod().equals("OPTIONS")) {
-                exchange.sendResponseHeaders(200, -1);
+    /** Rotas de /api/interesses. */
+    private class InteressesRotas {
+
+        /** GET /api/interesses */
+        void listar(HttpExchange exchange, Roteador.Parametros p) throws IOException {
+            if (naoModificado(exchange, interesseDao.versao())) return;
+            sendJsonStream(exchange, interesseDao.streamActive(), InteresseDto::fromEntity);
+        }
+
+        /** POST /api/interesses - Registrar novo interesse */
+        void criar(HttpExchange exchange, Roteador.Parametros p) throws IOException {
+            String body = readRequestBody(exchange);
+            JsonObject json = JsonParser.parseString(body).getAsJsonObject();
+
+            String cpfAdotante = json.get("cpfAdotante").getAsString();
+            int idAnimal = json.get("idAnimal").getAsInt();
+
+            Interesse interesse = new Interesse();
+            interesse.setCpfAdotante(cpfAdotante);
+            interesse.setIdAnimal(idAnimal);
+            interesse.setStatus(InteresseStatus.PENDENTE);
+
+            interesseDao.create(interesse);
+            String response = "{\"success\":true,\"message\":\"Interesse registrado com sucesso\",\"cpfAdotante\":\"" + cpfAdotante + "\",\"idAnimal\":" + idAnimal + "}";
+            sendJsonResponse(exchange, response, 201);
+        }
+
+        /** PUT /api/interesses/:id - aprovar/recusar interesse */
+        void atualizar(HttpExchange exchange, Roteador.Parametros p) throws IOException {
+            String body = readRequestBody(exchange);
+            JsonObject json = JsonParser.parseString(body).getAsJsonObject();
+
+            Optional<Interesse> interesseOpt = interesseDao.read(p.inteiro("id"));
+            if (interesseOpt.isEmpty()) {
+                sendJsonResponse(exchange, "{\"error\":\"Interesse não encontrado\"}", 404);
                 return;
             }
 
-            try {
-                if (exchange.getRequestMethod().equals("GET")) {
-                    List<Interesse> interesses = interesseDao.listAllActive();
-                    String json = interessesToJson(interesses);
-                    sendJsonResponse(exchange, json, 200);
-                } else if (exchange.getRequestMethod().equals("POST")) {
-                    // Registrar novo interesse
-                    String body = readRequestBody(exchange);
-                    JsonObject json = JsonParser.parseString(body).getAsJsonObject();
-                    
-                    String cpfAdotante = json.get("cpfAdotante").getAsString();
-                    int idAnimal = json.get("idAnimal").getAsInt();
-                    
-                    Interesse interesse = new Interesse();
-                    interesse.setCpfAdotante(cpfAdotante);
-                    interesse.setIdAnimal(idAnimal);
-                    interesse.setStatus(InteresseStatus.PENDENTE);
-                    
-                    interesseDao.create(interesse);
-                    String response = "{\"success\":true,\"message\":\"Interesse registrado com sucesso\",\"cpfAdotante\":\"" + cpfAdotante + "\",\"idAnimal\":" + idAnimal + "}";
-                    sendJsonResponse(exchange, response, 201);
-                } else if (exchange.getRequestMethod().equals("PUT")) {
-                    // PUT /api/interesses/:id - aprovar/recusar interesse
-                    String path = exchange.getRequestURI().getPath();
-                    String[] parts = path.split("/");
-                    if (parts.length > 3) {
-                        int id = Integer.parseInt(parts[3]);
-                        String body = readRequestBody(exchange);
-                        JsonObject json = JsonParser.parseString(body).getAsJsonObject();
-                        
-                        Optional<Interesse> interesseOpt = interesseDao.read(id);
-                        if (interesseOpt.isEmpty()) {
-                            sendJsonResponse(exchange, "{\"error\":\"Interesse não encontrado\"}", 404);
-                            return;
-                        }
-                        
-                        Interesse interesse = interesseOpt.get();
-                        if (json.has("status")) {
-                            String statusStr = json.get("status").getAsString();
-                            interesse.setStatus(InteresseStatus.valueOf(statusStr));
-                        }
-                        
-                        interesseDao.update(interesse);
-                        String response = "{\"success\":true,\"message\":\"Interesse atualizado com sucesso\",\"status\":\"" + interesse.getStatus() + "\"}";
-                        sendJsonResponse(exchange, response, 200);
-                    }
-                } else if (exchange.getRequestMethod().equals("DELETE")) {
-                    // DELETE /api/interesses/:id
-                    String path = exchange.getRequestURI().getPath();
-                    String[] parts = path.split("/");
-                    if (parts.length > 3) {
-                        int id = Integer.parseInt(parts[3]);
-                        boolean deleted = interesseDao.delete(id);
-                        if (deleted) {
-                            String response = "{\"success\":true,\"message\":\"Interesse removido com sucesso\"}";
-                            sendJsonResponse(exchange, response, 200);
-                        } else {
-                            sendJsonResponse(exchange, "{\"error\":\"Interesse não encontrado\"}", 404);
-                        }
-                    }
-                }
-            } catch (Exception e) {
-                e.printStackTrace();
-                sendJsonResponse(exchange, "{\"error\":\"" + e.getMessage() + "\"}" , 500);
+            Interesse interesse = interesseOpt.get();
+            if (json.has("status")) {
+                String statusStr = json.get("status").getAsString();
+                interesse.setStatus(InteresseStatus.valueOf(statusStr));
+            }
+
+            interesseDao.update(interesse);
+            String response = "{\"success\":true,\"message\":\"Interesse atualizado com sucesso\",\"status\":\"" + interesse.getStatus() + "\"}";
+            sendJsonResponse(exchange, response, 200);
+        }
+
+        /** DELETE /api/interesses/:id */
+        void remover(HttpExchange exchange, Roteador.Parametros p) throws IOException {
+            boolean deleted = interesseDao.delete(p.inteiro("id"));
+            if (deleted) {
+                String response = "{\"success\":true,\"message\":\"Interesse removido com sucesso\"}";
+                sendJsonResponse(exchange, response, 200);
+            } else {
+                sendJsonResponse(exchange, "{\"error\":\"Interesse não encontrado\"}", 404);
             }
         }
     }
 
-    private class ChatsHandler implements HttpHandler {
-        @Override
-        public void handle(HttpExchange exchange) throws IOException {
-            setCorsHeaders(exchange);
-            if (exchange.getRequestMethod().equals("OPTIONS")) {
-                exchange.sendResponseHeaders(200, -1);
+    /** Rotas de /api/chats. */
+    private class ChatsRotas {
+
+        /** GET /api/chats - Lista todas threads (com filtros opcionais) */
+        void listar(HttpExchange exchange, Roteador.Parametros p) throws IOException {
+            if (naoModificado(exchange, chatThreadDao.versao())) return;
+            String query = exchange.getRequestURI().getQuery();
+            // O DAO escolhe índice ou varredura; o plano vai no header X-Query-Plan
+            Consulta<ChatThread> consulta = chatThreadDao.consulta();
+            boolean filtrada = false;
+
+            // Filtrar por cpfAdotante se fornecido
+            if (query != null && query.contains("cpfAdotante=")) {
+                consulta.onde("cpfAdotante", extractQueryParam(query, "cpfAdotante"));
+                filtrada = true;
+            }
+
+            // Filtrar por idAnimal se fornecido
+            if (query != null && query.contains("idAnimal=")) {
+                consulta.onde("idAnimal", Integer.parseInt(extractQueryParam(query, "idAnimal")));
+                filtrada = true;
+            }
+
+            if (!filtrada) {
+                // sem filtro: todas as threads, em streaming
+                exchange.getResponseHeaders().set("X-Query-Plan", Consulta.Plano.VARREDURA + " (streaming)");
+                sendJsonStream(exchange, chatThreadDao.streamActive(), ChatThreadDto::fromEntity);
                 return;
             }
+            ResultadoConsulta<ChatThread> resultado = consulta.executar();
+            exchange.getResponseHeaders().set("X-Query-Plan", resultado.descreverPlano());
+            sendJsonStream(exchange, resultado.itens().stream(), ChatThreadDto::fromEntity);
+        }
 
-            String path = exchange.getRequestURI().getPath();
-            String method = exchange.getRequestMethod();
+        /** GET /api/chats/:threadId - Busca thread específica */
+        void buscar(HttpExchange exchange, Roteador.Parametros p) throws IOException {
+            if (naoModificado(exchange, chatThreadDao.versao())) return;
+            Optional<ChatThread> threadOpt = chatThreadDao.read(p.inteiro("threadId"));
+            if (threadOpt.isPresent()) {
+                sendJsonResponse(exchange, ChatThreadDto.fromEntity(threadOpt.get()), 200);
+            } else {
+                sendJsonResponse(exchange, "{\"error\":\"Thread não encontrada\"}", 404);
+            }
+        }
+
+        /**
+         * GET /api/chats/:threadId/messages - Lista mensagens da thread; com ?since=id é um
+         * long-poll pelas mensagens com id > since
+         */
+        void mensagens(HttpExchange exchange, Roteador.Parametros p) throws IOException {
+            int threadId = p.inteiro("threadId");
             String query = exchange.getRequestURI().getQuery();
+            String since = query != null ? extractQueryParam(query, "since") : null;
+            if (since != null) {
+                Integer desde = parseDesde(exchange, since, threadId);
+                if (desde != null) difusor.esperar(exchange, threadId, desde);
+                return;
+            }
+            if (naoModificado(exchange, chatMsgDao.versaoThread(threadId))) return;
+            List<ChatMessage> threadMessages = chatMsgDao.consulta().onde("threadId", threadId).listar();
+            sendJsonStream(exchange, threadMessages.stream(), ChatMessageDto::fromEntity);
+        }
 
-            try {
-                if (method.equals("GET")) {
-                    String[] parts = path.split("/");
-                    
-                    if (parts.length > 3 && parts[3].matches("\\d+")) {
-                        // GET /api/chats/:threadId ou /api/chats/:threadId/messages
-                        int threadId = Integer.parseInt(parts[3]);
-                        
-                        if (parts.length > 4 && parts[4].equals("messages")) {
-                            // GET /api/chats/:threadId/messages - Lista mensagens da thread
-                            List<ChatMessage> allMessages = chatMsgDao.listAllActive();
-                            List<ChatMessage> threadMessages = allMessages.stream()
-                                .filter(m -> m.getThreadId() == threadId)
-                                .toList();
-                            String json = messagesToJson(threadMessages);
-                            sendJsonResponse(exchange, json, 200);
-                        } else {
-                            // GET /api/chats/:threadId - Busca thread específica
-                            Optional<ChatThread> threadOpt = chatThreadDao.read(threadId);
-                            if (threadOpt.isPresent()) {
-                                String json = chatToJson(threadOpt.get());
-                                sendJsonResponse(exchange, json, 200);
-                            } else {
-                                sendJsonResponse(exchange, "{\"error\":\"Thread não encontrada\"}", 404);
-                            }
-                        }
-                    } else {
-                        // GET /api/chats - Lista todas threads (com filtros opcionais)
-                        List<ChatThread> threads = chatThreadDao.listAllActive();
-                        
-                        // Filtrar por cpfAdotante se fornecido
-                        if (query != null && query.contains("cpfAdotante=")) {
-                            String cpf = extractQueryParam(query, "cpfAdotante");
-                            threads = threads.stream()
-                                .filter(t -> t.getCpfAdotante().equals(cpf))
-                                .toList();
-                        }
-                        
-                        // Filtrar por idAnimal se fornecido
-                        if (query != null && query.contains("idAnimal=")) {
-                            String idStr = extractQueryParam(query, "idAnimal");
-                            int idAnimal = Integer.parseInt(idStr);
-                            threads = threads.stream()
-                                .filter(t -> t.getIdAnimal() == idAnimal)
-                                .toList();
-                        }
-                        
-                        String json = chatsToJson(threads);
-                        sendJsonResponse(exchange, json, 200);
-                    }
-                } else if (method.equals("POST")) {
-                    // POST /api/chats - Criar nova thread
-                    String body = readRequestBody(exchange);
-                    JsonObject json = JsonParser.parseString(body).getAsJsonObject();
-                    
-                    int idAnimal = json.get("idAnimal").getAsInt();
-                    String cpfAdotante = json.get("cpfAdotante").getAsString();
-                    
-                    // Verificar se já existe thread para este animal + adotante
-                    List<ChatThread> existing = chatThreadDao.listAllActive().stream()
-                        .filter(t -> t.getIdAnimal() == idAnimal && t.getCpfAdotante().equals(cpfAdotante))
-                        .toList();
-                    
-                    if (!existing.isEmpty()) {
-                        // Retorna a thread existente
-                        String response = chatToJson(existing.get(0));
-                        sendJsonResponse(exchange, response, 200);
-                        return;
-                    }
-                    
-                    ChatThread thread = new ChatThread();
-                    thread.setIdAnimal(idAnimal);
-                    thread.setCpfAdotante(cpfAdotante);
-                    thread.setAberto(true);
-                    thread.setCriadoEm(java.time.LocalDateTime.now());
-                    thread.setZoneId("America/Sao_Paulo");
-                    
-                    chatThreadDao.create(thread);
-                    String response = chatToJson(thread);
-                    sendJsonResponse(exchange, response, 201);
-                    
-                } else if (method.equals("PUT")) {
-                    // PUT /api/chats/:threadId/close - Fechar thread
-                    String[] parts = path.split("/");
-                    if (parts.length > 4 && parts[3].matches("\\d+") && parts[4].equals("close")) {
-                        int threadId = Integer.parseInt(parts[3]);
-                        Optional<ChatThread> threadOpt = chatThreadDao.read(threadId);
-                        
-                        if (threadOpt.isEmpty()) {
-                            sendJsonResponse(exchange, "{\"error\":\"Thread não encontrada\"}", 404);
-                            return;
-                        }
-                        
-                        ChatThread thread = threadOpt.get();
-                        thread.setAberto(false);
-                        chatThreadDao.update(thread);
-                        
-                        String response = "{\"success\":true,\"message\":\"Thread fechada com sucesso\"}";
-                        sendJsonResponse(exchange, response, 200);
-                    }
-                }
-            } catch (Exception e) {
-                e.printStackTrace();
-                sendJsonResponse(exchange, "{\"error\":\"" + e.getMessage() + "\"}", 500);
+        /** GET /api/chats/:threadId/stream[?since=id] - SSE; na reconexão o navegador manda Last-Event-ID */
+        void stream(HttpExchange exchange, Roteador.Parametros p) throws IOException {
+            int threadId = p.inteiro("threadId");
+            String query = exchange.getRequestURI().getQuery();
+            String since = query != null ? extractQueryParam(query, "since") : null;
+            String ultimoEvento = exchange.getRequestHeaders().getFirst("Last-Event-ID");
+            if (ultimoEvento != null) since = ultimoEvento;
+            Integer desde = parseDesde(exchange, since, threadId);
+            if (desde != null) difusor.abrirStream(exchange, threadId, desde);
+        }
+
+        /** POST /api/chats - Criar nova thread */
+        void criar(HttpExchange exchange, Roteador.Parametros p) throws IOException {
+            String body = readRequestBody(exchange);
+            JsonObject json = JsonParser.parseString(body).getAsJsonObject();
+
+            int idAnimal = json.get("idAnimal").getAsInt();
+            String cpfAdotante = json.get("cpfAdotante").getAsString();
+
+            // Verificar se já existe thread para este animal + adotante
+            List<ChatThread> existing = chatThreadDao.consulta()
+                .onde("idAnimal", idAnimal)
+                .onde("cpfAdotante", cpfAdotante)
+                .listar();
+
+            if (!existing.isEmpty()) {
+                // Retorna a thread existente
+                sendJsonResponse(exchange, ChatThreadDto.fromEntity(existing.get(0)), 200);
+                return;
             }
+
+            ChatThread thread = new ChatThread();
+            thread.setIdAnimal(idAnimal);
+            thread.setCpfAdotante(cpfAdotante);
+            thread.setAberto(true);
+            thread.setCriadoEm(java.time.LocalDateTime.now());
+            thread.setZoneId("America/Sao_Paulo");
+
+            chatThreadDao.create(thread);
+            sendJsonResponse(exchange, ChatThreadDto.fromEntity(thread), 201);
         }
-    }
 
-    private class ChatMessagesHandler implements HttpHandler {
-        @Override
-        public void handle(HttpExchange exchange) throws IOException {
-            setCorsHeaders(exchange);
-            if (exchange.getRequestMethod().equals("OPTIONS")) {
-                exchange.sendResponseHeaders(200, -1);
+        /** PUT /api/chats/:threadId/close - Fechar thread */
+        void fechar(HttpExchange exchange, Roteador.Parametros p) throws IOException {
+            Optional<ChatThread> threadOpt = chatThreadDao.read(p.inteiro("threadId"));
+
+            if (threadOpt.isEmpty()) {
+                sendJsonResponse(exchange, "{\"error\":\"Thread não encontrada\"}", 404);
                 return;
             }
 
-            String method = exchange.getRequestMethod();
+            ChatThread thread = threadOpt.get();
+            thread.setAberto(false);
+            chatThreadDao.update(thread);
+
+            String response = "{\"success\":true,\"message\":\"Thread fechada com sucesso\"}";
+            sendJsonResponse(exchange, response, 200);
+        }
+    }
+
+    /** Rotas de /api/chat-messages. */
+    private class ChatMessagesRotas {
+
+        /** GET /api/chat-messages[?threadId=N] */
+        void listar(HttpExchange exchange, Roteador.Parametros p) throws IOException {
             String query = exchange.getRequestURI().getQuery();
+            // Filtrar por threadId se fornecido (direto nos bytes do registro)
+            Consulta<ChatMessage> consulta = chatMsgDao.consulta();
+            if (query == null || !query.contains("threadId=")) {
+                // sem filtro: todas as mensagens, em streaming
+                if (naoModificado(exchange, chatMsgDao.versao())) return;
+                exchange.getResponseHeaders().set("X-Query-Plan", Consulta.Plano.VARREDURA + " (streaming)");
+                sendJsonStream(exchange, chatMsgDao.streamActive(), ChatMessageDto::fromEntity);
+                return;
+            }
+            int threadId = Integer.parseInt(extractQueryParam(query, "threadId"));
+            if (naoModificado(exchange, chatMsgDao.versaoThread(threadId))) return;
+            consulta.onde("threadId", threadId);
+            ResultadoConsulta<ChatMessage> resultado = consulta.executar();
+            exchange.getResponseHeaders().set("X-Query-Plan", resultado.descreverPlano());
+            sendJsonStream(exchange, resultado.itens().stream(), ChatMessageDto::fromEntity);
+        }
 
-            try {
-                if (method.equals("GET")) {
-                    List<ChatMessage> messages = chatMsgDao.listAllActive();
-                    
-                    // Filtrar por threadId se fornecido
-                    if (query != null && query.contains("threadId=")) {
-                        String threadIdStr = extractQueryParam(query, "threadId");
-                        int threadId = Integer.parseInt(threadIdStr);
-                        messages = messages.stream()
-                            .filter(m -> m.getThreadId() == threadId)
-                            .toList();
-                    }
-                    
-                    String json = messagesToJson(messages);
-                    sendJsonResponse(exchange, json, 200);
-                    
-                } else if (method.equals("POST")) {
-                    // POST /api/chat-messages - Enviar nova mensagem
-                    String body = readRequestBody(exchange);
-                    JsonObject json = JsonParser.parseString(body).getAsJsonObject();
-                    
-                    int threadId = json.get("threadId").getAsInt();
-                    String senderStr = json.get("sender").getAsString();
-                    String conteudo = json.get("conteudo").getAsString();
-                    
-                    // Verificar se thread existe e está aberta
-                    Optional<ChatThread> threadOpt = chatThreadDao.read(threadId);
-                    if (threadOpt.isEmpty()) {
-                        sendJsonResponse(exchange, "{\"error\":\"Thread não encontrada\"}", 404);
-                        return;
-                    }
-                    
-                    if (!threadOpt.get().isAberto()) {
-                        sendJsonResponse(exchange, "{\"error\":\"Thread está fechada\"}", 400);
-                        return;
-                    }
-                    
-                    ChatMessage message = new ChatMessage();
-                    message.setThreadId(threadId);
-                    message.setSender(ChatSender.valueOf(senderStr));
-                    message.setConteudo(conteudo);
-                    message.setEnviadoEm(java.time.LocalDateTime.now());
-                    message.setZoneId("America/Sao_Paulo");
-                    message.setAtivo(true);
-                    
-                    chatMsgDao.create(message);
-                    String response = messageToJson(message);
-                    sendJsonResponse(exchange, response, 201);
-                }
-            } catch (Exception e) {
-                e.printStackTrace();
-                sendJsonResponse(exchange, "{\"error\":\"" + e.getMessage() + "\"}", 500);
+        /** POST /api/chat-messages - Enviar nova mensagem */
+        void criar(HttpExchange exchange, Roteador.Parametros p) throws IOException {
+            String body = readRequestBody(exchange);
+            JsonObject json = JsonParser.parseString(body).getAsJsonObject();
+
+            int threadId = json.get("threadId").getAsInt();
+            String senderStr = json.get("sender").getAsString();
+            String conteudo = json.get("conteudo").getAsString();
+
+            // Verificar se thread existe e está aberta
+            Optional<ChatThread> threadOpt = chatThreadDao.read(threadId);
+            if (threadOpt.isEmpty()) {
+                sendJsonResponse(exchange, "{\"error\":\"Thread não encontrada\"}", 404);
+                return;
+            }
+
+            if (!threadOpt.get().isAberto()) {
+                sendJsonResponse(exchange, "{\"error\":\"Thread está fechada\"}", 400);
+                return;
+            }
+
+            ChatMessage message = new ChatMessage();
+            message.setThreadId(threadId);
+            message.setSender(ChatSender.valueOf(senderStr));
+            message.setConteudo(conteudo);
+            message.setEnviadoEm(java.time.LocalDateTime.now());
+            message.setZoneId("America/Sao_Paulo");
+            message.setAtivo(true);
+
+            // publicada sob o lock do DAO, para os assinantes receberem na ordem dos ids
+            synchronized (chatMsgDao) {
+                chatMsgDao.create(message);
+                difusor.publicar(message);
             }
+            sendJsonResponse(exchange, ChatMessageDto.fromEntity(message), 201);
         }
     }
 
     // ============ HELPER METHODS ============
 
+    /**
+     * {@code since} de um stream/long-poll de mensagens (null = só as novas), validando a thread.
+     * Se inválido, já responde 400/404 e devolve null.
+     */
+    private Integer parseDesde(HttpExchange exchange, String since, int threadId) throws IOException {
+        int desde;
+        try {
+            desde = since != null ? Integer.parseInt(since.trim()) : Integer.MAX_VALUE;
+        } catch (NumberFormatException e) {
+            desde = -1;
+        }
+        if (desde < 0) {
+            sendJsonResponse(exchange, "{\"error\":\"since deve ser o id de uma mensagem\"}", 400);
+            return null;
+        }
+        if (chatThreadDao.read(threadId).isEmpty()) {
+            sendJsonResponse(exchange, "{\"error\":\"Thread não encontrada\"}", 404);
+            return null;
+        }
+        return since != null ? desde : chatMsgDao.ultimoId();
+    }
+
+    /** Mensagens da thread com id maior que {@code desde}, em ordem de id (histórico do {@link DifusorChat}). */
+    private List<ChatMessage> mensagensDepois(int threadId, int desde) throws IOException {
+        if (desde == Integer.MAX_VALUE) return List.of();
+        return chatMsgDao.consulta().onde("threadId", threadId).idEntre(desde + 1, Integer.MAX_VALUE).ordenarPorId().listar();
+    }
+
     private void setCorsHeaders(HttpExchange exchange) {
         exchange.getResponseHeaders().add("Access-Control-Allow-Origin", "*");
         exchange.getResponseHeaders().add("Access-Control-Allow-Methods", "GET, POST, PUT, DELETE, OPTIONS");
@@ -1082,27 +1273,167 @@ public class RestServer {
 
     private void sendJsonResponse(HttpExchange exchange, String json, int statusCode) throws IOException {
         byte[] response = json.getBytes(StandardCharsets.UTF_8);
-        exchange.sendResponseHeaders(statusCode, response.length);
-        exchange.getResponseBody().write(response);
-        try {
-            if (debugEnabled) {
-                Long start = (Long) exchange.getAttribute("startNanos");
-                long tookMs = start != null ? (System.nanoTime() - start) / 1_000_000L : -1L;
-                String method = exchange.getRequestMethod();
-                String path = exchange.getRequestURI().getPath();
-                String query = exchange.getRequestURI().getQuery();
-                System.out.printf("[HTTP ✔] %s %s%s -> %d (%d bytes) %s%n",
-                        method,
-                        path,
-                        (query != null ? ("?" + query) : ""),
-                        statusCode,
-                        response.length,
-                        (tookMs >= 0 ? (tookMs + "ms") : ""));
+        enviar(exchange, statusCode, response, response.length);
+    }
+
+    /** Serializa {@code dto} no buffer da thread e envia, sem passar por String. */
+    private void sendJsonResponse(HttpExchange exchange, JsonSerializavel dto, int statusCode) throws IOException {
+        SaidaJson saida = SAIDA.get().limpar();
+        dto.escreverJson(saida);
+        sendJsonResponse(exchange, saida, statusCode);
+    }
+
+    private void sendJsonResponse(HttpExchange exchange, SaidaJson saida, int statusCode) throws IOException {
+        enviar(exchange, statusCode, saida.array(), saida.tamanho());
+    }
+
+    /**
+     * Validação condicional de um GET pela versão dos dados, antes de qualquer leitura: marca a
+     * resposta com um ETag fraco e, quando der, Last-Modified; se o cliente já tem essa versão
+     * (If-None-Match, ou If-Modified-Since na falta dele) responde 304 sem corpo e devolve true.
+     *
+     * Last-Modified tem resolução de segundos, então só é enviado depois que o segundo da última
+     * escrita terminou; antes disso outra escrita no mesmo segundo teria a mesma data.
+     */
+    private boolean naoModificado(HttpExchange exchange, VersaoDados versao) throws IOException {
+        String id = versao.identificador();
+        long segundo = versao.modificadoEm() / 1000;
+        boolean comData = segundo < System.currentTimeMillis() / 1000;
+        exchange.getResponseHeaders().set("ETag", "W/\"" + id + "\"");
+        exchange.getResponseHeaders().set("Cache-Control", "no-cache");
+        if (comData) exchange.getResponseHeaders().set("Last-Modified", DATA_HTTP.format(Instant.ofEpochSecond(segundo)));
+
+        String seNenhum = exchange.getRequestHeaders().getFirst("If-None-Match");
+        String seModificado = exchange.getRequestHeaders().getFirst("If-Modified-Since");
+        boolean igual = seNenhum != null
+                ? etagConfere(seNenhum, id)
+                : comData && seModificado != null && segundo <= segundosHttp(seModificado);
+        if (!igual) return false;
+        exchange.sendResponseHeaders(304, -1);
+        anotarLog("não modificado");
+        exchange.close();
+        return true;
+    }
+
+    /** Comparação fraca de If-None-Match (lista de ETags ou "*") com o identificador da versão. */
+    private static boolean etagConfere(String seNenhum, String id) {
+        for (String etag : seNenhum.split(",")) {
+            etag = etag.trim();
+            if (etag.equals("*")) return true;
+            if (etag.startsWith("W/")) etag = etag.substring(2);
+            if (etag.length() == id.length() + 2 && etag.charAt(0) == '"' && etag.endsWith("\"")
+                    && etag.regionMatches(1, id, 0, id.length())) {
+                return true;
             }
-        } catch (Exception ignore) { }
+        }
+        return false;
+    }
+
+    /** Data HTTP em segundos desde a época; -1 se inválida (a requisição vira incondicional). */
+    private static long segundosHttp(String data) {
+        try {
+            return ZonedDateTime.parse(data.trim(), DateTimeFormatter.RFC_1123_DATE_TIME).toEpochSecond();
+        } catch (DateTimeParseException e) {
+            return -1;
+        }
+    }
+
+    /** Envia {@code corpo[0, tamanho)} com Content-Length, comprimido se o cliente aceitar. */
+    private void enviar(HttpExchange exchange, int statusCode, byte[] corpo, int tamanho) throws IOException {
+        CompressaoHttp.Codificacao codificacao = codificacaoPara(exchange, tamanho);
+        if (codificacao == CompressaoHttp.Codificacao.IDENTIDADE) {
+            exchange.sendResponseHeaders(statusCode, tamanho);
+            exchange.getResponseBody().write(corpo, 0, tamanho);
+        } else {
+            byte[] comprimido = CompressaoHttp.comprimir(corpo, 0, tamanho, codificacao, CompressaoHttp.NIVEL_DINAMICO);
+            exchange.getResponseHeaders().set("Content-Encoding", codificacao.cabecalho);
+            exchange.sendResponseHeaders(statusCode, comprimido.length);
+            exchange.getResponseBody().write(comprimido);
+            anotarLog(codificacao.cabecalho + " " + tamanho + " → " + comprimido.length + " bytes");
+        }
         exchange.close();
     }
 
+    /**
+     * Codificação para uma resposta de {@code tamanho} bytes: IDENTIDADE se a compressão estiver
+     * desligada ou a resposta for pequena; senão a negociada com o Accept-Encoding do cliente
+     * (e a resposta passa a variar com ele).
+     */
+    private CompressaoHttp.Codificacao codificacaoPara(HttpExchange exchange, long tamanho) {
+        if (!config.isCompressao() || tamanho < config.getCompressaoMinima()) return CompressaoHttp.Codificacao.IDENTIDADE;
+        exchange.getResponseHeaders().set("Vary", "Accept-Encoding");
+        return CompressaoHttp.negociar(exchange.getRequestHeaders().getFirst("Accept-Encoding"));
+    }
+
+    /**
+     * Responde 200 com um array JSON serializando cada item direto no corpo da resposta. Nada é
+     * acumulado além de BUFFER_STREAM: o primeiro bloco sai com a primeira página lida do DAO e a
+     * memória por requisição não depende do tamanho da tabela. Fecha {@code itens}.
+     *
+     * Os cabeçalhos só são enviados no primeiro bloco cheio: uma lista que cabe no buffer sai inteira
+     * com Content-Length (e pode ser recusada com 500 se falhar); uma maior vai em chunked transfer
+     * encoding, comprimida em streaming se o cliente aceitar (com flush a cada bloco, para o cliente
+     * não esperar o Deflater). Um erro depois disso não vira 500: é registrado, o corpo é fechado
+     * (liberando o Deflater) e a resposta termina com o array incompleto (JSON inválido), que o
+     * cliente detecta ao fazer o parse.
+     */
+    private <E> void sendJsonStream(HttpExchange exchange, Stream<E> itens, Function<E, ? extends JsonSerializavel> paraDto) throws IOException {
+        long n = 0;
+        SaidaJson saida = SAIDA.get().limpar();
+        OutputStream corpo = null;
+        try (itens) {
+            saida.abrirArray();
+            Iterator<E> it = itens.iterator();
+            while (it.hasNext()) {
+                paraDto.apply(it.next()).escreverJson(saida);
+                n++;
+                if (saida.tamanho() >= BUFFER_STREAM) {
+                    if (corpo == null) corpo = abrirCorpoStream(exchange, saida.tamanho());
+                    saida.descarregar(corpo);
+                    corpo.flush();
+                }
+            }
+            saida.fecharArray();
+            if (corpo == null) {
+                enviar(exchange, 200, saida.array(), saida.tamanho());
+                return;
+            }
+            saida.descarregar(corpo);
+            corpo.close(); // termina o gzip/deflate e o chunked
+            String codificacao = exchange.getResponseHeaders().getFirst("Content-Encoding");
+            anotarLog(n + " itens, chunked" + (codificacao != null ? " " + codificacao : ""));
+        } catch (IOException | RuntimeException e) {
+            System.err.println("❌ Listagem interrompida após " + n + " itens: " + e);
+            if (exchange.getResponseCode() == -1) {
+                sendJsonResponse(exchange, "{\"error\":\"Falha ao listar: " + e.getMessage() + "\"}", 500);
+            }
+        } finally {
+            if (corpo != null) {
+                try {
+                    corpo.close(); // no erro: libera o Deflater e termina o chunked; no sucesso não faz nada
+                } catch (IOException e) {
+                    // conexão já quebrada; o exchange.close() abaixo a descarta
+                }
+            }
+            exchange.close();
+        }
+    }
+
+    /** Envia os cabeçalhos de uma resposta chunked e devolve o corpo, comprimido se negociado. */
+    private OutputStream abrirCorpoStream(HttpExchange exchange, int bytesProntos) throws IOException {
+        CompressaoHttp.Codificacao codificacao = codificacaoPara(exchange, bytesProntos);
+        if (codificacao != CompressaoHttp.Codificacao.IDENTIDADE) {
+            exchange.getResponseHeaders().set("Content-Encoding", codificacao.cabecalho);
+        }
+        exchange.sendResponseHeaders(200, 0);
+        return CompressaoHttp.comprimir(exchange.getResponseBody(), codificacao, CompressaoHttp.NIVEL_DINAMICO);
+    }
+
+    /** Detalhe da resposta para a linha do log de acesso (ver {@link LoggingHandler}). */
+    private void anotarLog(String nota) {
+        if (logAcesso != null) NOTA_LOG.get()[0] = nota;
+    }
+
     private String readRequestBody(HttpExchange exchange) throws IOException {
         InputStream is = exchange.getRequestBody();
         BufferedReader reader = new BufferedReader(new InputStreamReader(is, StandardCharsets.UTF_8));
@@ -1134,80 +1465,44 @@ public class RestServer {
         return null;
     }
 
-    // ============ JSON CONVERTERS ============
-
-    private String animalsToJson(List<Animal> animais) {
-        List<AnimalDto> dtos = animais.stream()
-            .map(AnimalDto::fromEntity)
-            .collect(java.util.stream.Collectors.toList());
-        return gson.toJson(dtos);
-    }
-
-    private String animalToJson(Animal a) {
-        AnimalDto dto = AnimalDto.fromEntity(a);
-        return gson.toJson(dto);
-    }
-
-    private String ongsToJson(List<Ong> ongs) {
-        List<OngDto> dtos = ongs.stream()
-            .map(OngDto::fromEntity)
-            .collect(java.util.stream.Collectors.toList());
-        return gson.toJson(dtos);
-    }
-
-    private String adotanteToJson(Adotante a) {
-        AdotanteDto dto = AdotanteDto.fromEntity(a);
-        return gson.toJson(dto);
-    }
-
-    private String voluntarioToJson(Voluntario v) {
-        VoluntarioDto dto = VoluntarioDto.fromEntity(v);
-        return gson.toJson(dto);
-    }
-
-    private String interessesToJson(List<Interesse> interesses) {
-        List<InteresseDto> dtos = interesses.stream()
-            .map(InteresseDto::fromEntity)
-            .collect(java.util.stream.Collectors.toList());
-        return gson.toJson(dtos);
-    }
-    
-    private String adocoesToJson(List<br.com.mpet.model.Adocao> adocoes) {
-        List<AdocaoDto> dtos = adocoes.stream()
-            .map(AdocaoDto::fromEntity)
-            .collect(java.util.stream.Collectors.toList());
-        return gson.toJson(dtos);
+    /** "1,2,3" -> [1, 2, 3]; formato inválido ou excesso de ids vira IllegalArgumentException (400). */
+    private List<Integer> parseIds(String csv) {
+        List<Integer> ids = new ArrayList<>();
+        for (String parte : csv.split(",")) {
+            if (parte.isBlank()) continue;
+            ids.add(Integer.parseInt(parte.trim()));
+        }
+        if (ids.size() > MAX_IDS_LOTE) throw new IllegalArgumentException("Máximo de " + MAX_IDS_LOTE + " ids por requisição");
+        return ids;
     }
 
-    private String chatToJson(ChatThread ct) {
-        ChatThreadDto dto = ChatThreadDto.fromEntity(ct);
-        return gson.toJson(dto);
-    }
-    
-    private String chatsToJson(List<ChatThread> threads) {
-        List<ChatThreadDto> dtos = threads.stream()
-            .map(ChatThreadDto::fromEntity)
-            .collect(java.util.stream.Collectors.toList());
-        return gson.toJson(dtos);
-    }
+    // ============ JSON CONVERTERS ============
 
-    private String messageToJson(ChatMessage m) {
-        ChatMessageDto dto = ChatMessageDto.fromEntity(m);
-        return gson.toJson(dto);
-    }
-    
-    private String messagesToJson(List<ChatMessage> messages) {
-        List<ChatMessageDto> dtos = messages.stream()
-            .map(ChatMessageDto::fromEntity)
-            .collect(java.util.stream.Collectors.toList());
-        return gson.toJson(dtos);
+    private String statsToJson(EstatisticasArquivo e, CacheTinyLfu.Estatisticas cache) {
+        return "{\"arquivo\":\"" + e.arquivo() + "\"" +
+               ",\"ativos\":" + e.ativos() +
+               ",\"tombstones\":" + e.tombstones() +
+               ",\"bytes\":" + e.bytesArquivo() +
+               ",\"bytesRemovidos\":" + e.bytesRemovidos() +
+               ",\"fragmentacao\":" + String.format(Locale.ROOT, "%.4f", e.fragmentacao()) +
+               ",\"alturaIndice\":" + e.alturaIndice() +
+               ",\"versaoFormato\":" + e.versaoFormato() +
+               ",\"cifrado\":" + e.cifrado() +
+               ",\"cache\":" + (cache == null ? "null" : "{\"acertos\":" + cache.acertos() +
+                       ",\"falhas\":" + cache.falhas() +
+                       ",\"taxaAcerto\":" + String.format(Locale.ROOT, "%.4f", cache.taxaAcerto()) +
+                       ",\"entradas\":" + cache.entradas() +
+                       ",\"bytes\":" + cache.peso() +
+                       ",\"bytesMaximo\":" + cache.pesoMaximo() +
+                       ",\"remocoes\":" + cache.remocoes() + "}") + "}";
     }
 
     // ============ STATIC FILE HANDLER ============
 
     /**
-     * Handler para servir arquivos estáticos (HTML, CSS, JS)
-     * do classpath em public/
+     * Handler para servir arquivos estáticos (HTML, CSS, JS) de public/, a partir do mapa
+     * carregado na inicialização ({@link RecursosEstaticos}); só volta a ler do classpath se
+     * o mapa não pôde ser montado.
      */
     private class StaticFileHandler implements HttpHandler {
         @Override
@@ -1219,44 +1514,60 @@ public class RestServer {
                 path = "/pages/index.html";
             }
             
-            // Tenta carregar do classpath em public/
-            String resourcePath = "public" + path;
-            InputStream is = getClass().getClassLoader().getResourceAsStream(resourcePath);
-            
-            if (is == null) {
-                // Arquivo não encontrado
-                String notFound = "<html><body><h1>404 - Not Found</h1><p>Path: " + path + "</p></body></html>";
-                byte[] response = notFound.getBytes(StandardCharsets.UTF_8);
-                exchange.getResponseHeaders().set("Content-Type", "text/html; charset=UTF-8");
-                exchange.sendResponseHeaders(404, response.length);
-                exchange.getResponseBody().write(response);
+            RecursosEstaticos.Recurso recurso = estaticos.recurso(path);
+            if (recurso == null) {
+                if (estaticos.quantidade() == 0) {
+                    servirDoClasspath(exchange, path);
+                } else {
+                    naoEncontrado(exchange, path);
+                }
+                return;
+            }
+
+            boolean gzip = recurso.gzip() != null
+                    && CompressaoHttp.aceitaGzip(exchange.getRequestHeaders().getFirst("Accept-Encoding"));
+            String etag = gzip ? recurso.etagGzip() : recurso.etag();
+            exchange.getResponseHeaders().set("Content-Type", recurso.tipo());
+            exchange.getResponseHeaders().set("Cache-Control", recurso.cacheControl());
+            exchange.getResponseHeaders().set("ETag", etag);
+            if (recurso.gzip() != null) exchange.getResponseHeaders().set("Vary", "Accept-Encoding");
+
+            String seNenhum = exchange.getRequestHeaders().getFirst("If-None-Match");
+            if (seNenhum != null && etagConfere(seNenhum, etag.substring(1, etag.length() - 1))) {
+                exchange.sendResponseHeaders(304, -1);
                 exchange.close();
                 return;
             }
-            
-            // Determina Content-Type
-            String contentType = getContentType(path);
-            exchange.getResponseHeaders().set("Content-Type", contentType);
-            
-            // Lê e envia arquivo
-            byte[] fileBytes = is.readAllBytes();
-            exchange.sendResponseHeaders(200, fileBytes.length);
-            exchange.getResponseBody().write(fileBytes);
+
+            byte[] corpo = gzip ? recurso.gzip() : recurso.bytes();
+            if (gzip) exchange.getResponseHeaders().set("Content-Encoding", "gzip");
+            exchange.sendResponseHeaders(200, corpo.length);
+            exchange.getResponseBody().write(corpo);
+            exchange.close();
+        }
+
+        /** Caminho antigo: lê o arquivo do classpath a cada requisição. */
+        private void servirDoClasspath(HttpExchange exchange, String path) throws IOException {
+            try (InputStream is = getClass().getClassLoader().getResourceAsStream("public" + path)) {
+                if (is == null) {
+                    naoEncontrado(exchange, path);
+                    return;
+                }
+                byte[] fileBytes = is.readAllBytes();
+                exchange.getResponseHeaders().set("Content-Type", RecursosEstaticos.tipoDeConteudo(path));
+                exchange.sendResponseHeaders(200, fileBytes.length);
+                exchange.getResponseBody().write(fileBytes);
+                exchange.close();
+            }
+        }
+
+        private void naoEncontrado(HttpExchange exchange, String path) throws IOException {
+            String notFound = "<html><body><h1>404 - Not Found</h1><p>Path: " + path + "</p></body></html>";
+            byte[] response = notFound.getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().set("Content-Type", "text/html; charset=UTF-8");
+            exchange.sendResponseHeaders(404, response.length);
+            exchange.getResponseBody().write(response);
             exchange.close();
-            is.close();
-        }
-        
-        private String getContentType(String path) {
-            if (path.endsWith(".html")) return "text/html; charset=UTF-8";
-            if (path.endsWith(".css")) return "text/css; charset=UTF-8";
-            if (path.endsWith(".js")) return "application/javascript; charset=UTF-8";
-            if (path.endsWith(".json")) return "application/json; charset=UTF-8";
-            if (path.endsWith(".png")) return "image/png";
-            if (path.endsWith(".jpg") || path.endsWith(".jpeg")) return "image/jpeg";
-            if (path.endsWith(".gif")) return "image/gif";
-            if (path.endsWith(".svg")) return "image/svg+xml";
-            if (path.endsWith(".ico")) return "image/x-icon";
-            return "application/octet-stream";
         }
     }
 }
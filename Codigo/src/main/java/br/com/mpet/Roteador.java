@@ -0,0 +1,209 @@
+package br.com.mpet;
+
+import com.sun.net.httpserver.HttpExchange;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Tabela de rotas da API do {@link RestServer}: cada rota é um método HTTP e um modelo de caminho
+ * como {@code /api/chats/{id:int}/messages}, compilado uma vez numa árvore de segmentos (trie).
+ *
+ * Para encontrar a rota de uma requisição o caminho é percorrido segmento a segmento por índices:
+ * os literais são comparados no próprio caminho ({@code regionMatches}), um {@code {nome:int}} só
+ * aceita dígitos e um {@code {nome}} aceita qualquer segmento não vazio. Nada de split nem regex; os
+ * parâmetros ficam como posições no caminho e só viram int ou String quando a ação os pede.
+ *
+ * Literais têm prioridade sobre parâmetros e inteiros sobre texto; se um ramo não chega ao fim do
+ * caminho, o próximo é tentado. Uma barra final é ignorada.
+ */
+final class Roteador {
+
+    /** O que uma rota executa; exceções viram 500 no {@link RestServer}. */
+    @FunctionalInterface
+    interface Acao {
+        void executar(HttpExchange exchange, Parametros parametros) throws Exception;
+    }
+
+    /**
+     * Resultado de {@link #encontrar}: com {@code acao} null o caminho existe mas não com esse
+     * método (405, com {@code permitidos} no cabeçalho Allow).
+     */
+    record Encontrado(Acao acao, Parametros parametros, String modelo, String permitidos) {
+    }
+
+    /** Parâmetros de caminho de uma requisição, pelos nomes do modelo da rota. */
+    static final class Parametros {
+        private static final Parametros NENHUM = new Parametros("", new String[0], new int[0]);
+
+        private final String caminho;
+        private final String[] nomes;
+        /** Início e fim (exclusivo) de cada parâmetro em {@code caminho}. */
+        private final int[] limites;
+
+        private Parametros(String caminho, String[] nomes, int[] limites) {
+            this.caminho = caminho;
+            this.nomes = nomes;
+            this.limites = limites;
+        }
+
+        /** Valor de um {@code {nome:int}} (já validado ao casar a rota). */
+        int inteiro(String nome) {
+            int i = indice(nome);
+            int valor = 0;
+            for (int c = limites[2 * i]; c < limites[2 * i + 1]; c++) valor = valor * 10 + (caminho.charAt(c) - '0');
+            return valor;
+        }
+
+        /** Valor de um {@code {nome}}, como veio no caminho (já decodificado pelo HttpServer). */
+        String texto(String nome) {
+            int i = indice(nome);
+            return caminho.substring(limites[2 * i], limites[2 * i + 1]);
+        }
+
+        private int indice(String nome) {
+            for (int i = 0; i < nomes.length; i++) {
+                if (nomes[i].equals(nome)) return i;
+            }
+            throw new IllegalArgumentException("Parâmetro inexistente na rota: " + nome);
+        }
+    }
+
+    /** Nó da trie; é o fim de uma rota quando tem ações. */
+    private static final class No {
+        String[] literais = new String[0];
+        No[] filhosLiterais = new No[0];
+        No inteiro;
+        No texto;
+
+        final Map<String, Acao> acoes = new LinkedHashMap<>();
+        String[] nomes;
+        String modelo;
+        String permitidos;
+    }
+
+    private final No raiz = new No();
+    private int maxParametros;
+
+    /**
+     * Registra {@code metodo} em {@code modelo}. Lança IllegalArgumentException para um modelo
+     * malformado, uma rota repetida ou nomes de parâmetro diferentes no mesmo caminho.
+     */
+    Roteador rota(String metodo, String modelo, Acao acao) {
+        if (!modelo.startsWith("/")) throw new IllegalArgumentException("Modelo deve começar com '/': " + modelo);
+        No no = raiz;
+        List<String> nomes = new ArrayList<>();
+        for (String segmento : modelo.substring(1).split("/")) {
+            if (segmento.isEmpty()) throw new IllegalArgumentException("Segmento vazio em " + modelo);
+            if (segmento.startsWith("{") && segmento.endsWith("}")) {
+                String nome = segmento.substring(1, segmento.length() - 1);
+                boolean inteiro = nome.endsWith(":int");
+                if (inteiro) nome = nome.substring(0, nome.length() - 4);
+                if (nome.isEmpty() || nome.indexOf(':') >= 0) {
+                    throw new IllegalArgumentException("Parâmetro inválido em " + modelo + ": " + segmento);
+                }
+                nomes.add(nome);
+                if (inteiro) {
+                    if (no.inteiro == null) no.inteiro = new No();
+                    no = no.inteiro;
+                } else {
+                    if (no.texto == null) no.texto = new No();
+                    no = no.texto;
+                }
+            } else {
+                no = filhoLiteral(no, segmento);
+            }
+        }
+
+        String[] nomesRota = nomes.toArray(new String[0]);
+        if (no.nomes != null && !Arrays.equals(no.nomes, nomesRota)) {
+            throw new IllegalArgumentException("Parâmetros de " + modelo + " diferem de " + no.modelo);
+        }
+        if (no.acoes.putIfAbsent(metodo, acao) != null) {
+            throw new IllegalArgumentException("Rota repetida: " + metodo + " " + modelo);
+        }
+        no.nomes = nomesRota;
+        if (no.modelo == null) no.modelo = modelo;
+        no.permitidos = String.join(", ", no.acoes.keySet());
+        maxParametros = Math.max(maxParametros, nomesRota.length);
+        return this;
+    }
+
+    /** Rota de {@code metodo} em {@code caminho}; null se nenhum modelo casa com o caminho (404). */
+    Encontrado encontrar(String metodo, String caminho) {
+        if (caminho.isEmpty() || caminho.charAt(0) != '/') return null;
+        int[] limites = maxParametros > 0 ? new int[2 * maxParametros] : null;
+        No no = casar(raiz, caminho, 0, limites, 0);
+        if (no == null) return null;
+        Acao acao = no.acoes.get(metodo);
+        if (acao == null) return new Encontrado(null, null, no.modelo, no.permitidos);
+        Parametros parametros = no.nomes.length == 0 ? Parametros.NENHUM
+                : new Parametros(caminho, no.nomes, Arrays.copyOf(limites, 2 * no.nomes.length));
+        return new Encontrado(acao, parametros, no.modelo, no.permitidos);
+    }
+
+    /* ============================================================= */
+
+    private static No filhoLiteral(No no, String segmento) {
+        for (int i = 0; i < no.literais.length; i++) {
+            if (no.literais[i].equals(segmento)) return no.filhosLiterais[i];
+        }
+        No filho = new No();
+        int n = no.literais.length;
+        no.literais = Arrays.copyOf(no.literais, n + 1);
+        no.filhosLiterais = Arrays.copyOf(no.filhosLiterais, n + 1);
+        no.literais[n] = segmento;
+        no.filhosLiterais[n] = filho;
+        return filho;
+    }
+
+    /**
+     * Casa o resto de {@code caminho} a partir de {@code pos} (a barra que abre o próximo segmento)
+     * com os descendentes de {@code no}; devolve o nó final ou null. {@code k} é quantos parâmetros
+     * já foram guardados em {@code limites}.
+     */
+    private static No casar(No no, String caminho, int pos, int[] limites, int k) {
+        int tamanho = caminho.length();
+        if (pos >= tamanho - 1) return no.acoes.isEmpty() ? null : no;
+        int inicio = pos + 1;
+        int fim = caminho.indexOf('/', inicio);
+        if (fim < 0) fim = tamanho;
+        int comprimento = fim - inicio;
+        if (comprimento == 0) return null;
+
+        for (int i = 0; i < no.literais.length; i++) {
+            String literal = no.literais[i];
+            if (literal.length() == comprimento && caminho.regionMatches(inicio, literal, 0, comprimento)) {
+                No r = casar(no.filhosLiterais[i], caminho, fim, limites, k);
+                if (r != null) return r;
+            }
+        }
+        if (no.inteiro != null && ehInteiro(caminho, inicio, fim)) {
+            limites[2 * k] = inicio;
+            limites[2 * k + 1] = fim;
+            No r = casar(no.inteiro, caminho, fim, limites, k + 1);
+            if (r != null) return r;
+        }
+        if (no.texto != null) {
+            limites[2 * k] = inicio;
+            limites[2 * k + 1] = fim;
+            return casar(no.texto, caminho, fim, limites, k + 1);
+        }
+        return null;
+    }
+
+    /** Só dígitos ASCII e cabe num int não negativo. */
+    private static boolean ehInteiro(String s, int inicio, int fim) {
+        if (fim - inicio > 10) return false;
+        long valor = 0;
+        for (int i = inicio; i < fim; i++) {
+            char c = s.charAt(i);
+            if (c < '0' || c > '9') return false;
+            valor = valor * 10 + (c - '0');
+        }
+        return valor <= Integer.MAX_VALUE;
+    }
+}
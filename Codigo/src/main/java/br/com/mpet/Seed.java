@@ -6,10 +6,14 @@ import br.com.mpet.persistence.dao.OngDataFileDao;
 import br.com.mpet.persistence.dao.VoluntarioDataFileDao;
 import br.com.mpet.persistence.dao.AdotanteDataFileDao;
 
+import br.com.mpet.persistence.WriteBatch;
+
 import java.io.File;
+import java.util.List;
 
 public class Seed {
-    private static final byte VERSAO = 1;
+    private static final byte VERSAO = 2;
+    private static final int LOTE_SINTETICO = 50_000;
 
     public static void main(String[] args) throws Exception {
         File dataDir = resolveDataDir();
@@ -68,7 +72,6 @@ public class Seed {
             vol1.setIdOng(ong1.getId());
             vol1.setCargo(Role.ATENDIMENTO);
             vol1.setAtivo(true);
-            voluntarioDao.create(vol1);
 
             Voluntario vol2 = new Voluntario();
             vol2.setCpf("22222222222");
@@ -79,7 +82,7 @@ public class Seed {
             vol2.setIdOng(ong2.getId());
             vol2.setCargo(Role.LOGISTICA);
             vol2.setAtivo(true);
-            voluntarioDao.create(vol2);
+            voluntarioDao.createAll(List.of(vol1, vol2));
 
             // Define responsável por CPF na ONG 1
             ong1.setCpfResponsavel(vol1.getCpf());
@@ -98,7 +101,6 @@ public class Seed {
             ad1.setHorasForaDeCasa(8);
             ad1.setComposicaoFamiliar(ComposicaoFamiliar.PESSOA_SOZINHA);
             ad1.setMotivoAdocao("Companhia");
-            adotanteDao.create(ad1);
 
             Adotante ad2 = new Adotante();
             ad2.setCpf("44444444444");
@@ -113,7 +115,7 @@ public class Seed {
             ad2.setHorasForaDeCasa(6);
             ad2.setComposicaoFamiliar(ComposicaoFamiliar.FAMILIA_COM_CRIANCAS);
             ad2.setMotivoAdocao("Ama animais");
-            adotanteDao.create(ad2);
+            adotanteDao.createAll(List.of(ad1, ad2));
 
             // 3) Criar 5 animais (2 na primeira ONG, 3 na segunda)
             // ONG 1
@@ -129,7 +131,6 @@ public class Seed {
             dog1.setSeDaBemComCachorros(true);
             dog1.setSeDaBemComGatos(false);
             dog1.setSeDaBemComCriancas(true);
-            animalDao.create(dog1);
 
             Gato cat1 = new Gato();
             cat1.setIdOng(ong1.getId());
@@ -144,7 +145,6 @@ public class Seed {
             cat1.setSeDaBemComCriancas(true);
             cat1.setAcessoExterior(false);
             cat1.setPossuiTelamento(true);
-            animalDao.create(cat1);
 
             // ONG 2
             Cachorro dog2 = new Cachorro();
@@ -159,7 +159,6 @@ public class Seed {
             dog2.setSeDaBemComCachorros(true);
             dog2.setSeDaBemComGatos(true);
             dog2.setSeDaBemComCriancas(true);
-            animalDao.create(dog2);
 
             Gato cat2 = new Gato();
             cat2.setIdOng(ong2.getId());
@@ -174,7 +173,6 @@ public class Seed {
             cat2.setSeDaBemComCriancas(false);
             cat2.setAcessoExterior(true);
             cat2.setPossuiTelamento(false);
-            animalDao.create(cat2);
 
             Cachorro dog3 = new Cachorro();
             dog3.setIdOng(ong2.getId());
@@ -188,11 +186,48 @@ public class Seed {
             dog3.setSeDaBemComCachorros(true);
             dog3.setSeDaBemComGatos(false);
             dog3.setSeDaBemComCriancas(true);
-            animalDao.create(dog3);
+            animalDao.createAll(List.of(dog1, cat1, dog2, cat2, dog3));
 
             System.out.println("Seed concluído: 2 ONGs e 5 animais criados.");
             System.out.printf("ONG1 id=%d, ONG2 id=%d\n", ong1.getId(), ong2.getId());
+
+            // Carga sintética opcional para testes de volume: java ... Seed <quantidade de animais>
+            int extras = args.length > 0 ? Integer.parseInt(args[0]) : 0;
+            if (extras > 0) {
+                long t0 = System.nanoTime();
+                try (WriteBatch<Animal> lote = animalDao.batch(LOTE_SINTETICO)) {
+                    for (int i = 0; i < extras; i++) lote.create(animalSintetico(i, i % 2 == 0 ? ong1.getId() : ong2.getId()));
+                }
+                System.out.printf("%d animais sintéticos criados em %.1fs\n", extras, (System.nanoTime() - t0) / 1e9);
+            }
+        }
+    }
+
+    private static Animal animalSintetico(int i, int idOng) {
+        Animal a;
+        if (i % 3 == 0) {
+            Gato g = new Gato();
+            g.setRaca("SRD");
+            g.setAcessoExterior(i % 2 == 0);
+            g.setPossuiTelamento(i % 5 != 0);
+            g.setSeDaBemComGatos(true);
+            g.setSeDaBemComCriancas(i % 2 == 0);
+            a = g;
+        } else {
+            Cachorro c = new Cachorro();
+            c.setRaca("SRD");
+            c.setNivelAdestramento(NivelAdestramento.values()[i % NivelAdestramento.values().length]);
+            c.setSeDaBemComCachorros(true);
+            c.setSeDaBemComCriancas(i % 2 == 0);
+            a = c;
         }
+        a.setIdOng(idOng);
+        a.setNome("Animal " + i);
+        a.setSexo(i % 2 == 0 ? 'M' : 'F');
+        a.setPorte(Porte.values()[i % Porte.values().length]);
+        a.setVacinado(i % 4 != 0);
+        a.setDescricao("Gerado pelo seed");
+        return a;
     }
 
     private static File resolveDataDir() {
@@ -1,8 +1,19 @@
 package br.com.mpet;
 
 import br.com.mpet.model.*;
+import br.com.mpet.persistence.BaseDataFile;
+import br.com.mpet.persistence.Consulta;
+import br.com.mpet.persistence.ResultadoConsulta;
 import br.com.mpet.persistence.dao.*;
+import br.com.mpet.persistence.index.MapaIntLong;
+import br.com.mpet.persistence.index.MapaIntLongForaDoHeap;
+import br.com.mpet.persistence.index.MapaIntLongHeap;
+import br.com.mpet.persistence.io.FileHeaderHelper;
 import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.security.KeyPair;
+import java.security.KeyPairGenerator;
 import java.time.*;
 import java.util.*;
 
@@ -16,6 +27,7 @@ import java.util.*;
  * - ✅ DAO CRUD (Create, Read, Update, Delete)
  * - ✅ Backup/Restore com compressão
  * - ✅ Vacuum (compactação)
+ * - ✅ Formato dos arquivos (v1 → v2, cifragem, índices, .adotados)
  * 
  * Para executar:
  *   mvn -f Codigo/pom.xml clean package
@@ -49,6 +61,7 @@ public class TesteCompleto {
             testarLZW();
             testarHuffman();
             testarDAOsCRUD();
+            testarFormatoArquivos();
             testarBackupRestore();
             
             // Relatório final
@@ -364,6 +377,254 @@ public class TesteCompleto {
         if (ongIdxFile.exists()) ongIdxFile.delete();
     }
     
+    // ========================================================================
+    // TESTES FORMATO DOS ARQUIVOS
+    // ========================================================================
+
+    private static void testarFormatoArquivos() throws Exception {
+        secao("TESTES FORMATO (v1 → v2, Cifragem, Índices)");
+
+        File dir = new File("dats", "formato_teste");
+        apagarDiretorio(dir);
+        dir.mkdirs();
+
+        try {
+            // Teste 1: arquivo v1 (payload fixo) aberto como v2 e migrado pelo vacuum
+            teste("Formato - v1 → v2 (round-trip e migração)", () -> {
+                File f = new File(dir, "ongs_v1.dat");
+                List<Ong> originais = new ArrayList<>();
+                BaseDataFile.configurarPayloadCompacto(false);
+                try (OngDataFileDao dao = new OngDataFileDao(f, (byte)1)) {
+                    originais.add(dao.create(novaOng("ONG Antiga", "1133334444")));
+                    originais.add(dao.create(novaOng("ONG Sem Telefone", null)));
+                } finally {
+                    BaseDataFile.configurarPayloadCompacto(true);
+                }
+                if (lerByteCabecalho(f, 10) != FileHeaderHelper.CODIFICACAO_FIXA) return false;
+
+                try (OngDataFileDao dao = new OngDataFileDao(f, (byte)2)) {
+                    if (!mesmasOngs(originais, dao.listAllActive())) return false;
+                    originais.add(dao.create(novaOng("ONG Nova no v2", "1155556666")));
+                }
+                // Aberto como v2, o cabeçalho é promovido mas o payload continua fixo
+                if (lerByteCabecalho(f, 0) != 2 || lerByteCabecalho(f, 10) != FileHeaderHelper.CODIFICACAO_FIXA) return false;
+
+                OngDataFileDao dao = new OngDataFileDao(f, (byte)2);
+                if (!mesmasOngs(originais, dao.listAllActive())) return false;
+                dao.vacuum(); // reescreve em compacto e fecha o DAO
+                if (lerByteCabecalho(f, 10) != FileHeaderHelper.CODIFICACAO_COMPACTA) return false;
+
+                try (OngDataFileDao migrado = new OngDataFileDao(f, (byte)2)) {
+                    return mesmasOngs(originais, migrado.listAllActive());
+                }
+            });
+
+            // Teste 2: vacuum mantém ids, sequencial e campos nulos
+            teste("Formato - Vacuum preserva ids e nulos", () -> {
+                File f = new File(dir, "ongs_vacuum.dat");
+                List<Ong> mantidas = new ArrayList<>();
+                OngDataFileDao dao = new OngDataFileDao(f, (byte)2);
+                for (int i = 1; i <= 6; i++) {
+                    Ong o = dao.create(novaOng("ONG Vacuum " + i, i % 2 == 0 ? null : "11900000" + i));
+                    if (i % 3 == 0) o.setEndereco(null);
+                    dao.update(o);
+                    if (i == 2 || i == 4) dao.delete(o.getId());
+                    else mantidas.add(o);
+                }
+                dao.vacuum();
+
+                try (OngDataFileDao compactado = new OngDataFileDao(f, (byte)2)) {
+                    if (!mesmasOngs(mantidas, compactado.listAllActive())) return false;
+                    if (compactado.read(2).isPresent() || compactado.read(4).isPresent()) return false;
+                    Ong nova = compactado.create(novaOng("ONG Pós-Vacuum", null));
+                    return nova.getId() == 7; // ids removidos não voltam
+                }
+            });
+
+            // Teste 3: arquivo cifrado reaberto e payload adulterado
+            teste("Formato - Cifrado: reabrir e rejeitar adulteração", () -> {
+                File f = new File(dir, "ongs_cifradas.dat");
+                KeyPairGenerator gerador = KeyPairGenerator.getInstance("RSA");
+                gerador.initialize(2048);
+                KeyPair par = gerador.generateKeyPair();
+                BaseDataFile.configurarCriptografiaEmRepouso(par.getPublic(), par.getPrivate(), true);
+                try {
+                    List<Ong> originais = new ArrayList<>();
+                    try (OngDataFileDao dao = new OngDataFileDao(f, (byte)2)) {
+                        if (!dao.isCifrado()) return false;
+                        originais.add(dao.create(novaOng("ONG Secreta", "1177778888")));
+                        originais.add(dao.create(novaOng("ONG Discreta", null)));
+                    }
+                    String bruto = new String(Files.readAllBytes(f.toPath()), StandardCharsets.ISO_8859_1);
+                    if (bruto.contains("ONG Secreta")) return false;
+
+                    try (OngDataFileDao dao = new OngDataFileDao(f, (byte)2)) {
+                        if (!dao.isCifrado() || !mesmasOngs(originais, dao.listAllActive())) return false;
+                    }
+
+                    // Inverte um bit do payload do registro 1: [tombstone][id][len] ocupam 9 bytes
+                    long pos = FileHeaderHelper.HEADER_SIZE + 9 + 4;
+                    try (RandomAccessFile raf = new RandomAccessFile(f, "rw")) {
+                        raf.seek(pos);
+                        int b = raf.read();
+                        raf.seek(pos);
+                        raf.write(b ^ 1);
+                    }
+                    try (OngDataFileDao dao = new OngDataFileDao(f, (byte)2)) {
+                        dao.read(1);
+                        return false;
+                    } catch (IOException e) {
+                        info("  Adulteração detectada: " + e.getMessage());
+                        return true;
+                    }
+                } finally {
+                    BaseDataFile.configurarCriptografiaEmRepouso(null, null, false);
+                }
+            });
+
+            // Teste 4: índice id → offset com sondagem que dá a volta no fim da tabela
+            teste("Formato - MapaIntLong: remover e reinserir na volta da tabela", () ->
+                    mapaComVolta(new MapaIntLongHeap()) && mapaComVolta(new MapaIntLongForaDoHeap()));
+
+            // Teste 5: arquivo lateral .adotados salvo no close e reconstruído após queda
+            teste("Formato - .adotados: salvar, recarregar e reconstruir", () -> {
+                File f = new File(dir, "adocoes.dat");
+                File lateral = new File(dir, "adocoes.dat.adotados");
+                Adocao repetida;
+                try (AdocaoDataFileDao dao = new AdocaoDataFileDao(f, (byte)2)) {
+                    dao.create(novaAdocao(1));
+                    repetida = dao.create(novaAdocao(1));
+                    dao.create(novaAdocao(2));
+                }
+                if (!lateral.exists()) return false;
+
+                AdocaoDataFileDao dao = new AdocaoDataFileDao(f, (byte)2);
+                if (!dao.isAdotado(1) || !dao.isAdotado(2) || dao.quantidadeAdotados() != 2) return false;
+                dao.delete(repetida.getId());
+                if (!dao.isAdotado(1)) return false; // ainda resta uma adoção do animal 1
+                dao.create(novaAdocao(3));
+
+                // Sem close (queda): o lateral ficou marcado como sujo e é reconstruído pelo .dat
+                try (AdocaoDataFileDao reaberto = new AdocaoDataFileDao(f, (byte)2)) {
+                    if (!reaberto.isAdotado(1) || !reaberto.isAdotado(3) || reaberto.quantidadeAdotados() != 3) return false;
+                } finally {
+                    dao.close();
+                }
+                try (AdocaoDataFileDao recarregado = new AdocaoDataFileDao(f, (byte)2)) {
+                    return recarregado.isAdotado(3) && recarregado.quantidadeAdotados() == 3;
+                }
+            });
+
+            // Teste 6: createAll seguido de leituras pontuais pelos índices
+            teste("Formato - createAll + leituras pelo índice", () -> {
+                File f = new File(dir, "interesses.dat");
+                List<Interesse> lote = new ArrayList<>();
+                for (int i = 0; i < 50; i++) {
+                    Interesse it = new Interesse();
+                    it.setIdAnimal(i % 5);
+                    it.setCpfAdotante("1234567890" + (i % 10));
+                    it.setStatus(InteresseStatus.PENDENTE);
+                    lote.add(it);
+                }
+                try (InteresseDataFileDao dao = new InteresseDataFileDao(f, (byte)2)) {
+                    List<Interesse> criados = dao.createAll(lote);
+                    for (Interesse it : criados) {
+                        Optional<Interesse> lido = dao.read(it.getId());
+                        if (lido.isEmpty() || lido.get().getIdAnimal() != it.getIdAnimal()) return false;
+                    }
+                    Interesse alvo = criados.get(17);
+                    if (dao.consulta().idIgual(alvo.getId()).executar().plano() != Consulta.Plano.INDICE_PRIMARIO) return false;
+
+                    ResultadoConsulta<Interesse> r = dao.consulta().onde("idAnimal", 3).executar();
+                    info("  Plano: " + r.descreverPlano());
+                    return r.plano() == Consulta.Plano.INDICE_SECUNDARIO && r.itens().size() == 10
+                            && r.itens().stream().allMatch(it -> it.getIdAnimal() == 3);
+                }
+            });
+        } finally {
+            apagarDiretorio(dir);
+        }
+    }
+
+    private static Ong novaOng(String nome, String telefone) {
+        Ong o = new Ong();
+        o.setNome(nome);
+        o.setCnpj("12345678000199");
+        o.setEndereco("Rua do Teste, 42");
+        o.setTelefone(telefone);
+        o.setCpfResponsavel("12345678900");
+        o.setAtivo(true);
+        return o;
+    }
+
+    private static Adocao novaAdocao(int idAnimal) {
+        Adocao a = new Adocao();
+        a.setIdAnimal(idAnimal);
+        a.setCpfAdotante("12345678900");
+        a.setDataAdocao(LocalDate.of(2025, 1, 15));
+        return a;
+    }
+
+    /** Compara ids e campos, na ordem, incluindo os nulos. */
+    private static boolean mesmasOngs(List<Ong> esperadas, List<Ong> lidas) {
+        if (esperadas.size() != lidas.size()) return false;
+        for (int i = 0; i < esperadas.size(); i++) {
+            Ong e = esperadas.get(i), l = lidas.get(i);
+            if (e.getId() != l.getId()
+                    || !Objects.equals(e.getNome(), l.getNome())
+                    || !Objects.equals(e.getCnpj(), l.getCnpj())
+                    || !Objects.equals(e.getEndereco(), l.getEndereco())
+                    || !Objects.equals(e.getTelefone(), l.getTelefone())
+                    || !Objects.equals(e.getCpfResponsavel(), l.getCpfResponsavel())) {
+                info("  Diferença no id " + e.getId());
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Chaves cuja posição ideal é uma das duas últimas de uma tabela de 16 (o espalhamento de
+     * MapaIntLongHeap.posicao): oito delas não passam dos 75% e obrigam a sondagem a voltar ao início.
+     */
+    private static boolean mapaComVolta(MapaIntLong mapa) {
+        List<Integer> chaves = new ArrayList<>();
+        for (int k = 1; chaves.size() < 8; k++) {
+            int h = k * 0x9E3779B9;
+            if (((h ^ (h >>> 16)) & 15) >= 14) chaves.add(k);
+        }
+        for (int k : chaves) mapa.put(k, k * 10L);
+        // Remove as primeiras inseridas: as que deram a volta depois delas precisam continuar alcançáveis
+        mapa.remove(chaves.get(0));
+        mapa.remove(chaves.get(1));
+        if (mapa.size() != 6 || mapa.containsKey(chaves.get(0)) || mapa.containsKey(chaves.get(1))) return false;
+        for (int k : chaves.subList(2, 8)) {
+            if (mapa.get(k) != k * 10L) return false;
+        }
+        mapa.put(chaves.get(1), 1L);
+        mapa.put(chaves.get(0), 0L);
+        if (mapa.size() != 8 || mapa.get(chaves.get(0)) != 0L || mapa.get(chaves.get(1)) != 1L) return false;
+        for (int k : chaves.subList(2, 8)) {
+            if (mapa.get(k) != k * 10L) return false;
+        }
+        return true;
+    }
+
+    private static byte lerByteCabecalho(File f, int posicao) throws IOException {
+        try (RandomAccessFile raf = new RandomAccessFile(f, "r")) {
+            raf.seek(posicao);
+            return raf.readByte();
+        }
+    }
+
+    private static void apagarDiretorio(File dir) {
+        File[] arquivos = dir.listFiles();
+        if (arquivos != null) {
+            for (File a : arquivos) a.delete();
+        }
+        dir.delete();
+    }
+    
     // ========================================================================
     // TESTES BACKUP/RESTORE
     // ========================================================================
@@ -2,7 +2,12 @@ package br.com.mpet.dto;
 
 import br.com.mpet.model.Adocao;
 
-public class AdocaoDto {
+public class AdocaoDto implements JsonSerializavel {
+    private static final byte[] ID = SaidaJson.nome("id");
+    private static final byte[] CPF_ADOTANTE = SaidaJson.nome("cpfAdotante");
+    private static final byte[] ID_ANIMAL = SaidaJson.nome("idAnimal");
+    private static final byte[] DATA_ADOCAO = SaidaJson.nome("dataAdocao");
+
     public int id;
     public String cpfAdotante;
     public int idAnimal;
@@ -16,4 +21,14 @@ public class AdocaoDto {
         dto.dataAdocao = a.getDataAdocao() != null ? a.getDataAdocao().toString() : "";
         return dto;
     }
+
+    @Override
+    public void escreverJson(SaidaJson saida) {
+        saida.abrirObjeto()
+                .campo(ID, id)
+                .campo(CPF_ADOTANTE, cpfAdotante)
+                .campo(ID_ANIMAL, idAnimal)
+                .campo(DATA_ADOCAO, dataAdocao)
+                .fecharObjeto();
+    }
 }
\ No newline at end of file
@@ -2,7 +2,11 @@ package br.com.mpet.dto;
 
 import br.com.mpet.model.Adotante;
 
-public class AdotanteDto {
+public class AdotanteDto implements JsonSerializavel {
+    private static final byte[] CPF = SaidaJson.nome("cpf");
+    private static final byte[] NOME = SaidaJson.nome("nome");
+    private static final byte[] TELEFONE = SaidaJson.nome("telefone");
+
     public String cpf;
     public String nome;
     public String telefone;
@@ -14,4 +18,13 @@ public class AdotanteDto {
         dto.telefone = a.getTelefone() != null ? a.getTelefone() : "";
         return dto;
     }
+
+    @Override
+    public void escreverJson(SaidaJson saida) {
+        saida.abrirObjeto()
+                .campo(CPF, cpf)
+                .campo(NOME, nome)
+                .campo(TELEFONE, telefone)
+                .fecharObjeto();
+    }
 }
\ No newline at end of file
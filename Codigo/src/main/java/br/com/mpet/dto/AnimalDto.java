@@ -4,10 +4,20 @@ import br.com.mpet.model.Animal;
 import br.com.mpet.model.Cachorro;
 
 /**
- * DTO para serialização JSON de Animal usando Gson.
+ * DTO para serialização JSON de Animal (sem reflexão, ver {@link JsonSerializavel}).
  * Evita exposição direta dos campos internos da entidade.
  */
-public class AnimalDto {
+public class AnimalDto implements JsonSerializavel {
+    private static final byte[] ID = SaidaJson.nome("id");
+    private static final byte[] ID_ONG = SaidaJson.nome("idOng");
+    private static final byte[] NOME = SaidaJson.nome("nome");
+    private static final byte[] TIPO = SaidaJson.nome("tipo");
+    private static final byte[] PORTE = SaidaJson.nome("porte");
+    private static final byte[] SEXO = SaidaJson.nome("sexo");
+    private static final byte[] VACINADO = SaidaJson.nome("vacinado");
+    private static final byte[] DESCRICAO = SaidaJson.nome("descricao");
+    private static final byte[] IMAGE_URL = SaidaJson.nome("imageUrl");
+
     public int id;
     public int idOng;
     public String nome;
@@ -31,4 +41,19 @@ public class AnimalDto {
         dto.imageUrl = a.getImageUrl() != null ? a.getImageUrl() : "";
         return dto;
     }
+
+    @Override
+    public void escreverJson(SaidaJson saida) {
+        saida.abrirObjeto()
+                .campo(ID, id)
+                .campo(ID_ONG, idOng)
+                .campo(NOME, nome)
+                .campo(TIPO, tipo)
+                .campo(PORTE, porte)
+                .campo(SEXO, sexo)
+                .campo(VACINADO, vacinado)
+                .campo(DESCRICAO, descricao)
+                .campo(IMAGE_URL, imageUrl)
+                .fecharObjeto();
+    }
 }
\ No newline at end of file
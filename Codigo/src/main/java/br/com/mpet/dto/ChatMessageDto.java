@@ -2,7 +2,13 @@ package br.com.mpet.dto;
 
 import br.com.mpet.model.ChatMessage;
 
-public class ChatMessageDto {
+public class ChatMessageDto implements JsonSerializavel {
+    private static final byte[] ID = SaidaJson.nome("id");
+    private static final byte[] THREAD_ID = SaidaJson.nome("threadId");
+    private static final byte[] SENDER = SaidaJson.nome("sender");
+    private static final byte[] CONTEUDO = SaidaJson.nome("conteudo");
+    private static final byte[] ENVIADO_EM = SaidaJson.nome("enviadoEm");
+
     public int id;
     public int threadId;
     public String sender;
@@ -25,4 +31,15 @@ public class ChatMessageDto {
         
         return dto;
     }
+
+    @Override
+    public void escreverJson(SaidaJson saida) {
+        saida.abrirObjeto()
+                .campo(ID, id)
+                .campo(THREAD_ID, threadId)
+                .campo(SENDER, sender)
+                .campo(CONTEUDO, conteudo)
+                .campo(ENVIADO_EM, enviadoEm)
+                .fecharObjeto();
+    }
 }
\ No newline at end of file
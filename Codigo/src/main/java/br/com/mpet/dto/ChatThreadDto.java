@@ -2,7 +2,13 @@ package br.com.mpet.dto;
 
 import br.com.mpet.model.ChatThread;
 
-public class ChatThreadDto {
+public class ChatThreadDto implements JsonSerializavel {
+    private static final byte[] ID = SaidaJson.nome("id");
+    private static final byte[] ID_ANIMAL = SaidaJson.nome("idAnimal");
+    private static final byte[] CPF_ADOTANTE = SaidaJson.nome("cpfAdotante");
+    private static final byte[] ABERTO = SaidaJson.nome("aberto");
+    private static final byte[] CRIADO_EM = SaidaJson.nome("criadoEm");
+
     public int id;
     public int idAnimal;
     public String cpfAdotante;
@@ -25,4 +31,15 @@ public class ChatThreadDto {
         
         return dto;
     }
+
+    @Override
+    public void escreverJson(SaidaJson saida) {
+        saida.abrirObjeto()
+                .campo(ID, id)
+                .campo(ID_ANIMAL, idAnimal)
+                .campo(CPF_ADOTANTE, cpfAdotante)
+                .campo(ABERTO, aberto)
+                .campo(CRIADO_EM, criadoEm)
+                .fecharObjeto();
+    }
 }
\ No newline at end of file
@@ -2,7 +2,12 @@ package br.com.mpet.dto;
 
 import br.com.mpet.model.Interesse;
 
-public class InteresseDto {
+public class InteresseDto implements JsonSerializavel {
+    private static final byte[] ID = SaidaJson.nome("id");
+    private static final byte[] CPF_ADOTANTE = SaidaJson.nome("cpfAdotante");
+    private static final byte[] ID_ANIMAL = SaidaJson.nome("idAnimal");
+    private static final byte[] STATUS = SaidaJson.nome("status");
+
     public int id;
     public String cpfAdotante;
     public int idAnimal;
@@ -16,4 +21,14 @@ public class InteresseDto {
         dto.status = i.getStatus() != null ? i.getStatus().toString() : "";
         return dto;
     }
+
+    @Override
+    public void escreverJson(SaidaJson saida) {
+        saida.abrirObjeto()
+                .campo(ID, id)
+                .campo(CPF_ADOTANTE, cpfAdotante)
+                .campo(ID_ANIMAL, idAnimal)
+                .campo(STATUS, status)
+                .fecharObjeto();
+    }
 }
\ No newline at end of file
@@ -0,0 +1,17 @@
+package br.com.mpet.dto;
+
+/**
+ * DTO que sabe se escrever em JSON sem reflexão (ver {@link SaidaJson}).
+ * O resultado é o mesmo de {@code new Gson().toJson(dto)}.
+ */
+public interface JsonSerializavel {
+
+    /** Escreve este DTO como um objeto JSON na posição atual de {@code saida}. */
+    void escreverJson(SaidaJson saida);
+
+    default String toJson() {
+        SaidaJson saida = new SaidaJson();
+        escreverJson(saida);
+        return saida.toString();
+    }
+}
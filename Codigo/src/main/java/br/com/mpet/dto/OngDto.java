@@ -2,7 +2,14 @@ package br.com.mpet.dto;
 
 import br.com.mpet.model.Ong;
 
-public class OngDto {
+public class OngDto implements JsonSerializavel {
+    private static final byte[] ID = SaidaJson.nome("id");
+    private static final byte[] NOME = SaidaJson.nome("nome");
+    private static final byte[] CNPJ = SaidaJson.nome("cnpj");
+    private static final byte[] ENDERECO = SaidaJson.nome("endereco");
+    private static final byte[] TELEFONE = SaidaJson.nome("telefone");
+    private static final byte[] ATIVO = SaidaJson.nome("ativo");
+
     public int id;
     public String nome;
     public String cnpj;
@@ -20,4 +27,16 @@ public class OngDto {
         dto.ativo = o.isAtivo();
         return dto;
     }
+
+    @Override
+    public void escreverJson(SaidaJson saida) {
+        saida.abrirObjeto()
+                .campo(ID, id)
+                .campo(NOME, nome)
+                .campo(CNPJ, cnpj)
+                .campo(ENDERECO, endereco)
+                .campo(TELEFONE, telefone)
+                .campo(ATIVO, ativo)
+                .fecharObjeto();
+    }
 }
\ No newline at end of file
@@ -0,0 +1,325 @@
+package br.com.mpet.dto;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Escritor de JSON que codifica direto em bytes UTF-8 num buffer reutilizável, sem reflexão,
+ * sem String intermediária e sem Writer/CharsetEncoder no caminho.
+ *
+ * Produz os mesmos bytes que {@code new Gson().toJson(dto)} para os DTOs deste pacote: campos
+ * null são omitidos e o escape segue o de Gson com HTML seguro (aspas, barra e controles comuns
+ * com a forma curta; demais controles, {@code < > & = '}, U+2028 e U+2029 como escape unicode
+ * com hexadecimal minúsculo). Surrogates sem par viram '?', igual a {@code String.getBytes(UTF_8)}.
+ *
+ * Os nomes de campo são pré-codificados uma vez ({@link #nome(String)}) e copiados com
+ * {@code arraycopy}; em strings, o trecho ASCII que não precisa de escape (quase tudo: ids,
+ * CPFs, enums, nomes sem acento) é copiado byte a byte num laço curto, e só o restante
+ * passa pelo caminho geral.
+ * <pre>
+ *   saida.limpar();
+ *   saida.abrirArray();
+ *   for (AnimalDto dto : dtos) {
+ *       dto.escreverJson(saida);
+ *       if (saida.tamanho() >= 16 * 1024) saida.descarregar(corpo);
+ *   }
+ *   saida.fecharArray().descarregar(corpo);
+ * </pre>
+ *
+ * Não é thread-safe: cada instância deve ser usada por uma thread de cada vez.
+ */
+public final class SaidaJson {
+
+    /** Escape de cada caractere ASCII; null = copiado como está. */
+    private static final byte[][] ESCAPES = new byte[128][];
+
+    static {
+        for (int c = 0; c < 0x20; c++) ESCAPES[c] = ascii(String.format("\\u%04x", c));
+        ESCAPES['"'] = ascii("\\\"");
+        ESCAPES['\\'] = ascii("\\\\");
+        ESCAPES['\t'] = ascii("\\t");
+        ESCAPES['\b'] = ascii("\\b");
+        ESCAPES['\n'] = ascii("\\n");
+        ESCAPES['\r'] = ascii("\\r");
+        ESCAPES['\f'] = ascii("\\f");
+        for (char c : new char[]{'<', '>', '&', '=', '\''}) ESCAPES[c] = ascii(String.format("\\u%04x", (int) c));
+    }
+
+    private static final byte[] VERDADEIRO = ascii("true");
+    private static final byte[] FALSO = ascii("false");
+    private static final byte[] LONG_MIN = ascii(Long.toString(Long.MIN_VALUE));
+
+    private byte[] buf;
+    private int pos;
+    private boolean virgula; // o próximo valor/campo do contêiner atual precisa de ',' antes
+
+    public SaidaJson() {
+        this(256);
+    }
+
+    public SaidaJson(int capacidadeInicial) {
+        this.buf = new byte[Math.max(16, capacidadeInicial)];
+    }
+
+    /**
+     * {@code "campo":} já escapado e codificado, para guardar numa constante do DTO e passar a
+     * {@link #campo(byte[], String)} e afins.
+     */
+    public static byte[] nome(String campo) {
+        SaidaJson s = new SaidaJson(campo.length() + 8);
+        s.string(campo);
+        s.byte_(':');
+        return s.toByteArray();
+    }
+
+    /** Volta o cursor para o início; a capacidade já alocada é mantida. */
+    public SaidaJson limpar() {
+        pos = 0;
+        virgula = false;
+        return this;
+    }
+
+    /** Bytes escritos desde o último {@link #limpar()} ou {@link #descarregar(OutputStream)}. */
+    public int tamanho() {
+        return pos;
+    }
+
+    /** Array de apoio; os bytes válidos vão de 0 até {@link #tamanho()} (exclusivo). */
+    public byte[] array() {
+        return buf;
+    }
+
+    public byte[] toByteArray() {
+        byte[] out = new byte[pos];
+        System.arraycopy(buf, 0, out, 0, pos);
+        return out;
+    }
+
+    /**
+     * Envia os bytes acumulados para {@code out} e esvazia o buffer, mantendo o estado do JSON
+     * (contêineres abertos, vírgulas) para a escrita continuar de onde parou.
+     */
+    public SaidaJson descarregar(OutputStream out) throws IOException {
+        out.write(buf, 0, pos);
+        pos = 0;
+        return this;
+    }
+
+    /** JSON acumulado como String. */
+    @Override
+    public String toString() {
+        return new String(buf, 0, pos, StandardCharsets.UTF_8);
+    }
+
+    /* =============================================================
+     * ESTRUTURA
+     * ============================================================= */
+
+    public SaidaJson abrirObjeto() {
+        separar();
+        byte_('{');
+        virgula = false;
+        return this;
+    }
+
+    public SaidaJson fecharObjeto() {
+        byte_('}');
+        virgula = true;
+        return this;
+    }
+
+    public SaidaJson abrirArray() {
+        separar();
+        byte_('[');
+        virgula = false;
+        return this;
+    }
+
+    public SaidaJson fecharArray() {
+        byte_(']');
+        virgula = true;
+        return this;
+    }
+
+    /** Só o nome; o valor vem em seguida (ex.: {@link #abrirObjeto()} de um objeto aninhado). */
+    public SaidaJson chave(byte[] nome) {
+        separar();
+        bytes(nome);
+        virgula = false;
+        return this;
+    }
+
+    public SaidaJson chave(String nome) {
+        separar();
+        string(nome);
+        byte_(':');
+        virgula = false;
+        return this;
+    }
+
+    /* =============================================================
+     * CAMPOS (nome pré-codificado por {@link #nome(String)})
+     * ============================================================= */
+
+    /** Campo string; null não é escrito (como Gson sem {@code serializeNulls}). */
+    public SaidaJson campo(byte[] nome, String valor) {
+        if (valor == null) return this;
+        chave(nome);
+        string(valor);
+        virgula = true;
+        return this;
+    }
+
+    public SaidaJson campo(byte[] nome, long valor) {
+        chave(nome);
+        numero(valor);
+        virgula = true;
+        return this;
+    }
+
+    public SaidaJson campo(byte[] nome, boolean valor) {
+        chave(nome);
+        bytes(valor ? VERDADEIRO : FALSO);
+        virgula = true;
+        return this;
+    }
+
+    /** Para respostas montadas uma vez só (ex.: login), onde pré-codificar o nome não compensa. */
+    public SaidaJson campo(String nome, String valor) {
+        if (valor == null) return this;
+        chave(nome);
+        string(valor);
+        virgula = true;
+        return this;
+    }
+
+    public SaidaJson campo(String nome, long valor) {
+        chave(nome);
+        numero(valor);
+        virgula = true;
+        return this;
+    }
+
+    public SaidaJson campo(String nome, boolean valor) {
+        chave(nome);
+        bytes(valor ? VERDADEIRO : FALSO);
+        virgula = true;
+        return this;
+    }
+
+    /* ============================================================= */
+
+    private void separar() {
+        if (virgula) byte_(',');
+    }
+
+    private void byte_(int b) {
+        garantir(1);
+        buf[pos++] = (byte) b;
+    }
+
+    private void bytes(byte[] b) {
+        garantir(b.length);
+        System.arraycopy(b, 0, buf, pos, b.length);
+        pos += b.length;
+    }
+
+    private void numero(long v) {
+        if (v == Long.MIN_VALUE) {
+            bytes(LONG_MIN);
+            return;
+        }
+        garantir(20);
+        if (v < 0) {
+            buf[pos++] = '-';
+            v = -v;
+        }
+        int digitos = 1;
+        for (long t = v; t >= 10; t /= 10) digitos++;
+        int p = pos + digitos;
+        pos = p;
+        do {
+            buf[--p] = (byte) ('0' + (v % 10));
+            v /= 10;
+        } while (v != 0);
+    }
+
+    /** String entre aspas, escapada e em UTF-8. */
+    private void string(String s) {
+        int n = s.length();
+        garantir(n + 2); // suficiente se não houver escape nem caractere fora do ASCII
+        byte[] b = buf;
+        int p = pos;
+        b[p++] = '"';
+        int i = 0;
+        // Caminho rápido: ASCII sem escape vai direto para o array
+        for (; i < n; i++) {
+            char c = s.charAt(i);
+            if (c >= 0x80 || ESCAPES[c] != null) break;
+            b[p++] = (byte) c;
+        }
+        pos = p;
+        if (i < n) stringGeral(s, i);
+        byte_('"');
+    }
+
+    /** Restante de {@code s} a partir de {@code i}: reserva o pior caso, 6 bytes por char (escape unicode). */
+    private void stringGeral(String s, int i) {
+        int n = s.length();
+        garantir(6 * (n - i));
+        byte[] b = buf;
+        int p = pos;
+        for (; i < n; i++) {
+            char c = s.charAt(i);
+            if (c < 0x80) {
+                byte[] esc = ESCAPES[c];
+                if (esc == null) {
+                    b[p++] = (byte) c;
+                } else {
+                    System.arraycopy(esc, 0, b, p, esc.length);
+                    p += esc.length;
+                }
+            } else if (c < 0x800) {
+                b[p++] = (byte) (0xC0 | (c >> 6));
+                b[p++] = (byte) (0x80 | (c & 0x3F));
+            } else if (c == '\u2028' || c == '\u2029') {
+                b[p++] = '\\';
+                b[p++] = 'u';
+                b[p++] = '2';
+                b[p++] = '0';
+                b[p++] = '2';
+                b[p++] = (byte) (c == '\u2028' ? '8' : '9');
+            } else if (Character.isSurrogate(c)) {
+                int cp = -1;
+                if (Character.isHighSurrogate(c) && i + 1 < n && Character.isLowSurrogate(s.charAt(i + 1))) {
+                    cp = Character.toCodePoint(c, s.charAt(++i));
+                }
+                if (cp < 0) {
+                    b[p++] = '?';
+                } else {
+                    b[p++] = (byte) (0xF0 | (cp >> 18));
+                    b[p++] = (byte) (0x80 | ((cp >> 12) & 0x3F));
+                    b[p++] = (byte) (0x80 | ((cp >> 6) & 0x3F));
+                    b[p++] = (byte) (0x80 | (cp & 0x3F));
+                }
+            } else {
+                b[p++] = (byte) (0xE0 | (c >> 12));
+                b[p++] = (byte) (0x80 | ((c >> 6) & 0x3F));
+                b[p++] = (byte) (0x80 | (c & 0x3F));
+            }
+        }
+        pos = p;
+    }
+
+    private void garantir(int extra) {
+        if (buf.length - pos >= extra) return;
+        byte[] maior = new byte[Math.max(pos + extra, buf.length * 2)];
+        System.arraycopy(buf, 0, maior, 0, pos);
+        buf = maior;
+    }
+
+    private static byte[] ascii(String s) {
+        return s.getBytes(StandardCharsets.US_ASCII);
+    }
+}
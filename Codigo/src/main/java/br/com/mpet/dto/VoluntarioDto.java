@@ -2,7 +2,13 @@ package br.com.mpet.dto;
 
 import br.com.mpet.model.Voluntario;
 
-public class VoluntarioDto {
+public class VoluntarioDto implements JsonSerializavel {
+    private static final byte[] CPF = SaidaJson.nome("cpf");
+    private static final byte[] NOME = SaidaJson.nome("nome");
+    private static final byte[] TELEFONE = SaidaJson.nome("telefone");
+    private static final byte[] ID_ONG = SaidaJson.nome("idOng");
+    private static final byte[] CARGO = SaidaJson.nome("cargo");
+
     public String cpf;
     public String nome;
     public String telefone;
@@ -18,4 +24,15 @@ public class VoluntarioDto {
         dto.cargo = v.getCargo() != null ? v.getCargo().toString() : "";
         return dto;
     }
+
+    @Override
+    public void escreverJson(SaidaJson saida) {
+        saida.abrirObjeto()
+                .campo(CPF, cpf)
+                .campo(NOME, nome)
+                .campo(TELEFONE, telefone)
+                .campo(ID_ONG, idOng)
+                .campo(CARGO, cargo)
+                .fecharObjeto();
+    }
 }
\ No newline at end of file
@@ -1,5 +1,7 @@
 package br.com.mpet.model;
 
+import java.util.function.UnaryOperator;
+
 /**
  * Classe base abstrata para qualquer usuário do sistema (adotantes, voluntários, etc.).
  * Contém atributos comuns e credenciais básicas.
@@ -14,6 +16,10 @@ public abstract class Usuario {
     String cpf;
     String senha; // Observação: em produção, armazene hash/salt em vez de texto puro
 
+    // Senha como veio do disco (criptografada); só é decifrada na primeira chamada a getSenha()
+    transient String senhaArmazenada;
+    transient UnaryOperator<String> decifrador;
+
     // Futuramente: perfis/roles comuns aqui, se necessário
 
     // Getters/Setters básicos para permitir persistência em DAOs
@@ -26,6 +32,24 @@ public abstract class Usuario {
     public String getCpf() { return cpf; }
     public void setCpf(String cpf) { this.cpf = cpf; }
 
-    public String getSenha() { return senha; }
-    public void setSenha(String senha) { this.senha = senha; }
+    public String getSenha() {
+        if (senha == null && senhaArmazenada != null) senha = decifrador.apply(senhaArmazenada);
+        return senha;
+    }
+
+    public void setSenha(String senha) {
+        this.senha = senha;
+        this.senhaArmazenada = null;
+        this.decifrador = null;
+    }
+
+    /** Define a senha na forma armazenada; {@code decifrador} só roda se a senha for lida. */
+    public void setSenhaArmazenada(String armazenada, UnaryOperator<String> decifrador) {
+        this.senha = null;
+        this.senhaArmazenada = armazenada;
+        this.decifrador = decifrador;
+    }
+
+    /** Forma armazenada da senha, ou null se ela foi definida/alterada via setSenha. */
+    public String getSenhaArmazenada() { return senhaArmazenada; }
 }
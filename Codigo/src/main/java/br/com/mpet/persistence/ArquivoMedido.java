@@ -0,0 +1,67 @@
+package br.com.mpet.persistence;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+
+/**
+ * RandomAccessFile que conta seeks, reads e writes em {@link MetricasArquivo}. Os métodos
+ * derivados (readFully, readInt, writeLong, ...) passam por estes, então tudo que os DAOs fazem
+ * no arquivo de dados é contado sem mudar o código deles. Como o próprio arquivo, deve ser usado
+ * sob o lock do DAO.
+ */
+final class ArquivoMedido extends RandomAccessFile {
+
+    private final MetricasArquivo metricas;
+
+    ArquivoMedido(File file, MetricasArquivo metricas) throws IOException {
+        super(file, "rw");
+        this.metricas = metricas;
+    }
+
+    @Override
+    public void seek(long pos) throws IOException {
+        metricas.seeks++;
+        super.seek(pos);
+    }
+
+    @Override
+    public int read() throws IOException {
+        int b = super.read();
+        metricas.leituras++;
+        if (b >= 0) metricas.bytesLidos++;
+        return b;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+        int n = super.read(b, off, len);
+        metricas.leituras++;
+        if (n > 0) metricas.bytesLidos += n;
+        return n;
+    }
+
+    @Override
+    public int read(byte[] b) throws IOException {
+        return read(b, 0, b.length);
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+        super.write(b);
+        metricas.escritas++;
+        metricas.bytesEscritos++;
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+        super.write(b, off, len);
+        metricas.escritas++;
+        metricas.bytesEscritos += len;
+    }
+
+    @Override
+    public void write(byte[] b) throws IOException {
+        write(b, 0, b.length);
+    }
+}
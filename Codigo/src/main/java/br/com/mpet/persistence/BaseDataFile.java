@@ -1,41 +1,250 @@
 package br.com.mpet.persistence;
 
+import br.com.mpet.persistence.index.ArvoreElemento;
+import br.com.mpet.persistence.index.BTree;
+import br.com.mpet.persistence.index.MapaIntLong;
+import br.com.mpet.persistence.io.EnvelopeCriptografia;
+import br.com.mpet.persistence.io.EsquemaRegistro;
 import br.com.mpet.persistence.io.FileHeaderHelper;
+import br.com.mpet.persistence.io.FiltroRegistro;
+import br.com.mpet.persistence.io.LayoutRegistro;
+import br.com.mpet.persistence.io.Projecao;
+import br.com.mpet.persistence.io.RecordReader;
+import br.com.mpet.persistence.io.RecordWriter;
 
 import java.io.Closeable;
 import java.io.File;
 import java.io.IOException;
 import java.io.RandomAccessFile;
+import java.io.UncheckedIOException;
+import java.security.PrivateKey;
+import java.security.PublicKey;
+import java.security.SecureRandom;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.function.Consumer;
+import java.util.function.ToLongFunction;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 /**
  * Classe base para DAOs que persistem em arquivo binário.
  * Gerencia o cabeçalho, o acesso ao arquivo e operações de baixo nível.
  *
+ * Criptografia em repouso (opcional, ver {@link #configurarCriptografiaEmRepouso}): num arquivo
+ * com {@link FileHeaderHelper#FLAG_CIFRADO} o cabeçalho de cada registro fica em claro (tombstone,
+ * id e len continuam alteráveis no lugar) e o payload é selado com {@link EnvelopeCriptografia}.
+ * Os DAOs montam o registro em claro e chamam {@link #selar(RecordWriter)}; {@link #lerRegistro}
+ * e {@link #varrerAtivos} já entregam o payload decifrado. O id do registro e o id do arquivo
+ * entram no AAD ({@link FileHeaderHelper#FLAG_AAD}), então trocar payloads de lugar é detectado.
+ *
  * @param <T> Tipo da entidade a ser persistida.
  */
 public abstract class BaseDataFile<T> implements Closeable {
 
     protected final File file;
+    /** Arquivo de dados; conta seeks, reads e writes em {@link #metricas} (ver {@link ArquivoMedido}). */
     protected final RandomAccessFile raf;
     protected final byte versaoFormato;
     protected FileHeaderHelper.Header header;
 
+    /** Buffer de escrita reaproveitado entre registros (acesso protegido pelos métodos synchronized dos DAOs). */
+    protected final RecordWriter writer = new RecordWriter(256);
+    /** Leitor reaproveitado sobre {@link #ioBuf}; válido até a próxima chamada de {@link #readRecord(long, int)}. */
+    protected final RecordReader reader = new RecordReader();
+    private byte[] ioBuf = new byte[256];
+
+    /** Tamanho do bloco lido de uma vez nas varreduras sequenciais. */
+    private static final int BLOCO_VARREDURA = 64 * 1024;
+    /** Tamanho das páginas buscadas por {@link #streamActive()}. */
+    private static final int PAGINA_STREAM = 256;
+    /** Distância máxima entre registros de um lote para lê-los na mesma operação. */
+    private static final int LACUNA_LOTE = 4 * 1024;
+    private byte[] loteBuf;
+    /** Bytes de registros acumulados por um createAll antes de ir ao disco. */
+    private static final int BUFFER_LOTE = 1024 * 1024;
+    /** Lote de criação em andamento (ver {@link #createAll}); null fora dele. */
+    private Lote lote;
+    private byte[] scanBuf;
+    private final RecordReader scanReader = new RecordReader();
+
+    /** Envelope do diretório se o arquivo é cifrado; null = payloads em claro. */
+    private EnvelopeCriptografia envelope;
+    private byte[] seladoBuf;     // saída de selar()
+    private final byte[] aadBuf = new byte[12]; // [idArquivo][id do registro]
+    private byte[] claroBuf;      // registro decifrado entregue por lerRegistro()
+    private byte[] claroScanBuf;  // registro decifrado entregue na varredura
+
+    /**
+     * Índices secundários em memória (campo → valor → offsets dos ativos, em ordem de arquivo),
+     * declarados pelos DAOs com {@link #indexarCampo}. São montados numa varredura na primeira
+     * consulta depois de abrir e, dali em diante, mantidos pelas escritas (append, sobrescrita e
+     * tombstone), como o índice B+.
+     */
+    private final Map<String, Map<Object, List<Long>>> indicesSecundarios = new LinkedHashMap<>();
+    private boolean indicesMontados;
+    private final RecordReader indiceReader = new RecordReader();
+    private byte[] indiceBuf;      // registro lido para atualizar os índices secundários
+    private byte[] indiceClaroBuf; // o mesmo, decifrado
+    private volatile long escritas;      // incrementado a cada escrita de registro (ver versao())
+
+    /** E/S e tempos por operação desde a abertura (ver {@link #metricas()}). */
+    private final MetricasArquivo metricas;
+
+    /** Instante em que este DAO abriu o arquivo e da última escrita (ver {@link #versao()}). */
+    private final long abertura = System.currentTimeMillis();
+    private volatile long modificadoEm;
+
+    /**
+     * Offset de cada registro do arquivo (ativos + tombstones), em ordem crescente: os registros só
+     * são acrescentados ao fim e nunca mudam de lugar. Contabilizado uma vez e mantido por
+     * {@link #anexar}; valida os cursores de {@link #list} e dá os totais de {@link #estatisticas()}.
+     */
+    private long[] inicios;
+    /** Posições usadas de {@link #inicios}; -1 = ainda não contabilizado. */
+    private int registrosTotais = -1;
+    private long bytesRemovidos;
+
+    /** Retorno de {@link #localizarPorId} para DAOs sem índice por id int. */
+    protected static final long SEM_INDICE = -2L;
+
+    /**
+     * Cache de leituras pontuais (ver {@link #lerRegistro}): offset → imagem do registro em claro.
+     * Guarda bytes, não entidades, porque quem lê costuma alterar o objeto antes do update; decodificar
+     * da memória é barato, o que se economiza é o acesso ao disco e a decifragem. null = desligado.
+     */
+    private CacheTinyLfu<Long, byte[]> cacheRegistros;
+    private static volatile long cachePadraoBytes = 2L * 1024 * 1024;
+
+    /** Onde ficam os mapas id → offset criados por {@link #novoMapaIds()} (ver {@link MapaIntLong}). */
+    private static volatile boolean indicesForaDoHeap;
+
+    private static volatile PublicKey chavePublicaRepouso;
+    private static volatile PrivateKey chavePrivadaRepouso;
+    private static volatile boolean cifrarNovosArquivos;
+    private static volatile boolean compactarNovosArquivos = true;
+
+    /** Visita um registro durante a varredura; retornar false interrompe. */
+    @FunctionalInterface
+    protected interface VisitanteRegistro {
+        boolean visitar(long offset, RecordReader registro) throws IOException;
+    }
+
     protected BaseDataFile(File file, byte versaoFormato) throws IOException {
         this.file = file;
         this.versaoFormato = versaoFormato;
-        this.raf = new RandomAccessFile(file, "rw");
-        if (raf.length() < FileHeaderHelper.HEADER_SIZE) {
-            this.header = FileHeaderHelper.initIfEmpty(raf, versaoFormato);
+        this.metricas = new MetricasArquivo(file.getName());
+        this.raf = new ArquivoMedido(file, metricas);
+        this.modificadoEm = file.lastModified();
+        boolean novo = raf.length() < FileHeaderHelper.HEADER_SIZE;
+        if (novo) {
+            this.header = FileHeaderHelper.initIfEmpty(raf, versaoFormato, compactarNovosArquivos
+                    ? FileHeaderHelper.CODIFICACAO_COMPACTA : FileHeaderHelper.CODIFICACAO_FIXA);
+            if (cifrarNovosArquivos) marcarCifrado();
             persistHeader();
         } else {
             this.header = FileHeaderHelper.read(raf);
             if (header.versaoFormato != versaoFormato) {
-                throw new IOException("Versão do formato de arquivo incompatível.");
+                if (!suportaVersao(header.versaoFormato)) {
+                    throw new IOException("Versão do formato de arquivo incompatível.");
+                }
+                if (header.versaoFormato < versaoFormato) {
+                    // Só houve campos acrescentados ao fim do payload: os registros antigos continuam
+                    // legíveis como estão, então basta promover a versão do cabeçalho.
+                    header.versaoFormato = versaoFormato;
+                    persistHeader();
+                }
             }
+            // A codificação é a do arquivo (novos registros também); vacuum() o regrava na
+            // configurada para arquivos novos (ver configurarPayloadCompacto).
         }
+        this.envelope = header.isCifrado() ? abrirEnvelope() : null;
+        configurarCache(cachePadraoBytes);
+    }
+
+    private EnvelopeCriptografia abrirEnvelope() throws IOException {
+        if (chavePrivadaRepouso == null) {
+            raf.close();
+            throw new IOException("Arquivo cifrado em repouso e chaves RSA não configuradas: " + file);
+        }
+        try {
+            return EnvelopeCriptografia.doDiretorio(file.getAbsoluteFile().getParentFile(), chavePublicaRepouso, chavePrivadaRepouso);
+        } catch (IOException e) {
+            raf.close();
+            throw e;
+        }
+    }
+
+    /** Passa a selar os payloads de um arquivo ainda sem registros (destino de {@link #copiarAtivos}). */
+    private void ligarCifragem() throws IOException {
+        marcarCifrado();
+        persistHeader();
+        envelope = abrirEnvelope();
+    }
+
+    private void marcarCifrado() {
+        header.flags |= FileHeaderHelper.FLAG_CIFRADO | FileHeaderHelper.FLAG_AAD;
+        header.idArquivo = new SecureRandom().nextLong();
+    }
+
+    /**
+     * Configura as chaves RSA que embrulham a chave de dados dos arquivos cifrados.
+     * Com {@code cifrarNovos}, arquivos criados a partir daqui (inclusive os temporários do
+     * vacuum(), que migra um arquivo em claro mantendo os ids) nascem cifrados; arquivos existentes
+     * mantêm o modo com que foram criados, e o vacuum de um arquivo cifrado continua cifrado.
+     */
+    public static void configurarCriptografiaEmRepouso(PublicKey publica, PrivateKey privada, boolean cifrarNovos) {
+        chavePublicaRepouso = publica;
+        chavePrivadaRepouso = privada;
+        cifrarNovosArquivos = cifrarNovos;
+    }
+
+    /**
+     * Codificação do payload dos arquivos criados daqui em diante, inclusive os temporários do
+     * vacuum(), que assim migra um arquivo existente. Padrão: compacta.
+     */
+    public static void configurarPayloadCompacto(boolean compacto) {
+        compactarNovosArquivos = compacto;
+    }
+
+    /** true se os payloads deste arquivo são cifrados. */
+    public boolean isCifrado() {
+        return envelope != null;
+    }
+
+    /**
+     * true se o DAO sabe ler e gravar um arquivo na versão {@code versaoArquivo} (diferente da
+     * pedida). Chamado pelo construtor: a implementação só pode usar estado estático.
+     */
+    protected boolean suportaVersao(byte versaoArquivo) {
+        return false;
+    }
+
+    /** Versão do esquema dos registros deste arquivo (a do cabeçalho). */
+    protected byte versaoArquivo() {
+        return header.versaoFormato;
+    }
+
+    /** true se os payloads deste arquivo estão na codificação compacta (ver {@link EsquemaRegistro}). */
+    protected boolean payloadCompacto() {
+        return header.isCompacto();
     }
 
     protected void persistHeader() throws IOException {
+        if (lote != null) {
+            lote.headerSujo = true; // gravado uma vez só, ao concluir o lote
+            return;
+        }
         FileHeaderHelper.write(raf, header);
     }
 
@@ -46,6 +255,36 @@ public abstract class BaseDataFile<T> implements Closeable {
         return id;
     }
 
+    /**
+     * Regrava os registros ativos deste arquivo em {@code destino}, um arquivo novo (o temporário
+     * do vacuum): cada registro é decodificado por inteiro e entregue a {@link #gravarCopia} do
+     * destino, que o codifica na versão e no modo de cifragem dele com o mesmo id e chave, sem
+     * passar pelo create (nem ids novos, nem defaults, nem efeitos colaterais). A cópia é um lote
+     * (como {@link #createAll}): registros apendados em sequência, índice B+ inserido ordenado e
+     * cabeçalho gravado uma vez. O sequencial do destino fica igual ao deste, para ids de
+     * registros removidos não voltarem. Um arquivo cifrado nunca é copiado em claro: se o destino
+     * nasceu sem cifragem (chaves configuradas sem cifrarNovos), ela é ligada nele antes da cópia.
+     */
+    protected void copiarAtivos(BaseDataFile<T> destino) throws IOException {
+        if (destino.raf.length() > FileHeaderHelper.HEADER_SIZE) {
+            throw new IOException("Arquivo de destino não está vazio (sobra de um vacuum interrompido?): " + destino.file);
+        }
+        if (isCifrado() && !destino.isCifrado()) destino.ligarCifragem();
+        long mascara = layout().mascara(Projecao.TODOS);
+        int[] copiados = {0};
+        destino.gravarEmLote(() -> varrerAtivos((offset, r) -> {
+            T t = decodificar(r, mascara);
+            if (t != null) {
+                destino.gravarCopia(t);
+                copiados[0]++;
+            }
+            return true;
+        }));
+        destino.header.countAtivos = copiados[0];
+        destino.header.proximoId = Math.max(destino.header.proximoId, header.proximoId);
+        destino.persistHeader();
+    }
+
     protected void incrementCountAtivos() throws IOException {
         header.countAtivos++;
         persistHeader();
@@ -57,20 +296,150 @@ public abstract class BaseDataFile<T> implements Closeable {
     }
 
     protected long appendRecord(byte[] record) throws IOException {
-        long offset = raf.length();
-        raf.seek(offset);
-        raf.write(record);
+        return anexar(record, 0, record.length);
+    }
+
+    /** Apenda os bytes acumulados no writer (registro completo) e retorna o offset. */
+    protected long appendRecord(RecordWriter w) throws IOException {
+        return anexar(w.array(), 0, w.position());
+    }
+
+    /** Dentro de um lote o registro vai para o buffer do lote; o offset devolvido é o definitivo. */
+    private long anexar(byte[] b, int off, int len) throws IOException {
+        registrarEscrita();
+        long offset;
+        if (lote != null) {
+            offset = lote.anexar(raf, b, off, len);
+        } else {
+            long inicio = MetricasArquivo.iniciar();
+            offset = raf.length();
+            raf.seek(offset);
+            raf.write(b, off, len);
+            metricas.concluir(MetricasArquivo.Operacao.ESCRITA, inicio);
+        }
+        if (registrosTotais >= 0) guardarInicio(offset);
+        if (indicesMontados && b[off + recPosTombstone()] == 0) indexar(offset, chaves(b, off, len), true);
         return offset;
     }
 
+    /**
+     * Insere (chave, offset) no índice B+ do DAO. Dentro de um lote a inserção é adiada e feita,
+     * em ordem de chave, ao concluir o lote.
+     */
+    protected void inserirIndice(BTree<ArvoreElemento> arvore, int chave, long offset) throws IOException {
+        if (lote != null) {
+            lote.indices.computeIfAbsent(arvore, k -> new ArrayList<>()).add(new ArvoreElemento(chave, offset));
+            return;
+        }
+        try {
+            arvore.create(new ArvoreElemento(chave, offset));
+        } catch (Exception e) {
+            throw new IOException("Erro ao inserir no índice B+", e);
+        }
+    }
+
     protected void overwritePayload(long offset, byte[] payload) throws IOException {
+        registrarEscrita();
+        invalidarCache(offset - recPosPayload());
+        Object[] antes = indicesMontados ? chavesNoArquivo(offset - recPosPayload()) : null;
+        long inicio = MetricasArquivo.iniciar();
         raf.seek(offset);
         raf.write(payload);
+        metricas.concluir(MetricasArquivo.Operacao.ESCRITA, inicio);
+        if (antes != null) reindexar(offset - recPosPayload(), antes);
     }
 
-    protected void markTombstone(long offset) throws IOException {
+    /** Sobrescreve com os bytes do writer a partir de {@code from} (ex.: só o payload). */
+    protected void overwritePayload(long offset, RecordWriter w, int from) throws IOException {
+        registrarEscrita();
+        invalidarCache(offset - recPosPayload());
+        Object[] antes = indicesMontados ? chavesNoArquivo(offset - recPosPayload()) : null;
+        long inicio = MetricasArquivo.iniciar();
         raf.seek(offset);
+        raf.write(w.array(), from, w.position() - from);
+        metricas.concluir(MetricasArquivo.Operacao.ESCRITA, inicio);
+        if (antes != null) reindexar(offset - recPosPayload(), antes);
+    }
+
+    /**
+     * Sela o payload do registro montado em {@code w} (a partir de {@link #recPosPayload()}) e
+     * corrige o len; sem criptografia devolve {@code w} intacto. Chamado pelos DAOs logo após
+     * montar o registro, antes de appendRecord/overwritePayload.
+     */
+    protected RecordWriter selar(RecordWriter w) throws IOException {
+        if (envelope == null) return w;
+        int posPayload = recPosPayload();
+        int claro = w.position() - posPayload;
+        int selado = EnvelopeCriptografia.tamanhoSelado(claro);
+        if (seladoBuf == null || seladoBuf.length < selado) seladoBuf = new byte[Math.max(selado, 256)];
+        int n = envelope.selar(w.array(), posPayload, claro, seladoBuf, 0, aad(lerInt(w.array(), recPosId())));
+        return w.position(posPayload).writeBytes(seladoBuf, 0, n).putInt(recPosLen(), n);
+    }
+
+    /** AAD do registro {@code id} neste arquivo; null nos cifrados antes do AAD. */
+    private byte[] aad(int id) {
+        if (!header.usaAad()) return null;
+        long f = header.idArquivo;
+        for (int i = 0; i < 8; i++) aadBuf[i] = (byte) (f >>> (56 - 8 * i));
+        escreverInt(aadBuf, 8, id);
+        return aadBuf;
+    }
+
+    /**
+     * Copia o cabeçalho e decifra o payload do registro {@code src[p, p+total)} para {@code dst}
+     * (recriado se pequeno), corrige o len para o tamanho em claro e posiciona {@code destino}.
+     */
+    private byte[] abrirRegistro(byte[] src, int p, int total, byte[] dst, RecordReader destino) throws IOException {
+        int posPayload = recPosPayload();
+        int max = total - EnvelopeCriptografia.SOBRECARGA;
+        if (dst == null || dst.length < max) dst = new byte[Math.max(max, 256)];
+        System.arraycopy(src, p, dst, 0, posPayload);
+        int claro = envelope.abrir(src, p + posPayload, total - posPayload, dst, posPayload, aad(lerInt(src, p + recPosId())));
+        escreverInt(dst, recPosLen(), claro);
+        destino.wrap(dst, 0, posPayload + claro);
+        return dst;
+    }
+
+    /**
+     * Conta uma escrita: muda a {@link #versao()}. A data vai
+     * antes do contador para que quem vê o contador novo veja também a data nova.
+     */
+    private void registrarEscrita() {
+        modificadoEm = System.currentTimeMillis();
+        escritas++;
+    }
+
+    /**
+     * Versão atual dos dados, lida sem lock e sem tocar no arquivo. Quem a usa para validar um
+     * cache deve lê-la antes dos dados: uma escrita no meio só deixa a versão lida atrasada
+     * (o cliente busca de novo depois), nunca adiantada em relação ao que foi enviado.
+     */
+    public VersaoDados versao() {
+        long e = escritas;
+        return new VersaoDados(abertura, e, modificadoEm);
+    }
+
+    /** Versão com outro contador e data, no mesmo espaço de {@link #versao()} (ex.: por subconjunto de registros). */
+    protected VersaoDados versao(long escritas, long modificadoEm) {
+        return new VersaoDados(abertura, escritas, modificadoEm);
+    }
+
+    /** Marca como removido o registro que começa em {@code offset}. */
+    protected void markTombstone(long offset) throws IOException {
+        registrarEscrita();
+        invalidarCache(offset);
+        if (indicesMontados) {
+            Object[] chaves = chavesNoArquivo(offset);
+            if (chaves != null) indexar(offset, chaves, false);
+        }
+        long inicio = MetricasArquivo.iniciar();
+        if (registrosTotais >= 0) {
+            raf.seek(offset + recPosLen());
+            bytesRemovidos += recPosPayload() + raf.readInt();
+        }
+        raf.seek(offset + recPosTombstone());
         raf.writeByte(1); // 1 = tombstone
+        metricas.concluir(MetricasArquivo.Operacao.ESCRITA, inicio);
     }
 
     protected byte[] readBytes(long offset, int len) throws IOException {
@@ -80,6 +449,785 @@ public abstract class BaseDataFile<T> implements Closeable {
         return buf;
     }
 
+    /**
+     * Lê {@code len} bytes a partir de {@code offset} para o buffer interno e devolve
+     * o {@link #reader} posicionado no início. Não aloca por registro.
+     */
+    protected RecordReader readRecord(long offset, int len) throws IOException {
+        if (ioBuf.length < len) ioBuf = new byte[Math.max(len, ioBuf.length * 2)];
+        raf.seek(offset);
+        raf.readFully(ioBuf, 0, len);
+        return reader.wrap(ioBuf, 0, len);
+    }
+
+    /**
+     * Lê o registro completo (cabeçalho + payload) em {@code offset} e devolve o {@link #reader}
+     * posicionado no início do registro. Normalmente resolve com um único read: lê um bloco do
+     * tamanho do buffer interno e só completa se o payload for maior.
+     */
+    protected RecordReader lerRegistro(long offset) throws IOException {
+        if (cacheRegistros != null) {
+            byte[] imagem = cacheRegistros.get(offset);
+            if (imagem != null) return reader.wrap(imagem, 0, imagem.length);
+        }
+        long inicio = MetricasArquivo.iniciar();
+        int posPayload = recPosPayload();
+        raf.seek(offset);
+        int lidos = 0;
+        while (lidos < posPayload) {
+            int n = raf.read(ioBuf, lidos, ioBuf.length - lidos);
+            if (n < 0) throw new IOException("Registro truncado no offset " + offset);
+            lidos += n;
+        }
+        int len = lerInt(ioBuf, recPosLen());
+        int total = posPayload + len;
+        if (total > ioBuf.length) {
+            byte[] maior = new byte[Math.max(total, ioBuf.length * 2)];
+            System.arraycopy(ioBuf, 0, maior, 0, lidos);
+            ioBuf = maior;
+        }
+        if (lidos < total) raf.readFully(ioBuf, lidos, total - lidos);
+        if (envelope != null) {
+            claroBuf = abrirRegistro(ioBuf, 0, total, claroBuf, reader);
+            if (cacheRegistros != null) {
+                cacheRegistros.put(offset, Arrays.copyOf(claroBuf, posPayload + lerInt(claroBuf, recPosLen())));
+            }
+            metricas.concluir(MetricasArquivo.Operacao.LEITURA, inicio);
+            return reader;
+        }
+        if (cacheRegistros != null) cacheRegistros.put(offset, Arrays.copyOf(ioBuf, total));
+        metricas.concluir(MetricasArquivo.Operacao.LEITURA, inicio);
+        return reader.wrap(ioBuf, 0, total);
+    }
+
+    /**
+     * Varre o arquivo em ordem, lendo blocos de {@value #BLOCO_VARREDURA} bytes, e entrega ao
+     * visitante cada registro ativo (leitor posicionado no início do registro e limitado ao seu fim).
+     * O visitante pode usar {@link #readRecord}/{@link #lerRegistro}: a varredura usa buffer próprio.
+     */
+    protected void varrerAtivos(VisitanteRegistro visitante) throws IOException {
+        varrerAtivos(FileHeaderHelper.HEADER_SIZE, visitante);
+    }
+
+    /**
+     * Varre a partir do registro em {@code inicio} (offset de início de registro). Retorna o offset
+     * do registro em que o visitante parou — esse registro não conta como consumido e a varredura
+     * pode ser retomada nele — ou {@link Page#FIM} se chegou ao fim do arquivo.
+     */
+    protected long varrerAtivos(long inicio, VisitanteRegistro visitante) throws IOException {
+        long t0 = MetricasArquivo.iniciar();
+        try {
+            return varrer(inicio, visitante);
+        } finally {
+            metricas.concluir(MetricasArquivo.Operacao.VARREDURA, t0);
+        }
+    }
+
+    private long varrer(long inicio, VisitanteRegistro visitante) throws IOException {
+        final int posTomb = recPosTombstone();
+        final int posLen = recPosLen();
+        final int posPayload = recPosPayload();
+        if (scanBuf == null) scanBuf = new byte[BLOCO_VARREDURA];
+        long fim = raf.length();
+        long pos = inicio;
+        long base = pos; // offset no arquivo de scanBuf[0]
+        int cheio = 0;   // bytes válidos em scanBuf
+        while (pos + posPayload <= fim) {
+            int p = (int) (pos - base);
+            if (p + posPayload > cheio) {
+                cheio = carregarBloco(pos, posPayload, fim);
+                base = pos;
+                p = 0;
+            }
+            int len = lerInt(scanBuf, p + posLen);
+            if (len < 0 || pos + posPayload + len > fim) break; // corrupção/registro truncado
+            int total = posPayload + len;
+            if (p + total > cheio) {
+                cheio = carregarBloco(pos, total, fim);
+                base = pos;
+                p = 0;
+            }
+            if (scanBuf[p + posTomb] == 0) {
+                if (envelope != null) claroScanBuf = abrirRegistro(scanBuf, p, total, claroScanBuf, scanReader);
+                else scanReader.wrap(scanBuf, p, total);
+                if (!visitante.visitar(pos, scanReader)) return pos;
+            }
+            pos += total;
+        }
+        return Page.FIM;
+    }
+
+    private int carregarBloco(long pos, int minimo, long fim) throws IOException {
+        if (scanBuf.length < minimo) scanBuf = new byte[minimo];
+        int n = (int) Math.min(scanBuf.length, fim - pos);
+        raf.seek(pos);
+        raf.readFully(scanBuf, 0, n);
+        return n;
+    }
+
+    private static void escreverInt(byte[] b, int off, int v) {
+        b[off] = (byte) (v >>> 24);
+        b[off + 1] = (byte) (v >>> 16);
+        b[off + 2] = (byte) (v >>> 8);
+        b[off + 3] = (byte) v;
+    }
+
+    private static int lerInt(byte[] b, int off) {
+        return ((b[off] & 0xFF) << 24) | ((b[off + 1] & 0xFF) << 16) | ((b[off + 2] & 0xFF) << 8) | (b[off + 3] & 0xFF);
+    }
+
+    /**
+     * Lista os ativos aplicando o filtro sobre o payload cru e decodificando só a projeção.
+     * Implementação comum de {@code CrudDao.listAllActive(FiltroRegistro, Projecao)}.
+     */
+    public synchronized List<T> listAllActive(FiltroRegistro filtro, Projecao projecao) throws IOException {
+        long mascara = layout().mascara(projecao);
+        int posPayload = recPosPayload();
+        List<T> out = new ArrayList<>();
+        varrerAtivos((offset, r) -> {
+            int inicio = r.position();
+            if (filtro != null) {
+                r.position(inicio + posPayload);
+                if (!filtro.aceita(r)) return true;
+                r.position(inicio);
+            }
+            T t = decodificar(r, mascara);
+            if (t != null) out.add(t);
+            return true;
+        });
+        return out;
+    }
+
+    /**
+     * Página de até {@code limit} ativos a partir de {@code cursor} ({@link Page#INICIO} na primeira
+     * chamada, depois {@link Page#nextCursor()}). Uma só passada para frente no arquivo e memória
+     * limitada à página; o lock do DAO só é mantido durante esta chamada.
+     * Implementação comum de {@code CrudDao.list(long, int)}.
+     */
+    public synchronized Page<T> list(long cursor, int limit) throws IOException {
+        return pagina(cursor, limit, null, layout().mascara(Projecao.TODOS));
+    }
+
+    /**
+     * {@link #list(long, int)} aceitando só os registros do filtro (null aceita todos) e
+     * decodificando só a projeção. Implementação comum de {@code CrudDao.list(long, int, FiltroRegistro, Projecao)}.
+     */
+    public synchronized Page<T> list(long cursor, int limit, FiltroRegistro filtro, Projecao projecao) throws IOException {
+        return pagina(cursor, limit, filtro, layout().mascara(projecao));
+    }
+
+    /**
+     * {@link #list(long, int)} com filtro sobre o payload cru (null aceita todos) e máscara de projeção.
+     * O cursor pode vir de fora (ex.: query string): só é aceito se for o início de um registro,
+     * senão a varredura leria cabeçalhos de dentro de um payload.
+     */
+    private synchronized Page<T> pagina(long cursor, int limit, FiltroRegistro filtro, long mascara) throws IOException {
+        if (limit <= 0) throw new IllegalArgumentException("limit deve ser positivo: " + limit);
+        if (cursor != Page.INICIO && !inicioDeRegistro(cursor)) {
+            throw new IllegalArgumentException("Cursor inválido: " + cursor);
+        }
+        long inicio = cursor == Page.INICIO ? FileHeaderHelper.HEADER_SIZE : cursor;
+        int posPayload = recPosPayload();
+        List<T> out = new ArrayList<>(Math.min(limit, PAGINA_STREAM));
+        long proximo = varrerAtivos(inicio, (offset, r) -> {
+            if (out.size() == limit) return false; // há mais um ativo: ele abre a próxima página
+            if (filtro != null) {
+                int registro = r.position();
+                r.position(registro + posPayload);
+                if (!filtro.aceita(r)) return true;
+                r.position(registro);
+            }
+            T t = decodificar(r, mascara);
+            if (t != null) out.add(t);
+            return true;
+        });
+        return new Page<>(out, proximo);
+    }
+
+    /**
+     * Stream dos ativos na ordem do arquivo, buscados em páginas de {@value #PAGINA_STREAM} via
+     * {@link #list(long, int)}: só a página corrente fica em memória e o lock do DAO é liberado
+     * entre páginas, então escritas concorrentes não esperam o consumidor. A visão é fracamente
+     * consistente (registros gravados durante a iteração podem ou não aparecer) e não sobrevive a
+     * um {@code vacuum()}. Use com try-with-resources; depois de fechado o stream não lê mais nada.
+     * Erros de E/S no meio da iteração chegam como {@link UncheckedIOException}.
+     */
+    public Stream<T> streamActive() {
+        return streamActive(null, Projecao.TODOS);
+    }
+
+    /**
+     * Como {@link #streamActive()}, aplicando o filtro sobre o payload cru (null aceita todos) e
+     * decodificando só a projeção. Implementação comum de {@code CrudDao.streamActive(FiltroRegistro, Projecao)}.
+     */
+    public Stream<T> streamActive(FiltroRegistro filtro, Projecao projecao) {
+        Varredura varredura = new Varredura(filtro, layout().mascara(projecao));
+        return StreamSupport.stream(varredura, false).onClose(varredura::fechar);
+    }
+
+    /** Spliterator de {@link #streamActive()}: uma página por vez, avançando pelo cursor. */
+    private final class Varredura extends Spliterators.AbstractSpliterator<T> {
+        private final FiltroRegistro filtro;
+        private final long mascara;
+        private long cursor = Page.INICIO;
+        private Iterator<T> pagina = Collections.emptyIterator();
+        private volatile boolean fechada;
+
+        Varredura(FiltroRegistro filtro, long mascara) {
+            super(Long.MAX_VALUE, Spliterator.ORDERED | Spliterator.NONNULL);
+            this.filtro = filtro;
+            this.mascara = mascara;
+        }
+
+        @Override
+        public boolean tryAdvance(Consumer<? super T> acao) {
+            while (!pagina.hasNext()) {
+                if (fechada || cursor == Page.FIM) return false;
+                try {
+                    Page<T> p = pagina(cursor, PAGINA_STREAM, filtro, mascara);
+                    pagina = p.items().iterator();
+                    cursor = p.nextCursor();
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            }
+            acao.accept(pagina.next());
+            return true;
+        }
+
+        void fechar() {
+            fechada = true;
+            pagina = Collections.emptyIterator();
+        }
+    }
+
+    /* =============================================================
+     * CACHE DE REGISTROS
+     * ============================================================= */
+
+    /** Tamanho do cache dos DAOs abertos daqui em diante (0 = sem cache). Padrão: 2 MiB. */
+    public static void configurarCachePadrao(long bytes) {
+        if (bytes < 0) throw new IllegalArgumentException("tamanho de cache negativo: " + bytes);
+        cachePadraoBytes = bytes;
+    }
+
+    /**
+     * Liga (bytes > 0) ou desliga (0) o cache de leituras deste DAO, limitado pela soma dos
+     * tamanhos dos registros guardados. Reconfigurar descarta o conteúdo e os contadores.
+     */
+    public synchronized void configurarCache(long bytes) {
+        if (bytes < 0) throw new IllegalArgumentException("tamanho de cache negativo: " + bytes);
+        cacheRegistros = bytes == 0 ? null
+                : new CacheTinyLfu<>(bytes, b -> b.length, (int) Math.min(1 << 20, bytes / 64));
+    }
+
+    /** Acertos, falhas e ocupação do cache; null se o cache está desligado. */
+    public synchronized CacheTinyLfu.Estatisticas estatisticasCache() {
+        return cacheRegistros == null ? null : cacheRegistros.estatisticas();
+    }
+
+    /** O registro em {@code offset} mudou no disco: a imagem em cache deixa de valer. */
+    private void invalidarCache(long offset) {
+        if (cacheRegistros != null) cacheRegistros.invalidar(offset);
+    }
+
+    /* =============================================================
+     * ESCRITA EM LOTE
+     * ============================================================= */
+
+    /**
+     * Cria todas as entidades como um lote: cada uma passa pelo {@code create} do DAO (mesmas
+     * validações e defaults), mas os registros são acumulados e apendados em sequência, os ids saem
+     * de um bloco contíguo, as inserções no índice B+ são feitas ordenadas por chave numa passada
+     * só e o cabeçalho é gravado uma vez no fim. Se uma entidade falhar, as anteriores ficam
+     * gravadas (mesmo efeito de um laço de create) e a exceção é propagada.
+     * Implementação comum de {@code CrudDao.createAll(List)}.
+     */
+    public synchronized List<T> createAll(List<T> entidades) throws IOException {
+        List<T> criadas = new ArrayList<>(entidades.size());
+        if (entidades.isEmpty()) return criadas;
+        gravarEmLote(() -> {
+            for (T e : entidades) criadas.add(create(e));
+        });
+        return criadas;
+    }
+
+    /** Escritas feitas por {@link #gravarEmLote}. */
+    @FunctionalInterface
+    private interface EscritaEmLote {
+        void executar() throws IOException;
+    }
+
+    /**
+     * Executa {@code escrita} com os appends e as inserções no B+ acumulados num {@link Lote}. Se a
+     * escrita falhar, o que já foi acumulado ainda é gravado, mas uma falha nessa gravação vai como
+     * suprimida: quem chamou vê a exceção original.
+     */
+    private void gravarEmLote(EscritaEmLote escrita) throws IOException {
+        if (lote != null) throw new IllegalStateException("createAll já em andamento neste DAO");
+        Lote l = new Lote(raf.length());
+        lote = l;
+        try {
+            escrita.executar();
+        } catch (Throwable t) {
+            lote = null;
+            try {
+                concluirLote(l);
+            } catch (Throwable falha) {
+                t.addSuppressed(falha);
+            }
+            throw t;
+        }
+        lote = null;
+        concluirLote(l);
+    }
+
+    /** Acumula criações e grava em lotes de {@code tamanho} entidades (ver {@link WriteBatch}). */
+    public WriteBatch<T> batch(int tamanho) {
+        return new WriteBatch<>(this, tamanho);
+    }
+
+    /** true enquanto um {@link #createAll} está em andamento (escritas ainda não estão no arquivo). */
+    protected boolean emLote() {
+        return lote != null;
+    }
+
+    private void concluirLote(Lote l) throws IOException {
+        l.descarregar(raf);
+        for (Map.Entry<BTree<ArvoreElemento>, List<ArvoreElemento>> e : l.indices.entrySet()) {
+            try {
+                e.getKey().createAll(e.getValue());
+            } catch (Exception ex) {
+                throw new IOException("Erro ao inserir no índice B+", ex);
+            }
+        }
+        if (l.headerSujo) persistHeader();
+        registrarEscrita(); // os registros do lote só ficaram visíveis agora
+    }
+
+    /** Registros e entradas de índice acumulados por um {@link #createAll}. */
+    private static final class Lote {
+        private byte[] buf = new byte[64 * 1024];
+        private int usados;
+        private long fim; // offset no arquivo de buf[0]
+        private boolean headerSujo;
+        private final Map<BTree<ArvoreElemento>, List<ArvoreElemento>> indices = new IdentityHashMap<>();
+
+        Lote(long fim) {
+            this.fim = fim;
+        }
+
+        long anexar(RandomAccessFile raf, byte[] b, int off, int len) throws IOException {
+            if (usados > 0 && usados + len > BUFFER_LOTE) descarregar(raf);
+            if (buf.length < usados + len) buf = Arrays.copyOf(buf, Math.max(usados + len, buf.length * 2));
+            long offset = fim + usados;
+            System.arraycopy(b, off, buf, usados, len);
+            usados += len;
+            return offset;
+        }
+
+        void descarregar(RandomAccessFile raf) throws IOException {
+            if (usados == 0) return;
+            raf.seek(fim);
+            raf.write(buf, 0, usados);
+            fim += usados;
+            usados = 0;
+        }
+    }
+
+    /* =============================================================
+     * LEITURA EM LOTE
+     * ============================================================= */
+
+    /**
+     * Lê várias entidades sob um único lock: resolve todos os offsets com {@code localizar}
+     * (-1 = não existe), ordena e lê em sequência. Registros a até {@value #LACUNA_LOTE} bytes um
+     * do outro são lidos juntos num bloco só. O mapa sai na ordem do arquivo; chaves sem registro
+     * ativo ficam fora dele. Base de {@code CrudDao.readAll}.
+     */
+    protected synchronized <K> Map<K, T> lerEmLote(Collection<K> chaves, ToLongFunction<K> localizar) throws IOException {
+        if (chaves.isEmpty()) return new LinkedHashMap<>();
+        long inicio = MetricasArquivo.iniciar();
+        try {
+            return lerOrdenados(chaves, localizar);
+        } finally {
+            metricas.concluir(MetricasArquivo.Operacao.LEITURA_LOTE, inicio);
+        }
+    }
+
+    private <K> Map<K, T> lerOrdenados(Collection<K> chaves, ToLongFunction<K> localizar) throws IOException {
+        Map<K, T> out = new LinkedHashMap<>();
+        List<Map.Entry<Long, K>> alvos = new ArrayList<>(chaves.size());
+        for (K k : chaves) {
+            if (k == null) continue;
+            long off = localizar.applyAsLong(k);
+            if (off >= FileHeaderHelper.HEADER_SIZE) alvos.add(Map.entry(off, k));
+        }
+        alvos.sort(Map.Entry.comparingByKey());
+
+        final int posTomb = recPosTombstone();
+        final int posLen = recPosLen();
+        final int posPayload = recPosPayload();
+        final long mascara = layout().mascara(Projecao.TODOS);
+        long fim = raf.length();
+        int i = 0;
+        while (i < alvos.size()) {
+            // grupo [i, j]: offsets próximos o bastante para valer uma leitura contínua
+            int j = i;
+            long inicio = alvos.get(i).getKey();
+            while (j + 1 < alvos.size()) {
+                long prox = alvos.get(j + 1).getKey();
+                if (prox - alvos.get(j).getKey() > LACUNA_LOTE || prox - inicio > BLOCO_VARREDURA) break;
+                j++;
+            }
+            long ultimo = alvos.get(j).getKey();
+            if (ultimo + posPayload > fim) throw new IOException("Registro truncado no offset " + ultimo);
+            // registros não se sobrepõem: cada um termina antes do próximo offset do grupo, então
+            // basta ler até o cabeçalho do último e completar com o payload dele
+            int ate = (int) (ultimo - inicio) + posPayload;
+            if (loteBuf == null || loteBuf.length < ate) loteBuf = new byte[Math.max(ate, 4096)];
+            raf.seek(inicio);
+            raf.readFully(loteBuf, 0, ate);
+            int lenUltimo = lerInt(loteBuf, ate - posPayload + posLen);
+            if (lenUltimo < 0 || ultimo + posPayload + lenUltimo > fim) throw new IOException("Registro truncado no offset " + ultimo);
+            int cheio = ate + lenUltimo;
+            if (loteBuf.length < cheio) loteBuf = Arrays.copyOf(loteBuf, cheio);
+            raf.readFully(loteBuf, ate, lenUltimo);
+
+            long anterior = -1;
+            T lido = null;
+            for (int k = i; k <= j; k++) {
+                long off = alvos.get(k).getKey();
+                K chave = alvos.get(k).getValue();
+                if (off == anterior) { // chave repetida (ou outra chave no mesmo registro)
+                    if (lido != null) out.putIfAbsent(chave, lido);
+                    continue;
+                }
+                anterior = off;
+                lido = null;
+                int p = (int) (off - inicio);
+                int total = posPayload + lerInt(loteBuf, p + posLen);
+                if (loteBuf[p + posTomb] != 0) continue;
+                RecordReader r;
+                if (envelope != null) {
+                    claroBuf = abrirRegistro(loteBuf, p, total, claroBuf, reader);
+                    r = reader;
+                } else {
+                    r = reader.wrap(loteBuf, p, total);
+                }
+                lido = decodificar(r, mascara);
+                if (lido != null) out.putIfAbsent(chave, lido);
+            }
+            i = j + 1;
+        }
+        return out;
+    }
+
+    /* =============================================================
+     * ESTATÍSTICAS
+     * ============================================================= */
+
+    /** Registros ativos, direto do contador do cabeçalho. Implementação comum de {@code CrudDao.count()}. */
+    public synchronized long count() {
+        return header.countAtivos;
+    }
+
+    /**
+     * Ativos, tombstones, tamanho, bytes removidos e altura do índice. Os totais de registros são
+     * contabilizados uma vez (varredura só dos cabeçalhos, sem decodificar; ver {@link #inicios}) e
+     * depois mantidos por appendRecord/markTombstone sob o mesmo lock das escritas, então ficam exatos.
+     */
+    public synchronized EstatisticasArquivo estatisticas() throws IOException {
+        if (registrosTotais < 0) contabilizarRegistros();
+        long ativos = header.countAtivos;
+        return new EstatisticasArquivo(file.getName(), ativos, registrosTotais - ativos, raf.length(),
+                bytesRemovidos, alturaIndice(), header.versaoFormato, isCifrado());
+    }
+
+    /** Seeks, reads, writes e durações por operação deste arquivo; lido sem lock. Implementação comum de {@code CrudDao.metricas()}. */
+    public MetricasArquivo metricas() {
+        return metricas;
+    }
+
+    /** Altura do índice em disco do DAO; -1 se não houver. */
+    protected int alturaIndice() throws IOException {
+        return -1;
+    }
+
+    /** Percorre só os cabeçalhos dos registros, em blocos, guardando os offsets e somando os bytes removidos. */
+    private void contabilizarRegistros() throws IOException {
+        final int posTomb = recPosTombstone();
+        final int posLen = recPosLen();
+        final int posPayload = recPosPayload();
+        if (scanBuf == null) scanBuf = new byte[BLOCO_VARREDURA];
+        long fim = raf.length();
+        long pos = FileHeaderHelper.HEADER_SIZE;
+        long base = pos;
+        int cheio = 0;
+        registrosTotais = 0;
+        long removidos = 0;
+        while (pos + posPayload <= fim) {
+            int p = (int) (pos - base);
+            if (p + posPayload > cheio) {
+                cheio = carregarBloco(pos, posPayload, fim);
+                base = pos;
+                p = 0;
+            }
+            int len = lerInt(scanBuf, p + posLen);
+            if (len < 0 || pos + posPayload + len > fim) break; // mesma regra de varrerAtivos
+            guardarInicio(pos);
+            if (scanBuf[p + posTomb] != 0) removidos += posPayload + len;
+            pos += posPayload + len;
+        }
+        bytesRemovidos = removidos;
+    }
+
+    private void guardarInicio(long offset) {
+        if (inicios == null) inicios = new long[256];
+        else if (registrosTotais == inicios.length) inicios = Arrays.copyOf(inicios, registrosTotais * 2);
+        inicios[registrosTotais++] = offset;
+    }
+
+    /** true se {@code offset} é onde começa um registro (ativo ou removido) deste arquivo. */
+    private boolean inicioDeRegistro(long offset) throws IOException {
+        if (registrosTotais < 0) contabilizarRegistros();
+        return registrosTotais > 0 && Arrays.binarySearch(inicios, 0, registrosTotais, offset) >= 0;
+    }
+
+    /* =============================================================
+     * CONSULTAS
+     * ============================================================= */
+
+    /** Nova consulta declarativa sobre este DAO. Implementação comum de {@code CrudDao.consulta()}. */
+    public Consulta<T> consulta() {
+        return new Consulta<>(this);
+    }
+
+    /**
+     * Mapa id → offset vazio para o índice em memória do DAO: no heap ou, após
+     * {@link #configurarIndicesForaDoHeap(boolean) configurarIndicesForaDoHeap(true)}, em memória nativa.
+     */
+    protected static MapaIntLong novoMapaIds() {
+        return MapaIntLong.criar(indicesForaDoHeap);
+    }
+
+    /** Vale para os DAOs abertos daqui em diante. Padrão: heap. */
+    public static void configurarIndicesForaDoHeap(boolean foraDoHeap) {
+        indicesForaDoHeap = foraDoHeap;
+    }
+
+    /**
+     * Offset do registro ativo com este id segundo o índice primário, -1 se não existe, ou
+     * {@link #SEM_INDICE} se o DAO não indexa por id int (o planejador então não usa este plano).
+     */
+    protected long localizarPorId(int id) {
+        return SEM_INDICE;
+    }
+
+    /** Declara um índice secundário sobre o campo fixo {@code campo} (INT, String ou enum) do layout. */
+    protected void indexarCampo(String campo) {
+        layout().tipo(campo); // valida: só campos fixos
+        indicesSecundarios.put(campo, null);
+        indicesMontados = false;
+    }
+
+    /**
+     * Planejador e executor das consultas. Ordem de preferência: índice primário (idIgual),
+     * índice secundário mais seletivo entre as igualdades sobre campos indexados e, por fim,
+     * varredura sequencial com os predicados avaliados nos bytes crus.
+     *
+     * @param limite       máximo de resultados (-1 = todos)
+     * @param materializar false = só contar (decodifica com máscara vazia, sem guardar)
+     */
+    synchronized ResultadoConsulta<T> executar(Consulta<T> c, int limite, boolean materializar) throws IOException {
+        final int posId = recPosId();
+        final int posPayload = recPosPayload();
+        final long mascara = materializar ? layout().mascara(c.projecao()) : 0L;
+        final boolean ordenar = materializar && c.ordenadaPorId();
+        final boolean cortarCedo = limite >= 0 && !ordenar;
+        final List<T> itens = new ArrayList<>();
+        final List<Map.Entry<Integer, T>> porId = new ArrayList<>();
+        final long[] contagem = new long[2]; // [0] examinados, [1] aceitos
+
+        VisitanteRegistro visitante = (offset, r) -> {
+            contagem[0]++;
+            int inicio = r.position();
+            if (!c.aceita(r, posId, posPayload)) return true;
+            int id = r.position(inicio + posId).readInt();
+            r.position(inicio);
+            T t = decodificar(r, mascara);
+            if (t == null) return true; // registro de outro tipo no mesmo arquivo
+            contagem[1]++;
+            if (ordenar) porId.add(Map.entry(id, t));
+            else if (materializar) itens.add(t);
+            return !(cortarCedo && contagem[1] >= limite);
+        };
+
+        Consulta.Plano plano = Consulta.Plano.VARREDURA;
+        String indice = null;
+        if (limite != 0) {
+            long offPrimario = SEM_INDICE;
+            List<Long> offsets = null;
+            for (Consulta.Predicado p : c.predicados()) {
+                if (!p.igualdade) continue;
+                if (p.campo == null) {
+                    offPrimario = localizarPorId((Integer) p.chave);
+                    if (offPrimario != SEM_INDICE) break;
+                } else {
+                    Map<Object, List<Long>> idx = indiceSecundario(p.campo);
+                    if (idx == null) continue;
+                    List<Long> candidatos = idx.getOrDefault(p.chave, Collections.emptyList());
+                    if (offsets == null || candidatos.size() < offsets.size()) {
+                        offsets = candidatos;
+                        indice = p.campo;
+                    }
+                }
+            }
+            if (offPrimario != SEM_INDICE) {
+                plano = Consulta.Plano.INDICE_PRIMARIO;
+                indice = null;
+                if (offPrimario >= 0) {
+                    RecordReader r = lerRegistro(offPrimario);
+                    int inicio = r.position();
+                    boolean ativo = r.position(inicio + recPosTombstone()).readByte() == 0;
+                    if (ativo) visitante.visitar(offPrimario, r.position(inicio));
+                }
+            } else if (offsets != null) {
+                plano = Consulta.Plano.INDICE_SECUNDARIO;
+                for (long off : offsets) {
+                    if (!visitante.visitar(off, lerRegistro(off))) break;
+                }
+            } else {
+                varrerAtivos(visitante);
+            }
+        }
+
+        if (ordenar) {
+            porId.sort(Map.Entry.comparingByKey());
+            int n = limite >= 0 ? Math.min(limite, porId.size()) : porId.size();
+            for (int i = 0; i < n; i++) itens.add(porId.get(i).getValue());
+            contagem[1] = n;
+        }
+        return new ResultadoConsulta<>(itens, contagem[1], plano, indice, contagem[0]);
+    }
+
+    /** Índice do campo (montado na primeira consulta) ou null se o campo não é indexado. */
+    private Map<Object, List<Long>> indiceSecundario(String campo) throws IOException {
+        if (!indicesSecundarios.containsKey(campo)) return null;
+        if (!indicesMontados) montarIndicesSecundarios();
+        return indicesSecundarios.get(campo);
+    }
+
+    /** Monta todos os índices secundários numa única varredura. */
+    private void montarIndicesSecundarios() throws IOException {
+        LayoutRegistro l = layout();
+        int posPayload = recPosPayload();
+        List<String> campos = new ArrayList<>(indicesSecundarios.keySet());
+        List<Map<Object, List<Long>>> mapas = new ArrayList<>();
+        for (int i = 0; i < campos.size(); i++) mapas.add(new HashMap<>());
+        varrerAtivos((offset, r) -> {
+            int inicio = r.position();
+            for (int i = 0; i < campos.size(); i++) {
+                r.position(inicio + posPayload);
+                mapas.get(i).computeIfAbsent(l.lerChave(r, campos.get(i)), k -> new ArrayList<>(2)).add(offset);
+            }
+            return true;
+        });
+        for (int i = 0; i < campos.size(); i++) indicesSecundarios.put(campos.get(i), mapas.get(i));
+        indicesMontados = true;
+    }
+
+    /**
+     * Põe ({@code incluir}) ou tira {@code offset} das listas das {@code chaves} (uma por campo
+     * indexado, na ordem de declaração). As listas ficam em ordem de arquivo, como na varredura:
+     * um append vai para o fim, e um registro sobrescrito com outra chave entra no seu lugar.
+     */
+    private void indexar(long offset, Object[] chaves, boolean incluir) {
+        int i = 0;
+        for (Map<Object, List<Long>> idx : indicesSecundarios.values()) {
+            Object chave = chaves[i++];
+            if (incluir) {
+                List<Long> offsets = idx.computeIfAbsent(chave, k -> new ArrayList<>(2));
+                int n = offsets.size();
+                if (n == 0 || offsets.get(n - 1) < offset) offsets.add(offset);
+                else offsets.add(-Collections.binarySearch(offsets, offset) - 1, offset);
+                continue;
+            }
+            List<Long> offsets = idx.get(chave);
+            if (offsets != null && offsets.remove((Long) offset) && offsets.isEmpty()) idx.remove(chave);
+        }
+    }
+
+    /** Depois de sobrescrever o payload em {@code offset}: troca as chaves {@code antes} pelas atuais, se mudaram. */
+    private void reindexar(long offset, Object[] antes) throws IOException {
+        Object[] depois = chavesNoArquivo(offset);
+        if (depois == null || Arrays.equals(antes, depois)) return;
+        indexar(offset, antes, false);
+        indexar(offset, depois, true);
+    }
+
+    /** Chaves indexadas do registro em {@code offset}, ou null se ele é um tombstone. Não mexe no {@link #reader}. */
+    private Object[] chavesNoArquivo(long offset) throws IOException {
+        int posPayload = recPosPayload();
+        raf.seek(offset + recPosLen());
+        int total = posPayload + raf.readInt();
+        if (indiceBuf == null || indiceBuf.length < total) indiceBuf = new byte[Math.max(total, 256)];
+        raf.seek(offset);
+        raf.readFully(indiceBuf, 0, total);
+        return indiceBuf[recPosTombstone()] != 0 ? null : chaves(indiceBuf, 0, total);
+    }
+
+    /** Chaves indexadas do registro {@code b[p, p+total)} como gravado (selado, se o arquivo for cifrado). */
+    private Object[] chaves(byte[] b, int p, int total) throws IOException {
+        if (envelope != null) indiceClaroBuf = abrirRegistro(b, p, total, indiceClaroBuf, indiceReader);
+        else indiceReader.wrap(b, p, total);
+        LayoutRegistro l = layout();
+        int payload = indiceReader.position() + recPosPayload();
+        Object[] chaves = new Object[indicesSecundarios.size()];
+        int i = 0;
+        for (String campo : indicesSecundarios.keySet()) {
+            indiceReader.position(payload);
+            chaves[i++] = l.lerChave(indiceReader, campo);
+        }
+        return chaves;
+    }
+
+    /* =============================================================
+     * LAYOUT DO REGISTRO (definido por cada DAO)
+     * ============================================================= */
+
+    /** Posição do byte de tombstone dentro do registro. */
+    protected abstract int recPosTombstone();
+
+    /** Posição do int com o id (chave do cabeçalho) do registro. */
+    protected abstract int recPosId();
+
+    /** Posição do int com o tamanho do payload. */
+    protected abstract int recPosLen();
+
+    /** Posição onde começa o payload (= tamanho do cabeçalho do registro). */
+    protected abstract int recPosPayload();
+
+    /** Ordem e tipos dos campos do payload. */
+    public abstract LayoutRegistro layout();
+
+    /** Criação de uma entidade; {@link #createAll} a chama para cada item do lote. */
+    public abstract T create(T entity) throws IOException;
+
+    /**
+     * Apenda {@code entidade} como registro ativo com o id (ou chave) que ela já tem e a coloca nos
+     * índices do DAO, sem mexer no cabeçalho: é a escrita de {@link #copiarAtivos}, que cuida dos
+     * contadores. Não aplica defaults nem tem outros efeitos além do registro e dos índices.
+     */
+    protected abstract void gravarCopia(T entidade) throws IOException;
+
+    /**
+     * Decodifica o registro a partir do leitor posicionado no seu início (cabeçalho incluso).
+     * Campos fora da máscara (ver {@link LayoutRegistro#mascara}) não são materializados.
+     * Pode devolver null para registros que não pertencem a este DAO.
+     */
+    protected abstract T decodificar(RecordReader registro, long mascara);
+
     @Override
     public void close() throws IOException {
         if (raf != null) {
@@ -0,0 +1,314 @@
+package br.com.mpet.persistence;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.ToIntFunction;
+
+/**
+ * Cache limitado por peso com política W-TinyLFU.
+ *
+ * Entradas novas entram numa janela LRU pequena (1% do peso). Quem sai da janela disputa vaga
+ * no espaço principal (SLRU: "prova" + "protegida", 80% do principal) contra a vítima da prova:
+ * só entra se a frequência estimada dela for maior. A frequência vem de um count-min sketch de
+ * 4 linhas com contadores de 4 bits, envelhecido pela metade a cada {@code 10 × largura}
+ * incrementos. Assim uma varredura (muitos itens acessados uma vez) não expulsa o conjunto quente.
+ *
+ * O peso de cada valor vem de {@code peso} (ex.: bytes do registro; 1 para limitar por
+ * quantidade). Não é thread-safe: o dono sincroniza o acesso.
+ *
+ * @param <K> Tipo da chave.
+ * @param <V> Tipo do valor.
+ */
+public final class CacheTinyLfu<K, V> {
+
+    private static final byte JANELA = 0;
+    private static final byte PROVA = 1;
+    private static final byte PROTEGIDA = 2;
+
+    private static final class No<K, V> {
+        K chave;
+        V valor;
+        int peso;
+        byte fila;
+        No<K, V> ant;
+        No<K, V> prox;
+    }
+
+    private final long pesoMaximo;
+    private final long maxJanela;
+    private final long maxProtegida;
+    private final ToIntFunction<V> peso;
+    private final Map<K, No<K, V>> mapa = new HashMap<>();
+    private final No<K, V> janela = sentinela();
+    private final No<K, V> prova = sentinela();
+    private final No<K, V> protegida = sentinela();
+    private long pesoJanela;
+    private long pesoProva;
+    private long pesoProtegida;
+
+    // count-min sketch
+    private final byte[] contadores;
+    private final int mascaraLinha;
+    private final int amostra;
+    private int incrementos;
+
+    private long acertos;
+    private long falhas;
+    private long remocoes;
+
+    /**
+     * @param pesoMaximo         soma máxima dos pesos em cache
+     * @param peso               peso de um valor (>= 1)
+     * @param entradasEstimadas  quantas entradas devem caber (dimensiona o sketch)
+     */
+    public CacheTinyLfu(long pesoMaximo, ToIntFunction<V> peso, int entradasEstimadas) {
+        if (pesoMaximo <= 0) throw new IllegalArgumentException("pesoMaximo deve ser positivo: " + pesoMaximo);
+        this.pesoMaximo = pesoMaximo;
+        this.maxJanela = Math.max(1, pesoMaximo / 100);
+        this.maxProtegida = (pesoMaximo - maxJanela) * 8 / 10;
+        this.peso = peso;
+        int largura = Integer.highestOneBit(Math.max(64, Math.min(1 << 22, entradasEstimadas)) * 2 - 1);
+        this.contadores = new byte[largura * 4];
+        this.mascaraLinha = largura - 1;
+        this.amostra = largura * 10;
+    }
+
+    /** Valor em cache ou null; conta acerto/falha e a frequência da chave. */
+    public V get(K chave) {
+        registrarAcesso(chave);
+        No<K, V> n = mapa.get(chave);
+        if (n == null) {
+            falhas++;
+            return null;
+        }
+        acertos++;
+        promover(n);
+        return n.valor;
+    }
+
+    /** Insere ou substitui. Valores mais pesados que o cache inteiro não são guardados. */
+    public void put(K chave, V valor) {
+        int w = Math.max(1, peso.applyAsInt(valor));
+        No<K, V> n = mapa.get(chave);
+        if (n != null) {
+            ajustarPeso(n, w - n.peso);
+            n.peso = w;
+            n.valor = valor;
+            promover(n);
+        } else {
+            if (w > pesoMaximo) return;
+            n = new No<>();
+            n.chave = chave;
+            n.valor = valor;
+            n.peso = w;
+            n.fila = JANELA;
+            mapa.put(chave, n);
+            ligarNoFim(janela, n);
+            pesoJanela += w;
+        }
+        ajustar();
+    }
+
+    /** Remove a chave (escrita no registro de origem). */
+    public void invalidar(K chave) {
+        No<K, V> n = mapa.get(chave);
+        if (n != null) remover(n, false);
+    }
+
+    public void limpar() {
+        mapa.clear();
+        esvaziar(janela);
+        esvaziar(prova);
+        esvaziar(protegida);
+        pesoJanela = pesoProva = pesoProtegida = 0;
+    }
+
+    public int tamanho() {
+        return mapa.size();
+    }
+
+    public long peso() {
+        return pesoJanela + pesoProva + pesoProtegida;
+    }
+
+    public Estatisticas estatisticas() {
+        return new Estatisticas(acertos, falhas, remocoes, mapa.size(), peso(), pesoMaximo);
+    }
+
+    /* =============================================================
+     * POLÍTICA
+     * ============================================================= */
+
+    /** Acerto: janela e protegida viram MRU; da prova passa para a protegida. */
+    private void promover(No<K, V> n) {
+        switch (n.fila) {
+            case JANELA -> { desligar(n); ligarNoFim(janela, n); }
+            case PROTEGIDA -> { desligar(n); ligarNoFim(protegida, n); }
+            default -> {
+                desligar(n);
+                pesoProva -= n.peso;
+                n.fila = PROTEGIDA;
+                ligarNoFim(protegida, n);
+                pesoProtegida += n.peso;
+                // protegida acima da cota devolve seus LRU para a prova
+                while (pesoProtegida > maxProtegida && protegida.prox != n) {
+                    No<K, V> r = protegida.prox;
+                    desligar(r);
+                    pesoProtegida -= r.peso;
+                    r.fila = PROVA;
+                    ligarNoFim(prova, r);
+                    pesoProva += r.peso;
+                }
+            }
+        }
+    }
+
+    private void ajustar() {
+        // o LRU da janela disputa a entrada no principal com a vítima da prova
+        while (pesoJanela > maxJanela) {
+            No<K, V> candidato = janela.prox;
+            desligar(candidato);
+            pesoJanela -= candidato.peso;
+            candidato.fila = PROVA;
+            ligarNoFim(prova, candidato);
+            pesoProva += candidato.peso;
+            while (peso() > pesoMaximo) {
+                No<K, V> vitima = prova.prox != candidato ? prova.prox
+                        : protegida.prox != protegida ? protegida.prox : null;
+                if (vitima == null || frequencia(candidato.chave) <= frequencia(vitima.chave)) {
+                    remover(candidato, true);
+                    break;
+                }
+                remover(vitima, true);
+            }
+        }
+        while (peso() > pesoMaximo) {
+            No<K, V> lru = prova.prox != prova ? prova.prox : protegida.prox != protegida ? protegida.prox : janela.prox;
+            remover(lru, true);
+        }
+    }
+
+    private void ajustarPeso(No<K, V> n, int delta) {
+        switch (n.fila) {
+            case JANELA -> pesoJanela += delta;
+            case PROVA -> pesoProva += delta;
+            default -> pesoProtegida += delta;
+        }
+    }
+
+    private void remover(No<K, V> n, boolean despejo) {
+        desligar(n);
+        ajustarPeso(n, -n.peso);
+        mapa.remove(n.chave);
+        if (despejo) remocoes++;
+    }
+
+    /* =============================================================
+     * SKETCH DE FREQUÊNCIA
+     * ============================================================= */
+
+    private void registrarAcesso(K chave) {
+        int h = espalhar(chave.hashCode());
+        for (int linha = 0; linha < 4; linha++) {
+            int i = posicao(h, linha);
+            if (contadores[i] < 15) contadores[i]++;
+        }
+        if (++incrementos >= amostra) envelhecer();
+    }
+
+    private int frequencia(K chave) {
+        int h = espalhar(chave.hashCode());
+        int min = 15;
+        for (int linha = 0; linha < 4; linha++) min = Math.min(min, contadores[posicao(h, linha)]);
+        return min;
+    }
+
+    /** Divide todos os contadores por 2: acessos antigos perdem peso. */
+    private void envelhecer() {
+        for (int i = 0; i < contadores.length; i++) contadores[i] >>= 1;
+        incrementos /= 2;
+    }
+
+    private int posicao(int h, int linha) {
+        int x = h * (0x9E3779B1 + 2 * linha + 1);
+        x ^= x >>> 15;
+        return linha * (mascaraLinha + 1) + (x & mascaraLinha);
+    }
+
+    private static int espalhar(int h) {
+        h ^= h >>> 16;
+        h *= 0x45d9f3b;
+        h ^= h >>> 16;
+        return h;
+    }
+
+    /* ============================================================= */
+
+    private static <K, V> No<K, V> sentinela() {
+        No<K, V> s = new No<>();
+        esvaziar(s);
+        return s;
+    }
+
+    private static <K, V> void esvaziar(No<K, V> s) {
+        s.ant = s;
+        s.prox = s;
+    }
+
+    private static <K, V> void ligarNoFim(No<K, V> lista, No<K, V> n) {
+        n.prox = lista;
+        n.ant = lista.ant;
+        lista.ant.prox = n;
+        lista.ant = n;
+    }
+
+    private static <K, V> void desligar(No<K, V> n) {
+        n.ant.prox = n.prox;
+        n.prox.ant = n.ant;
+        n.ant = n.prox = null;
+    }
+
+    /** Contadores de uso do cache (retrato no momento da chamada). */
+    public static final class Estatisticas {
+        private final long acertos;
+        private final long falhas;
+        private final long remocoes;
+        private final int entradas;
+        private final long peso;
+        private final long pesoMaximo;
+
+        Estatisticas(long acertos, long falhas, long remocoes, int entradas, long peso, long pesoMaximo) {
+            this.acertos = acertos;
+            this.falhas = falhas;
+            this.remocoes = remocoes;
+            this.entradas = entradas;
+            this.peso = peso;
+            this.pesoMaximo = pesoMaximo;
+        }
+
+        public long acertos() { return acertos; }
+
+        public long falhas() { return falhas; }
+
+        /** Entradas expulsas por falta de espaço (invalidações não contam). */
+        public long remocoes() { return remocoes; }
+
+        public int entradas() { return entradas; }
+
+        public long peso() { return peso; }
+
+        public long pesoMaximo() { return pesoMaximo; }
+
+        /** acertos / (acertos + falhas); 0 sem acessos. */
+        public double taxaAcerto() {
+            long total = acertos + falhas;
+            return total == 0 ? 0.0 : (double) acertos / total;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("acertos=%d falhas=%d taxa=%.1f%% entradas=%d peso=%d/%d remocoes=%d",
+                    acertos, falhas, taxaAcerto() * 100, entradas, peso, pesoMaximo, remocoes);
+        }
+    }
+}
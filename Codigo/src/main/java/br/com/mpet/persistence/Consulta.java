@@ -0,0 +1,222 @@
+package br.com.mpet.persistence;
+
+import br.com.mpet.persistence.io.FiltroRegistro;
+import br.com.mpet.persistence.io.LayoutRegistro;
+import br.com.mpet.persistence.io.Projecao;
+import br.com.mpet.persistence.io.RecordReader;
+import br.com.mpet.persistence.io.TipoCampo;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Consulta declarativa sobre um DAO: igualdade e intervalo por campo (nomes do
+ * {@link LayoutRegistro}), id do cabeçalho, projeção, limite, ordenação por id e contagem.
+ * <pre>
+ *   List&lt;ChatThread&gt; minhas = threadDao.consulta()
+ *           .onde("cpfAdotante", cpf)
+ *           .ordenarPorId()
+ *           .listar();
+ * </pre>
+ *
+ * O plano é escolhido na execução (ver {@link Plano}) e informado em {@link ResultadoConsulta}
+ * junto com quantos registros foram examinados. Qualquer que seja o plano, todos os predicados
+ * são avaliados sobre os bytes crus do registro antes de decodificar a entidade.
+ *
+ * @param <T> Tipo da entidade consultada.
+ */
+public final class Consulta<T> {
+
+    /** Estratégia de acesso escolhida pelo planejador, da mais para a menos seletiva. */
+    public enum Plano {
+        /** {@link #idIgual} com o índice por id do DAO: lê no máximo um registro. */
+        INDICE_PRIMARIO,
+        /** Igualdade sobre um campo indexado: lê só os offsets do índice com aquele valor. */
+        INDICE_SECUNDARIO,
+        /** Varredura sequencial do arquivo, filtrando nos bytes crus. */
+        VARREDURA
+    }
+
+    private final BaseDataFile<T> dao;
+    private final List<Predicado> predicados = new ArrayList<>();
+    private Projecao projecao = Projecao.TODOS;
+    private int limite = -1; // -1 = sem limite
+    private boolean ordenarPorId;
+
+    Consulta(BaseDataFile<T> dao) {
+        this.dao = dao;
+    }
+
+    /**
+     * Campo igual a {@code valor}: Integer para campos INT, String para Strings e a constante
+     * (ou null) para enums.
+     */
+    public Consulta<T> onde(String campo, Object valor) {
+        LayoutRegistro layout = dao.layout();
+        TipoCampo tipo = layout.tipo(campo);
+        switch (tipo) {
+            case INT -> {
+                if (!(valor instanceof Integer i)) throw new IllegalArgumentException("Campo " + campo + " espera Integer: " + valor);
+                predicados.add(Predicado.igualdade(campo, i, layout.intIgual(campo, i)));
+            }
+            case STRING_U16 -> {
+                if (valor != null && !(valor instanceof String)) throw new IllegalArgumentException("Campo " + campo + " espera String: " + valor);
+                predicados.add(Predicado.igualdade(campo, valor, layout.stringIgual(campo, (String) valor)));
+            }
+            case ENUM -> {
+                if (valor != null && !(valor instanceof Enum)) throw new IllegalArgumentException("Campo " + campo + " espera enum: " + valor);
+                Enum<?> e = (Enum<?>) valor;
+                int chave = e == null ? 0 : e.ordinal() + 1; // mesmo valor de LayoutRegistro.lerChave
+                predicados.add(Predicado.igualdade(campo, chave, layout.enumIgual(campo, e)));
+            }
+            default -> throw new IllegalArgumentException("Igualdade não suportada para " + campo + " (" + tipo + ")");
+        }
+        return this;
+    }
+
+    /** Campo INT dentro de [min, max] (inclusive). */
+    public Consulta<T> entre(String campo, int min, int max) {
+        predicados.add(new Predicado(campo, false, null, dao.layout().intEntre(campo, min, max), min, max));
+        return this;
+    }
+
+    /** Id do cabeçalho do registro igual a {@code id}. */
+    public Consulta<T> idIgual(int id) {
+        predicados.add(new Predicado(null, true, id, null, id, id));
+        return this;
+    }
+
+    /** Id do cabeçalho dentro de [min, max] (inclusive). */
+    public Consulta<T> idEntre(int min, int max) {
+        predicados.add(new Predicado(null, min == max, min == max ? min : null, null, min, max));
+        return this;
+    }
+
+    /** Decodifica só estes campos (ver {@link Projecao}). */
+    public Consulta<T> campos(String... campos) {
+        return projetar(Projecao.de(campos));
+    }
+
+    public Consulta<T> projetar(Projecao projecao) {
+        this.projecao = projecao == null ? Projecao.TODOS : projecao;
+        return this;
+    }
+
+    /** No máximo {@code n} resultados (depois da ordenação, se houver). */
+    public Consulta<T> limite(int n) {
+        if (n < 0) throw new IllegalArgumentException("limite negativo: " + n);
+        this.limite = n;
+        return this;
+    }
+
+    /** Resultados em ordem crescente de id (sem ordenação, saem na ordem do arquivo). */
+    public Consulta<T> ordenarPorId() {
+        this.ordenarPorId = true;
+        return this;
+    }
+
+    /* =============================================================
+     * EXECUÇÃO
+     * ============================================================= */
+
+    /** Executa e devolve as entidades junto com o plano usado. */
+    public ResultadoConsulta<T> executar() throws IOException {
+        return dao.executar(this, limite, true);
+    }
+
+    public List<T> listar() throws IOException {
+        return executar().itens();
+    }
+
+    public Optional<T> primeiro() throws IOException {
+        List<T> itens = dao.executar(this, 1, true).itens();
+        return itens.isEmpty() ? Optional.empty() : Optional.of(itens.get(0));
+    }
+
+    /** Quantidade de registros que atendem aos predicados (ignora limite e projeção). */
+    public long contar() throws IOException {
+        return dao.executar(this, -1, false).total();
+    }
+
+    /** true se algum registro atende aos predicados; para no primeiro encontrado. */
+    public boolean existe() throws IOException {
+        return dao.executar(this, 1, false).total() > 0;
+    }
+
+    List<Predicado> predicados() {
+        return Collections.unmodifiableList(predicados);
+    }
+
+    Projecao projecao() {
+        return projecao;
+    }
+
+    boolean ordenadaPorId() {
+        return ordenarPorId;
+    }
+
+    /** Avalia todos os predicados sobre o registro (leitor no início do registro; posição é alterada). */
+    boolean aceita(RecordReader registro, int posId, int posPayload) {
+        int inicio = registro.position();
+        for (Predicado p : predicados) {
+            registro.position(inicio);
+            if (!p.aceita(registro, posId, posPayload)) return false;
+        }
+        return true;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder("Consulta[");
+        for (int i = 0; i < predicados.size(); i++) {
+            if (i > 0) sb.append(" e ");
+            sb.append(predicados.get(i));
+        }
+        if (ordenarPorId) sb.append(predicados.isEmpty() ? "" : ", ").append("ordem=id");
+        if (limite >= 0) sb.append(", limite=").append(limite);
+        return sb.append(']').toString();
+    }
+
+    /** Um predicado; {@code campo == null} refere-se ao id do cabeçalho. */
+    static final class Predicado {
+        final String campo;
+        final boolean igualdade;
+        /** Valor da igualdade no formato de {@link LayoutRegistro#lerChave} (chave do índice). */
+        final Object chave;
+        private final FiltroRegistro filtro;
+        private final int min;
+        private final int max;
+
+        Predicado(String campo, boolean igualdade, Object chave, FiltroRegistro filtro, int min, int max) {
+            this.campo = campo;
+            this.igualdade = igualdade;
+            this.chave = chave;
+            this.filtro = filtro;
+            this.min = min;
+            this.max = max;
+        }
+
+        static Predicado igualdade(String campo, Object chave, FiltroRegistro filtro) {
+            return new Predicado(campo, true, chave, filtro, 0, 0);
+        }
+
+        boolean aceita(RecordReader registro, int posId, int posPayload) {
+            int inicio = registro.position();
+            if (campo == null) {
+                int id = registro.position(inicio + posId).readInt();
+                return id >= min && id <= max;
+            }
+            registro.position(inicio + posPayload);
+            return filtro.aceita(registro);
+        }
+
+        @Override
+        public String toString() {
+            String nome = campo == null ? "id" : campo;
+            return igualdade ? nome + "=" + chave : nome + " em [" + min + "," + max + "]";
+        }
+    }
+}
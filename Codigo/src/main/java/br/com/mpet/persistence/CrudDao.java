@@ -1,9 +1,16 @@
 package br.com.mpet.persistence;
 
+import br.com.mpet.persistence.io.FiltroRegistro;
+import br.com.mpet.persistence.io.LayoutRegistro;
+import br.com.mpet.persistence.io.Projecao;
+
 import java.io.Closeable;
 import java.io.IOException;
+import java.util.Collection;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.stream.Stream;
 
 /**
  * Interface genérica de operações CRUD para entidades persistidas em arquivo binário.
@@ -15,9 +22,24 @@ public interface CrudDao<T, K> extends Closeable {
     /** Cria entidade e retorna a entidade com ID preenchido (se gerado) */
     T create(T entity) throws IOException;
 
+    /**
+     * Cria todas as entidades num lote: um append sequencial, ids em bloco, índice atualizado em
+     * ordem de chave e cabeçalho gravado uma vez. Retorna as entidades com ids preenchidos.
+     */
+    List<T> createAll(List<T> entities) throws IOException;
+
+    /** {@link WriteBatch} que grava via {@link #createAll} a cada {@code tamanho} entidades */
+    WriteBatch<T> batch(int tamanho);
+
     /** Lê entidade pelo id (apenas se ativa / não tombstoned) */
     Optional<T> read(K id) throws IOException;
 
+    /**
+     * Lê várias entidades de uma vez: um lock só e leituras em ordem de offset, juntando
+     * registros vizinhos. Ids inexistentes ou removidos ficam fora do mapa.
+     */
+    Map<K, T> readAll(Collection<K> ids) throws IOException;
+
     /** Atualiza entidade existente; retorna true se sucesso */
     boolean update(T entity) throws IOException;
 
@@ -27,10 +49,64 @@ public interface CrudDao<T, K> extends Closeable {
     /** Lista todas as entidades ativas (custo O(n) no arquivo) */
     List<T> listAllActive() throws IOException;
 
+    /**
+     * Lista as entidades ativas aceitas pelo filtro (avaliado nos bytes crus, antes de criar
+     * o objeto), decodificando apenas os campos da projeção. filtro == null aceita todas.
+     */
+    List<T> listAllActive(FiltroRegistro filtro, Projecao projecao) throws IOException;
+
+    /**
+     * Página de até {@code limit} entidades ativas a partir de {@code cursor}
+     * ({@link Page#INICIO} na primeira chamada, depois {@link Page#nextCursor()}).
+     */
+    Page<T> list(long cursor, int limit) throws IOException;
+
+    /** Como {@link #list(long, int)}, filtrando nos bytes crus e decodificando só a projeção. */
+    Page<T> list(long cursor, int limit, FiltroRegistro filtro, Projecao projecao) throws IOException;
+
+    /**
+     * Stream das entidades ativas lidas página a página (memória limitada, sem lock entre páginas).
+     * Deve ser fechado: use try-with-resources.
+     */
+    Stream<T> streamActive();
+
+    /** Como {@link #streamActive()}, filtrando nos bytes crus e decodificando só a projeção. */
+    Stream<T> streamActive(FiltroRegistro filtro, Projecao projecao);
+
+    /**
+     * Consulta declarativa (igualdade/intervalo, projeção, limite, ordem por id, contagem);
+     * o DAO escolhe entre índice e varredura e informa o plano no resultado.
+     */
+    Consulta<T> consulta();
+
+    /** Quantidade de entidades ativas, lida do contador do cabeçalho (O(1)) */
+    long count();
+
+    /**
+     * Versão do conteúdo, que muda a cada escrita; não toca no arquivo. Para validar um cache,
+     * leia-a antes dos dados (ver {@link VersaoDados}).
+     */
+    VersaoDados versao();
+
+    /** Ativos, tombstones, bytes do arquivo, altura do índice e fragmentação */
+    EstatisticasArquivo estatisticas() throws IOException;
+
+    /** Acertos, falhas e ocupação do cache de leituras; null se desligado */
+    CacheTinyLfu.Estatisticas estatisticasCache();
+
+    /** Seeks, reads, writes e durações (leitura, varredura, escrita) desde a abertura */
+    MetricasArquivo metricas();
+
+    /** Ordem e tipos dos campos do payload (nomes usados em projeções e filtros) */
+    LayoutRegistro layout();
+
     /** Reconstrói índice se arquivo estiver consistente mas índice vazio */
     void rebuildIfEmpty() throws IOException;
 
-    /** Compacta removendo registros tombstoned (gera novo arquivo) */
+    /**
+     * Compacta removendo registros tombstoned (gera novo arquivo). Os ativos mantêm o id e são
+     * regravados na versão de formato pedida ao abrir o DAO.
+     */
     void vacuum() throws IOException;
 
     @Override
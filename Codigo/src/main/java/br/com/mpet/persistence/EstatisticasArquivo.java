@@ -0,0 +1,68 @@
+package br.com.mpet.persistence;
+
+import br.com.mpet.persistence.io.FileHeaderHelper;
+
+/**
+ * Retrato do estado físico de um arquivo .dat (ver {@link CrudDao#estatisticas()}).
+ *
+ * Os valores vêm de contadores mantidos pelo DAO a cada escrita (só a primeira consulta
+ * percorre os cabeçalhos dos registros), sem decodificar payloads. A fragmentação é a fração dos bytes de registros ocupada por
+ * registros removidos (tombstones) — o que um {@code vacuum()} recuperaria.
+ */
+public final class EstatisticasArquivo {
+
+    private final String arquivo;
+    private final long ativos;
+    private final long tombstones;
+    private final long bytesArquivo;
+    private final long bytesRemovidos;
+    private final int alturaIndice;
+    private final byte versaoFormato;
+    private final boolean cifrado;
+
+    public EstatisticasArquivo(String arquivo, long ativos, long tombstones, long bytesArquivo,
+                               long bytesRemovidos, int alturaIndice, byte versaoFormato, boolean cifrado) {
+        this.arquivo = arquivo;
+        this.ativos = ativos;
+        this.tombstones = tombstones;
+        this.bytesArquivo = bytesArquivo;
+        this.bytesRemovidos = bytesRemovidos;
+        this.alturaIndice = alturaIndice;
+        this.versaoFormato = versaoFormato;
+        this.cifrado = cifrado;
+    }
+
+    /** Nome do arquivo .dat. */
+    public String arquivo() { return arquivo; }
+
+    /** Registros ativos (mesmo valor de {@link CrudDao#count()}). */
+    public long ativos() { return ativos; }
+
+    /** Registros removidos que ainda ocupam espaço no arquivo. */
+    public long tombstones() { return tombstones; }
+
+    /** Tamanho do arquivo em bytes, cabeçalho incluso. */
+    public long bytesArquivo() { return bytesArquivo; }
+
+    /** Bytes ocupados por registros removidos. */
+    public long bytesRemovidos() { return bytesRemovidos; }
+
+    /** Níveis do índice primário (árvore B+); -1 se o DAO não tem índice em disco. */
+    public int alturaIndice() { return alturaIndice; }
+
+    public byte versaoFormato() { return versaoFormato; }
+
+    public boolean cifrado() { return cifrado; }
+
+    /** Fração (0..1) dos bytes de registros ocupada por tombstones. */
+    public double fragmentacao() {
+        long registros = bytesArquivo - FileHeaderHelper.HEADER_SIZE;
+        return registros <= 0 ? 0.0 : (double) bytesRemovidos / registros;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%s: ativos=%d tombstones=%d bytes=%d fragmentacao=%.1f%% alturaIndice=%d",
+                arquivo, ativos, tombstones, bytesArquivo, fragmentacao() * 100, alturaIndice);
+    }
+}
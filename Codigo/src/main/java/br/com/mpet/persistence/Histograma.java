@@ -0,0 +1,107 @@
+package br.com.mpet.persistence;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Histograma de durações em nanossegundos, no estilo do HdrHistogram: faixas log-lineares (cada
+ * potência de 2 dividida em {@value #SUBFAIXAS} partes iguais), então o erro relativo de um
+ * quantil fica abaixo de 1/{@value #SUBFAIXAS} (~3%) de 1 ns até ~18 minutos, com um array fixo
+ * de contadores.
+ *
+ * {@link #registrar} é um cálculo de índice e quatro operações atômicas, sem alocar nem bloquear;
+ * pode ser chamado de várias threads. As leituras ({@link #quantil}, {@link #contagem}, ...) veem
+ * os contadores sem pausar quem registra: com registros concorrentes, um quantil pode incluir ou
+ * não as últimas amostras, mas nunca sai fora das faixas registradas.
+ */
+public final class Histograma {
+
+    /** Bits de mantissa: 2^5 = 32 faixas por potência de 2. */
+    private static final int BITS = 5;
+    private static final int SUBFAIXAS = 1 << BITS;
+    /** Maior valor distinguível (2^40 ns ≈ 18 min); acima disso conta na última faixa. */
+    private static final long MAXIMO = (1L << 40) - 1;
+    private static final int FAIXAS = indice(MAXIMO) + 1;
+
+    private final AtomicLongArray contagens = new AtomicLongArray(FAIXAS);
+    private final AtomicLong total = new AtomicLong();
+    private final AtomicLong soma = new AtomicLong();
+    private final AtomicLong maior = new AtomicLong();
+
+    /** Conta uma amostra de {@code nanos} (negativos contam como 0). */
+    public void registrar(long nanos) {
+        long v = Math.max(0, Math.min(nanos, MAXIMO));
+        // o máximo antes da faixa: quem vê a amostra na faixa já vê o máximo que a cobre
+        long m;
+        while (v > (m = maior.get()) && !maior.compareAndSet(m, v)) {
+            // outra thread registrou um máximo no meio: compara de novo
+        }
+        contagens.incrementAndGet(indice(v));
+        total.incrementAndGet();
+        soma.addAndGet(v);
+    }
+
+    /** Amostras registradas. */
+    public long contagem() {
+        return total.get();
+    }
+
+    /** Soma das amostras, em ns. */
+    public long soma() {
+        return soma.get();
+    }
+
+    /** Maior amostra, em ns (0 sem amostras). */
+    public long maximo() {
+        return maior.get();
+    }
+
+    /**
+     * Valor (ns) abaixo do qual ficam {@code q} (0..1) das amostras: o limite superior da faixa em
+     * que cai a amostra de ordem ceil(q·n), limitado à maior amostra. 0 sem amostras.
+     */
+    public long quantil(double q) {
+        return quantis(q)[0];
+    }
+
+    /** {@link #quantil} de cada {@code q}, numa passada só pelos contadores (q em ordem crescente). */
+    public long[] quantis(double... qs) {
+        long[] c = new long[FAIXAS];
+        long n = 0;
+        for (int i = 0; i < FAIXAS; i++) n += c[i] = contagens.get(i);
+        long max = maximo();
+        long[] out = new long[qs.length];
+        if (n == 0) return out;
+        int faixa = 0;
+        long acumulado = c[0];
+        for (int k = 0; k < qs.length; k++) {
+            double q = qs[k];
+            if (q < 0 || q > 1) throw new IllegalArgumentException("quantil fora de [0, 1]: " + q);
+            if (k > 0 && q < qs[k - 1]) throw new IllegalArgumentException("quantis fora de ordem: " + q);
+            long alvo = Math.max(1, (long) Math.ceil(q * n));
+            while (acumulado < alvo && faixa < FAIXAS - 1) acumulado += c[++faixa];
+            out[k] = Math.min(limiteSuperior(faixa), max);
+        }
+        return out;
+    }
+
+    /* ============================================================= */
+
+    /**
+     * Faixa de {@code v}: abaixo de 2^BITS uma por valor; acima, os BITS+1 bits mais altos de v
+     * (o primeiro sempre 1) mais {@value #SUBFAIXAS} faixas por potência de 2 já passada.
+     */
+    private static int indice(long v) {
+        if (v < SUBFAIXAS) return (int) v;
+        int deslocamento = 63 - Long.numberOfLeadingZeros(v) - BITS;
+        return (deslocamento << BITS) + (int) (v >>> deslocamento);
+    }
+
+    /** Maior valor que cai na faixa {@code i}. */
+    private static long limiteSuperior(int i) {
+        if (i < 2 * SUBFAIXAS) return i;
+        int deslocamento = (i >>> BITS) - 1;
+        long mantissa = (i & (SUBFAIXAS - 1)) | SUBFAIXAS;
+        return ((mantissa + 1) << deslocamento) - 1;
+    }
+}
@@ -0,0 +1,75 @@
+package br.com.mpet.persistence;
+
+/**
+ * Contadores de E/S e tempos por operação de um arquivo .dat (ver {@link CrudDao#metricas()}).
+ *
+ * Diferente de {@link EstatisticasArquivo} (retrato do conteúdo), estes valores acumulam desde a
+ * abertura do DAO e são atualizados por ele mesmo: cada seek, read e write no arquivo de dados
+ * conta aqui, e as operações de {@link Operacao} têm a duração registrada num {@link Histograma}.
+ * Os contadores só são escritos sob o lock do DAO (o mesmo que protege o arquivo) e podem ser
+ * lidos a qualquer momento, de qualquer thread, sem esperar por ele.
+ */
+public final class MetricasArquivo {
+
+    /** Operações com tempo medido. */
+    public enum Operacao {
+        /** Leitura pontual de um registro que não estava no cache (por id, após o índice). */
+        LEITURA("leitura"),
+        /** Varredura sequencial (listagens, páginas, consultas sem índice). */
+        VARREDURA("varredura"),
+        /** Leitura de vários registros de uma vez (readAll). */
+        LEITURA_LOTE("leitura_lote"),
+        /** Append, sobrescrita de payload ou tombstone (num createAll, o lote é gravado de uma vez e não conta). */
+        ESCRITA("escrita");
+
+        /** Nome usado nos rótulos das métricas. */
+        public final String nome;
+
+        Operacao(String nome) {
+            this.nome = nome;
+        }
+    }
+
+    private final String arquivo;
+    private final Histograma[] duracoes = new Histograma[Operacao.values().length];
+
+    // escritos só sob o lock do DAO; volatile para quem lê de fora dele
+    volatile long seeks;
+    volatile long leituras;
+    volatile long bytesLidos;
+    volatile long escritas;
+    volatile long bytesEscritos;
+
+    MetricasArquivo(String arquivo) {
+        this.arquivo = arquivo;
+        for (int i = 0; i < duracoes.length; i++) duracoes[i] = new Histograma();
+    }
+
+    /** Nome do arquivo .dat. */
+    public String arquivo() { return arquivo; }
+
+    /** Durações (ns) de {@code operacao}. */
+    public Histograma duracao(Operacao operacao) { return duracoes[operacao.ordinal()]; }
+
+    /** Reposicionamentos do arquivo (seek), de leitura ou escrita. */
+    public long seeks() { return seeks; }
+
+    /** Chamadas de read no arquivo (um readInt do RandomAccessFile conta como 4). */
+    public long leituras() { return leituras; }
+
+    public long bytesLidos() { return bytesLidos; }
+
+    /** Chamadas de write no arquivo. */
+    public long escritas() { return escritas; }
+
+    public long bytesEscritos() { return bytesEscritos; }
+
+    /** Início de uma operação medida; passe o valor a {@link #concluir}. */
+    static long iniciar() {
+        return System.nanoTime();
+    }
+
+    void concluir(Operacao operacao, long inicio) {
+        duracoes[operacao.ordinal()].registrar(System.nanoTime() - inicio);
+    }
+}
@@ -0,0 +1,50 @@
+package br.com.mpet.persistence;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Uma página de uma listagem paginada por cursor (ver {@link CrudDao#list(long, int)}).
+ *
+ * O cursor é opaco para o chamador: hoje é o offset no arquivo do próximo registro a visitar.
+ * {@link #INICIO} começa do primeiro registro e {@link #FIM} indica que não há mais páginas.
+ * Um cursor continua válido entre escritas (registros novos vão para o fim do arquivo), mas
+ * não sobrevive a um {@code vacuum()}, que regrava o arquivo. Um cursor que não seja o início
+ * de um registro (forjado ou de antes do vacuum) é recusado com IllegalArgumentException.
+ *
+ * @param <T> Tipo da entidade listada.
+ */
+public final class Page<T> {
+
+    /** Cursor da primeira página. */
+    public static final long INICIO = 0L;
+    /** Cursor devolvido na última página: não há mais registros. */
+    public static final long FIM = -1L;
+
+    private final List<T> items;
+    private final long nextCursor;
+
+    public Page(List<T> items, long nextCursor) {
+        this.items = Collections.unmodifiableList(items);
+        this.nextCursor = nextCursor;
+    }
+
+    /** Entidades desta página, na ordem do arquivo. */
+    public List<T> items() {
+        return items;
+    }
+
+    /** Cursor para pedir a próxima página, ou {@link #FIM}. */
+    public long nextCursor() {
+        return nextCursor;
+    }
+
+    public boolean hasMore() {
+        return nextCursor != FIM;
+    }
+
+    @Override
+    public String toString() {
+        return "Page{items=" + items.size() + ", nextCursor=" + nextCursor + "}";
+    }
+}
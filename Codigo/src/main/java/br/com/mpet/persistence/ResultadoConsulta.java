@@ -0,0 +1,61 @@
+package br.com.mpet.persistence;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Resultado de uma {@link Consulta}: as entidades e o relatório do plano executado
+ * (estratégia, índice usado e quantos registros foram examinados para chegar nelas).
+ *
+ * @param <T> Tipo da entidade consultada.
+ */
+public final class ResultadoConsulta<T> {
+
+    private final List<T> itens;
+    private final long total;
+    private final Consulta.Plano plano;
+    private final String indice;
+    private final long examinados;
+
+    ResultadoConsulta(List<T> itens, long total, Consulta.Plano plano, String indice, long examinados) {
+        this.itens = Collections.unmodifiableList(itens);
+        this.total = total;
+        this.plano = plano;
+        this.indice = indice;
+        this.examinados = examinados;
+    }
+
+    /** Entidades encontradas (vazia em {@link Consulta#contar()}/{@link Consulta#existe()}). */
+    public List<T> itens() {
+        return itens;
+    }
+
+    /** Quantidade de registros que atenderam aos predicados (respeitando o limite). */
+    public long total() {
+        return total;
+    }
+
+    public Consulta.Plano plano() {
+        return plano;
+    }
+
+    /** Campo do índice secundário usado, ou null. */
+    public String indice() {
+        return indice;
+    }
+
+    /** Registros ativos lidos e testados contra os predicados. */
+    public long examinados() {
+        return examinados;
+    }
+
+    /** Ex.: "INDICE_SECUNDARIO(cpfAdotante) examinados=3 retornados=2". */
+    public String descreverPlano() {
+        return plano + (indice != null ? "(" + indice + ")" : "") + " examinados=" + examinados + " retornados=" + total;
+    }
+
+    @Override
+    public String toString() {
+        return "ResultadoConsulta{" + descreverPlano() + "}";
+    }
+}
@@ -0,0 +1,55 @@
+package br.com.mpet.persistence;
+
+/**
+ * Versão do conteúdo de um DAO (ou de parte dele), para validar caches HTTP sem ler o arquivo
+ * (ver {@link CrudDao#versao()}).
+ *
+ * O contador de escritas só cresce enquanto o DAO está aberto; como recomeça a cada abertura,
+ * vem acompanhado do instante em que o arquivo foi aberto, e os dois juntos formam o
+ * {@link #identificador()}. Dois identificadores iguais garantem o mesmo conteúdo; o contrário
+ * não (reabrir o arquivo muda a versão sem mudar os dados), o que só custa uma resposta completa.
+ */
+public final class VersaoDados {
+
+    private final long abertura;
+    private final long escritas;
+    private final long modificadoEm;
+
+    public VersaoDados(long abertura, long escritas, long modificadoEm) {
+        this.abertura = abertura;
+        this.escritas = escritas;
+        this.modificadoEm = modificadoEm;
+    }
+
+    /** Ex.: "m1x2k3p4-1f": abertura e escritas em base 36 (serve de ETag). */
+    public String identificador() {
+        return Long.toString(abertura, 36) + "-" + Long.toString(escritas, 36);
+    }
+
+    /** Instante (ms) em que o DAO abriu o arquivo. */
+    public long abertura() { return abertura; }
+
+    /** Escritas de registro desde a abertura. */
+    public long escritas() { return escritas; }
+
+    /** Instante (ms) da última escrita; antes da primeira, a data de modificação do arquivo. */
+    public long modificadoEm() { return modificadoEm; }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof VersaoDados)) return false;
+        VersaoDados v = (VersaoDados) o;
+        return abertura == v.abertura && escritas == v.escritas;
+    }
+
+    @Override
+    public int hashCode() {
+        return Long.hashCode(abertura) * 31 + Long.hashCode(escritas);
+    }
+
+    @Override
+    public String toString() {
+        return identificador();
+    }
+}
@@ -0,0 +1,66 @@
+package br.com.mpet.persistence;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Acumula entidades novas e as grava com {@link CrudDao#createAll(List)} a cada {@code tamanho}
+ * itens e no {@link #close()}. Para cargas grandes vindas de um laço:
+ * <pre>
+ *   try (WriteBatch&lt;Animal&gt; lote = animalDao.batch(10_000)) {
+ *       for (Animal a : importados) lote.create(a);
+ *   }
+ * </pre>
+ * Os ids só são atribuídos quando o lote é gravado. Não é thread-safe: cada thread usa o seu.
+ *
+ * @param <T> Tipo da entidade criada.
+ */
+public final class WriteBatch<T> implements Closeable {
+
+    private final BaseDataFile<T> dao;
+    private final int tamanho;
+    private final List<T> pendentes;
+    private long gravadas;
+
+    WriteBatch(BaseDataFile<T> dao, int tamanho) {
+        if (tamanho <= 0) throw new IllegalArgumentException("tamanho do lote deve ser positivo: " + tamanho);
+        this.dao = dao;
+        this.tamanho = tamanho;
+        this.pendentes = new ArrayList<>(Math.min(tamanho, 16 * 1024));
+    }
+
+    /** Enfileira a entidade; grava o lote se ele encheu. */
+    public WriteBatch<T> create(T entity) throws IOException {
+        if (entity == null) throw new IllegalArgumentException("entity == null");
+        pendentes.add(entity);
+        if (pendentes.size() >= tamanho) flush();
+        return this;
+    }
+
+    /** Grava as pendentes agora (um createAll) e devolve-as com ids preenchidos. */
+    public List<T> flush() throws IOException {
+        if (pendentes.isEmpty()) return List.of();
+        List<T> lote = new ArrayList<>(pendentes);
+        pendentes.clear();
+        List<T> criadas = dao.createAll(lote);
+        gravadas += criadas.size();
+        return criadas;
+    }
+
+    /** Entidades aguardando gravação. */
+    public int pendentes() {
+        return pendentes.size();
+    }
+
+    /** Entidades já gravadas por este lote. */
+    public long gravadas() {
+        return gravadas;
+    }
+
+    @Override
+    public void close() throws IOException {
+        flush();
+    }
+}
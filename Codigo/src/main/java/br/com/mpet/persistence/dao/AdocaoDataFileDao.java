@@ -1,19 +1,47 @@
 package br.com.mpet.persistence.dao;
 
 import br.com.mpet.model.Adocao;
+import br.com.mpet.model.Animal;
 import br.com.mpet.persistence.BaseDataFile;
 import br.com.mpet.persistence.CrudDao;
 import br.com.mpet.persistence.index.ArvoreElemento;
 import br.com.mpet.persistence.index.BTree;
-import br.com.mpet.persistence.io.Codec;
+import br.com.mpet.persistence.index.MapaIntLong;
+import br.com.mpet.persistence.index.BitmapCompacto;
+import br.com.mpet.persistence.io.EsquemaRegistro;
 import br.com.mpet.persistence.io.FileHeaderHelper;
+import br.com.mpet.persistence.io.LayoutRegistro;
+import br.com.mpet.persistence.io.Projecao;
+import br.com.mpet.persistence.io.RecordReader;
+import br.com.mpet.persistence.io.RecordWriter;
 
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
 import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.RandomAccessFile;
 import java.util.*;
 
 /**
  * DAO para relação Adocao (Adotante CPF -> Animal ID) usando arquivo binário.
+ *
+ * Mantém em memória o conjunto de animais adotados ({@link BitmapCompacto}) e, para os poucos
+ * animais com mais de uma adoção ativa, quantas são; create/update/delete ajustam os dois sem
+ * ler o arquivo. O estado é persistido no arquivo lateral {@code <arquivo>.adotados} ao fechar
+ * (e no vacuum):
+ * <pre>
+ * [0-3]  magic "MPB2"
+ * [4-11] long tamanho do .dat quando foi gravado (-1 = sujo, reconstruir)
+ * [12..] bitmap serializado
+ * [..]   int n + n × (int idAnimal, int adoções ativas) dos animais com mais de uma
+ * </pre>
+ * A primeira alteração do .dat depois de carregar ou gravar o arquivo lateral troca o carimbo
+ * por -1; as seguintes só mexem na memória. Se o processo cair antes do close, o carimbo não
+ * confere na próxima abertura e o estado é reconstruído com uma varredura.
  */
 public class AdocaoDataFileDao extends BaseDataFile<Adocao> implements CrudDao<Adocao, Integer> {
 
@@ -22,11 +50,28 @@ public class AdocaoDataFileDao extends BaseDataFile<Adocao> implements CrudDao<A
     private static final int REC_POS_LEN = 5;       // +5..+8 (int)
     private static final int REC_POS_PAYLOAD = 9;   // +9..+9+len-1
 
-    private final Map<Integer, Long> indexById = new HashMap<>();
+    /** Campos do payload, na ordem em disco. */
+    private static final EsquemaRegistro<Adocao> ESQUEMA = new EsquemaRegistro<>(Adocao::new)
+            .string("cpfAdotante", Adocao::getCpfAdotante, Adocao::setCpfAdotante)
+            .inteiro("idAnimal", Adocao::getIdAnimal, Adocao::setIdAnimal)
+            .data("dataAdocao", Adocao::getDataAdocao, Adocao::setDataAdocao);
+    private static final LayoutRegistro LAYOUT = ESQUEMA.layout();
+
+    private final MapaIntLong indexById = novoMapaIds();
     private BTree<ArvoreElemento> bplus;
 
+    private final EsquemaRegistro.Compilado<Adocao> codec;
+
+    private static final int MAGIC_ADOTADOS = 0x4D504232; // "MPB2"
+    private final File arquivoAdotados;
+    private BitmapCompacto adotados;
+    /** idAnimal → adoções ativas, só dos animais com mais de uma (os demais do bitmap têm uma). */
+    private final Map<Integer, Integer> adocoesRepetidas = new HashMap<>();
+    private boolean adotadosSujo;
+
     public AdocaoDataFileDao(File file, byte versaoFormato) throws IOException {
         super(file, versaoFormato);
+        this.codec = ESQUEMA.compilar(LAYOUT, versaoArquivo(), payloadCompacto());
         // inicializa índice B+ em arquivo paralelo .idx
         File idxFile = new File(file.getParentFile(), file.getName() + ".idx");
         try {
@@ -35,6 +80,8 @@ public class AdocaoDataFileDao extends BaseDataFile<Adocao> implements CrudDao<A
             throw new IOException("Falha ao inicializar o índice BTree: construtor não encontrado.", e);
         }
         rebuildIfEmpty();
+        this.arquivoAdotados = new File(file.getParentFile(), file.getName() + ".adotados");
+        carregarAdotados();
     }
 
     @Override
@@ -42,61 +89,86 @@ public class AdocaoDataFileDao extends BaseDataFile<Adocao> implements CrudDao<A
         if (entity == null) throw new IllegalArgumentException("entity == null");
         if (!entity.isAtivo()) entity.setAtivo(true);
         entity.setId(nextIdAndIncrement());
-        byte[] payload = encode(entity);
-        byte[] full = montarRegistro((byte)0, entity.getId(), payload);
-        long off = appendRecord(full);
+        marcarAdotadosSujo();
+        long off = appendRecord(montarRegistro((byte)0, entity));
         indexById.put(entity.getId(), off);
-        try { bplus.create(new ArvoreElemento(entity.getId(), off)); } catch (Exception e) { throw new IOException("Erro ao inserir no índice B+", e); }
+        inserirIndice(bplus, entity.getId(), off);
         incrementCountAtivos();
+        contarAdocao(entity.getIdAnimal());
         return entity;
     }
 
+    @Override
+    protected void gravarCopia(Adocao a) throws IOException {
+        marcarAdotadosSujo();
+        long off = appendRecord(montarRegistro((byte)0, a));
+        indexById.put(a.getId(), off);
+        inserirIndice(bplus, a.getId(), off);
+        contarAdocao(a.getIdAnimal());
+    }
+
     @Override
     public synchronized Optional<Adocao> read(Integer id) throws IOException {
         if (id == null) return Optional.empty();
-        Long off = indexById.get(id);
-        if (off == null) {
+        long off = indexById.get(id);
+        if (off < 0) {
             try {
                 ArvoreElemento el = bplus.read(id);
                 if (el != null) off = el.getAddress();
             } catch (Exception ignore) { }
         }
-        if (off == null) return Optional.empty();
+        if (off < 0) return Optional.empty();
         indexById.put(id, off);
         return Optional.ofNullable(readAt(off));
     }
 
+    @Override
+    public Map<Integer, Adocao> readAll(Collection<Integer> ids) throws IOException {
+        return lerEmLote(ids, this::localizarPorId);
+    }
+
     @Override
     public synchronized boolean update(Adocao e) throws IOException {
         if (e == null) return false;
-        Long off = indexById.get(e.getId());
-        if (off == null) return false;
+        long off = indexById.get(e.getId());
+        if (off < 0) return false;
         raf.seek(off + REC_POS_TOMBSTONE);
         byte tomb = raf.readByte();
         if (tomb != 0) return false;
+        int idAnimalAntigo = readAt(off).getIdAnimal();
         raf.seek(off + REC_POS_LEN);
         int oldLen = raf.readInt();
-        byte[] newPayload = encode(e);
-        if (newPayload.length == oldLen) {
-            overwritePayload(off + REC_POS_PAYLOAD, newPayload);
+        marcarAdotadosSujo();
+        RecordWriter w = montarRegistro((byte)0, e);
+        if (w.position() - REC_POS_PAYLOAD == oldLen) {
+            overwritePayload(off + REC_POS_PAYLOAD, w, REC_POS_PAYLOAD);
         } else {
             markTombstone(off); decrementCountAtivos();
-            long novo = appendRecord(montarRegistro((byte)0, e.getId(), newPayload));
+            long novo = appendRecord(w);
             indexById.put(e.getId(), novo);
             try { bplus.update(e.getId(), novo); } catch (Exception ex) { throw new IOException("Erro ao atualizar no índice B+", ex); }
             incrementCountAtivos();
         }
+        if (idAnimalAntigo != e.getIdAnimal()) {
+            contarAdocao(e.getIdAnimal());
+            descontarAdocao(idAnimalAntigo);
+        }
         return true;
     }
 
     @Override
     public synchronized boolean delete(Integer id) throws IOException {
         if (id == null) return false;
-        Long off = indexById.get(id);
-        if (off == null) return false;
+        long off = indexById.get(id);
+        if (off < 0) return false;
         raf.seek(off + REC_POS_TOMBSTONE);
         byte tomb = raf.readByte();
-        if (tomb == 0) { markTombstone(off); decrementCountAtivos(); }
+        if (tomb == 0) {
+            int idAnimal = readAt(off).getIdAnimal();
+            marcarAdotadosSujo();
+            markTombstone(off); decrementCountAtivos();
+            descontarAdocao(idAnimal);
+        }
         indexById.remove(id);
         try { bplus.delete(id); } catch (Exception e) { throw new IOException("Erro ao deletar no índice B+", e); }
         return true;
@@ -104,21 +176,7 @@ public class AdocaoDataFileDao extends BaseDataFile<Adocao> implements CrudDao<A
 
     @Override
     public synchronized List<Adocao> listAllActive() throws IOException {
-        List<Adocao> list = new ArrayList<>();
-        long len = raf.length();
-        long pos = FileHeaderHelper.HEADER_SIZE;
-        while (pos < len) {
-            raf.seek(pos + REC_POS_TOMBSTONE);
-            byte tomb = raf.readByte();
-            raf.seek(pos + REC_POS_LEN);
-            int pay = raf.readInt();
-            if (tomb == 0) {
-                Adocao a = readAt(pos);
-                if (a != null) list.add(a);
-            }
-            pos += REC_POS_PAYLOAD + pay;
-        }
-        return list;
+        return listAllActive(null, Projecao.TODOS);
     }
 
     @Override
@@ -135,12 +193,10 @@ public class AdocaoDataFileDao extends BaseDataFile<Adocao> implements CrudDao<A
         long len = raf.length();
         long pos = FileHeaderHelper.HEADER_SIZE;
         while (pos + REC_POS_PAYLOAD <= len) {
-            raf.seek(pos + REC_POS_ID);
-            int id = raf.readInt();
-            raf.seek(pos + REC_POS_TOMBSTONE);
-            byte tomb = raf.readByte();
-            raf.seek(pos + REC_POS_LEN);
-            int pay = raf.readInt();
+            RecordReader h = readRecord(pos, REC_POS_PAYLOAD);
+            byte tomb = h.position(REC_POS_TOMBSTONE).readByte();
+            int id = h.position(REC_POS_ID).readInt();
+            int pay = h.position(REC_POS_LEN).readInt();
             if (pay < 0) break;
             if (tomb == 0) { 
                 indexById.put(id, pos); 
@@ -156,8 +212,8 @@ public class AdocaoDataFileDao extends BaseDataFile<Adocao> implements CrudDao<A
     public synchronized void vacuum() throws IOException {
         File temp = new File(file.getParentFile(), file.getName() + ".tmp");
         try (AdocaoDataFileDao novo = new AdocaoDataFileDao(temp, this.versaoFormato)) {
-            for (Adocao a : listAllActive()) novo.create(a);
-        }
+            copiarAtivos(novo);
+        } // o close do temporário grava o .adotados dele
         this.close();
         if (!file.delete()) throw new IOException("Falha ao apagar arquivo antigo: " + file);
         if (!temp.renameTo(file)) throw new IOException("Falha ao renomear arquivo temporário: " + temp);
@@ -169,44 +225,144 @@ public class AdocaoDataFileDao extends BaseDataFile<Adocao> implements CrudDao<A
             if (mainIdx.exists() && !mainIdx.delete()) throw new IOException("Falha ao apagar idx antigo: "+mainIdx);
             if (!tempIdx.renameTo(mainIdx)) throw new IOException("Falha ao renomear idx temp: "+tempIdx);
         }
+        // o conjunto de adotados do temporário já está carimbado com o tamanho do arquivo novo
+        File tempAdotados = new File(temp.getParentFile(), temp.getName() + ".adotados");
+        if (arquivoAdotados.exists() && !arquivoAdotados.delete()) throw new IOException("Falha ao apagar " + arquivoAdotados);
+        if (tempAdotados.exists() && !tempAdotados.renameTo(arquivoAdotados)) throw new IOException("Falha ao renomear " + tempAdotados);
+    }
+
+    /* =============================================================
+     * ANIMAIS ADOTADOS (conjunto em memória)
+     * ============================================================= */
+
+    /** true se há adoção ativa para o animal. Responde da memória, sem ler o arquivo. */
+    public synchronized boolean isAdotado(int idAnimal) {
+        return idAnimal >= 0 && adotados.contains(idAnimal);
+    }
+
+    /** Quantidade de animais distintos com adoção ativa. */
+    public synchronized long quantidadeAdotados() {
+        return adotados.cardinalidade();
+    }
+
+    /** Mantém só os animais sem adoção ativa, preservando a ordem. */
+    public synchronized <A extends Animal> List<A> filtrarDisponiveis(Collection<A> animais) {
+        List<A> out = new ArrayList<>(animais.size());
+        for (A a : animais) {
+            if (!adotados.contains(a.getId())) out.add(a);
+        }
+        return out;
+    }
+
+    /** Uma adoção ativa a mais para o animal. */
+    private void contarAdocao(int idAnimal) {
+        if (idAnimal < 0) return;
+        if (!adotados.add(idAnimal)) adocoesRepetidas.merge(idAnimal, 2, (n, dois) -> n + 1);
+    }
+
+    /** Uma adoção ativa a menos: o animal só sai do conjunto quando não sobra nenhuma. */
+    private void descontarAdocao(int idAnimal) {
+        if (idAnimal < 0) return;
+        Integer n = adocoesRepetidas.get(idAnimal);
+        if (n == null) adotados.remove(idAnimal);
+        else if (n == 2) adocoesRepetidas.remove(idAnimal);
+        else adocoesRepetidas.put(idAnimal, n - 1);
+    }
+
+    private void carregarAdotados() throws IOException {
+        if (arquivoAdotados.exists()) {
+            try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(arquivoAdotados)))) {
+                if (in.readInt() == MAGIC_ADOTADOS && in.readLong() == raf.length()) {
+                    BitmapCompacto b = BitmapCompacto.ler(in);
+                    for (int n = in.readInt(); n > 0; n--) adocoesRepetidas.put(in.readInt(), in.readInt());
+                    this.adotados = b;
+                    return;
+                }
+            } catch (IOException e) {
+                // arquivo lateral truncado/corrompido: cai na reconstrução
+            }
+        }
+        this.adotados = new BitmapCompacto();
+        adocoesRepetidas.clear();
+        for (Adocao a : listAllActive(null, Projecao.de("idAnimal"))) contarAdocao(a.getIdAnimal());
+        adotadosSujo = true; // gravado no close
     }
 
-    private byte[] montarRegistro(byte tomb, int id, byte[] payload) {
-        return Codec.concat(new byte[]{ tomb }, Codec.encodeInt(id), Codec.encodeInt(payload.length), payload);
+    /** Invalida o carimbo do arquivo lateral antes da primeira alteração no .dat desde que foi gravado. */
+    private void marcarAdotadosSujo() throws IOException {
+        if (adotadosSujo) return;
+        if (arquivoAdotados.exists()) {
+            try (RandomAccessFile lateral = new RandomAccessFile(arquivoAdotados, "rw")) {
+                lateral.seek(4);
+                lateral.writeLong(-1L);
+            }
+        }
+        adotadosSujo = true;
+    }
+
+    private void salvarAdotados() throws IOException {
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(arquivoAdotados)))) {
+            out.writeInt(MAGIC_ADOTADOS);
+            out.writeLong(raf.length());
+            adotados.escrever(out);
+            out.writeInt(adocoesRepetidas.size());
+            for (Map.Entry<Integer, Integer> r : adocoesRepetidas.entrySet()) {
+                out.writeInt(r.getKey());
+                out.writeInt(r.getValue());
+            }
+        }
+        adotadosSujo = false;
+    }
+
+    /** Monta [tombstone][id][len][payload] no writer do DAO; o len é corrigido após o payload, que é selado se o arquivo for cifrado. */
+    private RecordWriter montarRegistro(byte tomb, Adocao e) throws IOException {
+        writer.reset().writeByte(tomb).writeInt(e.getId()).writeInt(0);
+        codec.escrever(e, writer);
+        return selar(writer.putInt(REC_POS_LEN, writer.position() - REC_POS_PAYLOAD));
     }
 
     private Adocao readAt(long offset) throws IOException {
-        raf.seek(offset + REC_POS_TOMBSTONE);
-        byte tomb = raf.readByte();
-        raf.seek(offset + REC_POS_ID);
-        int id = raf.readInt();
-        raf.seek(offset + REC_POS_LEN);
-        int payLen = raf.readInt();
-        byte[] buf = readBytes(offset + REC_POS_PAYLOAD, payLen);
-        return decode(id, tomb, buf);
+        return decodificar(lerRegistro(offset), -1L);
     }
 
-    private byte[] encode(Adocao a) {
-        return Codec.concat(
-                Codec.encodeStringU16(a.getCpfAdotante()),
-                Codec.encodeInt(a.getIdAnimal()),
-                Codec.encodeLocalDate(a.getDataAdocao())
-        );
+    @Override protected int recPosTombstone() { return REC_POS_TOMBSTONE; }
+    @Override protected int recPosId() { return REC_POS_ID; }
+    @Override protected int recPosLen() { return REC_POS_LEN; }
+    @Override protected int recPosPayload() { return REC_POS_PAYLOAD; }
+    @Override public LayoutRegistro layout() { return codec.layout(); }
+
+    @Override
+    protected long localizarPorId(int id) {
+        return indexById.get(id);
     }
 
-    private Adocao decode(int id, byte tomb, byte[] buf) {
-        int off = 0;
-        Codec.Decoded<String> dCpf = Codec.decodeStringU16(buf, off); off = dCpf.nextOffset;
-        Codec.Decoded<Integer> dAnimal = Codec.decodeInt(buf, off); off = dAnimal.nextOffset;
-        Codec.Decoded<java.time.LocalDate> dData = Codec.decodeLocalDate(buf, off);
-        Adocao a = new Adocao();
-        a.setId(id); a.setAtivo(tomb == 0);
-        a.setCpfAdotante(dCpf.value); a.setIdAnimal(dAnimal.value); a.setDataAdocao(dData.value);
-        return a;
+    @Override
+    protected int alturaIndice() throws IOException {
+        return bplus.altura();
+    }
+
+    @Override
+    protected boolean suportaVersao(byte versaoArquivo) {
+        return ESQUEMA.suporta(versaoArquivo);
+    }
+
+    @Override
+    protected Adocao decodificar(RecordReader r, long m) {
+        byte tomb = r.readByte();
+        int id = r.readInt();
+        r.skip(4); // len
+        Adocao e = codec.ler(r, m);
+        e.setId(id);
+        e.setAtivo(tomb == 0);
+        return e;
     }
 
     @Override
     public synchronized void close() throws IOException {
-        try { if (bplus != null) bplus.close(); } finally { super.close(); }
+        try {
+            if (adotadosSujo && raf.getChannel().isOpen()) salvarAdotados();
+        } finally {
+            try { if (bplus != null) bplus.close(); } finally { super.close(); }
+        }
     }
 }
@@ -6,13 +6,19 @@ import br.com.mpet.model.Gato;
 import br.com.mpet.model.Porte;
 import br.com.mpet.model.NivelAdestramento;
 import br.com.mpet.persistence.io.Codec;
+import br.com.mpet.persistence.io.EsquemaRegistro;
+import br.com.mpet.persistence.io.LayoutRegistro;
+import br.com.mpet.persistence.io.Projecao;
+import br.com.mpet.persistence.io.RecordReader;
+import br.com.mpet.persistence.io.RecordWriter;
 import br.com.mpet.persistence.index.ArvoreElemento;
 import br.com.mpet.persistence.index.BTree;
+import br.com.mpet.persistence.index.MapaIntLong;
 
 import java.io.File;
 import java.io.IOException;
 import java.util.ArrayList;
-import java.util.HashMap;
+import java.util.Collection;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
@@ -32,19 +38,10 @@ import java.util.Optional;
  *   - +6: len        (4 bytes) -> tamanho do payload em bytes
  *   - +10: payload   (len bytes)
  *
- * O payload é codificado por {@link Codec} e segue a ordem de campos por classe:
- *
- * Campos comuns de Animal (nesta ordem):
- *   idOng (int), nome (StringU16), dataNascimentoAprox (LocalDate),
- *   sexo (char), porte (Enum), vacinado (bool), descricao (StringU16)
- *
- * Cachorro (após os campos comuns):
- *   raca (StringU16), nivelAdestramento (Enum),
- *   seDaBemComCachorros (bool), seDaBemComGatos (bool), seDaBemComCriancas (bool)
- *
- * Gato (após os campos comuns):
- *   raca (StringU16), seDaBemComCachorros (bool), seDaBemComGatos (bool), seDaBemComCriancas (bool),
- *   acessoExterior (bool), possuiTelamento (bool)
+ * O payload segue as convenções de {@link Codec} (escrito por {@link RecordWriter} e lido
+ * por {@link RecordReader}). A ordem e o tipo dos campos estão declarados uma única vez nos
+ * esquemas {@code COMUNS} (início de qualquer registro), {@code CACHORRO} e {@code GATO}
+ * (campos comuns seguidos dos do subtipo); encode e decode são derivados deles.
  *
  * Notas:
  * - Booleans são codificados como 1 byte 'V' (true) ou 'F' (false) usando Codec.encodeTriBoolean/dec.
@@ -64,12 +61,52 @@ public class AnimalDataFileDao extends AnimalDao {
     private static final int REC_POS_LEN = 6;            // +6..+9 (int)
     private static final int REC_POS_PAYLOAD = 10;       // +10..+10+len-1
 
+    private static final Porte[] PORTES = Porte.values();
+    private static final NivelAdestramento[] NIVEIS = NivelAdestramento.values();
+
+    /** Campos comuns de Animal, no início do payload de qualquer tipo. */
+    private static final EsquemaRegistro<Animal> COMUNS = new EsquemaRegistro<Animal>()
+            .inteiro("idOng", Animal::getIdOng, Animal::setIdOng)
+            .string("nome", Animal::getNome, Animal::setNome)
+            .data("dataNascimentoAprox", Animal::getDataNascimentoAprox, Animal::setDataNascimentoAprox)
+            .caractere("sexo", Animal::getSexo, Animal::setSexo)
+            .enumeracao("porte", PORTES, Animal::getPorte, Animal::setPorte)
+            .triBoolean("vacinado", Animal::isVacinado, Animal::setVacinado)
+            .string("descricao", Animal::getDescricao, Animal::setDescricao)
+            .string("imageUrl", Animal::getImageUrl, Animal::setImageUrl);
+
+    private static final EsquemaRegistro<Cachorro> CACHORRO = new EsquemaRegistro<>(Cachorro::new)
+            .herdar(COMUNS)
+            .string("raca", Cachorro::getRaca, Cachorro::setRaca)
+            .enumeracao("nivelAdestramento", NIVEIS, Cachorro::getNivelAdestramento, Cachorro::setNivelAdestramento)
+            .triBoolean("seDaBemComCachorros", Cachorro::isSeDaBemComCachorros, Cachorro::setSeDaBemComCachorros)
+            .triBoolean("seDaBemComGatos", Cachorro::isSeDaBemComGatos, Cachorro::setSeDaBemComGatos)
+            .triBoolean("seDaBemComCriancas", Cachorro::isSeDaBemComCriancas, Cachorro::setSeDaBemComCriancas);
+
+    private static final EsquemaRegistro<Gato> GATO = new EsquemaRegistro<>(Gato::new)
+            .herdar(COMUNS)
+            .string("raca", Gato::getRaca, Gato::setRaca)
+            .triBoolean("seDaBemComCachorros", Gato::isSeDaBemComCachorros, Gato::setSeDaBemComCachorros)
+            .triBoolean("seDaBemComGatos", Gato::isSeDaBemComGatos, Gato::setSeDaBemComGatos)
+            .triBoolean("seDaBemComCriancas", Gato::isSeDaBemComCriancas, Gato::setSeDaBemComCriancas)
+            .triBoolean("acessoExterior", Gato::isAcessoExterior, Gato::setAcessoExterior)
+            .triBoolean("possuiTelamento", Gato::isPossuiTelamento, Gato::setPossuiTelamento);
+
+    /** Comuns filtráveis; campos de subtipo entram só na projeção. */
+    private static final LayoutRegistro LAYOUT = EsquemaRegistro.layout(COMUNS, CACHORRO, GATO);
+
     // Índice primário (id -> offset) usando B+ simplificado em arquivo .idx
-    private final Map<Integer, Long> indexById = new HashMap<>(); // cache em memória
+    private final MapaIntLong indexById = novoMapaIds(); // cache em memória
     private BTree<ArvoreElemento> bplus;
 
+    private final EsquemaRegistro.Compilado<Cachorro> codecCachorro;
+    private final EsquemaRegistro.Compilado<Gato> codecGato;
+
     public AnimalDataFileDao(File file, byte versaoFormato) throws IOException {
         super(file, versaoFormato);
+        this.codecCachorro = CACHORRO.compilar(LAYOUT, versaoArquivo(), payloadCompacto());
+        this.codecGato = GATO.compilar(LAYOUT, versaoArquivo(), payloadCompacto());
+        indexarCampo("idOng"); // animais da ONG do voluntário
         // Arquivo de índice B+ (mesmo nome + .idx)
         File idxFile = new File(file.getParentFile(), file.getName() + ".idx");
         try {
@@ -99,21 +136,21 @@ public class AnimalDataFileDao extends AnimalDao {
         // Atribui ID sequencial
     entity.setId(nextIdAndIncrement());
 
-        byte tipo = tipoPara(entity);
-        byte[] payload = encodeAnimal(entity);
-        byte[] full = montarRegistro(tipo, (byte)0, entity.getId(), payload);
-        long offset = appendRecord(full);
+        long offset = appendRecord(montarRegistro((byte)0, entity));
 
         indexById.put(entity.getId(), offset);
-        try {
-            bplus.create(new ArvoreElemento(entity.getId(), offset));
-        } catch (Exception e) {
-            throw new IOException("Erro ao inserir no índice B+", e);
-        }
+        inserirIndice(bplus, entity.getId(), offset);
         incrementCountAtivos();
         return entity;
     }
 
+    @Override
+    protected void gravarCopia(Animal a) throws IOException {
+        long offset = appendRecord(montarRegistro((byte)0, a));
+        indexById.put(a.getId(), offset);
+        inserirIndice(bplus, a.getId(), offset);
+    }
+
     /**
      * Lê um Animal ativo pelo ID.
      * Exemplo: Optional<Animal> a = dao.read(10);
@@ -121,20 +158,25 @@ public class AnimalDataFileDao extends AnimalDao {
     @Override
     public synchronized Optional<Animal> read(Integer id) throws IOException {
         if (id == null) return Optional.empty();
-        Long off = indexById.get(id);
-        if (off == null) {
+        long off = indexById.get(id);
+        if (off < 0) {
             // fallback para índice B+
             try {
                 ArvoreElemento el = bplus.read(id);
                 if (el != null) off = el.getAddress();
             } catch (Exception e) { /* ignora */ }
         }
-        if (off != null) indexById.put(id, off);
-        if (off == null) return Optional.empty();
+        if (off >= 0) indexById.put(id, off);
+        if (off < 0) return Optional.empty();
         Animal a = readAtOffset(off);
         return Optional.ofNullable(a);
     }
 
+    @Override
+    public Map<Integer, Animal> readAll(Collection<Integer> ids) throws IOException {
+        return lerEmLote(ids, this::localizarPorId);
+    }
+
     /**
      * Atualiza um Animal existente.
      * Se o payload tiver tamanho diferente, faz tombstone e apenda um novo registro.
@@ -144,8 +186,8 @@ public class AnimalDataFileDao extends AnimalDao {
     @Override
     public synchronized boolean update(Animal entity) throws IOException {
         if (entity == null) return false;
-    Long off = indexById.get(entity.getId());
-        if (off == null) return false;
+    long off = indexById.get(entity.getId());
+        if (off < 0) return false;
 
         // Lê header do registro atual para obter length
         raf.seek(off + REC_POS_TOMBSTONE);
@@ -154,19 +196,17 @@ public class AnimalDataFileDao extends AnimalDao {
         raf.seek(off + REC_POS_LEN);
         int oldLen = raf.readInt();
 
-        byte[] newPayload = encodeAnimal(entity);
-        if (newPayload.length == oldLen) {
+        RecordWriter w = montarRegistro((byte)0, entity);
+        if (w.position() - REC_POS_PAYLOAD == oldLen) {
             // Atualização in-place do payload
-            overwritePayload(off + REC_POS_PAYLOAD, newPayload);
+            overwritePayload(off + REC_POS_PAYLOAD, w, REC_POS_PAYLOAD);
             return true;
         } else {
             // Marca como removido e apenda um novo registro
             markTombstone(off);
             decrementCountAtivos();
 
-            byte tipo = tipoPara(entity);
-            byte[] full = montarRegistro(tipo, (byte)0, entity.getId(), newPayload);
-            long newOff = appendRecord(full);
+            long newOff = appendRecord(w);
             indexById.put(entity.getId(), newOff);
             try {
                 bplus.update(entity.getId(), newOff);
@@ -185,8 +225,8 @@ public class AnimalDataFileDao extends AnimalDao {
     @Override
     public synchronized boolean delete(Integer id) throws IOException {
         if (id == null) return false;
-        Long off = indexById.get(id);
-        if (off == null) return false;
+        long off = indexById.get(id);
+        if (off < 0) return false;
         // Se ainda ativo, marca tombstone e ajusta contadores
         raf.seek(off + REC_POS_TOMBSTONE);
         byte tomb = raf.readByte();
@@ -209,21 +249,7 @@ public class AnimalDataFileDao extends AnimalDao {
      */
     @Override
     public synchronized List<Animal> listAllActive() throws IOException {
-        List<Animal> list = new ArrayList<>();
-        long len = raf.length();
-        long pos = br.com.mpet.persistence.io.FileHeaderHelper.HEADER_SIZE;
-        while (pos < len) {
-            raf.seek(pos + REC_POS_TOMBSTONE);
-            byte tomb = raf.readByte();
-            raf.seek(pos + REC_POS_LEN);
-            int payloadLen = raf.readInt();
-            if (tomb == 0) {
-                Animal a = readAtOffset(pos);
-                if (a != null) list.add(a);
-            }
-            pos += REC_POS_PAYLOAD + payloadLen;
-        }
-        return list;
+        return listAllActive(null, Projecao.TODOS);
     }
 
     /**
@@ -251,12 +277,10 @@ public class AnimalDataFileDao extends AnimalDao {
         long len = raf.length();
         long pos = br.com.mpet.persistence.io.FileHeaderHelper.HEADER_SIZE;
         while (pos + REC_POS_PAYLOAD <= len) {
-            raf.seek(pos + REC_POS_ID);
-            int id = raf.readInt();
-            raf.seek(pos + REC_POS_TOMBSTONE);
-            byte tomb = raf.readByte();
-            raf.seek(pos + REC_POS_LEN);
-            int payloadLen = raf.readInt();
+            RecordReader h = readRecord(pos, REC_POS_PAYLOAD);
+            byte tomb = h.position(REC_POS_TOMBSTONE).readByte();
+            int id = h.position(REC_POS_ID).readInt();
+            int payloadLen = h.position(REC_POS_LEN).readInt();
             if (payloadLen < 0) break; // corrupção
             if (tomb == 0) {
                 indexById.put(id, pos);
@@ -278,6 +302,7 @@ public class AnimalDataFileDao extends AnimalDao {
 
     /**
      * Compacta o arquivo removendo registros tombstoned (gera arquivo temporário e substitui).
+     * Os animais mantêm o id (referenciado por adoções, interesses e chats).
      * Exemplo: dao.vacuum();
      */
     @Override
@@ -285,9 +310,7 @@ public class AnimalDataFileDao extends AnimalDao {
         // Cria arquivo temporário e regrava apenas registros ativos
         File temp = new File(file.getParentFile(), file.getName() + ".tmp");
         try (AnimalDataFileDao novo = new AnimalDataFileDao(temp, this.versaoFormato)) {
-            for (Animal a : listAllActive()) {
-                novo.create(cloneForVacuum(a));
-            }
+            copiarAtivos(novo);
         }
         // Substitui arquivo antigo pelo compactado (dados e índice)
         // Fechamos este DAO para liberar handles antes de substituir
@@ -320,139 +343,74 @@ public class AnimalDataFileDao extends AnimalDao {
         throw new IllegalArgumentException("Tipo de animal não suportado: " + a.getClass());
     }
 
-    private byte[] montarRegistro(byte tipo, byte tombstone, int id, byte[] payload) {
-        byte[] idb = Codec.encodeInt(id);
-        byte[] lenb = Codec.encodeInt(payload.length);
-        byte[] header = new byte[]{ tipo, tombstone, idb[0], idb[1], idb[2], idb[3], lenb[0], lenb[1], lenb[2], lenb[3] };
-        return Codec.concat(header, payload);
+    /**
+     * Monta o registro completo [tipo][tombstone][id][len][payload] no writer do DAO.
+     * O len é escrito provisoriamente como 0 e corrigido após codificar o payload;
+     * em arquivo cifrado o payload é selado ({@link #selar}).
+     */
+    private RecordWriter montarRegistro(byte tombstone, Animal a) throws IOException {
+        writer.reset()
+              .writeByte(tipoPara(a))
+              .writeByte(tombstone)
+              .writeInt(a.getId())
+              .writeInt(0);
+        encodeAnimal(a, writer);
+        return selar(writer.putInt(REC_POS_LEN, writer.position() - REC_POS_PAYLOAD));
     }
 
     private Animal readAtOffset(long offset) throws IOException {
-        raf.seek(offset + REC_POS_TIPO);
-        int tipo = raf.readUnsignedByte();
-        raf.seek(offset + REC_POS_TOMBSTONE);
-        byte tomb = raf.readByte();
-        raf.seek(offset + REC_POS_ID);
-        int id = raf.readInt();
-        raf.seek(offset + REC_POS_LEN);
-        int payloadLen = raf.readInt();
-        byte[] buf = readBytes(offset + REC_POS_PAYLOAD, payloadLen);
+        return decodificar(lerRegistro(offset), -1L);
+    }
 
+    @Override protected int recPosTombstone() { return REC_POS_TOMBSTONE; }
+    @Override protected int recPosId() { return REC_POS_ID; }
+    @Override protected int recPosLen() { return REC_POS_LEN; }
+    @Override protected int recPosPayload() { return REC_POS_PAYLOAD; }
+    @Override public LayoutRegistro layout() { return codecCachorro.layout(); }
+
+    @Override
+    protected long localizarPorId(int id) {
+        return indexById.get(id);
+    }
+
+    @Override
+    protected int alturaIndice() throws IOException {
+        return bplus.altura();
+    }
+
+    @Override
+    protected boolean suportaVersao(byte versaoArquivo) {
+        return CACHORRO.suporta(versaoArquivo) && GATO.suporta(versaoArquivo);
+    }
+
+    @Override
+    protected Animal decodificar(RecordReader r, long m) {
+        int tipo = r.readUnsignedByte();
+        byte tomb = r.readByte();
+        int id = r.readInt();
+        r.skip(4); // len
         Animal a = switch (tipo) {
-            case TIPO_CACHORRO -> decodeCachorro(id, tomb, buf);
-            case TIPO_GATO -> decodeGato(id, tomb, buf);
+            case TIPO_CACHORRO -> codecCachorro.ler(r, m);
+            case TIPO_GATO -> codecGato.ler(r, m);
             default -> null;
         };
+        if (a != null) {
+            a.setId(id);
+            a.setAtivo(tomb == 0);
+        }
         return a;
     }
 
-    private byte[] encodeAnimal(Animal a) {
-        // Comuns de Animal
-    byte[] idOng = Codec.encodeInt(a.getIdOng());
-    byte[] nome = Codec.encodeStringU16(a.getNome());
-    byte[] nasc = Codec.encodeLocalDate(a.getDataNascimentoAprox());
-    byte[] sexo = Codec.encodeChar(a.getSexo());
-    byte[] porte = Codec.encodeEnum(a.getPorte());
-    byte[] vac = Codec.encodeTriBoolean(a.isVacinado());
-    byte[] desc = Codec.encodeStringU16(a.getDescricao());
-    byte[] imageUrl = Codec.encodeStringU16(a.getImageUrl());
-
+    private void encodeAnimal(Animal a, RecordWriter w) {
         if (a instanceof Cachorro c) {
-            byte[] raca = Codec.encodeStringU16(c.getRaca());
-            byte[] nivel = Codec.encodeEnum(c.getNivelAdestramento());
-            byte[] b1 = Codec.encodeTriBoolean(c.isSeDaBemComCachorros());
-            byte[] b2 = Codec.encodeTriBoolean(c.isSeDaBemComGatos());
-            byte[] b3 = Codec.encodeTriBoolean(c.isSeDaBemComCriancas());
-            return Codec.concat(idOng, nome, nasc, sexo, porte, vac, desc, imageUrl, raca, nivel, b1, b2, b3);
+            codecCachorro.escrever(c, w);
         } else if (a instanceof Gato g) {
-            byte[] raca = Codec.encodeStringU16(g.getRaca());
-            byte[] b1 = Codec.encodeTriBoolean(g.isSeDaBemComCachorros());
-            byte[] b2 = Codec.encodeTriBoolean(g.isSeDaBemComGatos());
-            byte[] b3 = Codec.encodeTriBoolean(g.isSeDaBemComCriancas());
-            byte[] b4 = Codec.encodeTriBoolean(g.isAcessoExterior());
-            byte[] b5 = Codec.encodeTriBoolean(g.isPossuiTelamento());
-            return Codec.concat(idOng, nome, nasc, sexo, porte, vac, desc, imageUrl, raca, b1, b2, b3, b4, b5);
+            codecGato.escrever(g, w);
         } else {
             throw new IllegalArgumentException("Tipo de animal não suportado: " + a.getClass());
         }
     }
 
-    private Cachorro decodeCachorro(int id, byte tomb, byte[] buf) {
-        int off = 0;
-        Codec.Decoded<Integer> dIdOng = Codec.decodeInt(buf, off); off = dIdOng.nextOffset;
-        Codec.Decoded<String> dNome = Codec.decodeStringU16(buf, off); off = dNome.nextOffset;
-        Codec.Decoded<java.time.LocalDate> dNasc = Codec.decodeLocalDate(buf, off); off = dNasc.nextOffset;
-        Codec.Decoded<Character> dSexo = Codec.decodeChar(buf, off); off = dSexo.nextOffset;
-    Codec.Decoded<Porte> dPorte = Codec.decodeEnum(buf, off, Porte.class); off = dPorte.nextOffset;
-    Codec.Decoded<Boolean> dVacinado = Codec.decodeTriBoolean(buf, off); off = dVacinado.nextOffset;
-    Codec.Decoded<String> dDesc = Codec.decodeStringU16(buf, off); off = dDesc.nextOffset;
-    Codec.Decoded<String> dImageUrl = Codec.decodeStringU16(buf, off); off = dImageUrl.nextOffset;
-
-        Codec.Decoded<String> dRaca = Codec.decodeStringU16(buf, off); off = dRaca.nextOffset;
-        Codec.Decoded<NivelAdestramento> dNivel = Codec.decodeEnum(buf, off, NivelAdestramento.class); off = dNivel.nextOffset;
-        Codec.Decoded<Boolean> b1 = Codec.decodeTriBoolean(buf, off); off = b1.nextOffset;
-        Codec.Decoded<Boolean> b2 = Codec.decodeTriBoolean(buf, off); off = b2.nextOffset;
-        Codec.Decoded<Boolean> b3 = Codec.decodeTriBoolean(buf, off); off = b3.nextOffset;
-
-        Cachorro c = new Cachorro();
-    c.setId(id);
-    c.setAtivo(tomb == 0);
-    c.setIdOng(dIdOng.value);
-    c.setNome(dNome.value);
-    c.setDataNascimentoAprox(dNasc.value);
-    c.setSexo(dSexo.value);
-    c.setPorte(dPorte.value);
-    c.setVacinado(Boolean.TRUE.equals(dVacinado.value));
-    c.setDescricao(dDesc.value);
-    c.setImageUrl(dImageUrl.value);
-
-    c.setRaca(dRaca.value);
-    c.setNivelAdestramento(dNivel.value);
-    c.setSeDaBemComCachorros(Boolean.TRUE.equals(b1.value));
-    c.setSeDaBemComGatos(Boolean.TRUE.equals(b2.value));
-    c.setSeDaBemComCriancas(Boolean.TRUE.equals(b3.value));
-        return c;
-    }
-
-    private Gato decodeGato(int id, byte tomb, byte[] buf) {
-        int off = 0;
-        Codec.Decoded<Integer> dIdOng = Codec.decodeInt(buf, off); off = dIdOng.nextOffset;
-        Codec.Decoded<String> dNome = Codec.decodeStringU16(buf, off); off = dNome.nextOffset;
-        Codec.Decoded<java.time.LocalDate> dNasc = Codec.decodeLocalDate(buf, off); off = dNasc.nextOffset;
-        Codec.Decoded<Character> dSexo = Codec.decodeChar(buf, off); off = dSexo.nextOffset;
-    Codec.Decoded<Porte> dPorte = Codec.decodeEnum(buf, off, Porte.class); off = dPorte.nextOffset;
-    Codec.Decoded<Boolean> dVacinado = Codec.decodeTriBoolean(buf, off); off = dVacinado.nextOffset;
-    Codec.Decoded<String> dDesc = Codec.decodeStringU16(buf, off); off = dDesc.nextOffset;
-    Codec.Decoded<String> dImageUrl = Codec.decodeStringU16(buf, off); off = dImageUrl.nextOffset;
-
-        Codec.Decoded<String> dRaca = Codec.decodeStringU16(buf, off); off = dRaca.nextOffset;
-        Codec.Decoded<Boolean> b1 = Codec.decodeTriBoolean(buf, off); off = b1.nextOffset;
-        Codec.Decoded<Boolean> b2 = Codec.decodeTriBoolean(buf, off); off = b2.nextOffset;
-        Codec.Decoded<Boolean> b3 = Codec.decodeTriBoolean(buf, off); off = b3.nextOffset;
-        Codec.Decoded<Boolean> b4 = Codec.decodeTriBoolean(buf, off); off = b4.nextOffset;
-        Codec.Decoded<Boolean> b5 = Codec.decodeTriBoolean(buf, off); off = b5.nextOffset;
-
-        Gato g = new Gato();
-    g.setId(id);
-    g.setAtivo(tomb == 0);
-    g.setIdOng(dIdOng.value);
-    g.setNome(dNome.value);
-    g.setDataNascimentoAprox(dNasc.value);
-    g.setSexo(dSexo.value);
-    g.setPorte(dPorte.value);
-    g.setVacinado(Boolean.TRUE.equals(dVacinado.value));
-    g.setDescricao(dDesc.value);
-    g.setImageUrl(dImageUrl.value);
-
-    g.setRaca(dRaca.value);
-    g.setSeDaBemComCachorros(Boolean.TRUE.equals(b1.value));
-    g.setSeDaBemComGatos(Boolean.TRUE.equals(b2.value));
-    g.setSeDaBemComCriancas(Boolean.TRUE.equals(b3.value));
-    g.setAcessoExterior(Boolean.TRUE.equals(b4.value));
-    g.setPossuiTelamento(Boolean.TRUE.equals(b5.value));
-        return g;
-    }
-
     @Override
     public synchronized void close() throws IOException {
         try {
@@ -462,41 +420,4 @@ public class AnimalDataFileDao extends AnimalDao {
         }
     }
 
-    private static Animal cloneForVacuum(Animal a) {
-        // Clonagem simples para regravar no vacuum sem compartilhar referência
-        if (a instanceof Cachorro c) {
-            Cachorro n = new Cachorro();
-            copiarBasico(a, n);
-            n.setRaca(c.getRaca());
-            n.setNivelAdestramento(c.getNivelAdestramento());
-            n.setSeDaBemComCachorros(c.isSeDaBemComCachorros());
-            n.setSeDaBemComGatos(c.isSeDaBemComGatos());
-            n.setSeDaBemComCriancas(c.isSeDaBemComCriancas());
-            return n;
-        } else if (a instanceof Gato g) {
-            Gato n = new Gato();
-            copiarBasico(a, n);
-            n.setRaca(g.getRaca());
-            n.setSeDaBemComCachorros(g.isSeDaBemComCachorros());
-            n.setSeDaBemComGatos(g.isSeDaBemComGatos());
-            n.setSeDaBemComCriancas(g.isSeDaBemComCriancas());
-            n.setAcessoExterior(g.isAcessoExterior());
-            n.setPossuiTelamento(g.isPossuiTelamento());
-            return n;
-        }
-        throw new IllegalArgumentException("Tipo de animal não suportado: " + a.getClass());
-    }
-
-    private static void copiarBasico(Animal from, Animal to) {
-        to.setId(from.getId());
-        to.setIdOng(from.getIdOng());
-        to.setNome(from.getNome());
-        to.setDataNascimentoAprox(from.getDataNascimentoAprox());
-        to.setSexo(from.getSexo());
-        to.setPorte(from.getPorte());
-        to.setDescricao(from.getDescricao());
-        to.setImageUrl(from.getImageUrl());
-        to.setAtivo(from.isAtivo());
-    }
-
 }
@@ -4,16 +4,21 @@ import br.com.mpet.model.ChatMessage;
 import br.com.mpet.model.ChatSender;
 import br.com.mpet.persistence.BaseDataFile;
 import br.com.mpet.persistence.CrudDao;
+import br.com.mpet.persistence.VersaoDados;
 import br.com.mpet.persistence.index.ArvoreElemento;
 import br.com.mpet.persistence.index.BTree;
-import br.com.mpet.persistence.io.Codec;
+import br.com.mpet.persistence.index.MapaIntLong;
+import br.com.mpet.persistence.io.EsquemaRegistro;
 import br.com.mpet.persistence.io.FileHeaderHelper;
+import br.com.mpet.persistence.io.LayoutRegistro;
+import br.com.mpet.persistence.io.Projecao;
+import br.com.mpet.persistence.io.RecordReader;
+import br.com.mpet.persistence.io.RecordWriter;
 
 import java.io.File;
 import java.io.IOException;
 import java.time.LocalDateTime;
 import java.time.ZoneId;
-import java.time.ZoneOffset;
 import java.util.*;
 
 /** DAO para mensagens de chat. */
@@ -24,15 +29,38 @@ public class ChatMessageDataFileDao extends BaseDataFile<ChatMessage> implements
     private static final int REC_POS_LEN = 5;
     private static final int REC_POS_PAYLOAD = 9;
 
-    private final Map<Integer, Long> indexById = new HashMap<>();
+    private static final ChatSender[] SENDERS = ChatSender.values();
+
+    /** Campos do payload, na ordem em disco. zoneId pode faltar em registros antigos. */
+    private static final EsquemaRegistro<ChatMessage> ESQUEMA = new EsquemaRegistro<>(ChatMessage::new)
+            .inteiro("threadId", ChatMessage::getThreadId, ChatMessage::setThreadId)
+            .enumeracao("sender", SENDERS, ChatMessage::getSender, ChatMessage::setSender)
+            .string("conteudo", ChatMessage::getConteudo, ChatMessage::setConteudo)
+            .dataHora("enviadoEm", ChatMessage::getEnviadoEm, ChatMessage::setEnviadoEm)
+            .string("zoneId", ChatMessage::getZoneId, ChatMessage::setZoneId).opcional();
+    private static final LayoutRegistro LAYOUT = ESQUEMA.layout();
+
+    private final MapaIntLong indexById = novoMapaIds();
     private BTree<ArvoreElemento> bplus;
 
+    private final EsquemaRegistro.Compilado<ChatMessage> codec;
+
+    /**
+     * threadId → contador de escritas do DAO na última escrita de uma mensagem da thread, e o
+     * instante dela (ver {@link #versaoThread}). Só guarda threads alteradas desde a abertura.
+     */
+    private final MapaIntLong escritasPorThread = MapaIntLong.criar(false);
+    private final MapaIntLong modificacaoPorThread = MapaIntLong.criar(false);
+    private final long modificadoNaAbertura;
+
     public ChatMessageDataFileDao(File file, byte versaoFormato) throws IOException {
         super(file, versaoFormato);
+        this.codec = ESQUEMA.compilar(LAYOUT, versaoArquivo(), payloadCompacto());
         File idxFile = new File(file.getParentFile(), file.getName() + ".idx");
         try { this.bplus = new BTree<>(ArvoreElemento.class.getConstructor(), 4, idxFile.getPath()); }
         catch (NoSuchMethodException e) { throw new IOException("Falha ao inicializar BTree", e); }
         rebuildIfEmpty();
+        this.modificadoNaAbertura = versao().modificadoEm();
     }
 
     @Override
@@ -43,52 +71,73 @@ public class ChatMessageDataFileDao extends BaseDataFile<ChatMessage> implements
         if (e.getSender() == null) e.setSender(ChatSender.VOLUNTARIO);
         if (!e.isAtivo()) e.setAtivo(true);
         if (e.getZoneId() == null) e.setZoneId(ZoneId.systemDefault().getId());
-        byte[] payload = encode(e);
-        long off = appendRecord(montarRegistro((byte)0, e.getId(), payload));
+        long off = appendRecord(montarRegistro((byte)0, e));
         indexById.put(e.getId(), off);
-        try { bplus.create(new ArvoreElemento(e.getId(), off)); } catch (Exception ex) { throw new IOException("Erro ao inserir no índice B+", ex); }
+        inserirIndice(bplus, e.getId(), off);
         incrementCountAtivos();
+        marcarThread(e.getThreadId());
         return e;
     }
 
+    @Override
+    protected void gravarCopia(ChatMessage e) throws IOException {
+        long off = appendRecord(montarRegistro((byte)0, e));
+        indexById.put(e.getId(), off);
+        inserirIndice(bplus, e.getId(), off);
+    }
+
     @Override
     public synchronized Optional<ChatMessage> read(Integer id) throws IOException {
-        Long off = indexById.get(id);
-        if (off == null) {
+        if (id == null) return Optional.empty();
+        long off = indexById.get(id);
+        if (off < 0) {
             try { ArvoreElemento el = bplus.read(id); if (el != null) off = el.getAddress(); } catch (Exception ignore) {}
         }
-        if (off == null) return Optional.empty();
+        if (off < 0) return Optional.empty();
         indexById.put(id, off);
         return Optional.ofNullable(readAt(off));
     }
 
+    @Override
+    public Map<Integer, ChatMessage> readAll(Collection<Integer> ids) throws IOException {
+        return lerEmLote(ids, this::localizarPorId);
+    }
+
     @Override
     public synchronized boolean update(ChatMessage e) throws IOException {
-        Long off = indexById.get(e.getId());
-        if (off == null) return false;
+        long off = indexById.get(e.getId());
+        if (off < 0) return false;
         raf.seek(off + REC_POS_TOMBSTONE);
         if (raf.readByte() != 0) return false;
         raf.seek(off + REC_POS_LEN);
         int oldLen = raf.readInt();
-        byte[] newPayload = encode(e);
-        if (newPayload.length == oldLen) {
-            overwritePayload(off + REC_POS_PAYLOAD, newPayload);
+        ChatMessage antiga = readAt(off);
+        RecordWriter w = montarRegistro((byte)0, e);
+        if (w.position() - REC_POS_PAYLOAD == oldLen) {
+            overwritePayload(off + REC_POS_PAYLOAD, w, REC_POS_PAYLOAD);
         } else {
             markTombstone(off); decrementCountAtivos();
-            long novo = appendRecord(montarRegistro((byte)0, e.getId(), newPayload));
+            long novo = appendRecord(w);
             indexById.put(e.getId(), novo);
             try { bplus.update(e.getId(), novo); } catch (Exception ex) { throw new IOException("Erro ao atualizar no índice B+", ex); }
             incrementCountAtivos();
         }
+        if (antiga != null) marcarThread(antiga.getThreadId());
+        marcarThread(e.getThreadId());
         return true;
     }
 
     @Override
     public synchronized boolean delete(Integer id) throws IOException {
-        Long off = indexById.get(id);
-        if (off == null) return false;
+        if (id == null) return false;
+        long off = indexById.get(id);
+        if (off < 0) return false;
         raf.seek(off + REC_POS_TOMBSTONE);
-        if (raf.readByte() == 0) { markTombstone(off); decrementCountAtivos(); }
+        if (raf.readByte() == 0) {
+            ChatMessage antiga = readAt(off);
+            markTombstone(off); decrementCountAtivos();
+            if (antiga != null) marcarThread(antiga.getThreadId());
+        }
         indexById.remove(id);
         try { bplus.delete(id); } catch (Exception ex) { throw new IOException("Erro ao deletar no índice B+", ex); }
         return true;
@@ -96,21 +145,7 @@ public class ChatMessageDataFileDao extends BaseDataFile<ChatMessage> implements
 
     @Override
     public synchronized List<ChatMessage> listAllActive() throws IOException {
-        List<ChatMessage> list = new ArrayList<>();
-        long len = raf.length();
-        long pos = FileHeaderHelper.HEADER_SIZE;
-        while (pos < len) {
-            raf.seek(pos + REC_POS_TOMBSTONE);
-            byte tomb = raf.readByte();
-            raf.seek(pos + REC_POS_LEN);
-            int pay = raf.readInt();
-            if (tomb == 0) {
-                ChatMessage it = readAt(pos);
-                if (it != null) list.add(it);
-            }
-            pos += REC_POS_PAYLOAD + pay;
-        }
-        return list;
+        return listAllActive(null, Projecao.TODOS);
     }
 
     @Override
@@ -127,12 +162,10 @@ public class ChatMessageDataFileDao extends BaseDataFile<ChatMessage> implements
         long len = raf.length();
         long pos = FileHeaderHelper.HEADER_SIZE;
         while (pos + REC_POS_PAYLOAD <= len) {
-            raf.seek(pos + REC_POS_ID);
-            int id = raf.readInt();
-            raf.seek(pos + REC_POS_TOMBSTONE);
-            byte tomb = raf.readByte();
-            raf.seek(pos + REC_POS_LEN);
-            int pay = raf.readInt();
+            RecordReader h = readRecord(pos, REC_POS_PAYLOAD);
+            byte tomb = h.position(REC_POS_TOMBSTONE).readByte();
+            int id = h.position(REC_POS_ID).readInt();
+            int pay = h.position(REC_POS_LEN).readInt();
             if (pay < 0) break;
             if (tomb == 0) { indexById.put(id, pos); try { bplus.create(new ArvoreElemento(id, pos)); } catch (Exception e) { throw new IOException("Erro ao reconstruir índice B+", e); } ativos++; }
             pos += REC_POS_PAYLOAD + pay;
@@ -144,7 +177,7 @@ public class ChatMessageDataFileDao extends BaseDataFile<ChatMessage> implements
     public synchronized void vacuum() throws IOException {
         File temp = new File(file.getParentFile(), file.getName() + ".tmp");
         try (ChatMessageDataFileDao novo = new ChatMessageDataFileDao(temp, this.versaoFormato)) {
-            for (ChatMessage a : listAllActive()) novo.create(a);
+            copiarAtivos(novo);
         }
         this.close();
         if (!file.delete()) throw new IOException("Falha ao apagar arquivo antigo: " + file);
@@ -158,61 +191,68 @@ public class ChatMessageDataFileDao extends BaseDataFile<ChatMessage> implements
         }
     }
 
-    private byte[] montarRegistro(byte tomb, int id, byte[] payload) {
-        return Codec.concat(new byte[]{ tomb }, Codec.encodeInt(id), Codec.encodeInt(payload.length), payload);
+    /**
+     * Versão das mensagens de uma thread: muda só quando uma mensagem dela é criada, alterada ou
+     * removida, então quem acompanha uma conversa não perde o cache por causa das outras.
+     */
+    public synchronized VersaoDados versaoThread(int threadId) {
+        long escritas = escritasPorThread.get(threadId);
+        if (escritas == MapaIntLong.AUSENTE) return versao(0, modificadoNaAbertura);
+        return versao(escritas, modificacaoPorThread.get(threadId));
+    }
+
+    /** Maior id já atribuído a uma mensagem: ponto de partida de quem só quer as próximas. */
+    public synchronized int ultimoId() {
+        return header.proximoId - 1;
+    }
+
+    private void marcarThread(int threadId) {
+        VersaoDados v = versao();
+        escritasPorThread.put(threadId, v.escritas());
+        modificacaoPorThread.put(threadId, v.modificadoEm());
+    }
+
+    /** Monta [tombstone][id][len][payload] no writer do DAO; o len é corrigido após o payload, que é selado se o arquivo for cifrado. */
+    private RecordWriter montarRegistro(byte tomb, ChatMessage e) throws IOException {
+        writer.reset().writeByte(tomb).writeInt(e.getId()).writeInt(0);
+        codec.escrever(e, writer);
+        return selar(writer.putInt(REC_POS_LEN, writer.position() - REC_POS_PAYLOAD));
     }
 
     private ChatMessage readAt(long offset) throws IOException {
-        raf.seek(offset + REC_POS_TOMBSTONE);
-        byte tomb = raf.readByte();
-        raf.seek(offset + REC_POS_ID);
-        int id = raf.readInt();
-        raf.seek(offset + REC_POS_LEN);
-        int payLen = raf.readInt();
-        byte[] buf = readBytes(offset + REC_POS_PAYLOAD, payLen);
-        return decode(id, tomb, buf);
-    }
-
-    private static byte[] encodeDateTime(LocalDateTime dt) {
-        if (dt == null) return Codec.encodeLong(0L);
-        long epoch = dt.toEpochSecond(ZoneOffset.UTC);
-        return Codec.encodeLong(epoch);
-    }
-
-    private byte[] encode(ChatMessage a) {
-        return Codec.concat(
-                Codec.encodeInt(a.getThreadId()),
-                Codec.encodeEnum(a.getSender()),
-                Codec.encodeStringU16(a.getConteudo()),
-                encodeDateTime(a.getEnviadoEm()),
-                Codec.encodeStringU16(a.getZoneId())
-        );
-    }
-
-    private ChatMessage decode(int id, byte tomb, byte[] buf) {
-        int off = 0;
-        Codec.Decoded<Integer> dThread = Codec.decodeInt(buf, off); off = dThread.nextOffset;
-        Codec.Decoded<ChatSender> dSender = Codec.decodeEnum(buf, off, ChatSender.class); off = dSender.nextOffset;
-        Codec.Decoded<String> dText = Codec.decodeStringU16(buf, off); off = dText.nextOffset;
-        Codec.Decoded<Long> dEpoch = Codec.decodeLong(buf, off); off = dEpoch.nextOffset;
-        String zoneId = null;
-        if (off < buf.length) {
-            try {
-                Codec.Decoded<String> dZone = Codec.decodeStringU16(buf, off);
-                zoneId = dZone.value;
-                off = dZone.nextOffset;
-            } catch (Exception ignore) { }
-        }
-        ChatMessage a = new ChatMessage();
-        a.setId(id);
-        a.setThreadId(dThread.value);
-        a.setSender(dSender.value);
-        a.setConteudo(dText.value);
-        long epoch = dEpoch.value;
-        a.setEnviadoEm(epoch == 0L ? null : LocalDateTime.ofEpochSecond(epoch,0,ZoneOffset.UTC));
-        a.setAtivo(tomb == 0);
-        a.setZoneId(zoneId);
-        return a;
+        return decodificar(lerRegistro(offset), -1L);
+    }
+
+    @Override protected int recPosTombstone() { return REC_POS_TOMBSTONE; }
+    @Override protected int recPosId() { return REC_POS_ID; }
+    @Override protected int recPosLen() { return REC_POS_LEN; }
+    @Override protected int recPosPayload() { return REC_POS_PAYLOAD; }
+    @Override public LayoutRegistro layout() { return codec.layout(); }
+
+    @Override
+    protected long localizarPorId(int id) {
+        return indexById.get(id);
+    }
+
+    @Override
+    protected int alturaIndice() throws IOException {
+        return bplus.altura();
+    }
+
+    @Override
+    protected boolean suportaVersao(byte versaoArquivo) {
+        return ESQUEMA.suporta(versaoArquivo);
+    }
+
+    @Override
+    protected ChatMessage decodificar(RecordReader r, long m) {
+        byte tomb = r.readByte();
+        int id = r.readInt();
+        r.skip(4); // len
+        ChatMessage e = codec.ler(r, m);
+        e.setId(id);
+        e.setAtivo(tomb == 0);
+        return e;
     }
 
     @Override
@@ -5,14 +5,18 @@ import br.com.mpet.persistence.BaseDataFile;
 import br.com.mpet.persistence.CrudDao;
 import br.com.mpet.persistence.index.ArvoreElemento;
 import br.com.mpet.persistence.index.BTree;
-import br.com.mpet.persistence.io.Codec;
+import br.com.mpet.persistence.index.MapaIntLong;
+import br.com.mpet.persistence.io.EsquemaRegistro;
 import br.com.mpet.persistence.io.FileHeaderHelper;
+import br.com.mpet.persistence.io.LayoutRegistro;
+import br.com.mpet.persistence.io.Projecao;
+import br.com.mpet.persistence.io.RecordReader;
+import br.com.mpet.persistence.io.RecordWriter;
 
 import java.io.File;
 import java.io.IOException;
 import java.time.LocalDateTime;
 import java.time.ZoneId;
-import java.time.ZoneOffset;
 import java.util.*;
 
 /** DAO para threads de chat. */
@@ -23,11 +27,25 @@ public class ChatThreadDataFileDao extends BaseDataFile<ChatThread> implements C
     private static final int REC_POS_LEN = 5;
     private static final int REC_POS_PAYLOAD = 9;
 
-    private final Map<Integer, Long> indexById = new HashMap<>();
+    /** Campos do payload, na ordem em disco. zoneId pode faltar em registros antigos. */
+    private static final EsquemaRegistro<ChatThread> ESQUEMA = new EsquemaRegistro<>(ChatThread::new)
+            .inteiro("idAnimal", ChatThread::getIdAnimal, ChatThread::setIdAnimal)
+            .string("cpfAdotante", ChatThread::getCpfAdotante, ChatThread::setCpfAdotante)
+            .triBoolean("aberto", ChatThread::isAberto, ChatThread::setAberto)
+            .dataHora("criadoEm", ChatThread::getCriadoEm, ChatThread::setCriadoEm)
+            .string("zoneId", ChatThread::getZoneId, ChatThread::setZoneId).opcional();
+    private static final LayoutRegistro LAYOUT = ESQUEMA.layout();
+
+    private final MapaIntLong indexById = novoMapaIds();
     private BTree<ArvoreElemento> bplus;
 
+    private final EsquemaRegistro.Compilado<ChatThread> codec;
+
     public ChatThreadDataFileDao(File file, byte versaoFormato) throws IOException {
         super(file, versaoFormato);
+        this.codec = ESQUEMA.compilar(LAYOUT, versaoArquivo(), payloadCompacto());
+        indexarCampo("cpfAdotante"); // "minhas conversas" e checagem de thread duplicada
+        indexarCampo("idAnimal");
         File idxFile = new File(file.getParentFile(), file.getName() + ".idx");
         try { this.bplus = new BTree<>(ArvoreElemento.class.getConstructor(), 4, idxFile.getPath()); }
         catch (NoSuchMethodException e) { throw new IOException("Falha ao inicializar BTree", e); }
@@ -40,39 +58,51 @@ public class ChatThreadDataFileDao extends BaseDataFile<ChatThread> implements C
         e.setId(nextIdAndIncrement());
         if (e.getCriadoEm() == null) e.setCriadoEm(LocalDateTime.now());
         if (e.getZoneId() == null) e.setZoneId(ZoneId.systemDefault().getId());
-        byte[] payload = encode(e);
-        long off = appendRecord(montarRegistro((byte)0, e.getId(), payload));
+        long off = appendRecord(montarRegistro((byte)0, e));
         indexById.put(e.getId(), off);
-        try { bplus.create(new ArvoreElemento(e.getId(), off)); } catch (Exception ex) { throw new IOException("Erro ao inserir no índice B+", ex); }
+        inserirIndice(bplus, e.getId(), off);
         incrementCountAtivos();
         return e;
     }
 
+    @Override
+    protected void gravarCopia(ChatThread e) throws IOException {
+        long off = appendRecord(montarRegistro((byte)0, e));
+        indexById.put(e.getId(), off);
+        inserirIndice(bplus, e.getId(), off);
+    }
+
     @Override
     public synchronized Optional<ChatThread> read(Integer id) throws IOException {
-        Long off = indexById.get(id);
-        if (off == null) {
+        if (id == null) return Optional.empty();
+        long off = indexById.get(id);
+        if (off < 0) {
             try { ArvoreElemento el = bplus.read(id); if (el != null) off = el.getAddress(); } catch (Exception ignore) {}
         }
-        if (off == null) return Optional.empty();
+        if (off < 0) return Optional.empty();
         indexById.put(id, off);
         return Optional.ofNullable(readAt(off));
     }
 
+    @Override
+    public Map<Integer, ChatThread> readAll(Collection<Integer> ids) throws IOException {
+        return lerEmLote(ids, this::localizarPorId);
+    }
+
     @Override
     public synchronized boolean update(ChatThread e) throws IOException {
-        Long off = indexById.get(e.getId());
-        if (off == null) return false;
+        long off = indexById.get(e.getId());
+        if (off < 0) return false;
         raf.seek(off + REC_POS_TOMBSTONE);
         if (raf.readByte() != 0) return false;
         raf.seek(off + REC_POS_LEN);
         int oldLen = raf.readInt();
-        byte[] newPayload = encode(e);
-        if (newPayload.length == oldLen) {
-            overwritePayload(off + REC_POS_PAYLOAD, newPayload);
+        RecordWriter w = montarRegistro((byte)0, e);
+        if (w.position() - REC_POS_PAYLOAD == oldLen) {
+            overwritePayload(off + REC_POS_PAYLOAD, w, REC_POS_PAYLOAD);
         } else {
             markTombstone(off); decrementCountAtivos();
-            long novo = appendRecord(montarRegistro((byte)0, e.getId(), newPayload));
+            long novo = appendRecord(w);
             indexById.put(e.getId(), novo);
             try { bplus.update(e.getId(), novo); } catch (Exception ex) { throw new IOException("Erro ao atualizar no índice B+", ex); }
             incrementCountAtivos();
@@ -82,8 +112,9 @@ public class ChatThreadDataFileDao extends BaseDataFile<ChatThread> implements C
 
     @Override
     public synchronized boolean delete(Integer id) throws IOException {
-        Long off = indexById.get(id);
-        if (off == null) return false;
+        if (id == null) return false;
+        long off = indexById.get(id);
+        if (off < 0) return false;
         raf.seek(off + REC_POS_TOMBSTONE);
         if (raf.readByte() == 0) { markTombstone(off); decrementCountAtivos(); }
         indexById.remove(id);
@@ -93,21 +124,7 @@ public class ChatThreadDataFileDao extends BaseDataFile<ChatThread> implements C
 
     @Override
     public synchronized List<ChatThread> listAllActive() throws IOException {
-        List<ChatThread> list = new ArrayList<>();
-        long len = raf.length();
-        long pos = FileHeaderHelper.HEADER_SIZE;
-        while (pos < len) {
-            raf.seek(pos + REC_POS_TOMBSTONE);
-            byte tomb = raf.readByte();
-            raf.seek(pos + REC_POS_LEN);
-            int pay = raf.readInt();
-            if (tomb == 0) {
-                ChatThread it = readAt(pos);
-                if (it != null) list.add(it);
-            }
-            pos += REC_POS_PAYLOAD + pay;
-        }
-        return list;
+        return listAllActive(null, Projecao.TODOS);
     }
 
     @Override
@@ -124,12 +141,10 @@ public class ChatThreadDataFileDao extends BaseDataFile<ChatThread> implements C
         long len = raf.length();
         long pos = FileHeaderHelper.HEADER_SIZE;
         while (pos + REC_POS_PAYLOAD <= len) {
-            raf.seek(pos + REC_POS_ID);
-            int id = raf.readInt();
-            raf.seek(pos + REC_POS_TOMBSTONE);
-            byte tomb = raf.readByte();
-            raf.seek(pos + REC_POS_LEN);
-            int pay = raf.readInt();
+            RecordReader h = readRecord(pos, REC_POS_PAYLOAD);
+            byte tomb = h.position(REC_POS_TOMBSTONE).readByte();
+            int id = h.position(REC_POS_ID).readInt();
+            int pay = h.position(REC_POS_LEN).readInt();
             if (pay < 0) break;
             if (tomb == 0) { indexById.put(id, pos); try { bplus.create(new ArvoreElemento(id, pos)); } catch (Exception e) { throw new IOException("Erro ao reconstruir índice B+", e); } ativos++; }
             pos += REC_POS_PAYLOAD + pay;
@@ -141,7 +156,7 @@ public class ChatThreadDataFileDao extends BaseDataFile<ChatThread> implements C
     public synchronized void vacuum() throws IOException {
         File temp = new File(file.getParentFile(), file.getName() + ".tmp");
         try (ChatThreadDataFileDao novo = new ChatThreadDataFileDao(temp, this.versaoFormato)) {
-            for (ChatThread a : listAllActive()) novo.create(a);
+            copiarAtivos(novo);
         }
         this.close();
         if (!file.delete()) throw new IOException("Falha ao apagar arquivo antigo: " + file);
@@ -155,63 +170,46 @@ public class ChatThreadDataFileDao extends BaseDataFile<ChatThread> implements C
         }
     }
 
-    private byte[] montarRegistro(byte tomb, int id, byte[] payload) {
-        return Codec.concat(new byte[]{ tomb }, Codec.encodeInt(id), Codec.encodeInt(payload.length), payload);
+    /** Monta [tombstone][id][len][payload] no writer do DAO; o len é corrigido após o payload, que é selado se o arquivo for cifrado. */
+    private RecordWriter montarRegistro(byte tomb, ChatThread e) throws IOException {
+        writer.reset().writeByte(tomb).writeInt(e.getId()).writeInt(0);
+        codec.escrever(e, writer);
+        return selar(writer.putInt(REC_POS_LEN, writer.position() - REC_POS_PAYLOAD));
     }
 
     private ChatThread readAt(long offset) throws IOException {
-        raf.seek(offset + REC_POS_TOMBSTONE);
-        byte tomb = raf.readByte();
-        raf.seek(offset + REC_POS_ID);
-        int id = raf.readInt();
-        raf.seek(offset + REC_POS_LEN);
-        int payLen = raf.readInt();
-        byte[] buf = readBytes(offset + REC_POS_PAYLOAD, payLen);
-        return decode(id, tomb, buf);
-    }
-
-    private static byte[] encodeDateTime(LocalDateTime dt) {
-        if (dt == null) return Codec.encodeLong(0L);
-        long epoch = dt.toEpochSecond(ZoneOffset.UTC);
-        return Codec.encodeLong(epoch);
-    }
-
-    // decodeDateTime removido; usamos Codec.decodeLong diretamente para compatibilidade
-
-    private byte[] encode(ChatThread a) {
-        return Codec.concat(
-                Codec.encodeInt(a.getIdAnimal()),
-                Codec.encodeStringU16(a.getCpfAdotante()),
-                Codec.encodeTriBoolean(a.isAberto()),
-                encodeDateTime(a.getCriadoEm()),
-                Codec.encodeStringU16(a.getZoneId())
-        );
-    }
-
-    private ChatThread decode(int id, byte tomb, byte[] buf) {
-        int off = 0;
-        Codec.Decoded<Integer> dAnimal = Codec.decodeInt(buf, off); off = dAnimal.nextOffset;
-        Codec.Decoded<String> dCpf = Codec.decodeStringU16(buf, off); off = dCpf.nextOffset;
-        Codec.Decoded<Boolean> dAberto = Codec.decodeTriBoolean(buf, off); off = dAberto.nextOffset;
-        Codec.Decoded<Long> dEpoch = Codec.decodeLong(buf, off); off = dEpoch.nextOffset;
-        // zoneId é opcional para retrocompatibilidade: se não houver bytes suficientes, permanece null
-        String zoneId = null;
-        if (off < buf.length) {
-            try {
-                Codec.Decoded<String> dZone = Codec.decodeStringU16(buf, off);
-                zoneId = dZone.value;
-                off = dZone.nextOffset;
-            } catch (Exception ignore) { /* versões antigas sem campo */ }
-        }
-        ChatThread a = new ChatThread();
-        a.setId(id);
-        a.setIdAnimal(dAnimal.value);
-        a.setCpfAdotante(dCpf.value);
-        a.setAberto(Boolean.TRUE.equals(dAberto.value));
-        long epoch = dEpoch.value;
-        a.setCriadoEm(epoch == 0L ? null : LocalDateTime.ofEpochSecond(epoch,0,ZoneOffset.UTC));
-        a.setZoneId(zoneId);
-        return a;
+        return decodificar(lerRegistro(offset), -1L);
+    }
+
+    @Override protected int recPosTombstone() { return REC_POS_TOMBSTONE; }
+    @Override protected int recPosId() { return REC_POS_ID; }
+    @Override protected int recPosLen() { return REC_POS_LEN; }
+    @Override protected int recPosPayload() { return REC_POS_PAYLOAD; }
+    @Override public LayoutRegistro layout() { return codec.layout(); }
+
+    @Override
+    protected long localizarPorId(int id) {
+        return indexById.get(id);
+    }
+
+    @Override
+    protected int alturaIndice() throws IOException {
+        return bplus.altura();
+    }
+
+    @Override
+    protected boolean suportaVersao(byte versaoArquivo) {
+        return ESQUEMA.suporta(versaoArquivo);
+    }
+
+    @Override
+    protected ChatThread decodificar(RecordReader r, long m) {
+        r.skip(1); // tombstone (só ativos chegam aqui)
+        int id = r.readInt();
+        r.skip(4); // len
+        ChatThread e = codec.ler(r, m);
+        e.setId(id);
+        return e;
     }
 
     @Override
@@ -5,13 +5,18 @@ import br.com.mpet.persistence.BaseDataFile;
 import br.com.mpet.persistence.CrudDao;
 import br.com.mpet.persistence.index.ArvoreElemento;
 import br.com.mpet.persistence.index.BTree;
-import br.com.mpet.persistence.io.Codec;
+import br.com.mpet.persistence.index.MapaIntLong;
+import br.com.mpet.persistence.io.EsquemaRegistro;
+import br.com.mpet.persistence.io.LayoutRegistro;
+import br.com.mpet.persistence.io.Projecao;
+import br.com.mpet.persistence.io.RecordReader;
+import br.com.mpet.persistence.io.RecordWriter;
 import br.com.mpet.persistence.io.FileHeaderHelper;
 
 import java.io.File;
 import java.io.IOException;
 import java.util.ArrayList;
-import java.util.HashMap;
+import java.util.Collection;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
@@ -23,11 +28,23 @@ public class OngDataFileDao extends BaseDataFile<Ong> implements CrudDao<Ong, In
     private static final int REC_POS_LEN = 5;       // +5..+8 (int)
     private static final int REC_POS_PAYLOAD = 9;   // +9..+9+len-1
 
-    private final Map<Integer, Long> indexById = new HashMap<>();
+    /** Campos do payload, na ordem em disco. */
+    private static final EsquemaRegistro<Ong> ESQUEMA = new EsquemaRegistro<>(Ong::new)
+            .string("nome", Ong::getNome, Ong::setNome)
+            .string("cnpj", Ong::getCnpj, Ong::setCnpj)
+            .string("endereco", Ong::getEndereco, Ong::setEndereco)
+            .string("telefone", Ong::getTelefone, Ong::setTelefone)
+            .string("cpfResponsavel", Ong::getCpfResponsavel, Ong::setCpfResponsavel);
+    private static final LayoutRegistro LAYOUT = ESQUEMA.layout();
+
+    private final MapaIntLong indexById = novoMapaIds();
     private BTree<ArvoreElemento> bplus;
 
+    private final EsquemaRegistro.Compilado<Ong> codec;
+
     public OngDataFileDao(File file, byte versaoFormato) throws IOException {
         super(file, versaoFormato);
+        this.codec = ESQUEMA.compilar(LAYOUT, versaoArquivo(), payloadCompacto());
         File idxFile = new File(file.getParentFile(), file.getName() + ".idx");
         try {
             this.bplus = new BTree<>(ArvoreElemento.class.getConstructor(), 4, idxFile.getPath());
@@ -44,41 +61,47 @@ public class OngDataFileDao extends BaseDataFile<Ong> implements CrudDao<Ong, In
 
         entity.setId(nextIdAndIncrement());
 
-        byte[] payload = encodeOng(entity);
-        byte[] full = montarRegistro((byte) 0, entity.getId(), payload);
-        long offset = appendRecord(full);
+        long offset = appendRecord(montarRegistro((byte) 0, entity));
 
         indexById.put(entity.getId(), offset);
-        try {
-            bplus.create(new ArvoreElemento(entity.getId(), offset));
-        } catch (Exception e) {
-            throw new IOException("Erro ao inserir no índice B+", e);
-        }
+        inserirIndice(bplus, entity.getId(), offset);
         incrementCountAtivos();
         return entity;
     }
 
+    @Override
+    protected void gravarCopia(Ong entity) throws IOException {
+        long offset = appendRecord(montarRegistro((byte) 0, entity));
+        indexById.put(entity.getId(), offset);
+        inserirIndice(bplus, entity.getId(), offset);
+    }
+
     @Override
     public synchronized Optional<Ong> read(Integer id) throws IOException {
         if (id == null) return Optional.empty();
-        Long off = indexById.get(id);
-        if (off == null) {
+        long off = indexById.get(id);
+        if (off < 0) {
             try {
                 ArvoreElemento el = bplus.read(id);
                 if (el != null) off = el.getAddress();
             } catch (Exception e) { /* ignora */ }
         }
-        if (off != null) indexById.put(id, off);
-        if (off == null) return Optional.empty();
+        if (off >= 0) indexById.put(id, off);
+        if (off < 0) return Optional.empty();
         Ong ong = readAtOffset(off);
         return Optional.ofNullable(ong);
     }
 
+    @Override
+    public Map<Integer, Ong> readAll(Collection<Integer> ids) throws IOException {
+        return lerEmLote(ids, this::localizarPorId);
+    }
+
     @Override
     public synchronized boolean update(Ong entity) throws IOException {
         if (entity == null) return false;
-        Long off = indexById.get(entity.getId());
-        if (off == null) return false;
+        long off = indexById.get(entity.getId());
+        if (off < 0) return false;
 
         raf.seek(off + REC_POS_TOMBSTONE);
         byte tomb = raf.readByte();
@@ -86,16 +109,15 @@ public class OngDataFileDao extends BaseDataFile<Ong> implements CrudDao<Ong, In
         raf.seek(off + REC_POS_LEN);
         int oldLen = raf.readInt();
 
-        byte[] newPayload = encodeOng(entity);
-        if (newPayload.length == oldLen) {
-            overwritePayload(off + REC_POS_PAYLOAD, newPayload);
+        RecordWriter w = montarRegistro((byte) 0, entity);
+        if (w.position() - REC_POS_PAYLOAD == oldLen) {
+            overwritePayload(off + REC_POS_PAYLOAD, w, REC_POS_PAYLOAD);
             return true;
         } else {
             markTombstone(off);
             decrementCountAtivos();
 
-            byte[] full = montarRegistro((byte) 0, entity.getId(), newPayload);
-            long newOff = appendRecord(full);
+            long newOff = appendRecord(w);
             indexById.put(entity.getId(), newOff);
             try {
                 bplus.update(entity.getId(), newOff);
@@ -110,8 +132,8 @@ public class OngDataFileDao extends BaseDataFile<Ong> implements CrudDao<Ong, In
     @Override
     public synchronized boolean delete(Integer id) throws IOException {
         if (id == null) return false;
-        Long off = indexById.get(id);
-        if (off == null) return false;
+        long off = indexById.get(id);
+        if (off < 0) return false;
 
         raf.seek(off + REC_POS_TOMBSTONE);
         byte tomb = raf.readByte();
@@ -130,21 +152,7 @@ public class OngDataFileDao extends BaseDataFile<Ong> implements CrudDao<Ong, In
 
     @Override
     public synchronized List<Ong> listAllActive() throws IOException {
-        List<Ong> list = new ArrayList<>();
-        long len = raf.length();
-        long pos = FileHeaderHelper.HEADER_SIZE;
-        while (pos < len) {
-            raf.seek(pos + REC_POS_TOMBSTONE);
-            byte tomb = raf.readByte();
-            raf.seek(pos + REC_POS_LEN);
-            int payloadLen = raf.readInt();
-            if (tomb == 0) {
-                Ong ong = readAtOffset(pos);
-                if (ong != null) list.add(ong);
-            }
-            pos += REC_POS_PAYLOAD + payloadLen;
-        }
-        return list;
+        return listAllActive(null, Projecao.TODOS);
     }
 
     @Override
@@ -168,12 +176,10 @@ public class OngDataFileDao extends BaseDataFile<Ong> implements CrudDao<Ong, In
         long len = raf.length();
         long pos = FileHeaderHelper.HEADER_SIZE;
         while (pos + REC_POS_PAYLOAD <= len) {
-            raf.seek(pos + REC_POS_ID);
-            int id = raf.readInt();
-            raf.seek(pos + REC_POS_TOMBSTONE);
-            byte tomb = raf.readByte();
-            raf.seek(pos + REC_POS_LEN);
-            int payloadLen = raf.readInt();
+            RecordReader h = readRecord(pos, REC_POS_PAYLOAD);
+            byte tomb = h.position(REC_POS_TOMBSTONE).readByte();
+            int id = h.position(REC_POS_ID).readInt();
+            int payloadLen = h.position(REC_POS_LEN).readInt();
             if (payloadLen < 0) break;
             if (tomb == 0) {
                 indexById.put(id, pos);
@@ -196,9 +202,7 @@ public class OngDataFileDao extends BaseDataFile<Ong> implements CrudDao<Ong, In
     public synchronized void vacuum() throws IOException {
         File temp = new File(file.getParentFile(), file.getName() + ".tmp");
         try (OngDataFileDao novo = new OngDataFileDao(temp, this.versaoFormato)) {
-            for (Ong ong : listAllActive()) {
-                novo.create(ong);
-            }
+            copiarAtivos(novo);
         }
         this.close();
 
@@ -226,50 +230,47 @@ public class OngDataFileDao extends BaseDataFile<Ong> implements CrudDao<Ong, In
         }
     }
 
-    private byte[] montarRegistro(byte tombstone, int id, byte[] payload) {
-        byte[] idb = Codec.encodeInt(id);
-        byte[] lenb = Codec.encodeInt(payload.length);
-        return Codec.concat(new byte[]{tombstone}, idb, lenb, payload);
+    /** Monta [tombstone][id][len][payload] no writer do DAO; o len é corrigido após o payload, que é selado se o arquivo for cifrado. */
+    private RecordWriter montarRegistro(byte tombstone, Ong ong) throws IOException {
+        writer.reset().writeByte(tombstone).writeInt(ong.getId()).writeInt(0);
+        codec.escrever(ong, writer);
+        return selar(writer.putInt(REC_POS_LEN, writer.position() - REC_POS_PAYLOAD));
     }
 
     private Ong readAtOffset(long offset) throws IOException {
-        raf.seek(offset + REC_POS_TOMBSTONE);
-        byte tomb = raf.readByte();
-        raf.seek(offset + REC_POS_ID);
-        int id = raf.readInt();
-        raf.seek(offset + REC_POS_LEN);
-        int payloadLen = raf.readInt();
-        byte[] buf = readBytes(offset + REC_POS_PAYLOAD, payloadLen);
-        return decodeOng(id, tomb, buf);
+        return decodificar(lerRegistro(offset), -1L);
+    }
+
+    @Override protected int recPosTombstone() { return REC_POS_TOMBSTONE; }
+    @Override protected int recPosId() { return REC_POS_ID; }
+    @Override protected int recPosLen() { return REC_POS_LEN; }
+    @Override protected int recPosPayload() { return REC_POS_PAYLOAD; }
+    @Override public LayoutRegistro layout() { return codec.layout(); }
+
+    @Override
+    protected long localizarPorId(int id) {
+        return indexById.get(id);
     }
 
-    private byte[] encodeOng(Ong ong) {
-    return Codec.concat(
-        Codec.encodeStringU16(ong.getNome()),
-        Codec.encodeStringU16(ong.getCnpj()),
-        Codec.encodeStringU16(ong.getEndereco()),
-        Codec.encodeStringU16(ong.getTelefone()),
-        Codec.encodeStringU16(ong.getCpfResponsavel())
-    );
+    @Override
+    protected int alturaIndice() throws IOException {
+        return bplus.altura();
     }
 
-    private Ong decodeOng(int id, byte tomb, byte[] buf) {
-        int off = 0;
-        Codec.Decoded<String> dNome = Codec.decodeStringU16(buf, off); off = dNome.nextOffset;
-        Codec.Decoded<String> dCnpj = Codec.decodeStringU16(buf, off); off = dCnpj.nextOffset;
-        Codec.Decoded<String> dEndereco = Codec.decodeStringU16(buf, off); off = dEndereco.nextOffset;
-        Codec.Decoded<String> dTelefone = Codec.decodeStringU16(buf, off); off = dTelefone.nextOffset;
-    Codec.Decoded<String> dCpfResp = Codec.decodeStringU16(buf, off);
-
-        Ong ong = new Ong();
-        ong.setId(id);
-        ong.setAtivo(tomb == 0);
-        ong.setNome(dNome.value);
-        ong.setCnpj(dCnpj.value);
-        ong.setEndereco(dEndereco.value);
-        ong.setTelefone(dTelefone.value);
-        ong.setCpfResponsavel(dCpfResp.value);
-        return ong;
+    @Override
+    protected boolean suportaVersao(byte versaoArquivo) {
+        return ESQUEMA.suporta(versaoArquivo);
+    }
+
+    @Override
+    protected Ong decodificar(RecordReader r, long m) {
+        byte tomb = r.readByte();
+        int id = r.readInt();
+        r.skip(4); // len
+        Ong e = codec.ler(r, m);
+        e.setId(id);
+        e.setAtivo(tomb == 0);
+        return e;
     }
 
 }
\ No newline at end of file
@@ -5,12 +5,18 @@ import br.com.mpet.persistence.BaseDataFile;
 import br.com.mpet.persistence.CrudDao;
 import br.com.mpet.persistence.index.ArvoreElemento;
 import br.com.mpet.persistence.index.BTree;
-import br.com.mpet.persistence.io.Codec;
+import br.com.mpet.persistence.io.EsquemaRegistro;
 import br.com.mpet.persistence.io.FileHeaderHelper;
+import br.com.mpet.persistence.io.LayoutRegistro;
+import br.com.mpet.persistence.io.Projecao;
+import br.com.mpet.persistence.io.RecordReader;
+import br.com.mpet.persistence.io.RecordWriter;
 import br.com.mpet.RSACriptografia;
 
 import java.io.File;
 import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
 import java.util.*;
 
 /**
@@ -41,13 +47,60 @@ public class UsuarioDataFileDao<T extends Usuario> extends BaseDataFile<T> imple
     private static final int REC_POS_LEN = 6;     // int tamanho total do payload (inclui CPF codificado + campos)
     private static final int REC_POS_PAYLOAD = 10;
 
+    private static final TipoMoradia[] MORADIAS = TipoMoradia.values();
+    private static final ComposicaoFamiliar[] COMPOSICOES = ComposicaoFamiliar.values();
+    private static final Role[] CARGOS = Role.values();
+
+    /**
+     * Campos comuns de Usuario. A senha vai criptografada (RSA); na leitura fica guardada como
+     * está e só é descriptografada se alguém chamar getSenha() (ver {@link #verifyPassword}).
+     */
+    private static final EsquemaRegistro<Usuario> COMUNS = new EsquemaRegistro<Usuario>()
+            .string("cpf", Usuario::getCpf, Usuario::setCpf)
+            .string("senha", UsuarioDataFileDao::senhaParaGravar, (u, s) -> u.setSenhaArmazenada(s, UsuarioDataFileDao::descriptografarSenha))
+            .string("telefone", Usuario::getTelefone, Usuario::setTelefone)
+            .triBoolean("ativo", Usuario::isAtivo, (u, v) -> { }); // apenas espelho; leitura usa tomb
+
+    private static final EsquemaRegistro<Adotante> ADOTANTE = new EsquemaRegistro<>(Adotante::new)
+            .herdar(COMUNS)
+            .string("nomeCompleto", Adotante::getNomeCompleto, Adotante::setNomeCompleto)
+            .data("dataNascimento", Adotante::getDataNascimento, Adotante::setDataNascimento)
+            .enumeracao("tipoMoradia", MORADIAS, Adotante::getTipoMoradia, Adotante::setTipoMoradia)
+            .triBoolean("possuiTelaProtetora", Adotante::isPossuiTelaProtetora, Adotante::setPossuiTelaProtetora)
+            .triBoolean("possuiOutrosAnimais", Adotante::isPossuiOutrosAnimais, Adotante::setPossuiOutrosAnimais)
+            .string("descOutrosAnimais", Adotante::getDescOutrosAnimais, Adotante::setDescOutrosAnimais)
+            .inteiro("horasForaDeCasa", Adotante::getHorasForaDeCasa, Adotante::setHorasForaDeCasa)
+            .enumeracao("composicaoFamiliar", COMPOSICOES, Adotante::getComposicaoFamiliar, Adotante::setComposicaoFamiliar)
+            .triBoolean("viagensFrequentes", Adotante::isViagensFrequentes, Adotante::setViagensFrequentes)
+            .string("descViagensFrequentes", Adotante::getDescViagensFrequentes, Adotante::setDescViagensFrequentes)
+            .triBoolean("jaTevePets", Adotante::isJaTevePets, Adotante::setJaTevePets)
+            .string("experienciaComPets", Adotante::getExperienciaComPets, Adotante::setExperienciaComPets)
+            .string("motivoAdocao", Adotante::getMotivoAdocao, Adotante::setMotivoAdocao)
+            .triBoolean("cientePossuiResponsavel", Adotante::isCientePossuiResponsavel, Adotante::setCientePossuiResponsavel)
+            .triBoolean("cienteCustos", Adotante::isCienteCustos, Adotante::setCienteCustos);
+
+    private static final EsquemaRegistro<Voluntario> VOLUNTARIO = new EsquemaRegistro<>(Voluntario::new)
+            .herdar(COMUNS)
+            .string("nome", Voluntario::getNome, Voluntario::setNome)
+            .string("endereco", Voluntario::getEndereco, Voluntario::setEndereco)
+            .inteiro("idOng", Voluntario::getIdOng, Voluntario::setIdOng)
+            .enumeracao("cargo", CARGOS, Voluntario::getCargo, Voluntario::setCargo);
+
+    // Campos comuns (filtráveis) seguidos dos específicos de Adotante/Voluntario (só projeção)
+    private static final LayoutRegistro LAYOUT = EsquemaRegistro.layout(COMUNS, ADOTANTE, VOLUNTARIO);
+
     private final Class<T> type;
     private final Map<String, Long> indexByCpf = new HashMap<>();
     private BTree<ArvoreElemento> bplus;
 
+    private final EsquemaRegistro.Compilado<Adotante> codecAdotante;
+    private final EsquemaRegistro.Compilado<Voluntario> codecVoluntario;
+
     public UsuarioDataFileDao(File file, byte versaoFormato, Class<T> type) throws IOException {
         super(file, versaoFormato);
         this.type = type;
+        this.codecAdotante = ADOTANTE.compilar(LAYOUT, versaoArquivo(), payloadCompacto());
+        this.codecVoluntario = VOLUNTARIO.compilar(LAYOUT, versaoArquivo(), payloadCompacto());
         File idxFile = new File(file.getParentFile(), file.getName() + ".idx");
         try {
             this.bplus = new BTree<>(ArvoreElemento.class.getConstructor(), 4, idxFile.getPath());
@@ -64,17 +117,21 @@ public class UsuarioDataFileDao<T extends Usuario> extends BaseDataFile<T> imple
         if (!entity.isAtivo()) entity.setAtivo(true);
 
         int idKey = cpfKey(entity.getCpf());
-        byte tipo = resolveTipo(entity);
-        byte[] payload = encodeUsuario(entity);
-        byte[] full = montarRegistro(tipo, (byte)0, idKey, payload);
-        long off = appendRecord(full);
+        long off = appendRecord(montarRegistro((byte)0, entity));
 
         indexByCpf.put(entity.getCpf(), off);
-        try { bplus.create(new ArvoreElemento(idKey, off)); } catch (Exception e) { throw new IOException(e); }
+        inserirIndice(bplus, idKey, off);
         incrementCountAtivos();
         return entity;
     }
 
+    @Override
+    protected void gravarCopia(T entity) throws IOException {
+        long off = appendRecord(montarRegistro((byte)0, entity));
+        indexByCpf.put(entity.getCpf(), off);
+        inserirIndice(bplus, cpfKey(entity.getCpf()), off);
+    }
+
     @Override
     public synchronized Optional<T> read(String cpf) throws IOException {
         if (cpf == null) return Optional.empty();
@@ -106,20 +163,39 @@ public class UsuarioDataFileDao<T extends Usuario> extends BaseDataFile<T> imple
         return Optional.empty();
     }
 
+    /** Em lote pelo índice de CPF (completo desde a abertura); confere o CPF de cada registro lido. */
+    @Override
+    public synchronized Map<String, T> readAll(Collection<String> cpfs) throws IOException {
+        Map<String, T> out = lerEmLote(cpfs, cpf -> {
+            Long off = indexByCpf.get(cpf);
+            return off == null ? -1L : off;
+        });
+        out.entrySet().removeIf(e -> !e.getKey().equals(e.getValue().getCpf()));
+        return out;
+    }
+
+    /**
+     * true se existe usuário ativo com este CPF e a senha confere. Só a senha desse registro
+     * é descriptografada; listagens nunca pagam o custo de RSA.
+     */
+    public synchronized boolean verifyPassword(String cpf, String candidata) throws IOException {
+        if (cpf == null || candidata == null) return false;
+        Optional<T> u = read(cpf);
+        if (u.isEmpty() || !u.get().isAtivo()) return false;
+        String senha = u.get().getSenha();
+        return senha != null && MessageDigest.isEqual(
+                senha.getBytes(StandardCharsets.UTF_8), candidata.getBytes(StandardCharsets.UTF_8));
+    }
+
     private Long scanOffsetByCpf(String cpf) throws IOException {
         long len = raf.length();
         long pos = FileHeaderHelper.HEADER_SIZE;
         while (pos + REC_POS_PAYLOAD <= len) {
-            raf.seek(pos + REC_POS_TOMBSTONE);
-            byte tomb = raf.readByte();
-            raf.seek(pos + REC_POS_LEN);
-            int payloadLen = raf.readInt();
+            RecordReader h = readRecord(pos, REC_POS_PAYLOAD);
+            byte tomb = h.position(REC_POS_TOMBSTONE).readByte();
+            int payloadLen = h.position(REC_POS_LEN).readInt();
             if (payloadLen < 0) break;
-            if (tomb == 0) {
-                byte[] buf = readBytes(pos + REC_POS_PAYLOAD, payloadLen);
-                Codec.Decoded<String> dCpf = Codec.decodeStringU16(buf, 0);
-                if (cpf.equals(dCpf.value)) return pos;
-            }
+            if (tomb == 0 && cpf.equals(readCpfAt(pos))) return pos;
             pos += REC_POS_PAYLOAD + payloadLen;
         }
         return null;
@@ -137,17 +213,15 @@ public class UsuarioDataFileDao<T extends Usuario> extends BaseDataFile<T> imple
         raf.seek(off + REC_POS_LEN);
         int oldLen = raf.readInt();
 
-        byte[] newPayload = encodeUsuario(entity);
-        if (newPayload.length == oldLen) {
-            overwritePayload(off + REC_POS_PAYLOAD, newPayload);
+        RecordWriter w = montarRegistro((byte)0, entity);
+        if (w.position() - REC_POS_PAYLOAD == oldLen) {
+            overwritePayload(off + REC_POS_PAYLOAD, w, REC_POS_PAYLOAD);
             return true;
         } else {
             markTombstone(off);
             decrementCountAtivos();
             int idKey = cpfKey(entity.getCpf());
-            byte tipo = resolveTipo(entity);
-            byte[] full = montarRegistro(tipo, (byte)0, idKey, newPayload);
-            long newOff = appendRecord(full);
+            long newOff = appendRecord(w);
             indexByCpf.put(entity.getCpf(), newOff);
             try { bplus.update(idKey, newOff); } catch (Exception e) { throw new IOException(e); }
             incrementCountAtivos();
@@ -173,21 +247,7 @@ public class UsuarioDataFileDao<T extends Usuario> extends BaseDataFile<T> imple
 
     @Override
     public synchronized List<T> listAllActive() throws IOException {
-        List<T> out = new ArrayList<>();
-        long len = raf.length();
-        long pos = FileHeaderHelper.HEADER_SIZE;
-        while (pos < len) {
-            raf.seek(pos + REC_POS_TOMBSTONE);
-            byte tomb = raf.readByte();
-            raf.seek(pos + REC_POS_LEN);
-            int payloadLen = raf.readInt();
-            if (tomb == 0) {
-                T u = readAtOffset(pos);
-                if (u != null) out.add(u);
-            }
-            pos += REC_POS_PAYLOAD + payloadLen;
-        }
-        return out;
+        return listAllActive(null, Projecao.TODOS);
     }
 
     @Override
@@ -205,18 +265,14 @@ public class UsuarioDataFileDao<T extends Usuario> extends BaseDataFile<T> imple
         long len = raf.length();
         long pos = FileHeaderHelper.HEADER_SIZE;
         while (pos + REC_POS_PAYLOAD <= len) {
-            raf.seek(pos + REC_POS_TOMBSTONE);
-            byte tomb = raf.readByte();
-            raf.seek(pos + REC_POS_IDKEY);
-            int idKey = raf.readInt();
-            raf.seek(pos + REC_POS_LEN);
-            int payloadLen = raf.readInt();
+            RecordReader h = readRecord(pos, REC_POS_PAYLOAD);
+            byte tomb = h.position(REC_POS_TOMBSTONE).readByte();
+            int idKey = h.position(REC_POS_IDKEY).readInt();
+            int payloadLen = h.position(REC_POS_LEN).readInt();
             if (payloadLen < 0) break;
             if (tomb == 0) {
                 // precisamos extrair o CPF para popular o mapa por chave real
-                byte[] buf = readBytes(pos + REC_POS_PAYLOAD, payloadLen);
-                Codec.Decoded<String> dCpf = Codec.decodeStringU16(buf, 0);
-                String cpf = dCpf.value;
+                String cpf = readCpfAt(pos);
                 indexByCpf.put(cpf, pos);
                 try { bplus.create(new ArvoreElemento(idKey, pos)); } catch (Exception e) { throw new IOException(e); }
                 ativos++;
@@ -230,7 +286,7 @@ public class UsuarioDataFileDao<T extends Usuario> extends BaseDataFile<T> imple
     public synchronized void vacuum() throws IOException {
         File temp = new File(file.getParentFile(), file.getName() + ".tmp");
         try (UsuarioDataFileDao<T> novo = new UsuarioDataFileDao<>(temp, this.versaoFormato, this.type)) {
-            for (T u : listAllActive()) novo.create(u);
+            copiarAtivos(novo);
         }
         this.close();
         if (!file.delete()) throw new IOException("Falha ao apagar antigo: "+file);
@@ -262,161 +318,105 @@ public class UsuarioDataFileDao<T extends Usuario> extends BaseDataFile<T> imple
         throw new IllegalArgumentException("Tipo de usuário não suportado: "+u.getClass());
     }
 
-    private byte[] montarRegistro(byte tipo, byte tombstone, int idKey, byte[] payload) {
-        byte[] idb = Codec.encodeInt(idKey);
-        byte[] lenb = Codec.encodeInt(payload.length);
-        byte[] header = new byte[]{ tipo, tombstone, idb[0], idb[1], idb[2], idb[3], lenb[0], lenb[1], lenb[2], lenb[3] };
-        return Codec.concat(header, payload);
+    /**
+     * Monta o registro completo [tipo][tombstone][idKey][len][payload] no writer do DAO.
+     * O len é escrito provisoriamente como 0 e corrigido após codificar o payload;
+     * em arquivo cifrado o payload é selado ({@link #selar}).
+     */
+    private RecordWriter montarRegistro(byte tombstone, T u) throws IOException {
+        writer.reset()
+              .writeByte(resolveTipo(u))
+              .writeByte(tombstone)
+              .writeInt(cpfKey(u.getCpf()))
+              .writeInt(0);
+        encodeUsuario(u, writer);
+        return selar(writer.putInt(REC_POS_LEN, writer.position() - REC_POS_PAYLOAD));
     }
 
     private T readAtOffset(long offset) throws IOException {
-        raf.seek(offset + REC_POS_TIPO); int tipo = raf.readUnsignedByte();
-        raf.seek(offset + REC_POS_TOMBSTONE); byte tomb = raf.readByte();
-        raf.seek(offset + REC_POS_LEN); int payloadLen = raf.readInt();
-        byte[] buf = readBytes(offset + REC_POS_PAYLOAD, payloadLen);
+        return decodificar(lerRegistro(offset), -1L);
+    }
+
+    @Override protected int recPosTombstone() { return REC_POS_TOMBSTONE; }
+    @Override protected int recPosId() { return REC_POS_IDKEY; }
+    @Override protected int recPosLen() { return REC_POS_LEN; }
+    @Override protected int recPosPayload() { return REC_POS_PAYLOAD; }
+    @Override public LayoutRegistro layout() { return codecAdotante.layout(); }
+
+    @Override
+    protected int alturaIndice() throws IOException {
+        return bplus.altura();
+    }
+
+    @Override
+    protected boolean suportaVersao(byte versaoArquivo) {
+        return ADOTANTE.suporta(versaoArquivo) && VOLUNTARIO.suporta(versaoArquivo);
+    }
+
+    /**
+     * Decodifica o registro completo a partir do cabeçalho. Registros de outro tipo
+     * (ex.: Voluntario num DAO de Adotante) retornam null. A senha fica na forma
+     * armazenada (não há RSA na decodificação).
+     */
+    @Override
+    protected T decodificar(RecordReader r, long m) {
+        int tipo = r.readUnsignedByte();
+        byte tomb = r.readByte();
+        r.skip(8); // idKey + len
         switch (tipo) {
             case TIPO_ADOTANTE -> {
-                Adotante a = decodeAdotante(tomb, buf);
-                if (type.isInstance(a)) return type.cast(a);
-                return null;
+                if (!type.isAssignableFrom(Adotante.class)) return null;
+                Adotante a = codecAdotante.ler(r, m);
+                a.setAtivo(tomb == 0);
+                return type.cast(a);
             }
             case TIPO_VOLUNTARIO -> {
-                Voluntario v = decodeVoluntario(tomb, buf);
-                if (type.isInstance(v)) return type.cast(v);
-                return null;
+                if (!type.isAssignableFrom(Voluntario.class)) return null;
+                Voluntario v = codecVoluntario.ler(r, m);
+                v.setAtivo(tomb == 0);
+                return type.cast(v);
             }
             default -> { return null; }
         }
     }
 
-    private byte[] encodeUsuario(T u) {
-    // prefixa CPF e campos comuns
-        String senhaOriginal = u.getSenha();
-        String senhaCriptografada = senhaOriginal;
-        try {
-            senhaCriptografada = RSACriptografia.criptografar(senhaOriginal);
-        } catch (Exception e) {
-            // Se falhar na criptografia, mantém texto plano como fallback
-            System.err.println("Aviso: Falha ao criptografar senha, usando texto plano: " + e.getMessage());
-        }
-        byte[] senha = Codec.encodeStringU16(senhaCriptografada);
-        byte[] telefone = Codec.encodeStringU16(u.getTelefone());
-        byte[] ativo = Codec.encodeTriBoolean(u.isAtivo()); // apenas como espelho, leitura usa tomb
+    /** Lê apenas o CPF (primeiro campo do payload) do registro em {@code pos}. */
+    private String readCpfAt(long pos) throws IOException {
+        RecordReader r = lerRegistro(pos); // decifra o payload se preciso
+        r.position(REC_POS_PAYLOAD);
+        return layout().lerString(r, "cpf");
+    }
 
+    private void encodeUsuario(T u, RecordWriter w) {
         if (u instanceof Adotante a) {
-            return Codec.concat(Codec.encodeStringU16(a.getCpf()), senha, telefone, ativo,
-                    Codec.encodeStringU16(a.getNomeCompleto()),
-                    Codec.encodeLocalDate(a.getDataNascimento()),
-                    Codec.encodeEnum(a.getTipoMoradia()),
-                    Codec.encodeTriBoolean(a.isPossuiTelaProtetora()),
-                    Codec.encodeTriBoolean(a.isPossuiOutrosAnimais()),
-                    Codec.encodeStringU16(a.getDescOutrosAnimais()),
-                    Codec.encodeInt(a.getHorasForaDeCasa()),
-                    Codec.encodeEnum(a.getComposicaoFamiliar()),
-                    Codec.encodeTriBoolean(a.isViagensFrequentes()),
-                    Codec.encodeStringU16(a.getDescViagensFrequentes()),
-                    Codec.encodeTriBoolean(a.isJaTevePets()),
-                    Codec.encodeStringU16(a.getExperienciaComPets()),
-                    Codec.encodeStringU16(a.getMotivoAdocao()),
-                    Codec.encodeTriBoolean(a.isCientePossuiResponsavel()),
-                    Codec.encodeTriBoolean(a.isCienteCustos())
-            );
+            codecAdotante.escrever(a, w);
         } else if (u instanceof Voluntario v) {
-            return Codec.concat(Codec.encodeStringU16(v.getCpf()), senha, telefone, ativo,
-                    Codec.encodeStringU16(v.getNome()),
-                    Codec.encodeStringU16(v.getEndereco()),
-                    Codec.encodeInt(v.getIdOng()),
-                    Codec.encodeEnum(v.getCargo())
-            );
+            codecVoluntario.escrever(v, w);
         }
-        throw new IllegalArgumentException("Usuário não suportado: "+u.getClass());
     }
 
-    private Adotante decodeAdotante(byte tomb, byte[] buf) {
-        int off = 0;
-        Codec.Decoded<String> dCpf = Codec.decodeStringU16(buf, off); off = dCpf.nextOffset;
-        Codec.Decoded<String> dSenha = Codec.decodeStringU16(buf, off); off = dSenha.nextOffset;
-        Codec.Decoded<String> dTel = Codec.decodeStringU16(buf, off); off = dTel.nextOffset;
-        Codec.Decoded<Boolean> dAtivo = Codec.decodeTriBoolean(buf, off); off = dAtivo.nextOffset;
-
-        Codec.Decoded<String> dNome = Codec.decodeStringU16(buf, off); off = dNome.nextOffset;
-        Codec.Decoded<java.time.LocalDate> dNasc = Codec.decodeLocalDate(buf, off); off = dNasc.nextOffset;
-        Codec.Decoded<TipoMoradia> dMoradia = Codec.decodeEnum(buf, off, TipoMoradia.class); off = dMoradia.nextOffset;
-        Codec.Decoded<Boolean> bTela = Codec.decodeTriBoolean(buf, off); off = bTela.nextOffset;
-        Codec.Decoded<Boolean> bOutros = Codec.decodeTriBoolean(buf, off); off = bOutros.nextOffset;
-        Codec.Decoded<String> dDescOutros = Codec.decodeStringU16(buf, off); off = dDescOutros.nextOffset;
-        Codec.Decoded<Integer> dHoras = Codec.decodeInt(buf, off); off = dHoras.nextOffset;
-        Codec.Decoded<ComposicaoFamiliar> dComp = Codec.decodeEnum(buf, off, ComposicaoFamiliar.class); off = dComp.nextOffset;
-        Codec.Decoded<Boolean> dViagens = Codec.decodeTriBoolean(buf, off); off = dViagens.nextOffset;
-        Codec.Decoded<String> dDescViagens = Codec.decodeStringU16(buf, off); off = dDescViagens.nextOffset;
-        Codec.Decoded<Boolean> dJaTeve = Codec.decodeTriBoolean(buf, off); off = dJaTeve.nextOffset;
-        Codec.Decoded<String> dExp = Codec.decodeStringU16(buf, off); off = dExp.nextOffset;
-        Codec.Decoded<String> dMotivo = Codec.decodeStringU16(buf, off); off = dMotivo.nextOffset;
-        Codec.Decoded<Boolean> dResp = Codec.decodeTriBoolean(buf, off); off = dResp.nextOffset;
-        Codec.Decoded<Boolean> dCustos = Codec.decodeTriBoolean(buf, off); off = dCustos.nextOffset;
-
-        Adotante a = new Adotante();
-        a.setCpf(dCpf.value);
-        
-        // Descriptografar senha com RSA
-        String senhaDescriptografada = dSenha.value;
+    /** Regrava a forma armazenada se a senha não mudou (evita descriptografar e recriptografar). */
+    private static String senhaParaGravar(Usuario u) {
+        String armazenada = u.getSenhaArmazenada();
+        return armazenada != null ? armazenada : criptografarSenha(u.getSenha());
+    }
+
+    private static String criptografarSenha(String senha) {
         try {
-            senhaDescriptografada = RSACriptografia.descriptografar(dSenha.value);
+            return RSACriptografia.criptografar(senha);
         } catch (Exception e) {
-            // Se falhar na descriptografia, assume que é texto plano (retrocompatibilidade)
-            // System.err.println("Aviso: Falha ao descriptografar senha de adotante, usando valor armazenado");
+            // Se falhar na criptografia, mantém texto plano como fallback
+            System.err.println("Aviso: Falha ao criptografar senha, usando texto plano: " + e.getMessage());
+            return senha;
         }
-        a.setSenha(senhaDescriptografada);
-        a.setTelefone(dTel.value);
-        a.setAtivo(tomb == 0);
-        a.setNomeCompleto(dNome.value);
-        a.setDataNascimento(dNasc.value);
-        a.setTipoMoradia(dMoradia.value);
-        a.setPossuiTelaProtetora(Boolean.TRUE.equals(bTela.value));
-        a.setPossuiOutrosAnimais(Boolean.TRUE.equals(bOutros.value));
-        a.setDescOutrosAnimais(dDescOutros.value);
-        a.setHorasForaDeCasa(dHoras.value);
-        a.setComposicaoFamiliar(dComp.value);
-        a.setViagensFrequentes(Boolean.TRUE.equals(dViagens.value));
-        a.setDescViagensFrequentes(dDescViagens.value);
-        a.setJaTevePets(Boolean.TRUE.equals(dJaTeve.value));
-        a.setExperienciaComPets(dExp.value);
-        a.setMotivoAdocao(dMotivo.value);
-        a.setCientePossuiResponsavel(Boolean.TRUE.equals(dResp.value));
-        a.setCienteCustos(Boolean.TRUE.equals(dCustos.value));
-        return a;
     }
 
-    private Voluntario decodeVoluntario(byte tomb, byte[] buf) {
-        int off = 0;
-        Codec.Decoded<String> dCpf = Codec.decodeStringU16(buf, off); off = dCpf.nextOffset;
-        Codec.Decoded<String> dSenha = Codec.decodeStringU16(buf, off); off = dSenha.nextOffset;
-        Codec.Decoded<String> dTel = Codec.decodeStringU16(buf, off); off = dTel.nextOffset;
-        Codec.Decoded<Boolean> dAtivo = Codec.decodeTriBoolean(buf, off); off = dAtivo.nextOffset;
-
-        Codec.Decoded<String> dNome = Codec.decodeStringU16(buf, off); off = dNome.nextOffset;
-        Codec.Decoded<String> dEnd = Codec.decodeStringU16(buf, off); off = dEnd.nextOffset;
-        Codec.Decoded<Integer> dOng = Codec.decodeInt(buf, off); off = dOng.nextOffset;
-        Codec.Decoded<Role> dCargo = Codec.decodeEnum(buf, off, Role.class); off = dCargo.nextOffset;
-
-        Voluntario v = new Voluntario();
-        v.setCpf(dCpf.value);
-        
-        // Descriptografar senha com RSA
-        String senhaDescriptografada = dSenha.value;
+    private static String descriptografarSenha(String armazenada) {
         try {
-            senhaDescriptografada = RSACriptografia.descriptografar(dSenha.value);
+            return RSACriptografia.descriptografar(armazenada);
         } catch (Exception e) {
             // Se falhar na descriptografia, assume que é texto plano (retrocompatibilidade)
-            // System.err.println("Aviso: Falha ao descriptografar senha de voluntário, usando valor armazenado");
+            return armazenada;
         }
-        v.setSenha(senhaDescriptografada);
-        v.setTelefone(dTel.value);
-        v.setAtivo(tomb == 0);
-        v.setNome(dNome.value);
-        v.setEndereco(dEnd.value);
-        v.setIdOng(dOng.value);
-        v.setCargo(dCargo.value);
-        return v;
     }
 }
@@ -5,8 +5,13 @@ import br.com.mpet.persistence.BaseDataFile;
 import br.com.mpet.persistence.CrudDao;
 import br.com.mpet.persistence.index.ArvoreElemento;
 import br.com.mpet.persistence.index.BTree;
-import br.com.mpet.persistence.io.Codec;
+import br.com.mpet.persistence.index.MapaIntLong;
+import br.com.mpet.persistence.io.EsquemaRegistro;
 import br.com.mpet.persistence.io.FileHeaderHelper;
+import br.com.mpet.persistence.io.LayoutRegistro;
+import br.com.mpet.persistence.io.Projecao;
+import br.com.mpet.persistence.io.RecordReader;
+import br.com.mpet.persistence.io.RecordWriter;
 
 import java.io.File;
 import java.io.IOException;
@@ -20,11 +25,21 @@ public class VoluntarioOngDataFileDao extends BaseDataFile<VoluntarioOng> implem
     private static final int REC_POS_LEN = 5;
     private static final int REC_POS_PAYLOAD = 9;
 
-    private final Map<Integer, Long> indexById = new HashMap<>();
+    /** Campos do payload, na ordem em disco. */
+    private static final EsquemaRegistro<VoluntarioOng> ESQUEMA = new EsquemaRegistro<>(VoluntarioOng::new)
+            .string("cpfVoluntario", VoluntarioOng::getCpfVoluntario, VoluntarioOng::setCpfVoluntario)
+            .inteiro("idOng", VoluntarioOng::getIdOng, VoluntarioOng::setIdOng)
+            .data("dataEntrada", VoluntarioOng::getDataEntrada, VoluntarioOng::setDataEntrada);
+    private static final LayoutRegistro LAYOUT = ESQUEMA.layout();
+
+    private final MapaIntLong indexById = novoMapaIds();
     private BTree<ArvoreElemento> bplus;
 
+    private final EsquemaRegistro.Compilado<VoluntarioOng> codec;
+
     public VoluntarioOngDataFileDao(File file, byte versaoFormato) throws IOException {
         super(file, versaoFormato);
+        this.codec = ESQUEMA.compilar(LAYOUT, versaoArquivo(), payloadCompacto());
         File idxFile = new File(file.getParentFile(), file.getName() + ".idx");
         try { this.bplus = new BTree<>(ArvoreElemento.class.getConstructor(), 4, idxFile.getPath()); }
         catch (NoSuchMethodException e) { throw new IOException("Falha ao inicializar BTree", e); }
@@ -37,39 +52,51 @@ public class VoluntarioOngDataFileDao extends BaseDataFile<VoluntarioOng> implem
         e.setId(nextIdAndIncrement());
         if (e.getDataEntrada() == null) e.setDataEntrada(LocalDate.now());
         if (!e.isAtivo()) e.setAtivo(true);
-        byte[] payload = encode(e);
-        long off = appendRecord(montarRegistro((byte)0, e.getId(), payload));
+        long off = appendRecord(montarRegistro((byte)0, e));
         indexById.put(e.getId(), off);
-        try { bplus.create(new ArvoreElemento(e.getId(), off)); } catch (Exception ex) { throw new IOException("Erro ao inserir no índice B+", ex); }
+        inserirIndice(bplus, e.getId(), off);
         incrementCountAtivos();
         return e;
     }
 
+    @Override
+    protected void gravarCopia(VoluntarioOng e) throws IOException {
+        long off = appendRecord(montarRegistro((byte)0, e));
+        indexById.put(e.getId(), off);
+        inserirIndice(bplus, e.getId(), off);
+    }
+
     @Override
     public synchronized Optional<VoluntarioOng> read(Integer id) throws IOException {
-        Long off = indexById.get(id);
-        if (off == null) {
+        if (id == null) return Optional.empty();
+        long off = indexById.get(id);
+        if (off < 0) {
             try { ArvoreElemento el = bplus.read(id); if (el != null) off = el.getAddress(); } catch (Exception ignore) {}
         }
-        if (off == null) return Optional.empty();
+        if (off < 0) return Optional.empty();
         indexById.put(id, off);
         return Optional.ofNullable(readAt(off));
     }
 
+    @Override
+    public Map<Integer, VoluntarioOng> readAll(Collection<Integer> ids) throws IOException {
+        return lerEmLote(ids, this::localizarPorId);
+    }
+
     @Override
     public synchronized boolean update(VoluntarioOng e) throws IOException {
-        Long off = indexById.get(e.getId());
-        if (off == null) return false;
+        long off = indexById.get(e.getId());
+        if (off < 0) return false;
         raf.seek(off + REC_POS_TOMBSTONE);
         if (raf.readByte() != 0) return false;
         raf.seek(off + REC_POS_LEN);
         int oldLen = raf.readInt();
-        byte[] newPayload = encode(e);
-        if (newPayload.length == oldLen) {
-            overwritePayload(off + REC_POS_PAYLOAD, newPayload);
+        RecordWriter w = montarRegistro((byte)0, e);
+        if (w.position() - REC_POS_PAYLOAD == oldLen) {
+            overwritePayload(off + REC_POS_PAYLOAD, w, REC_POS_PAYLOAD);
         } else {
             markTombstone(off); decrementCountAtivos();
-            long novo = appendRecord(montarRegistro((byte)0, e.getId(), newPayload));
+            long novo = appendRecord(w);
             indexById.put(e.getId(), novo);
             try { bplus.update(e.getId(), novo); } catch (Exception ex) { throw new IOException("Erro ao atualizar no índice B+", ex); }
             incrementCountAtivos();
@@ -79,8 +106,9 @@ public class VoluntarioOngDataFileDao extends BaseDataFile<VoluntarioOng> implem
 
     @Override
     public synchronized boolean delete(Integer id) throws IOException {
-        Long off = indexById.get(id);
-        if (off == null) return false;
+        if (id == null) return false;
+        long off = indexById.get(id);
+        if (off < 0) return false;
         raf.seek(off + REC_POS_TOMBSTONE);
         if (raf.readByte() == 0) { markTombstone(off); decrementCountAtivos(); }
         indexById.remove(id);
@@ -90,21 +118,7 @@ public class VoluntarioOngDataFileDao extends BaseDataFile<VoluntarioOng> implem
 
     @Override
     public synchronized List<VoluntarioOng> listAllActive() throws IOException {
-        List<VoluntarioOng> list = new ArrayList<>();
-        long len = raf.length();
-        long pos = FileHeaderHelper.HEADER_SIZE;
-        while (pos < len) {
-            raf.seek(pos + REC_POS_TOMBSTONE);
-            byte tomb = raf.readByte();
-            raf.seek(pos + REC_POS_LEN);
-            int pay = raf.readInt();
-            if (tomb == 0) {
-                VoluntarioOng it = readAt(pos);
-                if (it != null) list.add(it);
-            }
-            pos += REC_POS_PAYLOAD + pay;
-        }
-        return list;
+        return listAllActive(null, Projecao.TODOS);
     }
 
     @Override
@@ -120,12 +134,10 @@ public class VoluntarioOngDataFileDao extends BaseDataFile<VoluntarioOng> implem
         long len = raf.length();
         long pos = FileHeaderHelper.HEADER_SIZE;
         while (pos + REC_POS_PAYLOAD <= len) {
-            raf.seek(pos + REC_POS_ID);
-            int id = raf.readInt();
-            raf.seek(pos + REC_POS_TOMBSTONE);
-            byte tomb = raf.readByte();
-            raf.seek(pos + REC_POS_LEN);
-            int pay = raf.readInt();
+            RecordReader h = readRecord(pos, REC_POS_PAYLOAD);
+            byte tomb = h.position(REC_POS_TOMBSTONE).readByte();
+            int id = h.position(REC_POS_ID).readInt();
+            int pay = h.position(REC_POS_LEN).readInt();
             if (pay < 0) break;
             if (tomb == 0) { indexById.put(id, pos); try { bplus.create(new ArvoreElemento(id, pos)); } catch (Exception e) { throw new IOException("Erro ao reconstruir índice B+", e); } ativos++; }
             pos += REC_POS_PAYLOAD + pay;
@@ -137,7 +149,7 @@ public class VoluntarioOngDataFileDao extends BaseDataFile<VoluntarioOng> implem
     public synchronized void vacuum() throws IOException {
         File temp = new File(file.getParentFile(), file.getName() + ".tmp");
         try (VoluntarioOngDataFileDao novo = new VoluntarioOngDataFileDao(temp, this.versaoFormato)) {
-            for (VoluntarioOng a : listAllActive()) novo.create(a);
+            copiarAtivos(novo);
         }
         this.close();
         if (!file.delete()) throw new IOException("Falha ao apagar arquivo antigo: " + file);
@@ -150,38 +162,47 @@ public class VoluntarioOngDataFileDao extends BaseDataFile<VoluntarioOng> implem
         }
     }
 
-    private byte[] montarRegistro(byte tomb, int id, byte[] payload) {
-        return Codec.concat(new byte[]{ tomb }, Codec.encodeInt(id), Codec.encodeInt(payload.length), payload);
+    /** Monta [tombstone][id][len][payload] no writer do DAO; o len é corrigido após o payload, que é selado se o arquivo for cifrado. */
+    private RecordWriter montarRegistro(byte tomb, VoluntarioOng e) throws IOException {
+        writer.reset().writeByte(tomb).writeInt(e.getId()).writeInt(0);
+        codec.escrever(e, writer);
+        return selar(writer.putInt(REC_POS_LEN, writer.position() - REC_POS_PAYLOAD));
     }
 
     private VoluntarioOng readAt(long offset) throws IOException {
-        raf.seek(offset + REC_POS_TOMBSTONE);
-        byte tomb = raf.readByte();
-        raf.seek(offset + REC_POS_ID);
-        int id = raf.readInt();
-        raf.seek(offset + REC_POS_LEN);
-        int payLen = raf.readInt();
-        byte[] buf = readBytes(offset + REC_POS_PAYLOAD, payLen);
-        return decode(id, tomb, buf);
-    }
-
-    private byte[] encode(VoluntarioOng a) {
-        return Codec.concat(
-                Codec.encodeStringU16(a.getCpfVoluntario()),
-                Codec.encodeInt(a.getIdOng()),
-                Codec.encodeLocalDate(a.getDataEntrada())
-        );
-    }
-
-    private VoluntarioOng decode(int id, byte tomb, byte[] buf) {
-        int off = 0;
-        Codec.Decoded<String> dCpf = Codec.decodeStringU16(buf, off); off = dCpf.nextOffset;
-        Codec.Decoded<Integer> dOng = Codec.decodeInt(buf, off); off = dOng.nextOffset;
-        Codec.Decoded<java.time.LocalDate> dData = Codec.decodeLocalDate(buf, off); off = dData.nextOffset;
-        VoluntarioOng a = new VoluntarioOng();
-        a.setId(id); a.setAtivo(tomb == 0);
-        a.setCpfVoluntario(dCpf.value); a.setIdOng(dOng.value); a.setDataEntrada(dData.value);
-        return a;
+        return decodificar(lerRegistro(offset), -1L);
+    }
+
+    @Override protected int recPosTombstone() { return REC_POS_TOMBSTONE; }
+    @Override protected int recPosId() { return REC_POS_ID; }
+    @Override protected int recPosLen() { return REC_POS_LEN; }
+    @Override protected int recPosPayload() { return REC_POS_PAYLOAD; }
+    @Override public LayoutRegistro layout() { return codec.layout(); }
+
+    @Override
+    protected long localizarPorId(int id) {
+        return indexById.get(id);
+    }
+
+    @Override
+    protected int alturaIndice() throws IOException {
+        return bplus.altura();
+    }
+
+    @Override
+    protected boolean suportaVersao(byte versaoArquivo) {
+        return ESQUEMA.suporta(versaoArquivo);
+    }
+
+    @Override
+    protected VoluntarioOng decodificar(RecordReader r, long m) {
+        byte tomb = r.readByte();
+        int id = r.readInt();
+        r.skip(4); // len
+        VoluntarioOng e = codec.ler(r, m);
+        e.setId(id);
+        e.setAtivo(tomb == 0);
+        return e;
     }
 
     @Override
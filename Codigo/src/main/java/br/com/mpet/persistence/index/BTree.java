@@ -4,6 +4,13 @@ import java.io.File;
 import java.io.IOException;
 import java.io.RandomAccessFile;
 import java.lang.reflect.Constructor;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
 public class BTree<T extends RegistroArvoreBMais<T>> implements AutoCloseable {
 
@@ -13,6 +20,12 @@ public class BTree<T extends RegistroArvoreBMais<T>> implements AutoCloseable {
     private long raiz;
     private String nomeArquivo;
 
+    /** Páginas guardadas em memória durante {@link #createAll} (null fora dele). */
+    private static final int PAGINAS_CACHE_LOTE = 4096;
+    private LinkedHashMap<Long, byte[]> cacheLote;
+    private Set<Long> sujasLote;
+    private long fimLote; // fim lógico do arquivo, contando páginas ainda não gravadas
+
     public BTree(Constructor<T> construtor, int ordem, String nomeArquivo) throws IOException {
         this.construtor = construtor;
         this.ordem = ordem;
@@ -147,6 +160,45 @@ public class BTree<T extends RegistroArvoreBMais<T>> implements AutoCloseable {
         }
     }
 
+    /**
+     * Insere várias chaves de uma vez, em ordem crescente. As páginas tocadas ficam num cache
+     * write-back (LRU de {@value #PAGINAS_CACHE_LOTE} páginas) e são gravadas ordenadas por endereço
+     * no fim: inserções em ordem caem sempre no mesmo caminho da árvore, então cada página é lida
+     * e gravada uma vez por lote em vez de uma vez por chave. Se uma inserção falhar, as páginas
+     * sujas ainda são gravadas, e uma falha nisso vai como suprimida da exceção original.
+     */
+    public void createAll(List<T> chaves) throws Exception {
+        if (chaves.isEmpty()) return;
+        List<T> ordenadas = new ArrayList<>(chaves);
+        ordenadas.sort(T::compareTo);
+        cacheLote = new LinkedHashMap<>(256, 0.75f, true);
+        sujasLote = new HashSet<>();
+        fimLote = raf.length();
+        try {
+            for (T chave : ordenadas) create(chave);
+        } catch (Throwable t) {
+            try {
+                descarregarLote();
+            } catch (Throwable falha) {
+                t.addSuppressed(falha);
+            }
+            throw t;
+        }
+        descarregarLote();
+    }
+
+    /** Grava as páginas sujas do {@link #createAll} em ordem de endereço e sai do modo lote. */
+    private void descarregarLote() throws Exception {
+        try {
+            List<Long> sujas = new ArrayList<>(sujasLote);
+            Collections.sort(sujas);
+            for (long endereco : sujas) gravarPagina(endereco, cacheLote.get(endereco));
+        } finally {
+            cacheLote = null;
+            sujasLote = null;
+        }
+    }
+
     private Par<T, Long> create(long pagina, T newChave) throws Exception {
         Pagina<T> p = new Pagina<>(this.construtor, this.ordem);
         readPage(pagina, p);
@@ -253,6 +305,14 @@ public class BTree<T extends RegistroArvoreBMais<T>> implements AutoCloseable {
     }
 
     private long createPage(Pagina<T> p) throws IOException {
+        if (cacheLote != null) {
+            byte[] ba = p.toByteArray();
+            long endereco = fimLote;
+            fimLote += ba.length;
+            p.endereco = endereco;
+            guardarNoLote(endereco, ba, true);
+            return endereco;
+        }
         long endereco = this.raf.length();
         p.endereco = endereco;
         this.raf.seek(endereco);
@@ -261,18 +321,55 @@ public class BTree<T extends RegistroArvoreBMais<T>> implements AutoCloseable {
     }
 
     private void readPage(long endereco, Pagina<T> p) throws IOException {
-        this.raf.seek(endereco);
-        byte[] ba = new byte[p.size()];
-        this.raf.read(ba);
+        byte[] ba = cacheLote != null ? cacheLote.get(endereco) : null;
+        if (ba == null) {
+            this.raf.seek(endereco);
+            ba = new byte[p.size()];
+            this.raf.read(ba);
+            if (cacheLote != null) guardarNoLote(endereco, ba, false);
+        }
         p.fromByteArray(ba);
         p.endereco = endereco;
     }
 
     private void writePage(long endereco, Pagina<T> p) throws IOException {
+        if (cacheLote != null) {
+            guardarNoLote(endereco, p.toByteArray(), true);
+            return;
+        }
         this.raf.seek(endereco);
         this.raf.write(p.toByteArray());
     }
 
+    /** Põe a página no cache do lote; ao passar do limite, grava (se suja) e descarta a mais antiga. */
+    private void guardarNoLote(long endereco, byte[] ba, boolean suja) throws IOException {
+        cacheLote.put(endereco, ba);
+        if (suja) sujasLote.add(endereco);
+        if (cacheLote.size() > PAGINAS_CACHE_LOTE) {
+            Map.Entry<Long, byte[]> antiga = cacheLote.entrySet().iterator().next();
+            if (sujasLote.remove(antiga.getKey())) gravarPagina(antiga.getKey(), antiga.getValue());
+            cacheLote.remove(antiga.getKey());
+        }
+    }
+
+    private void gravarPagina(long endereco, byte[] ba) throws IOException {
+        this.raf.seek(endereco);
+        this.raf.write(ba);
+    }
+
+    /** Altura da árvore (níveis da raiz até as folhas, 0 se vazia), descendo pelo filho mais à esquerda. */
+    public int altura() throws IOException {
+        int niveis = 0;
+        long pagina = this.raiz;
+        Pagina<T> p = new Pagina<>(this.construtor, this.ordem);
+        while (pagina != -1) {
+            this.readPage(pagina, p);
+            niveis++;
+            pagina = p.filhos[0];
+        }
+        return niveis;
+    }
+
     public void print() throws Exception {
         if (this.raiz != -1) {
             this.print(this.raiz, 0);
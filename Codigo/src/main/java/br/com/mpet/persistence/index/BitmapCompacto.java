@@ -0,0 +1,259 @@
+package br.com.mpet.persistence.index;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.function.IntConsumer;
+
+/**
+ * Conjunto de inteiros não negativos comprimido no estilo "Roaring bitmap".
+ *
+ * O valor é dividido em 16 bits altos (chave do container) e 16 bits baixos. Cada chave
+ * presente tem um container:
+ * - array ordenado de char enquanto tiver até {@value #LIMITE_ARRAY} valores (2 bytes por valor);
+ * - mapa de bits de 2^16 bits (8 KiB) quando fica mais denso que isso.
+ * Ids esparsos custam ~2 bytes cada e faixas densas ~1 bit por id; contains é uma busca
+ * binária nas chaves mais uma busca no array (ou um teste de bit).
+ *
+ * Formato serializado ({@link #escrever}/{@link #ler}):
+ * <pre>
+ * int  quantidade de containers
+ * por container: char chave, int cardinalidade, e então
+ *   cardinalidade &lt;= LIMITE_ARRAY: cardinalidade × char (ordenados)
+ *   senão: 1024 × long (mapa de bits)
+ * </pre>
+ * Não é thread-safe: o dono sincroniza o acesso.
+ */
+public final class BitmapCompacto {
+
+    /** Acima disto um container array vira mapa de bits (ponto em que ambos ocupam 8 KiB). */
+    static final int LIMITE_ARRAY = 4096;
+    private static final int PALAVRAS_BITMAP = 1 << 10; // 2^16 bits / 64
+
+    private char[] chaves = new char[4];
+    private Object[] containers = new Object[4]; // char[] (array) ou long[] (bitmap)
+    private int[] cardinalidades = new int[4];
+    private int quantidade; // containers em uso
+
+    public boolean contains(int valor) {
+        int i = buscarChave(alta(valor));
+        if (i < 0) return false;
+        Object c = containers[i];
+        char baixa = baixa(valor);
+        if (c instanceof long[] bits) return (bits[baixa >>> 6] & (1L << baixa)) != 0;
+        return Arrays.binarySearch((char[]) c, 0, cardinalidades[i], baixa) >= 0;
+    }
+
+    /** Adiciona o valor; retorna false se já estava presente. */
+    public boolean add(int valor) {
+        verificar(valor);
+        char alta = alta(valor);
+        char baixa = baixa(valor);
+        int i = buscarChave(alta);
+        if (i < 0) {
+            i = -i - 1;
+            inserirContainer(i, alta);
+        }
+        Object c = containers[i];
+        if (c instanceof long[] bits) {
+            long mascara = 1L << baixa;
+            if ((bits[baixa >>> 6] & mascara) != 0) return false;
+            bits[baixa >>> 6] |= mascara;
+            cardinalidades[i]++;
+            return true;
+        }
+        char[] arr = (char[]) c;
+        int n = cardinalidades[i];
+        int pos = Arrays.binarySearch(arr, 0, n, baixa);
+        if (pos >= 0) return false;
+        pos = -pos - 1;
+        if (n == LIMITE_ARRAY) {
+            long[] bits = paraBitmap(arr, n);
+            bits[baixa >>> 6] |= 1L << baixa;
+            containers[i] = bits;
+        } else {
+            if (n == arr.length) arr = Arrays.copyOf(arr, Math.min(LIMITE_ARRAY, arr.length * 2));
+            System.arraycopy(arr, pos, arr, pos + 1, n - pos);
+            arr[pos] = baixa;
+            containers[i] = arr;
+        }
+        cardinalidades[i] = n + 1;
+        return true;
+    }
+
+    /** Remove o valor; retorna false se não estava presente. */
+    public boolean remove(int valor) {
+        if (valor < 0) return false;
+        int i = buscarChave(alta(valor));
+        if (i < 0) return false;
+        char baixa = baixa(valor);
+        Object c = containers[i];
+        int n = cardinalidades[i];
+        if (c instanceof long[] bits) {
+            long mascara = 1L << baixa;
+            if ((bits[baixa >>> 6] & mascara) == 0) return false;
+            bits[baixa >>> 6] &= ~mascara;
+            n--;
+            if (n <= LIMITE_ARRAY) containers[i] = paraArray(bits, n);
+        } else {
+            char[] arr = (char[]) c;
+            int pos = Arrays.binarySearch(arr, 0, n, baixa);
+            if (pos < 0) return false;
+            System.arraycopy(arr, pos + 1, arr, pos, n - pos - 1);
+            n--;
+        }
+        cardinalidades[i] = n;
+        if (n == 0) removerContainer(i);
+        return true;
+    }
+
+    /** Quantidade de valores no conjunto. */
+    public long cardinalidade() {
+        long total = 0;
+        for (int i = 0; i < quantidade; i++) total += cardinalidades[i];
+        return total;
+    }
+
+    public boolean isEmpty() {
+        return quantidade == 0;
+    }
+
+    public void clear() {
+        Arrays.fill(containers, 0, quantidade, null);
+        quantidade = 0;
+    }
+
+    /** Visita os valores em ordem crescente. */
+    public void forEach(IntConsumer acao) {
+        for (int i = 0; i < quantidade; i++) {
+            int base = chaves[i] << 16;
+            Object c = containers[i];
+            if (c instanceof long[] bits) {
+                for (int w = 0; w < PALAVRAS_BITMAP; w++) {
+                    long palavra = bits[w];
+                    while (palavra != 0) {
+                        acao.accept(base | (w << 6) | Long.numberOfTrailingZeros(palavra));
+                        palavra &= palavra - 1;
+                    }
+                }
+            } else {
+                char[] arr = (char[]) c;
+                for (int k = 0; k < cardinalidades[i]; k++) acao.accept(base | arr[k]);
+            }
+        }
+    }
+
+    /** Bytes ocupados pelos containers em memória (aproximado, sem cabeçalhos de objeto). */
+    public long bytesEmMemoria() {
+        long total = (long) chaves.length * 2 + (long) cardinalidades.length * 4;
+        for (int i = 0; i < quantidade; i++) {
+            total += containers[i] instanceof long[] ? PALAVRAS_BITMAP * 8L : ((char[]) containers[i]).length * 2L;
+        }
+        return total;
+    }
+
+    public void escrever(DataOutput out) throws IOException {
+        out.writeInt(quantidade);
+        for (int i = 0; i < quantidade; i++) {
+            out.writeChar(chaves[i]);
+            out.writeInt(cardinalidades[i]);
+            if (containers[i] instanceof long[] bits) {
+                for (long palavra : bits) out.writeLong(palavra);
+            } else {
+                char[] arr = (char[]) containers[i];
+                for (int k = 0; k < cardinalidades[i]; k++) out.writeChar(arr[k]);
+            }
+        }
+    }
+
+    public static BitmapCompacto ler(DataInput in) throws IOException {
+        BitmapCompacto b = new BitmapCompacto();
+        int n = in.readInt();
+        if (n < 0 || n > (1 << 16)) throw new IOException("Bitmap corrompido: " + n + " containers");
+        for (int i = 0; i < n; i++) {
+            char chave = in.readChar();
+            int card = in.readInt();
+            if (card <= 0 || card > (1 << 16)) throw new IOException("Bitmap corrompido: cardinalidade " + card);
+            if (i > 0 && chave <= b.chaves[i - 1]) throw new IOException("Bitmap corrompido: chaves fora de ordem");
+            b.inserirContainer(i, chave);
+            if (card > LIMITE_ARRAY) {
+                long[] bits = new long[PALAVRAS_BITMAP];
+                for (int w = 0; w < PALAVRAS_BITMAP; w++) bits[w] = in.readLong();
+                b.containers[i] = bits;
+            } else {
+                char[] arr = new char[card];
+                for (int k = 0; k < card; k++) arr[k] = in.readChar();
+                b.containers[i] = arr;
+            }
+            b.cardinalidades[i] = card;
+        }
+        return b;
+    }
+
+    @Override
+    public String toString() {
+        return "BitmapCompacto{valores=" + cardinalidade() + ", containers=" + quantidade + "}";
+    }
+
+    /* ============================================================= */
+
+    private static char alta(int valor) {
+        return (char) (valor >>> 16);
+    }
+
+    private static char baixa(int valor) {
+        return (char) valor;
+    }
+
+    private static void verificar(int valor) {
+        if (valor < 0) throw new IllegalArgumentException("Valor negativo: " + valor);
+    }
+
+    private int buscarChave(char alta) {
+        return Arrays.binarySearch(chaves, 0, quantidade, alta);
+    }
+
+    private void inserirContainer(int i, char alta) {
+        if (quantidade == chaves.length) {
+            int novo = chaves.length * 2;
+            chaves = Arrays.copyOf(chaves, novo);
+            containers = Arrays.copyOf(containers, novo);
+            cardinalidades = Arrays.copyOf(cardinalidades, novo);
+        }
+        System.arraycopy(chaves, i, chaves, i + 1, quantidade - i);
+        System.arraycopy(containers, i, containers, i + 1, quantidade - i);
+        System.arraycopy(cardinalidades, i, cardinalidades, i + 1, quantidade - i);
+        chaves[i] = alta;
+        containers[i] = new char[4];
+        cardinalidades[i] = 0;
+        quantidade++;
+    }
+
+    private void removerContainer(int i) {
+        System.arraycopy(chaves, i + 1, chaves, i, quantidade - i - 1);
+        System.arraycopy(containers, i + 1, containers, i, quantidade - i - 1);
+        System.arraycopy(cardinalidades, i + 1, cardinalidades, i, quantidade - i - 1);
+        quantidade--;
+        containers[quantidade] = null;
+    }
+
+    private static long[] paraBitmap(char[] arr, int n) {
+        long[] bits = new long[PALAVRAS_BITMAP];
+        for (int k = 0; k < n; k++) bits[arr[k] >>> 6] |= 1L << arr[k];
+        return bits;
+    }
+
+    private static char[] paraArray(long[] bits, int n) {
+        char[] arr = new char[n];
+        int k = 0;
+        for (int w = 0; w < PALAVRAS_BITMAP; w++) {
+            long palavra = bits[w];
+            while (palavra != 0) {
+                arr[k++] = (char) ((w << 6) | Long.numberOfTrailingZeros(palavra));
+                palavra &= palavra - 1;
+            }
+        }
+        return arr;
+    }
+}
@@ -0,0 +1,44 @@
+package br.com.mpet.persistence.index;
+
+/**
+ * Mapa int → long sem boxing, usado como índice id → offset em memória pelos DAOs.
+ *
+ * Os valores são offsets de arquivo, portanto nunca negativos: {@link #get} devolve
+ * {@link #AUSENTE} quando a chave não existe, no lugar do {@code null} de um {@code Map<Integer, Long>}.
+ * Implementações: {@link MapaIntLongHeap} (arrays no heap) e {@link MapaIntLongForaDoHeap}
+ * (buffer direto, fora do heap e do trabalho do GC). Não são thread-safe: o dono sincroniza o acesso.
+ */
+public interface MapaIntLong {
+
+    /** Retorno de {@link #get} para chave ausente. */
+    long AUSENTE = -1L;
+
+    /** Valor da chave, ou {@link #AUSENTE}. */
+    long get(int chave);
+
+    /** Associa {@code valor} (>= 0) à chave, substituindo o anterior. */
+    void put(int chave, long valor);
+
+    /** Remove a chave; retorna false se não estava presente. */
+    boolean remove(int chave);
+
+    default boolean containsKey(int chave) {
+        return get(chave) != AUSENTE;
+    }
+
+    int size();
+
+    default boolean isEmpty() {
+        return size() == 0;
+    }
+
+    void clear();
+
+    /** Bytes ocupados pela tabela (heap ou memória nativa), sem cabeçalhos de objeto. */
+    long bytesEmMemoria();
+
+    /** Mapa vazio no heap ou fora dele. */
+    static MapaIntLong criar(boolean foraDoHeap) {
+        return foraDoHeap ? new MapaIntLongForaDoHeap() : new MapaIntLongHeap();
+    }
+}
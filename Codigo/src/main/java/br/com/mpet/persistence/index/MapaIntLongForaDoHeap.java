@@ -0,0 +1,148 @@
+package br.com.mpet.persistence.index;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * {@link MapaIntLong} com a mesma tabela de {@link MapaIntLongHeap}, mas guardada num
+ * {@link ByteBuffer} direto: posições de 12 bytes ({@code int} chave + {@code long} valor) em
+ * memória nativa. O heap fica só com o objeto do buffer, então índices de milhões de ids não
+ * pesam na coleta de lixo nem contam para o {@code -Xmx}.
+ *
+ * A memória nativa é devolvida quando o buffer é coletado (após {@link #clear()}, crescimento
+ * ou descarte do mapa). Use {@code -XX:MaxDirectMemorySize} para limitá-la.
+ */
+public final class MapaIntLongForaDoHeap implements MapaIntLong {
+
+    private static final int CAPACIDADE_INICIAL = 16;
+    private static final int BYTES_POSICAO = Integer.BYTES + Long.BYTES;
+    private static final int POS_VALOR = Integer.BYTES;
+
+    private ByteBuffer tabela;
+    private int mascara;
+    private int tamanho;
+    private int limite;
+
+    public MapaIntLongForaDoHeap() {
+        alocar(CAPACIDADE_INICIAL);
+    }
+
+    @Override
+    public long get(int chave) {
+        int i = MapaIntLongHeap.posicao(chave, mascara);
+        long v;
+        while ((v = valor(i)) != AUSENTE) {
+            if (chave(i) == chave) return v;
+            i = (i + 1) & mascara;
+        }
+        return AUSENTE;
+    }
+
+    @Override
+    public void put(int chave, long valor) {
+        if (valor < 0) throw new IllegalArgumentException("Valor negativo: " + valor);
+        int i = MapaIntLongHeap.posicao(chave, mascara);
+        while (valor(i) != AUSENTE) {
+            if (chave(i) == chave) {
+                tabela.putLong(i * BYTES_POSICAO + POS_VALOR, valor);
+                return;
+            }
+            i = (i + 1) & mascara;
+        }
+        gravar(i, chave, valor);
+        if (++tamanho > limite) crescer();
+    }
+
+    @Override
+    public boolean remove(int chave) {
+        int i = MapaIntLongHeap.posicao(chave, mascara);
+        while (valor(i) != AUSENTE) {
+            if (chave(i) == chave) {
+                deslocarParaTras(i);
+                tamanho--;
+                return true;
+            }
+            i = (i + 1) & mascara;
+        }
+        return false;
+    }
+
+    @Override
+    public int size() {
+        return tamanho;
+    }
+
+    @Override
+    public void clear() {
+        alocar(CAPACIDADE_INICIAL);
+    }
+
+    @Override
+    public long bytesEmMemoria() {
+        return tabela.capacity();
+    }
+
+    @Override
+    public String toString() {
+        return "MapaIntLongForaDoHeap{entradas=" + tamanho + ", capacidade=" + (mascara + 1) + "}";
+    }
+
+    /* ============================================================= */
+
+    private int chave(int i) {
+        return tabela.getInt(i * BYTES_POSICAO);
+    }
+
+    private long valor(int i) {
+        return tabela.getLong(i * BYTES_POSICAO + POS_VALOR);
+    }
+
+    private void gravar(int i, int chave, long valor) {
+        tabela.putInt(i * BYTES_POSICAO, chave);
+        tabela.putLong(i * BYTES_POSICAO + POS_VALOR, valor);
+    }
+
+    private void alocar(int capacidade) {
+        if (capacidade > Integer.MAX_VALUE / BYTES_POSICAO) {
+            throw new IllegalStateException("Mapa grande demais: " + capacidade + " posições");
+        }
+        tabela = ByteBuffer.allocateDirect(capacidade * BYTES_POSICAO).order(ByteOrder.nativeOrder());
+        for (int i = 0; i < capacidade; i++) tabela.putLong(i * BYTES_POSICAO + POS_VALOR, AUSENTE);
+        mascara = capacidade - 1;
+        limite = capacidade * 3 / 4;
+        tamanho = 0;
+    }
+
+    private void crescer() {
+        ByteBuffer antiga = tabela;
+        int capacidadeAntiga = mascara + 1;
+        int n = tamanho;
+        alocar(MapaIntLongHeap.capacidadePara(n + 1L));
+        for (int i = 0; i < capacidadeAntiga; i++) {
+            long v = antiga.getLong(i * BYTES_POSICAO + POS_VALOR);
+            if (v == AUSENTE) continue;
+            int k = antiga.getInt(i * BYTES_POSICAO);
+            int j = MapaIntLongHeap.posicao(k, mascara);
+            while (valor(j) != AUSENTE) j = (j + 1) & mascara;
+            gravar(j, k, v);
+        }
+        tamanho = n;
+    }
+
+    /** Mesmo deslocamento de {@link MapaIntLongHeap}: sem marcadores de removido. */
+    private void deslocarParaTras(int livre) {
+        int j = livre;
+        while (true) {
+            j = (j + 1) & mascara;
+            long v = valor(j);
+            if (v == AUSENTE) break;
+            int k = chave(j);
+            int ideal = MapaIntLongHeap.posicao(k, mascara);
+            if (((j - ideal) & mascara) >= ((j - livre) & mascara)) {
+                gravar(livre, k, v);
+                livre = j;
+            }
+        }
+        tabela.putLong(livre * BYTES_POSICAO + POS_VALOR, AUSENTE);
+    }
+}
@@ -0,0 +1,146 @@
+package br.com.mpet.persistence.index;
+
+import java.util.Arrays;
+
+/**
+ * {@link MapaIntLong} de endereçamento aberto com sondagem linear sobre dois arrays paralelos
+ * ({@code int[]} chaves, {@code long[]} valores).
+ *
+ * Uma posição está livre quando o valor é {@link #AUSENTE}, então qualquer int serve de chave.
+ * A tabela dobra ao passar de 75% de ocupação; a remoção desloca para trás os elementos da
+ * mesma sequência de sondagem (sem marcadores de removido), de modo que buscas nunca pioram com
+ * o tempo. Custa 12 bytes por posição — de 16 a 32 bytes por entrada, contra ~80 de um
+ * {@code HashMap<Integer, Long>} (nó + Integer + Long).
+ */
+public final class MapaIntLongHeap implements MapaIntLong {
+
+    private static final int CAPACIDADE_INICIAL = 16;
+
+    private int[] chaves;
+    private long[] valores;
+    private int mascara;
+    private int tamanho;
+    private int limite; // tamanho a partir do qual a tabela dobra
+
+    public MapaIntLongHeap() {
+        alocar(CAPACIDADE_INICIAL);
+    }
+
+    @Override
+    public long get(int chave) {
+        int i = posicao(chave, mascara);
+        long v;
+        while ((v = valores[i]) != AUSENTE) {
+            if (chaves[i] == chave) return v;
+            i = (i + 1) & mascara;
+        }
+        return AUSENTE;
+    }
+
+    @Override
+    public void put(int chave, long valor) {
+        if (valor < 0) throw new IllegalArgumentException("Valor negativo: " + valor);
+        int i = posicao(chave, mascara);
+        while (valores[i] != AUSENTE) {
+            if (chaves[i] == chave) {
+                valores[i] = valor;
+                return;
+            }
+            i = (i + 1) & mascara;
+        }
+        chaves[i] = chave;
+        valores[i] = valor;
+        if (++tamanho > limite) crescer();
+    }
+
+    @Override
+    public boolean remove(int chave) {
+        int i = posicao(chave, mascara);
+        while (valores[i] != AUSENTE) {
+            if (chaves[i] == chave) {
+                deslocarParaTras(i);
+                tamanho--;
+                return true;
+            }
+            i = (i + 1) & mascara;
+        }
+        return false;
+    }
+
+    @Override
+    public int size() {
+        return tamanho;
+    }
+
+    @Override
+    public void clear() {
+        alocar(CAPACIDADE_INICIAL);
+    }
+
+    @Override
+    public long bytesEmMemoria() {
+        return (long) chaves.length * (Integer.BYTES + Long.BYTES);
+    }
+
+    @Override
+    public String toString() {
+        return "MapaIntLongHeap{entradas=" + tamanho + ", capacidade=" + chaves.length + "}";
+    }
+
+    /* ============================================================= */
+
+    /** Posição ideal da chave (espalhamento de Fibonacci; ids sequenciais não se agrupam). */
+    static int posicao(int chave, int mascara) {
+        int h = chave * 0x9E3779B9;
+        return (h ^ (h >>> 16)) & mascara;
+    }
+
+    /** Capacidade (potência de 2) para {@code entradas} sem passar de 75% de ocupação. */
+    static int capacidadePara(long entradas) {
+        long c = CAPACIDADE_INICIAL;
+        while (c * 3 / 4 < entradas) c <<= 1;
+        if (c > (1 << 30)) throw new IllegalStateException("Mapa grande demais: " + entradas + " entradas");
+        return (int) c;
+    }
+
+    private void alocar(int capacidade) {
+        chaves = new int[capacidade];
+        valores = new long[capacidade];
+        Arrays.fill(valores, AUSENTE);
+        mascara = capacidade - 1;
+        limite = capacidade * 3 / 4;
+        tamanho = 0;
+    }
+
+    private void crescer() {
+        int[] ck = chaves;
+        long[] cv = valores;
+        int n = tamanho;
+        alocar(capacidadePara(n + 1L));
+        for (int i = 0; i < ck.length; i++) {
+            if (cv[i] == AUSENTE) continue;
+            int j = posicao(ck[i], mascara);
+            while (valores[j] != AUSENTE) j = (j + 1) & mascara;
+            chaves[j] = ck[i];
+            valores[j] = cv[i];
+        }
+        tamanho = n;
+    }
+
+    /** Libera a posição {@code livre} puxando para ela quem ficaria inalcançável. */
+    private void deslocarParaTras(int livre) {
+        int j = livre;
+        while (true) {
+            j = (j + 1) & mascara;
+            if (valores[j] == AUSENTE) break;
+            int ideal = posicao(chaves[j], mascara);
+            // só move se a posição ideal não estiver entre a livre (exclusive) e j
+            if (((j - ideal) & mascara) >= ((j - livre) & mascara)) {
+                chaves[livre] = chaves[j];
+                valores[livre] = valores[j];
+                livre = j;
+            }
+        }
+        valores[livre] = AUSENTE;
+    }
+}
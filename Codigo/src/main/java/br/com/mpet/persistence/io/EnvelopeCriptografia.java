@@ -0,0 +1,207 @@
+package br.com.mpet.persistence.io;
+
+import javax.crypto.AEADBadTagException;
+import javax.crypto.Cipher;
+import javax.crypto.KeyGenerator;
+import javax.crypto.SecretKey;
+import javax.crypto.spec.GCMParameterSpec;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.security.GeneralSecurityException;
+import java.security.PrivateKey;
+import java.security.PublicKey;
+import java.security.SecureRandom;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Criptografia em envelope para os payloads dos arquivos .dat.
+ *
+ * Uma chave de dados AES-256 (DEK) cifra os registros com AES-GCM; a DEK fica gravada
+ * num arquivo de chave embrulhada (wrap) com a chave pública RSA existente, e só é
+ * desembrulhada com a chave privada. Assim o RSA roda uma vez por diretório, e cada
+ * registro paga apenas AES-GCM (acelerado por hardware na JVM).
+ *
+ * Nonce de 12 bytes = [prefixo aleatório da chave (4)][contador (8)]. O contador nunca
+ * se repete para a mesma DEK: blocos de {@value #RESERVA} valores são reservados e o fim
+ * da reserva é persistido antes de serem usados (um reinício pula o resto do bloco).
+ *
+ * Registro selado: [nonce (12)][texto cifrado][tag (16)] — ver {@link #SOBRECARGA}. O AAD
+ * (dados autenticados, não cifrados) amarra o payload ao seu lugar: quem sela passa o mesmo
+ * AAD que quem abre, e um payload movido para outro registro falha na tag.
+ *
+ * Arquivo de chave ({@value #NOME_ARQUIVO}, um por diretório de dados, compartilhado pelos
+ * .dat do diretório e pelos temporários do vacuum):
+ * <pre>
+ * [0-3]  magic "MPK1"
+ * [4-7]  int  tamanho da DEK embrulhada
+ * [8-..] DEK embrulhada (RSA-OAEP)
+ * [..]   int  prefixo do nonce
+ * [..]   long fim da reserva de contadores
+ * </pre>
+ */
+public final class EnvelopeCriptografia {
+
+    /** Nome do arquivo de chave dentro do diretório de dados. */
+    public static final String NOME_ARQUIVO = "dados.key";
+
+    public static final int TAMANHO_NONCE = 12;
+    public static final int TAMANHO_TAG = 16;
+    /** Bytes acrescentados a cada payload selado. */
+    public static final int SOBRECARGA = TAMANHO_NONCE + TAMANHO_TAG;
+
+    private static final int MAGIC = 0x4D504B31; // "MPK1"
+    private static final String ALG_WRAP = "RSA/ECB/OAEPWithSHA-256AndMGF1Padding";
+    private static final String ALG_DADOS = "AES/GCM/NoPadding";
+    private static final long RESERVA = 1L << 16;
+
+    /** Uma instância por arquivo de chave: o contador de nonces precisa ser único. */
+    private static final Map<String, EnvelopeCriptografia> ABERTOS = new HashMap<>();
+
+    private static final ThreadLocal<Cipher> CIFRA = ThreadLocal.withInitial(() -> {
+        try {
+            return Cipher.getInstance(ALG_DADOS);
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("AES-GCM indisponível", e);
+        }
+    });
+
+    private final File arquivoChave;
+    private final SecretKey dek;
+    private final int prefixoNonce;
+    private final int posReserva;   // offset do long "fim da reserva" no arquivo de chave
+    private long proximoContador;
+    private long fimReserva;
+
+    private EnvelopeCriptografia(File arquivoChave, SecretKey dek, int prefixoNonce, int posReserva, long fimReserva) {
+        this.arquivoChave = arquivoChave;
+        this.dek = dek;
+        this.prefixoNonce = prefixoNonce;
+        this.posReserva = posReserva;
+        this.proximoContador = fimReserva; // o que foi reservado antes pode já ter sido usado
+        this.fimReserva = fimReserva;
+    }
+
+    /**
+     * Envelope do diretório {@code dir}: abre o arquivo de chave existente (desembrulha com
+     * {@code privada}) ou cria uma DEK nova embrulhada com {@code publica}.
+     */
+    public static synchronized EnvelopeCriptografia doDiretorio(File dir, PublicKey publica, PrivateKey privada) throws IOException {
+        File arquivo = new File(dir, NOME_ARQUIVO);
+        String chave = arquivo.getCanonicalPath();
+        EnvelopeCriptografia env = ABERTOS.get(chave);
+        if (env == null) {
+            env = arquivo.exists() ? abrir(arquivo, privada) : criar(arquivo, publica);
+            ABERTOS.put(chave, env);
+        }
+        return env;
+    }
+
+    private static EnvelopeCriptografia criar(File arquivo, PublicKey publica) throws IOException {
+        if (publica == null) throw new IOException("Chave pública RSA necessária para criar " + arquivo);
+        try {
+            KeyGenerator gen = KeyGenerator.getInstance("AES");
+            gen.init(256);
+            SecretKey dek = gen.generateKey();
+            Cipher rsa = Cipher.getInstance(ALG_WRAP);
+            rsa.init(Cipher.WRAP_MODE, publica);
+            byte[] embrulhada = rsa.wrap(dek);
+            int prefixo = new SecureRandom().nextInt();
+            try (RandomAccessFile raf = new RandomAccessFile(arquivo, "rw")) {
+                raf.setLength(0);
+                raf.writeInt(MAGIC);
+                raf.writeInt(embrulhada.length);
+                raf.write(embrulhada);
+                raf.writeInt(prefixo);
+                raf.writeLong(0L);
+                raf.getFD().sync();
+            }
+            return new EnvelopeCriptografia(arquivo, dek, prefixo, 8 + embrulhada.length + 4, 0L);
+        } catch (GeneralSecurityException e) {
+            throw new IOException("Falha ao criar chave de dados: " + e.getMessage(), e);
+        }
+    }
+
+    private static EnvelopeCriptografia abrir(File arquivo, PrivateKey privada) throws IOException {
+        if (privada == null) throw new IOException("Chave privada RSA necessária para abrir " + arquivo);
+        try (RandomAccessFile raf = new RandomAccessFile(arquivo, "r")) {
+            if (raf.readInt() != MAGIC) throw new IOException("Arquivo de chave inválido: " + arquivo);
+            int tam = raf.readInt();
+            if (tam <= 0 || tam > 4096) throw new IOException("Arquivo de chave corrompido: " + arquivo);
+            byte[] embrulhada = new byte[tam];
+            raf.readFully(embrulhada);
+            int prefixo = raf.readInt();
+            long fimReserva = raf.readLong();
+            Cipher rsa = Cipher.getInstance(ALG_WRAP);
+            rsa.init(Cipher.UNWRAP_MODE, privada);
+            SecretKey dek = (SecretKey) rsa.unwrap(embrulhada, "AES", Cipher.SECRET_KEY);
+            return new EnvelopeCriptografia(arquivo, dek, prefixo, 8 + tam + 4, fimReserva);
+        } catch (GeneralSecurityException e) {
+            throw new IOException("Falha ao desembrulhar chave de dados (chave RSA errada?): " + e.getMessage(), e);
+        }
+    }
+
+    /** Tamanho em disco de um payload de {@code tamanhoClaro} bytes. */
+    public static int tamanhoSelado(int tamanhoClaro) {
+        return tamanhoClaro + SOBRECARGA;
+    }
+
+    /**
+     * Cifra {@code len} bytes de {@code src} e grava [nonce][cifrado][tag] em {@code dst}
+     * (não pode se sobrepor a {@code src}); {@code aad} (pode ser null) entra na tag.
+     * Retorna o número de bytes gravados.
+     */
+    public int selar(byte[] src, int off, int len, byte[] dst, int dstOff, byte[] aad) throws IOException {
+        long contador = reservarContador();
+        escreverNonce(dst, dstOff, contador);
+        try {
+            Cipher c = CIFRA.get();
+            c.init(Cipher.ENCRYPT_MODE, dek, new GCMParameterSpec(TAMANHO_TAG * 8, dst, dstOff, TAMANHO_NONCE));
+            if (aad != null) c.updateAAD(aad);
+            return TAMANHO_NONCE + c.doFinal(src, off, len, dst, dstOff + TAMANHO_NONCE);
+        } catch (GeneralSecurityException e) {
+            throw new IOException("Falha ao cifrar registro: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Decifra um payload selado ({@code len} bytes a partir de {@code off}) para {@code dst}, com
+     * o mesmo {@code aad} passado a {@link #selar}. Retorna o tamanho do texto claro; tag inválida
+     * (payload alterado ou de outro lugar) vira IOException.
+     */
+    public int abrir(byte[] src, int off, int len, byte[] dst, int dstOff, byte[] aad) throws IOException {
+        if (len < SOBRECARGA) throw new IOException("Payload cifrado truncado (" + len + " bytes)");
+        try {
+            Cipher c = CIFRA.get();
+            c.init(Cipher.DECRYPT_MODE, dek, new GCMParameterSpec(TAMANHO_TAG * 8, src, off, TAMANHO_NONCE));
+            if (aad != null) c.updateAAD(aad);
+            return c.doFinal(src, off + TAMANHO_NONCE, len - TAMANHO_NONCE, dst, dstOff);
+        } catch (AEADBadTagException e) {
+            throw new IOException("Registro cifrado corrompido ou fora do lugar (tag GCM inválida)", e);
+        } catch (GeneralSecurityException e) {
+            throw new IOException("Falha ao decifrar registro: " + e.getMessage(), e);
+        }
+    }
+
+    private void escreverNonce(byte[] dst, int off, long contador) {
+        dst[off] = (byte) (prefixoNonce >>> 24);
+        dst[off + 1] = (byte) (prefixoNonce >>> 16);
+        dst[off + 2] = (byte) (prefixoNonce >>> 8);
+        dst[off + 3] = (byte) prefixoNonce;
+        for (int i = 0; i < 8; i++) dst[off + 4 + i] = (byte) (contador >>> (56 - 8 * i));
+    }
+
+    private synchronized long reservarContador() throws IOException {
+        if (proximoContador >= fimReserva) {
+            long novoFim = fimReserva + RESERVA;
+            try (RandomAccessFile raf = new RandomAccessFile(arquivoChave, "rw")) {
+                raf.seek(posReserva);
+                raf.writeLong(novoFim);
+                raf.getFD().sync();
+            }
+            fimReserva = novoFim;
+        }
+        return proximoContador++;
+    }
+}
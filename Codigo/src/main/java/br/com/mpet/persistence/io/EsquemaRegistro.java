@@ -0,0 +1,466 @@
+package br.com.mpet.persistence.io;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.function.BiConsumer;
+import java.util.function.Function;
+import java.util.function.ObjIntConsumer;
+import java.util.function.ObjLongConsumer;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
+import java.util.function.ToIntFunction;
+import java.util.function.ToLongFunction;
+
+/**
+ * Descritor do payload de uma entidade: nome, tipo e versão de cada campo, na ordem em disco.
+ *
+ * É a única fonte da ordem dos campos: o DAO declara o esquema uma vez e dele saem o
+ * {@link LayoutRegistro} (projeção/filtros) e o {@link Compilado} que codifica e decodifica.
+ * Cada campo guarda um acessor tipado (referências de método, que o JVM materializa como
+ * classes próprias via LambdaMetafactory), então não há reflexão nem boxing por campo.
+ *
+ * Evolução por acréscimo de campos: um campo novo é declarado no fim com {@link #desde(int)}.
+ * Registros gravados numa versão anterior simplesmente terminam antes dele; na leitura o campo
+ * ausente fica com o valor padrão da entidade. Por isso um arquivo de versão anterior é aberto
+ * sem reescrita, qualquer que seja a sua codificação.
+ *
+ * A versão diz só quais campos existem; a codificação do payload é escolhida à parte, em
+ * {@link #compilar(LayoutRegistro, int, boolean)}, e fica no cabeçalho do arquivo
+ * ({@link FileHeaderHelper.Header#codificacao}). Trocar de codificação exige regravar os
+ * registros (ex.: {@code vacuum()}).
+ * - fixa: convenções do {@link Codec} (int 4 bytes, tri-boolean 1 byte, data 7 bytes...);
+ * - compacta:
+ *   [qtd. tri-booleans (varint)][2 bits por tri-boolean: 0=U 1=F 2=V][demais campos em ordem],
+ *   com int/long em zigzag+varint, char como varint (ASCII = 1 byte), data como dias desde
+ *   1970 (varint, 0 = null), String com prefixo varint (tamanho+1, 0 = null) e enum em 1 byte.
+ *   O cabeçalho do registro (tipo/tombstone/id/len) continua fixo.
+ *
+ * Exemplo (os arquivos em uso estão na versão 2, então um campo novo entra na 3):
+ * <pre>
+ *   static final EsquemaRegistro&lt;Ong&gt; ESQUEMA = new EsquemaRegistro&lt;&gt;(Ong::new)
+ *       .string("nome", Ong::getNome, Ong::setNome)
+ *       .string("cnpj", Ong::getCnpj, Ong::setCnpj)
+ *       .string("site", Ong::getSite, Ong::setSite).desde(3);
+ * </pre>
+ *
+ * @param <T> entidade descrita
+ */
+public final class EsquemaRegistro<T> {
+
+    /** Versão do formato em que os campos existem por padrão. */
+    public static final int VERSAO_INICIAL = 1;
+
+    /** Limite de tri-booleans por registro no formato compacto (flags lidas num long). */
+    private static final int MAX_TRI = 32;
+
+    private final Supplier<T> fabrica;
+    private final List<Campo<? super T>> campos = new ArrayList<>();
+
+    /** Esquema sem fábrica (ex.: campos comuns de uma classe abstrata, usados via {@link #herdar}). */
+    public EsquemaRegistro() {
+        this(null);
+    }
+
+    public EsquemaRegistro(Supplier<T> fabrica) {
+        this.fabrica = fabrica;
+    }
+
+    /* =============================================================
+     * DECLARAÇÃO DOS CAMPOS
+     * ============================================================= */
+
+    /** Copia os campos de um esquema da superclasse (devem vir antes dos próprios). */
+    public EsquemaRegistro<T> herdar(EsquemaRegistro<? super T> base) {
+        if (!campos.isEmpty()) throw new IllegalStateException("herdar() deve ser chamado antes dos demais campos");
+        for (Campo<?> c : base.campos) campos.add(convert(c));
+        return this;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T> Campo<? super T> convert(Campo<?> c) {
+        // Campos de um esquema de superclasse aceitam qualquer subclasse.
+        return (Campo<? super T>) c;
+    }
+
+    public EsquemaRegistro<T> inteiro(String nome, ToIntFunction<? super T> get, ObjIntConsumer<? super T> set) {
+        return add(new Campo<T>(nome, TipoCampo.INT) {
+            void escrever(T e, RecordWriter w) { w.writeInt(get.applyAsInt(e)); }
+            void ler(T e, RecordReader r, boolean materializar) { set.accept(e, r.readInt()); }
+            void escreverCompacto(T e, RecordWriter w) { w.writeZigZag(get.applyAsInt(e)); }
+            void lerCompacto(T e, RecordReader r, boolean materializar) { set.accept(e, r.readZigZagInt()); }
+        });
+    }
+
+    public EsquemaRegistro<T> longo(String nome, ToLongFunction<? super T> get, ObjLongConsumer<? super T> set) {
+        return add(new Campo<T>(nome, TipoCampo.LONG) {
+            void escrever(T e, RecordWriter w) { w.writeLong(get.applyAsLong(e)); }
+            void ler(T e, RecordReader r, boolean materializar) { set.accept(e, r.readLong()); }
+            void escreverCompacto(T e, RecordWriter w) { w.writeZigZag(get.applyAsLong(e)); }
+            void lerCompacto(T e, RecordReader r, boolean materializar) { set.accept(e, r.readZigZagLong()); }
+        });
+    }
+
+    /** LocalDateTime gravado como segundos desde a época em UTC (long); 0 = null. */
+    public EsquemaRegistro<T> dataHora(String nome, Function<? super T, LocalDateTime> get, BiConsumer<? super T, LocalDateTime> set) {
+        return add(new Campo<T>(nome, TipoCampo.LONG) {
+            void escrever(T e, RecordWriter w) { w.writeLong(epoch(get.apply(e))); }
+            void ler(T e, RecordReader r, boolean materializar) { set.accept(e, dataHora(r.readLong())); }
+            void escreverCompacto(T e, RecordWriter w) { w.writeZigZag(epoch(get.apply(e))); }
+            void lerCompacto(T e, RecordReader r, boolean materializar) { set.accept(e, dataHora(r.readZigZagLong())); }
+        });
+    }
+
+    private static long epoch(LocalDateTime dt) {
+        return dt == null ? 0L : dt.toEpochSecond(ZoneOffset.UTC);
+    }
+
+    private static LocalDateTime dataHora(long epoch) {
+        return epoch == 0L ? null : LocalDateTime.ofEpochSecond(epoch, 0, ZoneOffset.UTC);
+    }
+
+    public EsquemaRegistro<T> caractere(String nome, GetChar<? super T> get, SetChar<? super T> set) {
+        return add(new Campo<T>(nome, TipoCampo.CHAR) {
+            void escrever(T e, RecordWriter w) { w.writeChar(get.get(e)); }
+            void ler(T e, RecordReader r, boolean materializar) { set.set(e, r.readChar()); }
+            void escreverCompacto(T e, RecordWriter w) { w.writeCharVar(get.get(e)); }
+            void lerCompacto(T e, RecordReader r, boolean materializar) { set.set(e, r.readCharVar()); }
+        });
+    }
+
+    public EsquemaRegistro<T> triBoolean(String nome, Predicate<? super T> get, SetBoolean<? super T> set) {
+        return add(new CampoTri<T>(nome) {
+            void escrever(T e, RecordWriter w) { w.writeTriBoolean(get.test(e)); }
+            void ler(T e, RecordReader r, boolean materializar) { set.set(e, r.readTriBoolean()); }
+            int triValor(T e) { return get.test(e) ? TRI_V : TRI_F; }
+            void triDefinir(T e, int v) { set.set(e, v == TRI_V); }
+        });
+    }
+
+    /** Enum gravado como ordinal+1 (0 = null); {@code valores} é o {@code E.values()} cacheado pelo DAO. */
+    public <E extends Enum<E>> EsquemaRegistro<T> enumeracao(String nome, E[] valores,
+                                                           Function<? super T, E> get, BiConsumer<? super T, E> set) {
+        return add(new Campo<T>(nome, TipoCampo.ENUM) {
+            void escrever(T e, RecordWriter w) { w.writeEnum(get.apply(e)); }
+            void ler(T e, RecordReader r, boolean materializar) { set.accept(e, r.readEnum(valores)); }
+            void escreverCompacto(T e, RecordWriter w) { escrever(e, w); }
+            void lerCompacto(T e, RecordReader r, boolean materializar) { ler(e, r, materializar); }
+        });
+    }
+
+    public EsquemaRegistro<T> data(String nome, Function<? super T, LocalDate> get, BiConsumer<? super T, LocalDate> set) {
+        return add(new Campo<T>(nome, TipoCampo.LOCAL_DATE) {
+            void escrever(T e, RecordWriter w) { w.writeLocalDate(get.apply(e)); }
+            void ler(T e, RecordReader r, boolean materializar) {
+                if (materializar) set.accept(e, r.readLocalDate());
+                else r.skipLocalDate();
+            }
+            void escreverCompacto(T e, RecordWriter w) { w.writeEpochDay(get.apply(e)); }
+            void lerCompacto(T e, RecordReader r, boolean materializar) {
+                if (materializar) set.accept(e, r.readEpochDay());
+                else r.skipVarInt();
+            }
+        });
+    }
+
+    /** String (UTF-8 com prefixo u16). Fora da projeção é pulada e o setter nem é chamado. */
+    public EsquemaRegistro<T> string(String nome, Function<? super T, String> get, BiConsumer<? super T, String> set) {
+        return add(new Campo<T>(nome, TipoCampo.STRING_U16) {
+            void escrever(T e, RecordWriter w) { w.writeStringU16(get.apply(e)); }
+            void ler(T e, RecordReader r, boolean materializar) {
+                if (materializar) set.accept(e, r.readStringU16());
+                else r.skipStringU16();
+            }
+            void escreverCompacto(T e, RecordWriter w) { w.writeStringVar(get.apply(e)); }
+            void lerCompacto(T e, RecordReader r, boolean materializar) {
+                if (materializar) set.accept(e, r.readStringVar());
+                else r.skipStringVar();
+            }
+        });
+    }
+
+    /** Marca o último campo declarado como acrescentado na versão {@code versao} do formato. */
+    public EsquemaRegistro<T> desde(int versao) {
+        Campo<? super T> c = ultimo();
+        if (versao < VERSAO_INICIAL) throw new IllegalArgumentException("Versão inválida: " + versao);
+        for (Campo<? super T> outro : campos) {
+            if (outro.desde > versao) throw new IllegalStateException("Campos novos devem vir em ordem de versão: " + c.nome);
+        }
+        c.desde = versao;
+        return this;
+    }
+
+    /**
+     * Marca o último campo como opcional no fim do payload mesmo na versão atual
+     * (registros antigos sem o campo são lidos com o valor padrão).
+     */
+    public EsquemaRegistro<T> opcional() {
+        ultimo().opcional = true;
+        return this;
+    }
+
+    private EsquemaRegistro<T> add(Campo<T> c) {
+        for (Campo<? super T> outro : campos) {
+            if (outro.nome.equals(c.nome)) throw new IllegalStateException("Campo duplicado: " + c.nome);
+        }
+        if (!campos.isEmpty()) {
+            Campo<? super T> anterior = ultimo();
+            if (anterior.desde > VERSAO_INICIAL || anterior.opcional) {
+                // um campo fixo depois de um opcional não poderia ser localizado em registros antigos
+                c.desde = anterior.desde;
+                c.opcional = anterior.opcional;
+            }
+        }
+        campos.add(c);
+        return this;
+    }
+
+    private Campo<? super T> ultimo() {
+        if (campos.isEmpty()) throw new IllegalStateException("Nenhum campo declarado");
+        return campos.get(campos.size() - 1);
+    }
+
+    /* =============================================================
+     * CONSULTA
+     * ============================================================= */
+
+    /** Maior versão citada pelos campos (a versão "atual" do esquema). */
+    public int versao() {
+        int v = VERSAO_INICIAL;
+        for (Campo<? super T> c : campos) v = Math.max(v, c.desde);
+        return v;
+    }
+
+    /** true se este esquema lê (e grava) arquivos na versão {@code versaoArquivo}. */
+    public boolean suporta(int versaoArquivo) {
+        return versaoArquivo >= VERSAO_INICIAL;
+    }
+
+    /** Layout (projeção/filtros) com os campos deste esquema como campos fixos. */
+    public LayoutRegistro layout() {
+        return layout(this);
+    }
+
+    /**
+     * Layout de um arquivo polimórfico: os campos de {@code base} são os fixos (filtráveis) e os
+     * demais campos das variantes entram como extras (somente projeção).
+     */
+    public static LayoutRegistro layout(EsquemaRegistro<?> base, EsquemaRegistro<?>... variantes) {
+        LayoutRegistro l = new LayoutRegistro();
+        Set<String> fixos = new LinkedHashSet<>();
+        for (Campo<?> c : base.campos) {
+            l.campo(c.nome, c.tipo);
+            fixos.add(c.nome);
+        }
+        Set<String> extras = new LinkedHashSet<>();
+        for (EsquemaRegistro<?> v : variantes) {
+            for (Campo<?> c : v.campos) {
+                if (!fixos.contains(c.nome)) extras.add(c.nome);
+            }
+        }
+        return l.extras(extras.toArray(new String[0]));
+    }
+
+    /**
+     * Monta o codificador/decodificador para arquivos na versão {@code versaoFormato} com a
+     * codificação fixa ou {@code compacto}: omite campos de versões posteriores e tira os bits
+     * de projeção de {@code layout}.
+     */
+    public Compilado<T> compilar(LayoutRegistro layout, int versaoFormato, boolean compacto) {
+        List<Campo<? super T>> ativos = new ArrayList<>();
+        for (Campo<? super T> c : campos) {
+            if (c.desde <= versaoFormato) ativos.add(c);
+        }
+        int n = ativos.size();
+        @SuppressWarnings("unchecked")
+        Campo<? super T>[] arr = (Campo<? super T>[]) ativos.toArray(new Campo<?>[0]);
+        long[] bits = new long[n];
+        int[] slotTri = new int[n];
+        List<CampoTri<? super T>> tris = new ArrayList<>();
+        int primeiroOpcional = n;
+        for (int i = 0; i < n; i++) {
+            int idx = layout.indice(arr[i].nome);
+            if (idx < 0) throw new IllegalArgumentException("Campo fora do layout: " + arr[i].nome);
+            bits[i] = 1L << idx;
+            slotTri[i] = -1;
+            if (arr[i] instanceof CampoTri<? super T> t) {
+                slotTri[i] = tris.size();
+                tris.add(t);
+            }
+            if (primeiroOpcional == n && (arr[i].desde > VERSAO_INICIAL || arr[i].opcional)) primeiroOpcional = i;
+        }
+        if (compacto && tris.size() > MAX_TRI) throw new IllegalStateException("Mais de " + MAX_TRI + " tri-booleans no esquema");
+        @SuppressWarnings("unchecked")
+        CampoTri<? super T>[] arrTri = (CampoTri<? super T>[]) tris.toArray(new CampoTri<?>[0]);
+        return new Compilado<>(fabrica, arr, bits, primeiroOpcional, compacto,
+                compacto ? layout.compacto() : layout, slotTri, arrTri);
+    }
+
+    /* =============================================================
+     * CÓDIGO COMPILADO
+     * ============================================================= */
+
+    /**
+     * Codificador/decodificador pronto de um esquema: um vetor de campos tipados percorrido
+     * em ordem, sem consultas por nome. Sem estado mutável; pode ser compartilhado.
+     */
+    public static final class Compilado<T> {
+        private final Supplier<T> fabrica;
+        private final Campo<? super T>[] campos;
+        private final long[] bits;
+        private final int primeiroOpcional;
+        private final boolean compacto;
+        private final LayoutRegistro layout;
+        private final int[] slotTri; // posição no bloco de flags (compacto); -1 se não for tri-boolean
+        private final CampoTri<? super T>[] tris; // tri-booleans na ordem do bloco de flags
+
+        private Compilado(Supplier<T> fabrica, Campo<? super T>[] campos, long[] bits, int primeiroOpcional,
+                          boolean compacto, LayoutRegistro layout, int[] slotTri, CampoTri<? super T>[] tris) {
+            this.fabrica = fabrica;
+            this.campos = campos;
+            this.bits = bits;
+            this.primeiroOpcional = primeiroOpcional;
+            this.compacto = compacto;
+            this.layout = layout;
+            this.slotTri = slotTri;
+            this.tris = tris;
+        }
+
+        /** Layout para filtros sobre payloads desta versão (compacto ou fixo). */
+        public LayoutRegistro layout() {
+            return layout;
+        }
+
+        public boolean isCompacto() {
+            return compacto;
+        }
+
+        /** Escreve o payload de {@code e} no writer (na posição atual). */
+        public void escrever(T e, RecordWriter w) {
+            if (compacto) {
+                escreverCompacto(e, w);
+                return;
+            }
+            for (Campo<? super T> c : campos) c.escrever(e, w);
+        }
+
+        private void escreverCompacto(T e, RecordWriter w) {
+            CampoTri<? super T>[] ts = tris;
+            long flags = 0;
+            for (int s = 0; s < ts.length; s++) flags |= (long) ts[s].triValor(e) << (2 * s);
+            w.writeVarInt(ts.length);
+            int bytesFlags = (ts.length + 3) >>> 2;
+            for (int k = 0; k < bytesFlags; k++) w.writeByte((int) (flags >>> (8 * k)));
+            Campo<? super T>[] cs = campos;
+            for (int i = 0; i < cs.length; i++) {
+                if (slotTri[i] < 0) cs[i].escreverCompacto(e, w);
+            }
+        }
+
+        /** Cria a entidade pela fábrica do esquema e lê o payload nela. */
+        public T ler(RecordReader r, long mascara) {
+            if (fabrica == null) throw new IllegalStateException("Esquema sem fábrica");
+            T e = fabrica.get();
+            ler(e, r, mascara);
+            return e;
+        }
+
+        /**
+         * Lê o payload em {@code destino}. Strings/datas fora da {@code mascara} são puladas;
+         * campos opcionais ausentes no fim do registro mantêm o valor padrão.
+         */
+        public void ler(T destino, RecordReader r, long mascara) {
+            if (compacto) {
+                lerCompacto(destino, r, mascara);
+                return;
+            }
+            Campo<? super T>[] cs = campos;
+            int i = 0;
+            for (; i < primeiroOpcional; i++) cs[i].ler(destino, r, (mascara & bits[i]) != 0);
+            for (; i < cs.length && r.hasRemaining(); i++) cs[i].ler(destino, r, (mascara & bits[i]) != 0);
+        }
+
+        private void lerCompacto(T destino, RecordReader r, long mascara) {
+            Campo<? super T>[] cs = campos;
+            int gravados = r.readVarInt(); // registros antigos podem ter menos tri-booleans
+            if (gravados > MAX_TRI) throw new IllegalArgumentException("Bloco de flags inválido: " + gravados);
+            long flags = 0;
+            int bytesFlags = (gravados + 3) >>> 2;
+            for (int k = 0; k < bytesFlags; k++) flags |= (long) r.readUnsignedByte() << (8 * k);
+            CampoTri<? super T>[] ts = tris;
+            for (int s = 0; s < ts.length && s < gravados; s++) ts[s].triDefinir(destino, (int) (flags >>> (2 * s)) & 3);
+            for (int i = 0; i < cs.length; i++) {
+                if (slotTri[i] < 0 && (i < primeiroOpcional || r.hasRemaining())) {
+                    cs[i].lerCompacto(destino, r, (mascara & bits[i]) != 0);
+                }
+            }
+        }
+    }
+
+    /* =============================================================
+     * CAMPOS
+     * ============================================================= */
+
+    private abstract static class Campo<T> {
+        final String nome;
+        final TipoCampo tipo;
+        int desde = VERSAO_INICIAL;
+        boolean opcional;
+
+        Campo(String nome, TipoCampo tipo) {
+            this.nome = nome;
+            this.tipo = tipo;
+        }
+
+        abstract void escrever(T e, RecordWriter w);
+
+        /** {@code materializar} só importa para tipos que podem ser pulados (String, data). */
+        abstract void ler(T e, RecordReader r, boolean materializar);
+
+        abstract void escreverCompacto(T e, RecordWriter w);
+
+        abstract void lerCompacto(T e, RecordReader r, boolean materializar);
+    }
+
+    /**
+     * Tri-boolean: no formato compacto o valor não vai na sequência dos campos, e sim no bloco
+     * de flags do início do payload, lido e escrito pelo {@link Compilado} com os métodos abaixo.
+     */
+    private abstract static class CampoTri<T> extends Campo<T> {
+        CampoTri(String nome) {
+            super(nome, TipoCampo.TRI_BOOLEAN);
+        }
+
+        /** Valor de 2 bits do tri-boolean (formato compacto). */
+        abstract int triValor(T e);
+
+        abstract void triDefinir(T e, int v);
+
+        @Override
+        final void escreverCompacto(T e, RecordWriter w) {
+            // gravado no bloco de flags
+        }
+
+        @Override
+        final void lerCompacto(T e, RecordReader r, boolean materializar) {
+            // lido do bloco de flags
+        }
+    }
+
+    private static final int TRI_F = 1;
+    private static final int TRI_V = 2;
+
+    /** Acessores primitivos que faltam em java.util.function. */
+    @FunctionalInterface
+    public interface GetChar<T> { char get(T e); }
+
+    @FunctionalInterface
+    public interface SetChar<T> { void set(T e, char v); }
+
+    @FunctionalInterface
+    public interface SetBoolean<T> { void set(T e, boolean v); }
+}
@@ -9,17 +9,48 @@ import java.io.RandomAccessFile;
  * [0]     byte versaoFormato
  * [1-4]   int  proximoId
  * [5-8]   int  countAtivos
- * [9-127] reservado
+ * [9]     byte flags ({@link #FLAG_CIFRADO}, {@link #FLAG_AAD})
+ * [10]    byte codificacao do payload ({@link #CODIFICACAO_FIXA} ou {@link #CODIFICACAO_COMPACTA})
+ * [11-18] long idArquivo (aleatório; entra no AAD dos payloads com {@link #FLAG_AAD})
+ * [19-127] reservado
  */
 public final class FileHeaderHelper {
     public static final int HEADER_SIZE = 128;
 
+    /** Payloads selados com {@link EnvelopeCriptografia} (AES-GCM). */
+    public static final int FLAG_CIFRADO = 1;
+    /**
+     * Payloads selados com AAD = [idArquivo][id do registro]: um payload copiado para outro
+     * registro ou outro arquivo não abre. Arquivos cifrados antes do AAD não têm a flag.
+     */
+    public static final int FLAG_AAD = 2;
+
+    /** Payload nas convenções do {@link Codec} (ver {@link EsquemaRegistro}). */
+    public static final byte CODIFICACAO_FIXA = 1;
+    /** Payload compacto: varints e bloco de flags dos tri-booleans (ver {@link EsquemaRegistro}). */
+    public static final byte CODIFICACAO_COMPACTA = 2;
+
     private FileHeaderHelper() {}
 
     public static class Header {
         public byte versaoFormato;
         public int proximoId;
         public int countAtivos;
+        public byte flags;
+        public byte codificacao;
+        public long idArquivo;
+
+        public boolean isCifrado() {
+            return (flags & FLAG_CIFRADO) != 0;
+        }
+
+        public boolean usaAad() {
+            return (flags & FLAG_AAD) != 0;
+        }
+
+        public boolean isCompacto() {
+            return codificacao == CODIFICACAO_COMPACTA;
+        }
     }
 
     /**
@@ -70,6 +101,14 @@ public final class FileHeaderHelper {
         h.versaoFormato = raf.readByte();
         h.proximoId = raf.readInt();
         h.countAtivos = raf.readInt();
+        h.flags = raf.readByte();
+        h.codificacao = raf.readByte();
+        if (h.codificacao == 0) {
+            // Arquivo anterior ao campo: a versão 2 foi a primeira gravada no formato compacto.
+            // O byte é preenchido na próxima gravação do cabeçalho.
+            h.codificacao = h.versaoFormato >= 2 ? CODIFICACAO_COMPACTA : CODIFICACAO_FIXA;
+        }
+        h.idArquivo = raf.readLong();
         return h;
     }
 
@@ -78,15 +117,19 @@ public final class FileHeaderHelper {
         raf.writeByte(h.versaoFormato);
         raf.writeInt(h.proximoId);
         raf.writeInt(h.countAtivos);
-        long written = 1 + 4 + 4;
+        raf.writeByte(h.flags);
+        raf.writeByte(h.codificacao);
+        raf.writeLong(h.idArquivo);
+        long written = 1 + 4 + 4 + 1 + 1 + 8;
         long remaining = HEADER_SIZE - written;
         for (long i = 0; i < remaining; i++) raf.writeByte(0);
     }
 
-    public static Header initIfEmpty(RandomAccessFile raf, byte versao) throws IOException {
+    public static Header initIfEmpty(RandomAccessFile raf, byte versao, byte codificacao) throws IOException {
         if (raf.length() == 0) {
             Header h = new Header();
             h.versaoFormato = versao;
+            h.codificacao = codificacao;
             h.proximoId = 1;
             h.countAtivos = 0;
             write(raf, h);
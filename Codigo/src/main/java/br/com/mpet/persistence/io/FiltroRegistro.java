@@ -0,0 +1,29 @@
+package br.com.mpet.persistence.io;
+
+/**
+ * Predicado avaliado sobre os bytes crus do payload, antes de qualquer objeto ser criado.
+ *
+ * O leitor chega posicionado no início do payload; o filtro pode mover o cursor à vontade
+ * (o DAO reposiciona antes de decodificar). Normalmente é obtido de um {@link LayoutRegistro},
+ * que sabe pular os campos anteriores ao campo testado:
+ * <pre>
+ *   FiltroRegistro f = msgDao.layout().intIgual("threadId", 7);
+ *   List&lt;ChatMessage&gt; msgs = msgDao.listAllActive(f, Projecao.TODOS);
+ * </pre>
+ */
+@FunctionalInterface
+public interface FiltroRegistro {
+
+    boolean aceita(RecordReader payload);
+
+    /** Conjunção: o segundo filtro só roda se o primeiro aceitar (cada um a partir do início do payload). */
+    default FiltroRegistro e(FiltroRegistro outro) {
+        if (outro == null) return this;
+        return payload -> {
+            int inicio = payload.position();
+            if (!aceita(payload)) return false;
+            payload.position(inicio);
+            return outro.aceita(payload);
+        };
+    }
+}
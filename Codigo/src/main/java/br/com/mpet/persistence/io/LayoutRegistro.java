@@ -0,0 +1,179 @@
+package br.com.mpet.persistence.io;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Descrição da ordem e do tipo dos campos do payload de um DAO.
+ *
+ * Serve para dois fins:
+ * - projeção: traduz os nomes de uma {@link Projecao} em uma máscara de bits (um bit por campo);
+ * - filtros sobre bytes crus: sabe pular os campos anteriores a um campo e comparar o valor
+ *   sem materializar Strings nem criar a entidade.
+ *
+ * Os campos "fixos" são comuns a todos os registros do arquivo e podem ser filtrados.
+ * Campos "extras" (ex.: os de Cachorro/Gato, que dependem do tipo do registro) só
+ * participam da projeção; seus bits vêm depois dos fixos.
+ *
+ * Um layout {@link #compacto()} navega o payload do formato compacto (ver {@link EsquemaRegistro}).
+ */
+public final class LayoutRegistro {
+
+    private final List<String> nomes = new ArrayList<>();
+    private final List<TipoCampo> tipos = new ArrayList<>();
+    private final List<String> extras = new ArrayList<>();
+    private boolean compacto;
+
+    /** Cópia deste layout para payloads no formato compacto. */
+    public LayoutRegistro compacto() {
+        LayoutRegistro c = new LayoutRegistro();
+        c.nomes.addAll(nomes);
+        c.tipos.addAll(tipos);
+        c.extras.addAll(extras);
+        c.compacto = true;
+        return c;
+    }
+
+    public boolean isCompacto() {
+        return compacto;
+    }
+
+    /** Acrescenta um campo fixo (na ordem do payload). */
+    public LayoutRegistro campo(String nome, TipoCampo tipo) {
+        nomes.add(nome);
+        tipos.add(tipo);
+        return this;
+    }
+
+    /** Acrescenta nomes que só existem em parte dos registros (somente projeção). */
+    public LayoutRegistro extras(String... nomesExtras) {
+        extras.addAll(Arrays.asList(nomesExtras));
+        return this;
+    }
+
+    public int quantidadeCampos() {
+        return nomes.size();
+    }
+
+    /** Índice (bit) do campo; fixos primeiro, depois extras; -1 se não existir. */
+    public int indice(String nome) {
+        int i = nomes.indexOf(nome);
+        if (i >= 0) return i;
+        int e = extras.indexOf(nome);
+        return e < 0 ? -1 : nomes.size() + e;
+    }
+
+    public TipoCampo tipo(String nome) {
+        return tipos.get(indiceFixo(nome));
+    }
+
+    /** Máscara de bits da projeção; {@link Projecao#TODOS} vira -1 (todos os bits). */
+    public long mascara(Projecao projecao) {
+        if (projecao == null || projecao.isTodos()) return -1L;
+        long m = 0L;
+        for (String c : projecao.campos()) {
+            int i = indice(c);
+            if (i < 0) throw new IllegalArgumentException("Campo desconhecido: " + c);
+            m |= 1L << i;
+        }
+        return m;
+    }
+
+    /** true se o campo de índice {@code indice} está na máscara. */
+    public static boolean inclui(long mascara, int indice) {
+        return (mascara & (1L << indice)) != 0;
+    }
+
+    /** Avança o cursor (no início do payload) até o começo do campo fixo {@code nome}. */
+    public void posicionar(RecordReader payload, String nome) {
+        pularAte(payload, tipos.subList(0, indiceFixo(nome)).toArray(new TipoCampo[0]));
+    }
+
+    /** Lê o campo String {@code nome} de um payload (cursor no início), sem decodificar o resto. */
+    public String lerString(RecordReader payload, String nome) {
+        posicionar(payload, nome);
+        return compacto ? payload.readStringVar() : payload.readStringU16();
+    }
+
+    private void pularAte(RecordReader r, TipoCampo[] antes) {
+        if (compacto) {
+            // bloco de flags: quantidade de tri-booleans (varint) + 2 bits por valor
+            int n = r.readVarInt();
+            r.skip((n + 3) >>> 2);
+            for (TipoCampo p : antes) p.pularCompacto(r);
+        } else {
+            for (TipoCampo p : antes) p.pular(r);
+        }
+    }
+
+    /* =============================================================
+     * FILTROS
+     * ============================================================= */
+
+    /** Campo INT igual a {@code valor}. */
+    public FiltroRegistro intIgual(String campo, int valor) {
+        return intEntre(campo, valor, valor);
+    }
+
+    /** Campo INT dentro de [min, max] (inclusive). */
+    public FiltroRegistro intEntre(String campo, int min, int max) {
+        int alvo = indiceFixo(campo);
+        TipoCampo t = tipos.get(alvo);
+        if (t != TipoCampo.INT) throw new IllegalArgumentException("Campo não é INT: " + campo);
+        TipoCampo[] antes = tipos.subList(0, alvo).toArray(new TipoCampo[0]);
+        boolean c = compacto;
+        return r -> {
+            pularAte(r, antes);
+            int v = c ? r.readZigZagInt() : r.readInt();
+            return v >= min && v <= max;
+        };
+    }
+
+    /** Campo String igual a {@code valor}, comparando os bytes UTF-8 sem criar String. */
+    public FiltroRegistro stringIgual(String campo, String valor) {
+        int alvo = indiceFixo(campo);
+        if (tipos.get(alvo) != TipoCampo.STRING_U16) throw new IllegalArgumentException("Campo não é String: " + campo);
+        TipoCampo[] antes = tipos.subList(0, alvo).toArray(new TipoCampo[0]);
+        byte[] esperado = valor == null ? null : valor.getBytes(StandardCharsets.UTF_8);
+        boolean c = compacto;
+        return r -> {
+            pularAte(r, antes);
+            return c ? r.stringVarIgual(esperado) : r.stringU16Igual(esperado);
+        };
+    }
+
+    /** Campo ENUM igual a {@code valor} (null casa com enum ausente), comparando o byte do ordinal. */
+    public FiltroRegistro enumIgual(String campo, Enum<?> valor) {
+        int alvo = indiceFixo(campo);
+        if (tipos.get(alvo) != TipoCampo.ENUM) throw new IllegalArgumentException("Campo não é enum: " + campo);
+        TipoCampo[] antes = tipos.subList(0, alvo).toArray(new TipoCampo[0]);
+        int esperado = valor == null ? 0 : valor.ordinal() + 1;
+        return r -> {
+            pularAte(r, antes);
+            return r.readUnsignedByte() == esperado;
+        };
+    }
+
+    /**
+     * Valor do campo {@code nome} como chave de índice (cursor no início do payload):
+     * Integer para INT, String para STRING_U16 e o byte do ordinal (Integer) para ENUM.
+     */
+    public Object lerChave(RecordReader payload, String nome) {
+        TipoCampo t = tipo(nome);
+        posicionar(payload, nome);
+        return switch (t) {
+            case INT -> compacto ? payload.readZigZagInt() : payload.readInt();
+            case STRING_U16 -> compacto ? payload.readStringVar() : payload.readStringU16();
+            case ENUM -> payload.readUnsignedByte();
+            default -> throw new IllegalArgumentException("Campo não indexável: " + nome + " (" + t + ")");
+        };
+    }
+
+    private int indiceFixo(String campo) {
+        int i = nomes.indexOf(campo);
+        if (i < 0) throw new IllegalArgumentException("Campo não filtrável: " + campo);
+        return i;
+    }
+}
@@ -0,0 +1,58 @@
+package br.com.mpet.persistence.io;
+
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.Set;
+
+/**
+ * Conjunto de campos que o chamador precisa de uma listagem.
+ *
+ * Campos fora da projeção não são materializados na decodificação: Strings e datas são
+ * puladas pelo prefixo de tamanho e ficam null na entidade. id e ativo vêm sempre do
+ * cabeçalho do registro. Os nomes são os do {@link LayoutRegistro} de cada DAO.
+ *
+ * Exemplo: {@code dao.listAllActive(null, Projecao.de("nome", "porte"))}
+ */
+public final class Projecao {
+
+    /** Todos os campos (decodificação completa). */
+    public static final Projecao TODOS = new Projecao(null);
+
+    private final Set<String> campos; // null = todos
+
+    private Projecao(Set<String> campos) {
+        this.campos = campos;
+    }
+
+    public static Projecao de(String... campos) {
+        Set<String> set = new LinkedHashSet<>();
+        for (String c : campos) {
+            if (c != null && !c.isBlank()) set.add(c.trim());
+        }
+        return new Projecao(Collections.unmodifiableSet(set));
+    }
+
+    /** Interpreta uma lista separada por vírgulas (ex.: "?fields=nome,porte"); vazio/null = TODOS. */
+    public static Projecao parse(String csv) {
+        if (csv == null || csv.isBlank()) return TODOS;
+        return de(csv.split(","));
+    }
+
+    public boolean isTodos() {
+        return campos == null;
+    }
+
+    public boolean inclui(String campo) {
+        return campos == null || campos.contains(campo);
+    }
+
+    /** Nomes pedidos (vazio quando {@link #isTodos()}). */
+    public Set<String> campos() {
+        return campos == null ? Set.of() : campos;
+    }
+
+    @Override
+    public String toString() {
+        return campos == null ? "*" : String.join(",", campos);
+    }
+}
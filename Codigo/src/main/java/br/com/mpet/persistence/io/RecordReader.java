@@ -0,0 +1,301 @@
+package br.com.mpet.persistence.io;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+
+/**
+ * Leitor incremental de registros binários com cursor, contraparte de {@link RecordWriter}.
+ *
+ * Lê o mesmo formato de {@link Codec}, mas cada método devolve o valor primitivo e
+ * avança o cursor, sem alocar um {@link Codec.Decoded} nem fazer boxing de int/char/boolean.
+ * A instância pode ser reaproveitada com {@link #wrap(byte[], int, int)} a cada registro.
+ *
+ * Os métodos {@code *Var}, {@code readZigZag*} e {@code readEpochDay} leem o formato compacto
+ * escrito pelos equivalentes de {@link RecordWriter}.
+ *
+ * Erros de limite lançam {@link IllegalArgumentException}, como no Codec.
+ * Não é thread-safe.
+ */
+public final class RecordReader {
+
+    private ByteBuffer buf = ByteBuffer.allocate(0);
+
+    public RecordReader() {}
+
+    public RecordReader(byte[] data) {
+        wrap(data, 0, data.length);
+    }
+
+    /** Aponta o leitor para data[off..off+len) com o cursor no início. */
+    public RecordReader wrap(byte[] data, int off, int len) {
+        if (buf.array() != data) buf = ByteBuffer.wrap(data);
+        buf.limit(off + len);
+        buf.position(off);
+        return this;
+    }
+
+    public int position() {
+        return buf.position();
+    }
+
+    public RecordReader position(int pos) {
+        buf.position(pos);
+        return this;
+    }
+
+    public int remaining() {
+        return buf.remaining();
+    }
+
+    public boolean hasRemaining() {
+        return buf.hasRemaining();
+    }
+
+    private void require(int needed) {
+        if (buf.remaining() < needed) {
+            throw new IllegalArgumentException("Buffer insuficiente: offset=" + buf.position()
+                    + " need=" + needed + " len=" + buf.limit());
+        }
+    }
+
+    /* =============================================================
+     * PRIMITIVOS
+     * ============================================================= */
+    public byte readByte() {
+        require(1);
+        return buf.get();
+    }
+
+    public int readUnsignedByte() {
+        require(1);
+        return buf.get() & 0xFF;
+    }
+
+    public short readShort() {
+        require(2);
+        return buf.getShort();
+    }
+
+    public int readInt() {
+        require(4);
+        return buf.getInt();
+    }
+
+    public long readLong() {
+        require(8);
+        return buf.getLong();
+    }
+
+    public char readChar() {
+        require(2);
+        return buf.getChar();
+    }
+
+    /* =============================================================
+     * TIPOS ESTRUTURADOS
+     * ============================================================= */
+
+    /** Lê um Tri-Boolean e devolve true apenas para 'V' ('F' e 'U' viram false). */
+    public boolean readTriBoolean() {
+        int b = readUnsignedByte();
+        return switch (b) {
+            case 'V' -> true;
+            case 'F', 'U' -> false;
+            default -> throw new IllegalArgumentException("Byte inválido tri-boolean: 0x" + Integer.toHexString(b));
+        };
+    }
+
+    /** Variante que preserva o null ('U'); usa as constantes de Boolean, sem alocação. */
+    public Boolean readTriBooleanNullable() {
+        int b = readUnsignedByte();
+        return switch (b) {
+            case 'V' -> Boolean.TRUE;
+            case 'F' -> Boolean.FALSE;
+            case 'U' -> null;
+            default -> throw new IllegalArgumentException("Byte inválido tri-boolean: 0x" + Integer.toHexString(b));
+        };
+    }
+
+    /**
+     * Lê um Enum (0 = null; 1..255 = ordinal+1). Recebe o array de constantes já
+     * resolvido (ex.: {@code private static final Porte[] PORTES = Porte.values()})
+     * para não clonar o array a cada leitura.
+     */
+    public <E extends Enum<E>> E readEnum(E[] values) {
+        int b = readUnsignedByte();
+        if (b == 0) return null;
+        int ord = b - 1;
+        if (ord >= values.length) {
+            throw new IllegalArgumentException("Ordinal fora do intervalo: " + ord + " para enum "
+                    + values.getClass().getComponentType().getSimpleName());
+        }
+        return values[ord];
+    }
+
+    public LocalDate readLocalDate() {
+        int flag = readUnsignedByte();
+        if (flag == 0) return null;
+        require(6);
+        int year = buf.getInt();
+        int month = buf.get() & 0xFF;
+        int day = buf.get() & 0xFF;
+        return LocalDate.of(year, month, day);
+    }
+
+    public String readStringU16() {
+        require(2);
+        int len = buf.getShort() & 0xFFFF;
+        if (len == 0xFFFF) return null;
+        if (len == 0) return "";
+        require(len);
+        int start = buf.position();
+        buf.position(start + len);
+        return new String(buf.array(), start, len, StandardCharsets.UTF_8);
+    }
+
+    /** Lê a String se {@code materializar}; senão só pula o valor e devolve null. */
+    public String readStringU16(boolean materializar) {
+        if (materializar) return readStringU16();
+        skipStringU16();
+        return null;
+    }
+
+    /** Lê a data se {@code materializar}; senão só pula o valor e devolve null. */
+    public LocalDate readLocalDate(boolean materializar) {
+        if (materializar) return readLocalDate();
+        skipLocalDate();
+        return null;
+    }
+
+    /**
+     * Compara a StringU16 do cursor com os bytes UTF-8 esperados (null = sentinela de null)
+     * sem criar a String. Avança o cursor sobre o valor.
+     */
+    public boolean stringU16Igual(byte[] esperado) {
+        require(2);
+        int len = buf.getShort() & 0xFFFF;
+        if (len == 0xFFFF) return esperado == null;
+        require(len);
+        int start = buf.position();
+        buf.position(start + len);
+        if (esperado == null || esperado.length != len) return false;
+        return java.util.Arrays.equals(buf.array(), start, start + len, esperado, 0, len);
+    }
+
+    /* =============================================================
+     * FORMATO COMPACTO (varint LEB128)
+     * ============================================================= */
+
+    public int readVarInt() {
+        int v = 0;
+        for (int shift = 0; shift < 35; shift += 7) {
+            int b = readUnsignedByte();
+            v |= (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) return v;
+        }
+        throw new IllegalArgumentException("Varint malformado no offset " + buf.position());
+    }
+
+    public long readVarLong() {
+        long v = 0;
+        for (int shift = 0; shift < 70; shift += 7) {
+            int b = readUnsignedByte();
+            v |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) return v;
+        }
+        throw new IllegalArgumentException("Varint malformado no offset " + buf.position());
+    }
+
+    public int readZigZagInt() {
+        int v = readVarInt();
+        return (v >>> 1) ^ -(v & 1);
+    }
+
+    public long readZigZagLong() {
+        long v = readVarLong();
+        return (v >>> 1) ^ -(v & 1);
+    }
+
+    public char readCharVar() {
+        return (char) readVarInt();
+    }
+
+    public LocalDate readEpochDay() {
+        long v = readVarLong();
+        if (v == 0) return null;
+        v--;
+        return LocalDate.ofEpochDay((v >>> 1) ^ -(v & 1));
+    }
+
+    /** Lê a data se {@code materializar}; senão só pula o valor e devolve null. */
+    public LocalDate readEpochDay(boolean materializar) {
+        if (materializar) return readEpochDay();
+        skipVarInt();
+        return null;
+    }
+
+    public String readStringVar() {
+        int n = readVarInt();
+        if (n == 0) return null;
+        int len = n - 1;
+        if (len == 0) return "";
+        require(len);
+        int start = buf.position();
+        buf.position(start + len);
+        return new String(buf.array(), start, len, StandardCharsets.UTF_8);
+    }
+
+    /** Lê a String se {@code materializar}; senão só pula o valor e devolve null. */
+    public String readStringVar(boolean materializar) {
+        if (materializar) return readStringVar();
+        skipStringVar();
+        return null;
+    }
+
+    /** Como {@link #stringU16Igual(byte[])}, para a String do formato compacto. */
+    public boolean stringVarIgual(byte[] esperado) {
+        int n = readVarInt();
+        if (n == 0) return esperado == null;
+        int len = n - 1;
+        require(len);
+        int start = buf.position();
+        buf.position(start + len);
+        if (esperado == null || esperado.length != len) return false;
+        return java.util.Arrays.equals(buf.array(), start, start + len, esperado, 0, len);
+    }
+
+    /* =============================================================
+     * SKIP (avança o cursor sem materializar o valor)
+     * ============================================================= */
+    public RecordReader skip(int n) {
+        require(n);
+        buf.position(buf.position() + n);
+        return this;
+    }
+
+    public RecordReader skipStringU16() {
+        require(2);
+        int len = buf.getShort() & 0xFFFF;
+        if (len != 0xFFFF && len > 0) skip(len);
+        return this;
+    }
+
+    public RecordReader skipLocalDate() {
+        int flag = readUnsignedByte();
+        if (flag != 0) skip(6);
+        return this;
+    }
+
+    /** Pula um varint de qualquer tamanho (int ou long). */
+    public RecordReader skipVarInt() {
+        while ((readUnsignedByte() & 0x80) != 0) { }
+        return this;
+    }
+
+    public RecordReader skipStringVar() {
+        int n = readVarInt();
+        if (n > 1) skip(n - 1);
+        return this;
+    }
+}
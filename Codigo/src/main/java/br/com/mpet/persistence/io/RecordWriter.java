@@ -0,0 +1,314 @@
+package br.com.mpet.persistence.io;
+
+import java.nio.ByteBuffer;
+import java.time.LocalDate;
+
+/**
+ * Escritor incremental de registros binários sobre um {@link ByteBuffer} reutilizável.
+ *
+ * Produz exatamente os mesmos bytes que {@link Codec} (mesmas convenções de null,
+ * big-endian, StringU16, Tri-Boolean, Enum e LocalDate), mas escreve cada campo
+ * direto no buffer a partir do cursor atual, sem criar um byte[] por campo nem
+ * copiar tudo de novo em {@link Codec#concat(byte[]...)}.
+ *
+ * Uso típico dentro de um DAO (métodos synchronized, um writer por DAO):
+ * <pre>
+ *   writer.reset();
+ *   writer.writeByte(tombstone).writeInt(id).writeInt(0); // len provisório
+ *   writer.writeStringU16(nome).writeInt(idOng);
+ *   writer.putInt(POS_LEN, writer.position() - POS_PAYLOAD); // corrige len
+ *   raf.write(writer.array(), 0, writer.position());
+ * </pre>
+ *
+ * Os métodos {@code *Var}, {@code writeZigZag} e {@code writeEpochDay} pertencem ao formato
+ * compacto (ver {@link EsquemaRegistro}) e não têm equivalente no Codec.
+ *
+ * Não é thread-safe: cada instância deve ser usada por uma thread de cada vez.
+ */
+public final class RecordWriter {
+
+    private static final int STRING_NULL = 0xFFFF;
+    private static final int STRING_MAX = 0xFFFE;
+
+    private ByteBuffer buf;
+
+    public RecordWriter(int capacidadeInicial) {
+        this.buf = ByteBuffer.allocate(Math.max(16, capacidadeInicial));
+    }
+
+    /** Volta o cursor para o início; a capacidade já alocada é mantida. */
+    public RecordWriter reset() {
+        buf.clear();
+        return this;
+    }
+
+    /** Quantidade de bytes escritos desde o último {@link #reset()}. */
+    public int position() {
+        return buf.position();
+    }
+
+    /** Reposiciona o cursor de escrita (descarta o que estiver depois de {@code pos}). */
+    public RecordWriter position(int pos) {
+        if (pos < 0 || pos > buf.position()) throw new IllegalArgumentException("posição inválida: " + pos);
+        buf.position(pos);
+        return this;
+    }
+
+    /** Array de apoio; os bytes válidos vão de 0 até {@link #position()} (exclusivo). */
+    public byte[] array() {
+        return buf.array();
+    }
+
+    /** Cópia dos bytes escritos (útil quando o registro precisa sobreviver ao próximo reset). */
+    public byte[] toByteArray() {
+        byte[] out = new byte[buf.position()];
+        System.arraycopy(buf.array(), 0, out, 0, out.length);
+        return out;
+    }
+
+    /* =============================================================
+     * PRIMITIVOS
+     * ============================================================= */
+    public RecordWriter writeByte(int v) {
+        ensure(1);
+        buf.put((byte) v);
+        return this;
+    }
+
+    public RecordWriter writeBytes(byte[] src, int off, int len) {
+        ensure(len);
+        buf.put(src, off, len);
+        return this;
+    }
+
+    public RecordWriter writeShort(short v) {
+        ensure(2);
+        buf.putShort(v);
+        return this;
+    }
+
+    public RecordWriter writeInt(int v) {
+        ensure(4);
+        buf.putInt(v);
+        return this;
+    }
+
+    public RecordWriter writeLong(long v) {
+        ensure(8);
+        buf.putLong(v);
+        return this;
+    }
+
+    /** char em 2 bytes big-endian (mesmo layout de {@link Codec#encodeChar(char)}). */
+    public RecordWriter writeChar(char c) {
+        ensure(2);
+        buf.putChar(c);
+        return this;
+    }
+
+    /** Sobrescreve um int numa posição já escrita (ex.: campo len do cabeçalho do registro). */
+    public RecordWriter putInt(int pos, int v) {
+        buf.putInt(pos, v);
+        return this;
+    }
+
+    /** Sobrescreve um byte numa posição já escrita (ex.: bloco de flags do formato compacto). */
+    public RecordWriter putByte(int pos, int v) {
+        buf.put(pos, (byte) v);
+        return this;
+    }
+
+    /* =============================================================
+     * TIPOS ESTRUTURADOS (mesmas convenções do Codec)
+     * ============================================================= */
+
+    /** 'V' = true, 'F' = false, 'U' = null. */
+    public RecordWriter writeTriBoolean(Boolean v) {
+        return writeByte(v == null ? 'U' : (v ? 'V' : 'F'));
+    }
+
+    public RecordWriter writeTriBoolean(boolean v) {
+        return writeByte(v ? 'V' : 'F');
+    }
+
+    /** 0 = null; 1..255 = ordinal+1. */
+    public RecordWriter writeEnum(Enum<?> e) {
+        if (e == null) return writeByte(0);
+        int ord = e.ordinal();
+        if (ord >= 255)
+            throw new IllegalArgumentException("Enum com ordinal >= 255 não suportado: " + ord);
+        return writeByte(ord + 1);
+    }
+
+    /** flag(1) + ano(int) + mês(1) + dia(1); flag 0 = null. */
+    public RecordWriter writeLocalDate(LocalDate d) {
+        if (d == null) return writeByte(0);
+        ensure(7);
+        buf.put((byte) 1);
+        buf.putInt(d.getYear());
+        buf.put((byte) d.getMonthValue());
+        buf.put((byte) d.getDayOfMonth());
+        return this;
+    }
+
+    /**
+     * length U16 + bytes UTF-8; 0xFFFF = null. Codifica os caracteres direto no buffer
+     * e depois corrige o prefixo de tamanho.
+     */
+    public RecordWriter writeStringU16(String s) {
+        if (s == null) {
+            ensure(2);
+            buf.putShort((short) STRING_NULL);
+            return this;
+        }
+        ensure(2);
+        int lenPos = buf.position();
+        buf.position(lenPos + 2);
+        int len = putUtf8(s);
+        if (len > STRING_MAX) {
+            buf.position(lenPos);
+            throw new IllegalArgumentException("String excede 65534 bytes UTF-8: " + len);
+        }
+        buf.putShort(lenPos, (short) len);
+        return this;
+    }
+
+    /* =============================================================
+     * FORMATO COMPACTO (varint LEB128, 7 bits por byte)
+     * ============================================================= */
+
+    /** int sem sinal em 1..5 bytes (valores < 128 ocupam 1 byte). */
+    public RecordWriter writeVarInt(int v) {
+        ensure(5);
+        while ((v & ~0x7F) != 0) {
+            buf.put((byte) ((v & 0x7F) | 0x80));
+            v >>>= 7;
+        }
+        buf.put((byte) v);
+        return this;
+    }
+
+    /** long sem sinal em 1..10 bytes. */
+    public RecordWriter writeVarLong(long v) {
+        ensure(10);
+        while ((v & ~0x7FL) != 0) {
+            buf.put((byte) ((v & 0x7F) | 0x80));
+            v >>>= 7;
+        }
+        buf.put((byte) v);
+        return this;
+    }
+
+    /** int com sinal em zigzag (0, -1, 1, -2... viram 0, 1, 2, 3...) + varint. */
+    public RecordWriter writeZigZag(int v) {
+        return writeVarInt((v << 1) ^ (v >> 31));
+    }
+
+    public RecordWriter writeZigZag(long v) {
+        return writeVarLong((v << 1) ^ (v >> 63));
+    }
+
+    /** char como varint: ASCII (ex.: sexo 'M'/'F') ocupa 1 byte. */
+    public RecordWriter writeCharVar(char c) {
+        return writeVarInt(c);
+    }
+
+    /** Dias desde 1970-01-01 em zigzag+1 (varint); 0 = null. Datas atuais ocupam 3 bytes. */
+    public RecordWriter writeEpochDay(LocalDate d) {
+        if (d == null) return writeByte(0);
+        long dia = d.toEpochDay();
+        return writeVarLong(((dia << 1) ^ (dia >> 63)) + 1);
+    }
+
+    /** varint(tamanho+1) + bytes UTF-8; 0 = null. */
+    public RecordWriter writeStringVar(String s) {
+        if (s == null) return writeByte(0);
+        // Reserva o prefixo para o pior caso (3 bytes UTF-8 por char) e encolhe depois
+        int reservado = tamanhoVarInt(3 * s.length() + 1);
+        ensure(reservado);
+        int lenPos = buf.position();
+        buf.position(lenPos + reservado);
+        int len = putUtf8(s);
+        int usado = tamanhoVarInt(len + 1);
+        if (usado < reservado) {
+            byte[] arr = buf.array();
+            System.arraycopy(arr, lenPos + reservado, arr, lenPos + usado, len);
+        }
+        buf.position(lenPos);
+        writeVarInt(len + 1);
+        buf.position(lenPos + usado + len);
+        return this;
+    }
+
+    private static int tamanhoVarInt(int v) {
+        int n = 1;
+        while ((v & ~0x7F) != 0) {
+            v >>>= 7;
+            n++;
+        }
+        return n;
+    }
+
+    /**
+     * Escreve {@code s} em UTF-8 a partir do cursor e devolve o número de bytes escritos.
+     * Caminho rápido para ASCII; surrogates sem par viram '?', igual a {@code String.getBytes(UTF_8)}.
+     */
+    private int putUtf8(String s) {
+        int n = s.length();
+        ensure(n); // suficiente para ASCII
+        int inicio = buf.position();
+        // Caminho rápido: trecho ASCII escrito direto no array de apoio
+        byte[] arr = buf.array();
+        int p = inicio;
+        int i = 0;
+        for (; i < n; i++) {
+            char c = s.charAt(i);
+            if (c >= 0x80) break;
+            arr[p++] = (byte) c;
+        }
+        if (i < n) {
+            // Restante: reserva o pior caso (3 bytes por char; par de surrogates = 4 bytes em 2 chars)
+            buf.position(p);
+            ensure(3 * (n - i));
+            arr = buf.array();
+            for (; i < n; i++) {
+                char c = s.charAt(i);
+                if (c < 0x80) {
+                    arr[p++] = (byte) c;
+                } else if (c < 0x800) {
+                    arr[p++] = (byte) (0xC0 | (c >> 6));
+                    arr[p++] = (byte) (0x80 | (c & 0x3F));
+                } else if (Character.isSurrogate(c)) {
+                    int cp = -1;
+                    if (Character.isHighSurrogate(c) && i + 1 < n && Character.isLowSurrogate(s.charAt(i + 1))) {
+                        cp = Character.toCodePoint(c, s.charAt(++i));
+                    }
+                    if (cp < 0) {
+                        arr[p++] = (byte) '?';
+                    } else {
+                        arr[p++] = (byte) (0xF0 | (cp >> 18));
+                        arr[p++] = (byte) (0x80 | ((cp >> 12) & 0x3F));
+                        arr[p++] = (byte) (0x80 | ((cp >> 6) & 0x3F));
+                        arr[p++] = (byte) (0x80 | (cp & 0x3F));
+                    }
+                } else {
+                    arr[p++] = (byte) (0xE0 | (c >> 12));
+                    arr[p++] = (byte) (0x80 | ((c >> 6) & 0x3F));
+                    arr[p++] = (byte) (0x80 | (c & 0x3F));
+                }
+            }
+        }
+        buf.position(p);
+        return p - inicio;
+    }
+
+    private void ensure(int extra) {
+        if (buf.remaining() >= extra) return;
+        int needed = buf.position() + extra;
+        int cap = Math.max(needed, buf.capacity() * 2);
+        ByteBuffer maior = ByteBuffer.allocate(cap);
+        buf.flip();
+        maior.put(buf);
+        buf = maior;
+    }
+}
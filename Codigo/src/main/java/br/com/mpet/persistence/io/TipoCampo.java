@@ -0,0 +1,38 @@
+package br.com.mpet.persistence.io;
+
+/**
+ * Tipos de campo usados nos payloads (mesmas convenções de {@link Codec}).
+ * Cada tipo sabe avançar o cursor de um {@link RecordReader} sem materializar o valor,
+ * tanto no formato fixo quanto no compacto.
+ */
+public enum TipoCampo {
+    INT,
+    LONG,
+    CHAR,
+    TRI_BOOLEAN,
+    ENUM,
+    LOCAL_DATE,
+    STRING_U16;
+
+    /** Avança o cursor sobre um valor deste tipo. */
+    public void pular(RecordReader r) {
+        switch (this) {
+            case INT -> r.skip(4);
+            case LONG -> r.skip(8);
+            case CHAR -> r.skip(2);
+            case TRI_BOOLEAN, ENUM -> r.skip(1);
+            case LOCAL_DATE -> r.skipLocalDate();
+            case STRING_U16 -> r.skipStringU16();
+        }
+    }
+
+    /** Idem no formato compacto; tri-booleans ficam no bloco de flags e não ocupam espaço aqui. */
+    public void pularCompacto(RecordReader r) {
+        switch (this) {
+            case INT, LONG, CHAR, LOCAL_DATE -> r.skipVarInt();
+            case ENUM -> r.skip(1);
+            case TRI_BOOLEAN -> { }
+            case STRING_U16 -> r.skipStringVar();
+        }
+    }
+}